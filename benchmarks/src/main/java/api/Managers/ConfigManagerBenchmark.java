@@ -0,0 +1,60 @@
+package api.Managers;
+
+import bench.BenchmarkProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigManagerBenchmark {
+
+    private ConfigManager configManager;
+    private boolean flashEnabled;
+
+    @Setup
+    public void setUp() {
+        BenchmarkProfile.install();
+        configManager = new ConfigManager();
+    }
+
+    /** Cold start: scan the settings out of the profile store. Paid once per process. */
+    @Benchmark
+    public ConfigManager load() {
+        return new ConfigManager();
+    }
+
+    /** What every tab pays per lookup: a lock-free read of the cached snapshot. */
+    @Benchmark
+    public boolean read() {
+        return configManager.get(ConfigManager.ENABLE_FLASH);
+    }
+
+    /** Toggling a setting on the caller's thread: snapshot swap plus listener dispatch. */
+    @Benchmark
+    public void set() {
+        flashEnabled = !flashEnabled;
+        configManager.set(ConfigManager.ENABLE_FLASH, flashEnabled);
+    }
+
+    /** The background write: commit the changed setting to the profile, including the WAL fsync. */
+    @Benchmark
+    public void flush() {
+        flashEnabled = !flashEnabled;
+        configManager.set(ConfigManager.ENABLE_FLASH, flashEnabled);
+        configManager.flush();
+    }
+}
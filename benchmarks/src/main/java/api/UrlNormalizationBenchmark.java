@@ -0,0 +1,36 @@
+package api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlNormalizationBenchmark {
+
+    @Param({
+            "https://www.example.com/some/path?query=value#fragment",
+            "example.com",
+            "link://perf",
+            "https://www.example.com/" + "a/very/long/path/segment/" + "that/keeps/going/and/going/and/going/to/stress/the/matcher"
+    })
+    private String url;
+
+    @Benchmark
+    public String normalizeUrl() {
+        return BrowserView.normalizeUrl(url);
+    }
+}
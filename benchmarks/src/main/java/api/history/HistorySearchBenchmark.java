@@ -0,0 +1,75 @@
+package api.history;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySearchBenchmark {
+
+    private static final int DOCS_PER_SEGMENT = 2048;
+    private static final int WORDS_PER_PAGE = 600;
+
+    @Param({"2000", "20000"})
+    private int pages;
+
+    @Param({"java", "browser performance", "index seg"})
+    private String query;
+
+    private List<Segment> segments;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[20_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+        }
+        String[] common = {"java", "browser", "performance", "index", "segment", "search", "history", "page"};
+        now = System.currentTimeMillis();
+        segments = new ArrayList<>();
+        SegmentBuilder builder = new SegmentBuilder();
+        for (int doc = 0; doc < pages; doc++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_PAGE; w++) {
+                // Zipf-like: a few words are very frequent, most are rare
+                int rank = (int) Math.min(vocabulary.length - 1, Math.pow(random.nextDouble(), 3) * vocabulary.length);
+                text.append(random.nextInt(20) == 0 ? common[random.nextInt(common.length)] : vocabulary[rank]).append(' ');
+            }
+            Map<String, Integer> terms = new HashMap<>();
+            int length = Tokenizer.count(text, 1, terms);
+            builder.add("https://site" + doc + ".example.com/", now - random.nextInt(90) * 86_400_000L, terms, length);
+            if (builder.size() == DOCS_PER_SEGMENT) {
+                segments.add(builder.build(segments.size()));
+                builder = new SegmentBuilder();
+            }
+        }
+        if (!builder.isEmpty()) segments.add(builder.build(segments.size()));
+    }
+
+    @Benchmark
+    public List<HistorySearcher.Hit> search() {
+        return HistorySearcher.search(segments, query, 10, now);
+    }
+}
@@ -0,0 +1,82 @@
+package api.profile;
+
+import bench.BenchmarkProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileStoreBenchmark {
+
+    private static final int HISTORY_SIZE = 5000;
+
+    private Path directory;
+    private ProfileStore store;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkProfile.install().resolve("profile-bench");
+        store = new ProfileStore(directory);
+        store.defineIndex("by_time", "history/", value -> new String(value));
+        ProfileStore.Transaction transaction = store.begin();
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            transaction.putString("history/https://example.com/" + i, String.format("%019d", i));
+        }
+        transaction.commit();
+        store.checkpoint();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+    }
+
+    /** Point lookup served from the decoded page cache. */
+    @Benchmark
+    public byte[] get() {
+        return store.get("history/https://example.com/" + (counter++ % HISTORY_SIZE));
+    }
+
+    /** "Recent history": the top of a secondary index, no scan. */
+    @Benchmark
+    public List<String> recentFromIndex() {
+        return store.queryIndex("by_time", null, null, true, 20);
+    }
+
+    /** A durable single-key commit: page re-encode, WAL append and fsync. */
+    @Benchmark
+    public void commit() {
+        store.putString("history/https://example.com/" + (counter++ % HISTORY_SIZE), String.format("%019d", counter));
+    }
+
+    /** Cold open of a checkpointed profile: decrypt and decode every page. */
+    @Benchmark
+    public int open() throws IOException {
+        Path copy = Files.createTempDirectory(directory.getParent(), "open");
+        Files.copy(directory.resolve("profile.db"), copy.resolve("profile.db"));
+        try (ProfileStore opened = new ProfileStore(copy)) {
+            return opened.keys("history/").size();
+        }
+    }
+}
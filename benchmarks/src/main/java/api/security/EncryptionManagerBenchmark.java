@@ -0,0 +1,69 @@
+package api.security;
+
+import bench.BenchmarkProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionManagerBenchmark {
+
+    @Param({"256", "16384"})
+    private int payloadSize;
+
+    private EncryptionManager encryptionManager;
+    private String plainText;
+    private String cipherText;
+    private byte[] plainBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkProfile.install();
+        encryptionManager = new EncryptionManager();
+        plainText = "enable_flash=true\n".repeat(payloadSize / 18 + 1).substring(0, payloadSize);
+        cipherText = encryptionManager.encrypt(plainText);
+        plainBytes = plainText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String encrypt() throws Exception {
+        return encryptionManager.encrypt(plainText);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return encryptionManager.decrypt(cipherText);
+    }
+
+    /** Streaming round trip through the chunked GCM streams. */
+    @Benchmark
+    public int streamRoundTrip() throws Exception {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream(plainBytes.length + 64);
+        try (OutputStream out = encryptionManager.newEncryptingStream(encrypted)) {
+            out.write(plainBytes);
+        }
+        try (InputStream in = encryptionManager.newDecryptingStream(new ByteArrayInputStream(encrypted.toByteArray()))) {
+            return in.readAllBytes().length;
+        }
+    }
+}
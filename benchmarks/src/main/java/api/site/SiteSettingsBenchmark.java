@@ -0,0 +1,57 @@
+package api.site;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SiteSettingsBenchmark {
+
+    @Param({"100", "10000"})
+    private int patterns;
+
+    @Param({
+            "https://www.site42.example.com/some/path?query=value",
+            "https://deep.sub.domain.site7.example.org:8443/",
+            "https://unconfigured.test/"
+    })
+    private String url;
+
+    private SiteSettingsTree tree;
+
+    @Setup
+    public void setUp() {
+        Map<String, SiteSettings> settings = new HashMap<>();
+        settings.put("*", SiteSettings.EMPTY.withImages(true));
+        for (int i = 0; i < patterns; i++) {
+            String tld = i % 2 == 0 ? "com" : "org";
+            settings.put("site" + i + ".example." + tld, SiteSettings.EMPTY.withZoom(1.0 + i % 5 / 10.0));
+            if (i % 3 == 0) {
+                settings.put("*.site" + i + ".example." + tld, SiteSettings.EMPTY.withJavascript(false));
+            }
+        }
+        tree = SiteSettingsTree.build(settings);
+    }
+
+    @Benchmark
+    public SiteSettings resolveUrl() {
+        return tree.resolveUrl(url);
+    }
+}
@@ -0,0 +1,32 @@
+package bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Points user.home at a throw-away directory so benchmarks never read or overwrite the real
+ * Link profile. Must run before the first use of any class that resolves its paths from
+ * user.home in a static initializer (ConfigManager, EncryptionManager, BookmarkPersistence, ProfileStore).
+ */
+public final class BenchmarkProfile {
+
+    private static Path home;
+
+    private BenchmarkProfile() {
+    }
+
+    public static synchronized Path install() {
+        if (home != null) return home;
+        try {
+            home = Files.createTempDirectory("link-bench-home");
+            Files.createDirectories(home.resolve(".config").resolve("LinkBrowser"));
+            Files.createDirectories(home.resolve("AppData").resolve("Local").resolve("LinkBrowser"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setProperty("user.home", home.toString());
+        return home;
+    }
+}
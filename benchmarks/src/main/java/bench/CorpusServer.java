@@ -0,0 +1,280 @@
+package bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP stand-in serving a fixed, deterministic page corpus.
+ * <p>
+ * Pages range from a few kilobytes of text to large documents with many images, a stylesheet
+ * and a DOM-building script, so loads exercise parsing, sub-resources and JavaScript without
+ * depending on the network. An optional per-request delay simulates a slow link.
+ * <p>
+ * {@code /file/<bytes>} serves a deterministic binary attachment of that size with single-range
+ * support, an ETag and If-Range handling, as a stand-in for download servers.
+ * {@code /bare/corpus-<bytes>.bin} serves the same file without a Content-Disposition header, so the
+ * name comes from the URL.
+ */
+public class CorpusServer implements AutoCloseable {
+
+    /** Paragraph counts of the corpus pages; page i is served at /page/i. */
+    private static final int[] PAGE_PARAGRAPHS = {5, 20, 50, 100, 200, 400, 800, 1500};
+    private static final int IMAGES_PER_100_PARAGRAPHS = 10;
+
+    private final HttpServer server;
+    private final long delayMillis;
+    private final byte[] image;
+    private volatile int fileVersion = 1;
+    private volatile long fileChunkDelayMillis = 0;
+
+    public CorpusServer(long delayMillis) throws IOException {
+        this.delayMillis = delayMillis;
+        this.image = renderImage();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "corpus-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.server.createContext("/page/", this::servePage);
+        this.server.createContext("/file/", exchange -> serveFile(exchange, true));
+        this.server.createContext("/bare/", exchange -> serveFile(exchange, false));
+        this.server.createContext("/img/", exchange -> send(exchange, 200, "image/png", image));
+        this.server.createContext("/style.css", exchange ->
+                send(exchange, 200, "text/css", STYLESHEET.getBytes(StandardCharsets.UTF_8)));
+        this.server.createContext("/script.js", exchange ->
+                send(exchange, 200, "application/javascript", SCRIPT.getBytes(StandardCharsets.UTF_8)));
+        this.server.start();
+    }
+
+    /**
+     * Returns the URLs of every corpus page.
+     */
+    public List<String> getPageUrls() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < PAGE_PARAGRAPHS.length; i++) {
+            urls.add(getBaseUrl() + "/page/" + i);
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the URL of a downloadable file of the given size.
+     */
+    public String getFileUrl(long bytes) {
+        return getBaseUrl() + "/file/" + bytes;
+    }
+
+    /**
+     * Returns the URL of the same file served without a Content-Disposition header; its name
+     * is {@code corpus-<bytes>.bin}.
+     */
+    public String getBareFileUrl(long bytes) {
+        return getBaseUrl() + "/bare/corpus-" + bytes + ".bin";
+    }
+
+    /**
+     * Returns byte {@code index} of every served file, for verifying downloads.
+     */
+    public static byte fileByte(long index, int version) {
+        return (byte) ((index * 31 + (index >>> 8) + version * 7) & 0xFF);
+    }
+
+    public int getFileVersion() {
+        return fileVersion;
+    }
+
+    /**
+     * Changes the content and ETag of every file, as if it were replaced on the server.
+     */
+    public void changeFiles() {
+        fileVersion++;
+    }
+
+    /**
+     * Sleeps this long after every 64 KiB of file data, to keep transfers running long enough
+     * to be interrupted.
+     */
+    public void setFileChunkDelay(long millis) {
+        this.fileChunkDelayMillis = millis;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void servePage(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int index;
+        try {
+            index = Integer.parseInt(path.substring("/page/".length()));
+        } catch (NumberFormatException e) {
+            send(exchange, 404, "text/plain", new byte[0]);
+            return;
+        }
+        if (index < 0 || index >= PAGE_PARAGRAPHS.length) {
+            send(exchange, 404, "text/plain", new byte[0]);
+            return;
+        }
+        send(exchange, 200, "text/html; charset=utf-8", renderPage(index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void serveFile(HttpExchange exchange, boolean attachment) throws IOException {
+        long size;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            size = Long.parseLong(attachment ? name : name.replaceFirst("^corpus-(\\d+)\\.bin$", "$1"));
+        } catch (NumberFormatException e) {
+            send(exchange, 404, "text/plain", new byte[0]);
+            return;
+        }
+        int version = fileVersion;
+        String etag = "\"file-" + size + "-v" + version + "\"";
+        long start = 0;
+        long end = size - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(etag))) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            start = Long.parseLong(bounds[0]);
+            if (bounds.length > 1 && !bounds[1].isEmpty()) end = Math.min(end, Long.parseLong(bounds[1]));
+            if (start > end) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (attachment) {
+            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"corpus-" + size + ".bin\"");
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("ETag", etag);
+        long length = end - start + 1;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream out = exchange.getResponseBody()) {
+            long position = start;
+            while (position <= end) {
+                int count = (int) Math.min(chunk.length, end - position + 1);
+                for (int i = 0; i < count; i++) {
+                    chunk[i] = fileByte(position + i, version);
+                }
+                out.write(chunk, 0, count);
+                position += count;
+                if (fileChunkDelayMillis > 0) {
+                    try {
+                        Thread.sleep(fileChunkDelayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // client went away mid-transfer; expected when a download is paused
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String renderPage(int index) {
+        int paragraphs = PAGE_PARAGRAPHS[index];
+        int images = Math.max(1, paragraphs * IMAGES_PER_100_PARAGRAPHS / 100);
+        StringBuilder html = new StringBuilder(paragraphs * 600);
+        html.append("<!DOCTYPE html><html><head><title>Corpus page ").append(index)
+                .append("</title><link rel=\"stylesheet\" href=\"/style.css\"></head><body>")
+                .append("<h1>Corpus page ").append(index).append("</h1>");
+        for (int p = 0; p < paragraphs; p++) {
+            html.append("<p>Paragraph ").append(p)
+                    .append(" Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore")
+                    .append(" et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris nisi ut")
+                    .append(" aliquip ex ea commodo consequat. <a href=\"/page/").append((index + 1) % PAGE_PARAGRAPHS.length)
+                    .append("\">next</a></p>");
+            if (p % Math.max(1, paragraphs / images) == 0) {
+                html.append("<img src=\"/img/").append(index).append('-').append(p).append(".png\" width=\"64\" height=\"64\">");
+            }
+        }
+        html.append("<div id=\"generated\"></div><script src=\"/script.js\"></script></body></html>");
+        return html.toString();
+    }
+
+    private static byte[] renderImage() {
+        BufferedImage img = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                img.setRGB(x, y, (x * 4) << 16 | (y * 4) << 8 | ((x ^ y) * 4));
+            }
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(img, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final String STYLESHEET = """
+            body { font-family: sans-serif; margin: 20px; }
+            p { line-height: 1.4; }
+            p:nth-child(odd) { background: #f4f4f4; }
+            img { float: right; margin: 4px; }
+            """;
+
+    private static final String SCRIPT = """
+            (function() {
+                var target = document.getElementById('generated');
+                var list = document.createElement('ul');
+                for (var i = 0; i < 500; i++) {
+                    var item = document.createElement('li');
+                    item.textContent = 'Generated item ' + i;
+                    list.appendChild(item);
+                }
+                target.appendChild(list);
+            })();
+            """;
+}
@@ -0,0 +1,223 @@
+package bench;
+
+import api.download.Download;
+import api.download.DownloadManager;
+import api.profile.ProfileStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * End-to-end check of the download manager against {@link CorpusServer}'s range-capable
+ * {@code /file/} endpoint. No JavaFX is needed.
+ * <p>
+ * Scenarios: a plain parallel download; a download paused part-way, followed by a simulated
+ * restart (profile store closed and reopened, new manager, {@code resumePending}); a resume
+ * after the file changed on the server, which must restart from scratch; and a throttled
+ * download whose duration must match the limit; and a download without a Content-Disposition
+ * header, restarted part-way by a file change, which must keep the name from its URL. Every
+ * file is verified byte for byte.
+ * Results are written as one JSON object and the process exits with 1 if a scenario failed.
+ * <p>
+ * Options: {@code --size-mb N} (default 32), {@code --connections N} (default 4),
+ * {@code --limit-kib N} throttle for the throttled scenario (default 4096),
+ * {@code --out FILE} (default download-results.json).
+ */
+public final class DownloadHarness {
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final Path home;
+    private final Path downloads;
+    private final Path profile;
+    private final int connections;
+    private final StringBuilder json = new StringBuilder();
+    private boolean allPassed = true;
+
+    private DownloadHarness(Path home, int connections) {
+        this.home = home;
+        this.downloads = home.resolve("Downloads");
+        this.profile = home.resolve("profile");
+        this.connections = connections;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long sizeMb = 32;
+        int connections = 4;
+        long limitKib = 4096;
+        Path out = Path.of("download-results.json");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size-mb" -> sizeMb = Long.parseLong(args[++i]);
+                case "--connections" -> connections = Integer.parseInt(args[++i]);
+                case "--limit-kib" -> limitKib = Long.parseLong(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        DownloadHarness harness = new DownloadHarness(BenchmarkProfile.install(), connections);
+        long size = sizeMb * 1024 * 1024;
+        try (CorpusServer server = new CorpusServer(0)) {
+            harness.json.append("{\"timestamp\":\"").append(Instant.now()).append("\",\"connections\":")
+                    .append(connections).append(",\"sizeBytes\":").append(size);
+            harness.plainDownload(server, size);
+            harness.pauseRestartResume(server, size);
+            harness.resumeAfterChange(server, size / 4);
+            harness.throttled(server, limitKib * 1024);
+            harness.noDisposition(server, size / 8);
+            harness.json.append(",\"passed\":").append(harness.allPassed).append("}");
+        }
+        Files.writeString(out, harness.json.toString(), StandardCharsets.UTF_8);
+        System.out.println(harness.json);
+        System.exit(harness.allPassed ? 0 : 1);
+    }
+
+    private void plainDownload(CorpusServer server, long size) throws Exception {
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, 0, connections);
+            long start = System.nanoTime();
+            Download download = manager.start(server.getFileUrl(size));
+            await(() -> download.isFinished());
+            long elapsed = System.nanoTime() - start;
+            boolean ok = download.getState() == Download.State.COMPLETED
+                    && verify(download.getTarget(), size, server.getFileVersion());
+            report("plain", ok, elapsed, download);
+        }
+    }
+
+    private void pauseRestartResume(CorpusServer server, long size) throws Exception {
+        server.setFileChunkDelay(2);
+        Download paused;
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, 0, connections);
+            paused = manager.start(server.getFileUrl(size));
+            await(() -> paused.getReceivedBytes() > size / 3 || paused.isFinished());
+            manager.pauseAll();
+            await(() -> paused.getState() == Download.State.PAUSED || paused.isFinished());
+        }
+        long bytesBeforeRestart = paused.getReceivedBytes();
+        server.setFileChunkDelay(0);
+
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, 0, connections);
+            long start = System.nanoTime();
+            manager.resumePending();
+            Download resumed = manager.getDownloads().isEmpty() ? null : manager.getDownloads().get(0);
+            if (resumed == null) {
+                report("pause_restart_resume", false, 0, paused);
+                return;
+            }
+            long resumedFrom = resumed.getReceivedBytes();
+            await(resumed::isFinished);
+            boolean ok = resumed.getState() == Download.State.COMPLETED
+                    && resumedFrom > 0
+                    && resumedFrom <= bytesBeforeRestart
+                    && verify(resumed.getTarget(), size, server.getFileVersion());
+            report("pause_restart_resume", ok, System.nanoTime() - start, resumed);
+            json.append(",\"pause_restart_resume_resumedFromBytes\":").append(resumedFrom);
+        }
+    }
+
+    private void resumeAfterChange(CorpusServer server, long size) throws Exception {
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, 0, connections);
+            server.setFileChunkDelay(2);
+            Download download = manager.start(server.getFileUrl(size));
+            await(() -> download.getReceivedBytes() > size / 3 || download.isFinished());
+            manager.pause(download);
+            await(() -> download.getState() == Download.State.PAUSED || download.isFinished());
+            server.setFileChunkDelay(0);
+            server.changeFiles();
+            long start = System.nanoTime();
+            manager.resume(download);
+            await(download::isFinished);
+            boolean ok = download.getState() == Download.State.COMPLETED
+                    && verify(download.getTarget(), size, server.getFileVersion());
+            report("resume_after_change", ok, System.nanoTime() - start, download);
+        }
+    }
+
+    private void throttled(CorpusServer server, long bytesPerSecond) throws Exception {
+        long size = bytesPerSecond * 3;
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, bytesPerSecond, connections);
+            long start = System.nanoTime();
+            Download download = manager.start(server.getFileUrl(size));
+            await(download::isFinished);
+            long elapsed = System.nanoTime() - start;
+            double seconds = elapsed / 1e9;
+            // The bucket starts empty, so three seconds of data take about three seconds.
+            boolean ok = download.getState() == Download.State.COMPLETED
+                    && seconds > 2.5 && seconds < 4.5
+                    && verify(download.getTarget(), size, server.getFileVersion());
+            report("throttled", ok, elapsed, download);
+        }
+    }
+
+    private void noDisposition(CorpusServer server, long size) throws Exception {
+        try (ProfileStore store = new ProfileStore(profile)) {
+            DownloadManager manager = new DownloadManager(downloads, store, 0, connections);
+            long start = System.nanoTime();
+            server.setFileChunkDelay(2);
+            Download download = manager.start(server.getBareFileUrl(size));
+            await(() -> download.getReceivedBytes() > size / 3 || download.isFinished());
+            manager.pause(download);
+            await(() -> download.getState() == Download.State.PAUSED || download.isFinished());
+            server.setFileChunkDelay(0);
+            server.changeFiles();
+            manager.resume(download);
+            await(download::isFinished);
+            // Neither the first attempt nor the restart may count the download's own name as taken
+            boolean ok = download.getState() == Download.State.COMPLETED
+                    && download.getTarget().equals(downloads.resolve("corpus-" + size + ".bin"))
+                    && verify(download.getTarget(), size, server.getFileVersion());
+            report("no_disposition", ok, System.nanoTime() - start, download);
+        }
+    }
+
+    private void report(String name, boolean ok, long elapsedNanos, Download download) {
+        double seconds = elapsedNanos / 1e9;
+        double mibPerSecond = seconds > 0 ? download.getTotalBytes() / seconds / (1024 * 1024) : 0;
+        json.append(",\"").append(name).append("\":{\"passed\":").append(ok)
+                .append(",\"state\":\"").append(download.getState()).append('"')
+                .append(",\"parts\":").append(download.getPartCount())
+                .append(",\"seconds\":").append(String.format(Locale.ROOT, "%.3f", seconds))
+                .append(",\"mibPerSecond\":").append(String.format(Locale.ROOT, "%.1f", mibPerSecond))
+                .append('}');
+        System.out.printf(Locale.ROOT, "%-22s %s  %.2fs  %.1f MiB/s  parts=%d%n",
+                name, ok ? "PASS" : "FAIL", seconds, mibPerSecond, download.getPartCount());
+        allPassed &= ok;
+    }
+
+    private static boolean verify(Path file, long size, int version) throws IOException {
+        if (!Files.exists(file) || Files.size(file) != size) return false;
+        byte[] buffer = new byte[64 * 1024];
+        long position = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != CorpusServer.fileByte(position + i, version)) return false;
+                }
+                position += read;
+            }
+        }
+        return position == size;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new IllegalStateException("Timed out waiting for download");
+            Thread.sleep(10);
+        }
+    }
+}
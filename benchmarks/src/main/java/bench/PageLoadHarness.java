@@ -0,0 +1,237 @@
+package bench;
+
+import api.BrowserView;
+import api.Managers.TabManager;
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.scene.Scene;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.web.WebEngine;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless end-to-end page-load benchmark for the real BrowserView/TabManager stack.
+ * <p>
+ * Opens N tabs at once and has each of them load the {@link CorpusServer} pages for the given
+ * number of rounds. While that runs it samples heap and thread count and probes the FX thread
+ * with a single in-flight {@code Platform.runLater}; any probe that waits longer than the stall
+ * threshold is counted as an FX-thread stall. Results are written as one JSON object so runs
+ * of different builds can be compared.
+ * <p>
+ * Options: {@code --tabs N} (default 4), {@code --rounds N} (default 3), {@code --delay-ms N}
+ * per-request server delay (default 0), {@code --stall-ms N} (default 50),
+ * {@code --label TEXT}, {@code --out FILE} (default pageload-results.json), and
+ * {@code --headed} to use the platform's real windowing instead of Monocle.
+ */
+public final class PageLoadHarness {
+
+    private static final long TIMEOUT_MINUTES = 10;
+
+    private final int tabs;
+    private final int rounds;
+    private final long stallNanos;
+
+    private final List<Long> loadMicros = new ArrayList<>();
+    private final List<Long> tabOpenMicros = new ArrayList<>();
+    private int failures = 0;
+
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final AtomicLong peakThreads = new AtomicLong();
+    private final AtomicLong stallCount = new AtomicLong();
+    private final AtomicLong stallMaxNanos = new AtomicLong();
+    private final AtomicLong stallTotalNanos = new AtomicLong();
+
+    private PageLoadHarness(int tabs, int rounds, long stallMillis) {
+        this.tabs = tabs;
+        this.rounds = rounds;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tabs = 4;
+        int rounds = 3;
+        long delayMillis = 0;
+        long stallMillis = 50;
+        String label = "unlabeled";
+        Path out = Path.of("pageload-results.json");
+        boolean headless = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--tabs" -> tabs = Integer.parseInt(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--delay-ms" -> delayMillis = Long.parseLong(args[++i]);
+                case "--stall-ms" -> stallMillis = Long.parseLong(args[++i]);
+                case "--label" -> label = args[++i];
+                case "--out" -> out = Path.of(args[++i]);
+                case "--headed" -> headless = false;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        BenchmarkProfile.install();
+        if (headless) {
+            System.setProperty("glass.platform", "Monocle");
+            System.setProperty("monocle.platform", "Headless");
+            System.setProperty("prism.order", "sw");
+        }
+
+        int exitCode;
+        try (CorpusServer server = new CorpusServer(delayMillis)) {
+            PageLoadHarness harness = new PageLoadHarness(tabs, rounds, stallMillis);
+            boolean finished = harness.run(server.getPageUrls());
+            String json = harness.toJson(label, delayMillis, finished);
+            Files.writeString(out, json + "\n", StandardCharsets.UTF_8);
+            System.out.println(json);
+            exitCode = finished ? 0 : 1;
+        }
+        Platform.exit();
+        System.exit(exitCode);
+    }
+
+    private boolean run(List<String> pages) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        ScheduledExecutorService samplers = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "harness-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        samplers.scheduleAtFixedRate(() -> {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }, 0, 20, TimeUnit.MILLISECONDS);
+
+        AtomicBoolean probeInFlight = new AtomicBoolean();
+        samplers.scheduleAtFixedRate(() -> {
+            if (!probeInFlight.compareAndSet(false, true)) return;
+            long posted = System.nanoTime();
+            Platform.runLater(() -> {
+                long waited = System.nanoTime() - posted;
+                if (waited > stallNanos) {
+                    stallCount.incrementAndGet();
+                    stallTotalNanos.addAndGet(waited);
+                    stallMaxNanos.accumulateAndGet(waited, Math::max);
+                }
+                probeInFlight.set(false);
+            });
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        CountDownLatch done = new CountDownLatch(tabs);
+        Platform.runLater(() -> openTabs(pages, done));
+        boolean finished = done.await(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        samplers.shutdownNow();
+        return finished;
+    }
+
+    /** Runs on the FX thread: builds the browser stack and starts one load driver per tab. */
+    private void openTabs(List<String> pages, CountDownLatch done) {
+        TabManager tabManager = new TabManager();
+        Stage stage = new Stage();
+        BorderPane root = new BorderPane(tabManager.getTabPane());
+        stage.setScene(new Scene(root, 1024, 768));
+        stage.show();
+
+        for (int t = 0; t < tabs; t++) {
+            long openStart = System.nanoTime();
+            BrowserView view = new BrowserView(tabManager);
+            tabManager.createNewTab("Bench " + t, view);
+            tabOpenMicros.add((System.nanoTime() - openStart) / 1000);
+            new LoadDriver(view, pages, done).next();
+        }
+    }
+
+    /** Loads every corpus page in turn, {@code rounds} times, in one tab. */
+    private final class LoadDriver {
+        private final BrowserView view;
+        private final WebEngine engine;
+        private final List<String> pages;
+        private final CountDownLatch done;
+        private int loadsIssued = 0;
+        private long loadStart;
+        private String expectedUrl;
+
+        private LoadDriver(BrowserView view, List<String> pages, CountDownLatch done) {
+            this.view = view;
+            this.engine = view.getBrowserArea().getEngine();
+            this.pages = pages;
+            this.done = done;
+            engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> onState(newState));
+        }
+
+        private void onState(Worker.State state) {
+            if (expectedUrl == null || !expectedUrl.equals(engine.getLocation())) return;
+            if (state == Worker.State.SUCCEEDED) {
+                loadMicros.add((System.nanoTime() - loadStart) / 1000);
+                next();
+            } else if (state == Worker.State.FAILED) {
+                failures++;
+                next();
+            }
+        }
+
+        private void next() {
+            if (loadsIssued == pages.size() * rounds) {
+                expectedUrl = null;
+                done.countDown();
+                return;
+            }
+            expectedUrl = pages.get(loadsIssued % pages.size());
+            loadsIssued++;
+            // Leave the listener callback before starting the next navigation
+            Platform.runLater(() -> {
+                loadStart = System.nanoTime();
+                view.loadPage(expectedUrl);
+            });
+        }
+    }
+
+    private String toJson(String label, long delayMillis, boolean finished) {
+        long[] loads = loadMicros.stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] opens = tabOpenMicros.stream().mapToLong(Long::longValue).sorted().toArray();
+        return String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"timestamp\":\"%s\",\"java\":\"%s\",\"finished\":%b,"
+                        + "\"tabs\":%d,\"rounds\":%d,\"serverDelayMs\":%d,\"loads\":%d,\"failures\":%d,"
+                        + "\"loadMs\":{\"p50\":%.2f,\"p95\":%.2f,\"p99\":%.2f,\"max\":%.2f},"
+                        + "\"tabOpenMs\":{\"p50\":%.2f,\"max\":%.2f},"
+                        + "\"peakHeapBytes\":%d,\"peakThreads\":%d,"
+                        + "\"fxStalls\":{\"count\":%d,\"maxMs\":%.2f,\"totalMs\":%.2f}}",
+                label.replace("\"", "'"), Instant.now(), System.getProperty("java.version"), finished,
+                tabs, rounds, delayMillis, loads.length, failures,
+                percentile(loads, 50) / 1000.0, percentile(loads, 95) / 1000.0,
+                percentile(loads, 99) / 1000.0, percentile(loads, 100) / 1000.0,
+                percentile(opens, 50) / 1000.0, percentile(opens, 100) / 1000.0,
+                peakHeap.get(), peakThreads.get(),
+                stallCount.get(), stallMaxNanos.get() / 1_000_000.0, stallTotalNanos.get() / 1_000_000.0);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
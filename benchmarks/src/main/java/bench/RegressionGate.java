@@ -0,0 +1,184 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files and fails when a benchmark got slower.
+ * <p>
+ * Usage: {@code RegressionGate <baseline.json> <candidate.json> [tolerance]}, where tolerance is
+ * the allowed relative slowdown (default 0.10). Benchmarks are matched by name and parameters.
+ * Exits with status 1 if any benchmark regressed beyond the tolerance.
+ */
+public final class RegressionGate {
+
+    private RegressionGate() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionGate <baseline.json> <candidate.json> [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, Result> baseline = readResults(Path.of(args[0]));
+        Map<String, Result> candidate = readResults(Path.of(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : candidate.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.printf("NEW        %-80s %12.3f %s%n", entry.getKey(), after.score, after.unit);
+                continue;
+            }
+            // Throughput modes report ops per time unit, so higher is better; time modes the opposite
+            double change = after.higherIsBetter
+                    ? (before.score - after.score) / before.score
+                    : (after.score - before.score) / before.score;
+            String verdict = change > tolerance ? "REGRESSED" : change < -tolerance ? "IMPROVED" : "OK";
+            if (change > tolerance) regressions++;
+            System.out.printf("%-10s %-80s %12.3f -> %12.3f %s (%+.1f%%)%n",
+                    verdict, entry.getKey(), before.score, after.score, after.unit, change * 100);
+        }
+        System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s).");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static Map<String, Result> readResults(Path file) throws IOException {
+        Object parsed = new JsonReader(Files.readString(file, StandardCharsets.UTF_8)).readValue();
+        Map<String, Result> results = new TreeMap<>();
+        for (Object item : (List<?>) parsed) {
+            Map<?, ?> run = (Map<?, ?>) item;
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            Object params = run.get("params");
+            if (params instanceof Map<?, ?> paramMap) {
+                new TreeMap<>(paramMap).forEach((k, v) -> key.append(' ').append(k).append('=').append(v));
+            }
+            Map<?, ?> primary = (Map<?, ?>) run.get("primaryMetric");
+            String mode = (String) run.get("mode");
+            results.put(key.toString(), new Result(((Number) primary.get("score")).doubleValue(),
+                    (String) primary.get("scoreUnit"), "thrpt".equals(mode)));
+        }
+        return results;
+    }
+
+    private record Result(double score, String unit, boolean higherIsBetter) {
+    }
+
+    /** Just enough JSON to read JMH's result format. */
+    private static final class JsonReader {
+        private final String text;
+        private int pos = 0;
+
+        private JsonReader(String text) {
+            this.text = text;
+        }
+
+        private Object readValue() {
+            skipWhitespace();
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    pos += 4;
+                    return Boolean.TRUE;
+                case 'f':
+                    pos += 5;
+                    return Boolean.FALSE;
+                case 'n':
+                    pos += 4;
+                    return null;
+                default:
+                    return readNumber();
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (text.charAt(pos) == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                pos++; // ':'
+                map.put(key, readValue());
+                skipWhitespace();
+                if (text.charAt(pos++) == '}') return map;
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (text.charAt(pos) == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue());
+                skipWhitespace();
+                if (text.charAt(pos++) == ']') return list;
+            }
+        }
+
+        private String readString() {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (true) {
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c == '\\') {
+                    char escaped = text.charAt(pos++);
+                    switch (escaped) {
+                        case 'n' -> sb.append('\n');
+                        case 't' -> sb.append('\t');
+                        case 'r' -> sb.append('\r');
+                        case 'b' -> sb.append('\b');
+                        case 'f' -> sb.append('\f');
+                        case 'u' -> {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                        }
+                        default -> sb.append(escaped);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+
+        private Object readNumber() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+            String number = text.substring(start, pos);
+            if ("NaN".equals(text.substring(start, Math.min(start + 3, text.length())))) {
+                pos = start + 3;
+                return Double.NaN;
+            }
+            return Double.parseDouble(number);
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBarBenchmark {
+
+    @Param({"10", "1000"})
+    private int candidateCount;
+
+    @Param({"git", "https://www.w"})
+    private String query;
+
+    private List<String> candidates;
+
+    @Setup
+    public void setUp() {
+        candidates = new ArrayList<>(candidateCount);
+        String[] common = {"google", "youtube", "facebook", "twitter", "github", "stackoverflow",
+                "linkedin", "reddit", "wikipedia", "amazon"};
+        for (int i = 0; i < candidateCount; i++) {
+            candidates.add("https://www." + common[i % common.length] + (i < common.length ? "" : i) + ".com");
+        }
+    }
+
+    @Benchmark
+    public List<String> filterSuggestions() {
+        return SearchBar.filterSuggestions(candidates, query);
+    }
+}
@@ -0,0 +1,51 @@
+package ui.bookmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookmarkPersistenceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int bookmarkCount;
+
+    private List<Bookmark> bookmarks;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        bookmarks = new ArrayList<>(bookmarkCount);
+        for (int i = 0; i < bookmarkCount; i++) {
+            bookmarks.add(new Bookmark("Site \"" + i + "\"", "https://www.example" + i + ".com/path?q=" + i));
+        }
+        json = BookmarkPersistence.serializeBookmarksToJson(bookmarks);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return BookmarkPersistence.serializeBookmarksToJson(bookmarks);
+    }
+
+    @Benchmark
+    public List<Bookmark> deserialize() {
+        return BookmarkPersistence.deserializeJsonToBookmarks(json);
+    }
+}
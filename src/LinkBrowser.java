@@ -1,24 +1,32 @@
 import api.BrowserView;
+import api.Managers.ConfigManager;
 import api.Managers.TabManager;
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.download.DownloadManager;
+import api.perf.FxWatchdog;
 import api.plugins.PluginManager;
+import api.profile.ProfileStore;
+import api.profile.SessionStore;
 import javafx.animation.FadeTransition;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
-import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 
@@ -62,39 +70,37 @@ public class LinkBrowser extends Application {
     @Override
     public void start(Stage primaryStage) {
         System.setProperty("prism.maxvram", "8G");
+        FxWatchdog.getInstance().start();
 
         buildType = System.getProperty("build.type", "STABLE").toUpperCase(Locale.ROOT);
         showSplashScreen();
         Duration minSplashDuration = Duration.seconds(3);
 
         CompletableFuture<Void> pluginLoadingFuture = CompletableFuture.runAsync(() -> {
-            pluginManager = new PluginManager(getEngine(), message -> {
-                Platform.runLater(() -> {
-                    pluginStatusLabel.setText(message);
-                    System.out.println(message);
-                });
+            pluginManager = new PluginManager(message -> {
+                System.out.println(message);
+                FxDispatcher.coalesce(pluginStatusLabel, FxDispatcher.Lane.VISIBLE,
+                        () -> pluginStatusLabel.setText(message));
             });
 
             pluginManager.loadPlugins();
-        });
+        }, LinkExecutors.io());
 
         CompletableFuture<Void> splashDurationFuture = new CompletableFuture<>();
         javafx.animation.PauseTransition pause = new javafx.animation.PauseTransition(minSplashDuration);
         pause.setOnFinished(event -> splashDurationFuture.complete(null));
         pause.play();
 
-        CompletableFuture.allOf(pluginLoadingFuture, splashDurationFuture).thenRun(() -> {
-            Platform.runLater(() -> {
-                FadeTransition fadeOut = new FadeTransition(Duration.seconds(1), splashStage.getScene().getRoot());
-                fadeOut.setFromValue(1.0);
-                fadeOut.setToValue(0.0);
-                fadeOut.setOnFinished(e -> {
-                    splashStage.close();
-                    showMainStage(primaryStage);
-                });
-                fadeOut.play();
+        CompletableFuture.allOf(pluginLoadingFuture, splashDurationFuture).thenRunAsync(() -> {
+            FadeTransition fadeOut = new FadeTransition(Duration.seconds(1), splashStage.getScene().getRoot());
+            fadeOut.setFromValue(1.0);
+            fadeOut.setToValue(0.0);
+            fadeOut.setOnFinished(e -> {
+                splashStage.close();
+                showMainStage(primaryStage);
             });
-        });
+            fadeOut.play();
+        }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
     }
 
     private void showSplashScreen() {
@@ -156,9 +162,21 @@ public class LinkBrowser extends Application {
      */
     private void showMainStage(Stage primaryStage) {
         TabManager tabManager = new TabManager();
-
-        BrowserView initialView = new BrowserView(tabManager);
-        tabManager.createNewTab("Home", initialView);
+        SessionStore sessionStore = new SessionStore(ProfileStore.getInstance());
+
+        List<String> lastSession = ConfigManager.getInstance().get(ConfigManager.RESTORE_SESSION)
+                ? sessionStore.loadLastSession()
+                : List.of();
+        if (lastSession.isEmpty()) {
+            BrowserView initialView = new BrowserView(tabManager);
+            tabManager.createNewTab("Home", initialView);
+        } else {
+            for (String url : lastSession) {
+                BrowserView restoredView = new BrowserView(tabManager, null);
+                tabManager.createNewTab("Restoring...", restoredView);
+                restoredView.loadPage(url);
+            }
+        }
 
         BorderPane root = new BorderPane();
         root.setCenter(tabManager.getTabPane());
@@ -166,18 +184,33 @@ public class LinkBrowser extends Application {
         Scene scene = new Scene(root, 1024, 768);
         primaryStage.setTitle("Link (Linux)");
         primaryStage.setScene(scene);
+        primaryStage.setOnCloseRequest(e -> {
+            saveSession(tabManager, sessionStore);
+            pluginManager.shutdownPlugins();
+        });
 
         primaryStage.show();
         optimizeUI(primaryStage);
+        DownloadManager.getInstance().resumePending();
     }
 
     /**
-     * Retrieves the WebEngine instance used by the browser.
-     *
-     * @return The WebEngine instance.
+     * Stores the URLs of the open tabs so the next start can restore them.
      */
-    private WebEngine getEngine() {
-        return BrowserView.getWebEngine();
+    private void saveSession(TabManager tabManager, SessionStore sessionStore) {
+        List<String> urls = new ArrayList<>();
+        for (Tab tab : tabManager.getOpenTabs()) {
+            BrowserView view = tabManager.getBrowserView(tab);
+            String url = view == null ? "" : view.getSessionUrl();
+            if (!url.isEmpty()) {
+                urls.add(url);
+            }
+        }
+        try {
+            sessionStore.saveLastSession(urls);
+        } catch (RuntimeException ex) {
+            System.err.println("Failed to save session: " + ex.getMessage());
+        }
     }
 
     private void optimizeUI(Stage stage) {
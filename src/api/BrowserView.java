@@ -3,7 +3,38 @@ package api;
 import api.Flash.FlashHandler;
 import api.Managers.ConfigManager;
 import api.Managers.TabManager;
+import api.bridge.InternalPageApi;
+import api.bridge.PageBridge;
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.datasaver.DataSaver;
+import api.datasaver.DataSaverMode;
+import api.datasaver.TabDataSaver;
+import api.download.Download;
+import api.download.DownloadManager;
+import api.find.PageFinder;
+import api.history.HistoryIndex;
+import api.history.HistoryPage;
+import api.history.HistorySearchResult;
+import api.metrics.Counter;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.metrics.Span;
+import api.newtab.NewTabPage;
+import api.perf.BackgroundThrottle;
+import api.perf.PerfPage;
+import api.perf.PerfRecorder;
+import api.plugins.PluginEvent;
+import api.plugins.PluginEventBus;
+import api.plugins.PluginsPage;
+import api.plugins.RequestHook;
+import api.profile.HistoryStore;
+import api.site.SiteSettings;
+import api.site.SiteSettingsManager;
+import javafx.concurrent.Worker;
 import javafx.geometry.Insets;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.Menu;
 import javafx.scene.control.MenuButton;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
@@ -11,12 +42,21 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
+import ui.FindBar;
 import ui.SearchBar;
 import ui.StatusBar;
 import ui.bookmark.BookmarkBar;
-
+import ui.bookmark.BookmarkPersistence;
+import ui.bookmark.BookmarksPage;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 public class BrowserView {
@@ -24,14 +64,56 @@ public class BrowserView {
     private SearchBar searchBar;
     private BookmarkBar bookmarkBar;
     private StatusBar statusBar;
+    private FindBar findBar;
+    private PageFinder pageFinder;
     private WebView browserArea;
-    private static WebEngine webEngine;
+    private WebEngine webEngine;
     private BorderPane mainLayout;
     private MenuButton mainMenuButton;
 
     private ConfigManager configManager;
     private TabManager tabManager;
     private FlashHandler flashHandler;
+    private PerfRecorder perfRecorder;
+    private PerfPage perfPage;
+    private PageBridge pageBridge;
+    private InternalPageApi internalPageApi;
+    // link:// URL of an internal page shown with loadContent, which leaves the location empty
+    private String contentPageUrl;
+    private String blockedUrl;
+    // Set while loading a plugin's redirect target, which is not offered to the request hooks again
+    private boolean redirecting;
+    // URL already probed for a download during the current navigation
+    private String probedUrl;
+    private final long tabId = PluginEventBus.nextTabId();
+    private final PluginEventBus pluginEvents = PluginEventBus.getInstance();
+    private BackgroundThrottle backgroundThrottle;
+    private TabDataSaver tabDataSaver;
+    private Span pageLoadSpan;
+    private volatile boolean active = true;
+    private final Consumer<Boolean> throttleSettingListener = enabled ->
+            FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> backgroundThrottle.setEnabled(enabled));
+    private final Runnable siteSettingsListener = () ->
+            FxDispatcher.coalesce(Map.entry(this, SiteSettings.class), FxDispatcher.Lane.of(active), this::reapplySiteSettings);
+    // Keyed per view and download: only the latest progress of each reaches the FX thread.
+    private final Consumer<Download> downloadListener = download ->
+            FxDispatcher.coalesce(Map.entry(this, download), FxDispatcher.Lane.of(active), () -> showDownload(download));
+
+    private static final Counter PAGE_LOADS = Metrics.counter("link_page_loads");
+    private static final Counter PAGE_LOAD_FAILURES = Metrics.counter("link_page_load_failures");
+    private static final LatencyHistogram SCRIPT_INJECTION = Metrics.histogram("link_script_injection");
+
+    public static final String HOME_PAGE = NewTabPage.URL;
+    public static final String DEFAULT_USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) LinkEngine/1.0 LinkBrowser/Prototype rv:1.0 Gecko/20230101 Safari/537.36";
+    private static final double ZOOM_STEP = 0.1;
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final String PAGE_TEXT_SCRIPT =
+            "document.body ? document.body.innerText.substring(0, %d) : ''".formatted(HistoryIndex.MAX_TEXT_CHARS);
+
+    private static final Pattern DOWNLOAD_EXTENSION = Pattern.compile(
+            ".*\\.(zip|7z|rar|tar|gz|bz2|xz|exe|msi|dmg|pkg|deb|rpm|appimage|jar|iso|img|bin|apk|pdf|mp3|flac|wav|mp4|mkv|avi|mov|swf)$",
+            Pattern.CASE_INSENSITIVE);
 
     private static final Pattern URL_PATTERN = Pattern.compile(
             "^(https?|file|ftp|link)://[^\\s/$.?#].[^\\s]*$", Pattern.CASE_INSENSITIVE);
@@ -40,16 +122,37 @@ public class BrowserView {
     private String typedKeys = "";
 
     public BrowserView(TabManager tabManager) {
+        this(tabManager, HOME_PAGE);
+    }
+
+    /**
+     * @param initialUrl The page to load, or null to leave the view blank until
+     *                   {@link #loadPage} is called, as pooled and restored tabs do.
+     */
+    public BrowserView(TabManager tabManager, String initialUrl) {
         this.tabManager = tabManager;
         initializeComponents();
         configureWebEngine();
         createMainMenuButton();
         createEventHandlers();
-        loadPage("https://www.google.com");
+        if (initialUrl != null) {
+            loadPage(initialUrl);
+        }
     }
 
-    public static WebEngine getWebEngine() {
-        return webEngine;
+    /**
+     * Returns the id plugin events use for this view's tab.
+     */
+    public long getTabId() {
+        return tabId;
+    }
+
+    /**
+     * Lets plugins reach this view's engine. Called once the view is shown in a tab, so views
+     * the tab pool builds ahead of time stay out of plugins' sight until they are used.
+     */
+    public void registerWithPlugins() {
+        pluginEvents.registerTab(tabId, webEngine);
     }
 
     /**
@@ -75,12 +178,27 @@ public class BrowserView {
         searchBar.getForwardButton().setOnAction(e -> goForward());
         searchBar.getRefreshButton().setOnAction(e -> refreshPage());
 
-        configManager = new ConfigManager();
-        flashHandler = new FlashHandler(configManager.isFlashEnabled());
+        configManager = ConfigManager.getInstance();
+        perfRecorder = new PerfRecorder();
+        // Whether a page gets Ruffle is decided per site in isFlashAllowed
+        flashHandler = new FlashHandler(true);
+        DownloadManager.getInstance().addListener(downloadListener);
+        flashHandler.setPerfRecorder(perfRecorder);
 
         browserArea = new WebView();
         webEngine = browserArea.getEngine();
-        webEngine.setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) LinkEngine/1.0 LinkBrowser/Prototype rv:1.0 Gecko/20230101 Safari/537.36");
+        backgroundThrottle = new BackgroundThrottle(webEngine);
+        tabDataSaver = new TabDataSaver(webEngine, DataSaver.getInstance());
+        pageFinder = new PageFinder(webEngine);
+        pageBridge = new PageBridge(webEngine);
+        internalPageApi = new InternalPageApi(pageBridge, this::handleCustomUrl);
+        findBar = new FindBar(pageFinder);
+        findBar.setOnClose(browserArea::requestFocus);
+        backgroundThrottle.setEnabled(configManager.get(ConfigManager.THROTTLE_BACKGROUND_TABS));
+        backgroundThrottle.setHidden(!active);
+        configManager.addListener(ConfigManager.THROTTLE_BACKGROUND_TABS, throttleSettingListener);
+        webEngine.setUserAgent(DEFAULT_USER_AGENT);
+        SiteSettingsManager.getInstance().addListener(siteSettingsListener);
 
         mainLayout = new BorderPane();
         mainLayout.setTop(setupSearchBarContainer());
@@ -107,36 +225,213 @@ public class BrowserView {
 
     private void configureWebEngine() {
         webEngine.locationProperty().addListener((observable, oldValue, newValue) -> {
-            if (newValue.startsWith("link://open/")) {
+            probedUrl = null;
+            boolean redirected = redirecting;
+            redirecting = false;
+            if (DOWNLOAD_EXTENSION.matcher(newValue.split("[?#]", 2)[0]).matches()) {
+                offerDownload(newValue);
+            }
+            if (newValue.startsWith("link://")) {
                 handleCustomUrl(newValue);
+            } else if (contentPageUrl != null && (newValue.isEmpty() || newValue.equals("about:blank"))) {
+                searchBar.getSearchField().setText(contentPageUrl);
+            } else if (perfPage != null && newValue.endsWith(PerfPage.RESOURCE)) {
+                searchBar.getSearchField().setText(PerfPage.URL);
             } else {
+                if (perfPage != null) {
+                    closePerfPage();
+                }
+                contentPageUrl = null;
+                blockedUrl = null;
+                applySiteSettings(newValue);
+                tabDataSaver.apply(newValue);
                 statusBar.setStatus("Loading: " + newValue);
                 searchBar.getSearchField().setText(newValue);
+                PluginEvent.NavigationStarted navigation = new PluginEvent.NavigationStarted(tabId, newValue);
+                pluginEvents.publish(navigation);
+                if (!redirected) {
+                    pluginEvents.checkRequest(navigation, decision -> applyRequestDecision(newValue, decision));
+                }
             }
         });
 
         webEngine.getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
             switch (newState) {
-                case SCHEDULED -> updateStatus("Loading...", true);
+                case SCHEDULED -> {
+                    PAGE_LOADS.increment();
+                    pageLoadSpan = Metrics.span("link_page_load");
+                    updateStatus("Loading...", true);
+                }
                 case RUNNING -> statusBar.setStatus("Running...");
-                case SUCCEEDED -> handlePageLoadSuccess();
-                case FAILED -> updateStatus("Failed to load the page", false);
-                case CANCELLED -> updateStatus("Loading cancelled", false);
+                case SUCCEEDED -> {
+                    endPageLoadSpan("ok");
+                    handlePageLoadSuccess();
+                }
+                case FAILED -> {
+                    PAGE_LOAD_FAILURES.increment();
+                    endPageLoadSpan("failed");
+                    updateStatus("Failed to load the page", false);
+                    offerDownload(webEngine.getLocation());
+                }
+                case CANCELLED -> {
+                    endPageLoadSpan("cancelled");
+                    if (webEngine.getLocation().equals(blockedUrl)) {
+                        updateStatus("Blocked by a plugin", false);
+                    } else {
+                        updateStatus("Loading cancelled", false);
+                        offerDownload(webEngine.getLocation());
+                    }
+                }
+            }
+            if (newState == Worker.State.SUCCEEDED || newState == Worker.State.FAILED || newState == Worker.State.CANCELLED) {
+                pluginEvents.publish(new PluginEvent.NavigationFinished(tabId, webEngine.getLocation(), newState));
+            }
+        });
+
+        // Installed as soon as the document exists so timers started while parsing are wrapped too.
+        webEngine.documentProperty().addListener((observable, oldDocument, newDocument) -> {
+            pageFinder.reset();
+            if (newDocument != null) {
+                pluginEvents.publish(new PluginEvent.NavigationCommitted(tabId, webEngine.getLocation()));
+            }
+            if (newDocument != null && perfPage == null) {
+                backgroundThrottle.install();
+                tabDataSaver.install();
             }
         });
 
+        webEngine.getLoadWorker().progressProperty().addListener((observable, oldProgress, newProgress) ->
+                statusBar.setLoadingProgress(newProgress.doubleValue()));
+
         searchBar.getSearchField().setOnAction(e -> loadPage(searchBar.getSearchField().getText()));
     }
 
     /** Handles page load success */
     private void handlePageLoadSuccess() {
+        if (perfPage != null) {
+            // Keep the dashboard free of injected scripts so it does not skew what it shows
+            updateStatus("Done", false);
+            perfPage.start();
+            return;
+        }
+        pageBridge.install();
+        long injectionStart = System.nanoTime();
         webEngine.executeScript("document.cookie = 'block=false';"); // Bypass basic blockers for now
+        perfRecorder.record(PerfRecorder.Metric.SCRIPT_INJECTION, (System.nanoTime() - injectionStart) / 1000);
+        SCRIPT_INJECTION.recordSince(injectionStart);
+        perfRecorder.recordNavigationTiming(webEngine.executeScript(PerfRecorder.NAVIGATION_TIMING_SCRIPT));
         updateStatus("Done", false);
-        if (configManager.isFlashEnabled()) {
+        pageFinder.pageLoaded();
+        recordHistory();
+        indexPageText();
+        statusBar.setBytesSaved(tabDataSaver.collectSavings());
+        if (isFlashAllowed(webEngine.getLocation())) {
             flashHandler.injectRuffleScript(webEngine);
         }
     }
 
+    /**
+     * Returns whether Ruffle runs on a page. A Flash setting of the tab or the site wins over
+     * the global switch, so a site can be allowed Flash while it is off everywhere else.
+     */
+    private boolean isFlashAllowed(String url) {
+        boolean explicit = tabDataSaver.getTabOverride() != null
+                || SiteSettingsManager.getInstance().resolve(url).flash() != null;
+        return tabDataSaver.getMode().flash() && (explicit || configManager.isFlashEnabled());
+    }
+
+    /**
+     * Applies a plugin's request hook decision, if the tab is still on the page it was about.
+     */
+    private void applyRequestDecision(String url, RequestHook.Decision decision) {
+        if (!url.equals(webEngine.getLocation())) return;
+        switch (decision.action()) {
+            case BLOCK -> {
+                blockedUrl = url;
+                webEngine.getLoadWorker().cancel();
+            }
+            case REDIRECT -> {
+                // Hooks are skipped for the target, so two plugins cannot bounce the tab forever
+                String target = normalizeUrl(decision.redirectUrl());
+                if (target.equals(url) || !(target.startsWith("http://") || target.startsWith("https://"))) return;
+                redirecting = true;
+                loadPage(target);
+            }
+            case ALLOW -> {
+            }
+        }
+    }
+
+    /**
+     * Hands a URL the WebView could not show to the download manager if a probe says it is a
+     * file rather than a page. Used when a load fails or is cancelled, since WebView gives no
+     * access to the response's content type.
+     */
+    private void offerDownload(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://")) || url.equals(probedUrl)) return;
+        probedUrl = url;
+        DownloadManager downloadManager = DownloadManager.getInstance();
+        downloadManager.isDownloadable(url).thenAccept(downloadable -> {
+            if (downloadable) {
+                Download download = downloadManager.start(url);
+                FxDispatcher.dispatch(FxDispatcher.Lane.of(active),
+                        () -> statusBar.setStatus("Downloading " + download.getFileName()));
+            }
+        });
+    }
+
+    /** Mirrors a download's progress in this tab's status bar. */
+    private void showDownload(Download download) {
+        switch (download.getState()) {
+            case QUEUED, RUNNING -> {
+                double progress = download.getProgress();
+                String percent = progress < 0 ? "" : String.format(" %d%%", (int) (progress * 100));
+                String rate = String.format(" (%.1f MB/s)", download.getBytesPerSecond() / 1_000_000.0);
+                statusBar.setDownloadProgress("\u2193 " + download.getFileName() + percent + rate, progress);
+            }
+            case PAUSED -> statusBar.setDownloadProgress("Paused: " + download.getFileName(), download.getProgress());
+            case COMPLETED -> statusBar.setDownloadProgress("Downloaded " + download.getFileName(), 1.0);
+            case FAILED -> statusBar.setDownloadProgress("Download failed: " + download.getFileName(), 0);
+            case CANCELLED -> statusBar.setDownloadProgress(null, 0);
+        }
+    }
+
+    /** Adds the loaded page to the browsing history; bundled pages are skipped. */
+    private void recordHistory() {
+        String location = webEngine.getLocation();
+        if (location != null && (location.startsWith("http://") || location.startsWith("https://"))) {
+            HistoryStore.getInstance().recordVisit(location, webEngine.getTitle());
+        }
+    }
+
+    /**
+     * Hands the loaded page's text to the history index. Reading the text runs script on the FX
+     * thread, so it waits for an idle moment; tokenizing and indexing happen off the FX thread.
+     */
+    private void indexPageText() {
+        String location = webEngine.getLocation();
+        if (!configManager.get(ConfigManager.HISTORY_INDEX) || location == null
+                || !(location.startsWith("http://") || location.startsWith("https://"))) return;
+        Object document = webEngine.getDocument();
+        FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> {
+            if (document == null || document != webEngine.getDocument()) return;
+            try {
+                if (webEngine.executeScript(PAGE_TEXT_SCRIPT) instanceof String text) {
+                    HistoryIndex.getInstance().index(location, webEngine.getTitle(), text);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to read page text for the history index: " + e.getMessage());
+            }
+        });
+    }
+
+    private void endPageLoadSpan(String outcome) {
+        if (pageLoadSpan != null) {
+            pageLoadSpan.end(outcome);
+            pageLoadSpan = null;
+        }
+    }
+
     /** Updates the status and shows/hides the loading bar */
     private void updateStatus(String message, boolean showLoading) {
         statusBar.setStatus(message);
@@ -162,9 +457,154 @@ public class BrowserView {
         MenuItem forwardItem = new MenuItem("Forward");
         forwardItem.setOnAction(e -> navigateHistory(1));
 
+        Menu dataSaverMenu = new Menu("Data Saver");
+        // Rebuilt on every opening so the checks reflect the current page; a menu needs an item to open.
+        dataSaverMenu.getItems().add(new MenuItem());
+        dataSaverMenu.setOnShowing(e -> populateDataSaverMenu(dataSaverMenu));
+
+        Menu siteMenu = new Menu("Site Settings");
+        siteMenu.getItems().add(new MenuItem());
+        siteMenu.setOnShowing(e -> populateSiteMenu(siteMenu));
+
+        MenuItem findItem = new MenuItem("Find in Page");
+        findItem.setOnAction(e -> showFindBar());
+
+        MenuItem pluginsItem = new MenuItem("Plugins");
+        pluginsItem.setOnAction(e -> showPluginsPage());
+
+        MenuItem historyItem = new MenuItem("History");
+        historyItem.setOnAction(e -> showHistoryPage(HistoryPage.URL));
+
+        MenuItem overviewItem = new MenuItem("Tab Overview");
+        overviewItem.setOnAction(e -> tabManager.showTabOverview());
+
         mainMenuButton = new MenuButton("≡");
         mainMenuButton.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-        mainMenuButton.getItems().addAll(refreshItem, backItem, forwardItem, new SeparatorMenuItem(), aboutItem, settingsItem);
+        mainMenuButton.getItems().addAll(refreshItem, backItem, forwardItem, new SeparatorMenuItem(), findItem, historyItem, overviewItem, siteMenu, dataSaverMenu, pluginsItem, aboutItem, settingsItem);
+    }
+
+    private void populateDataSaverMenu(Menu menu) {
+        DataSaver dataSaver = DataSaver.getInstance();
+        DataSaverMode mode = tabDataSaver.getMode();
+        String url = getCurrentUrl();
+
+        CheckMenuItem everywhereItem = new CheckMenuItem("Data saver for all sites");
+        everywhereItem.setSelected(configManager.get(ConfigManager.DATA_SAVER));
+        everywhereItem.setOnAction(e -> {
+            configManager.set(ConfigManager.DATA_SAVER, everywhereItem.isSelected());
+            reloadWithDataSaver(tabDataSaver.getTabOverride());
+        });
+
+        CheckMenuItem javascriptItem = new CheckMenuItem("JavaScript in this tab");
+        javascriptItem.setSelected(mode.javascript());
+        javascriptItem.setOnAction(e -> reloadWithDataSaver(mode.withJavascript(javascriptItem.isSelected())));
+
+        CheckMenuItem imagesItem = new CheckMenuItem("Load all images in this tab");
+        imagesItem.setSelected(mode.images());
+        imagesItem.setOnAction(e -> reloadWithDataSaver(mode.withImages(imagesItem.isSelected())));
+
+        CheckMenuItem flashItem = new CheckMenuItem("Flash in this tab");
+        flashItem.setSelected(mode.flash());
+        flashItem.setOnAction(e -> reloadWithDataSaver(mode.withFlash(flashItem.isSelected())));
+
+        MenuItem loadImagesItem = new MenuItem("Load deferred images now");
+        loadImagesItem.setDisable(mode.images());
+        loadImagesItem.setOnAction(e -> tabDataSaver.loadDeferredImages());
+
+        MenuItem rememberItem = new MenuItem("Remember for this site");
+        rememberItem.setOnAction(e -> {
+            dataSaver.setSiteOverride(url, tabDataSaver.getMode());
+            tabDataSaver.setTabOverride(null);
+        });
+
+        MenuItem forgetItem = new MenuItem("Forget this site");
+        forgetItem.setDisable(dataSaver.getSiteOverride(url) == null);
+        forgetItem.setOnAction(e -> {
+            dataSaver.setSiteOverride(url, null);
+            reloadWithDataSaver(null);
+        });
+
+        menu.getItems().setAll(everywhereItem, new SeparatorMenuItem(), javascriptItem, imagesItem, flashItem,
+                loadImagesItem, new SeparatorMenuItem(), rememberItem, forgetItem);
+    }
+
+    private void populateSiteMenu(Menu menu) {
+        SiteSettingsManager siteSettings = SiteSettingsManager.getInstance();
+        String pattern = SiteSettingsManager.patternFor(getCurrentUrl());
+        if (pattern == null) {
+            MenuItem noneItem = new MenuItem("Not available for this page");
+            noneItem.setDisable(true);
+            menu.getItems().setAll(noneItem);
+            return;
+        }
+        SiteSettings site = siteSettings.get(pattern);
+        double zoom = browserArea.getZoom();
+
+        MenuItem zoomInItem = new MenuItem("Zoom In");
+        zoomInItem.setOnAction(e -> siteSettings.update(pattern, s -> s.withZoom(stepZoom(zoom, 1))));
+
+        MenuItem zoomOutItem = new MenuItem("Zoom Out");
+        zoomOutItem.setOnAction(e -> siteSettings.update(pattern, s -> s.withZoom(stepZoom(zoom, -1))));
+
+        MenuItem resetZoomItem = new MenuItem(String.format("Reset Zoom (%d%%)", Math.round(zoom * 100)));
+        resetZoomItem.setDisable(site.zoom() == null);
+        resetZoomItem.setOnAction(e -> siteSettings.update(pattern, s -> s.withZoom(null)));
+
+        CheckMenuItem exemptItem = new CheckMenuItem("Exempt from blocking");
+        exemptItem.setSelected(Boolean.TRUE.equals(siteSettings.resolve(getCurrentUrl()).blockingExempt()));
+        exemptItem.setOnAction(e -> siteSettings.update(pattern, s -> s.withBlockingExempt(exemptItem.isSelected() ? true : null)));
+
+        MenuItem clearItem = new MenuItem("Clear settings for " + pattern);
+        clearItem.setDisable(site.isEmpty());
+        clearItem.setOnAction(e -> siteSettings.remove(pattern));
+
+        menu.getItems().setAll(zoomInItem, zoomOutItem, resetZoomItem, new SeparatorMenuItem(), exemptItem,
+                new SeparatorMenuItem(), clearItem);
+    }
+
+    /** Returns the zoom one step in or out, rounded to whole percents; null when back at 100%. */
+    private static Double stepZoom(double zoom, int direction) {
+        double stepped = Math.round(Math.max(0.3, Math.min(3.0, zoom + direction * ZOOM_STEP)) * 100) / 100.0;
+        return stepped == 1.0 ? null : stepped;
+    }
+
+    /**
+     * Applies the user agent and zoom saved for a site. Call before navigating to it: the user
+     * agent only affects requests made after it is set.
+     */
+    private void applySiteSettings(String url) {
+        boolean web = url != null && (url.startsWith("http://") || url.startsWith("https://"));
+        SiteSettings site = web ? SiteSettingsManager.getInstance().resolve(url) : SiteSettings.EMPTY;
+        String userAgent = site.userAgent() != null ? site.userAgent() : DEFAULT_USER_AGENT;
+        if (!userAgent.equals(webEngine.getUserAgent())) {
+            webEngine.setUserAgent(userAgent);
+        }
+        browserArea.setZoom(site.zoom() != null ? site.zoom() : 1.0);
+    }
+
+    /**
+     * Re-applies site settings to the open page after they change. Zoom is immediate; a changed
+     * data-saver mode needs a reload, as scripts and images are decided while a page loads.
+     */
+    private void reapplySiteSettings() {
+        if (perfPage != null) return;
+        String url = getCurrentUrl();
+        applySiteSettings(url);
+        DataSaverMode before = tabDataSaver.getMode();
+        if (!tabDataSaver.apply(url).equals(before)) {
+            webEngine.reload();
+        }
+    }
+
+    /**
+     * Sets this tab's data-saver override and reloads so it takes effect.
+     *
+     * @param tabOverride The tab's mode, or null to follow the site and global modes.
+     */
+    private void reloadWithDataSaver(DataSaverMode tabOverride) {
+        tabDataSaver.setTabOverride(tabOverride);
+        tabDataSaver.apply(getCurrentUrl());
+        webEngine.reload();
     }
 
     private void navigateHistory(int direction) {
@@ -181,17 +621,23 @@ public class BrowserView {
         if (!url.startsWith("http://") && !url.startsWith("https://")) {
             url = "http://" + url;
         }
+        applySiteSettings(url);
         webEngine.load(url);
         statusBar.setStatus("Loading: " + url);
     }
 
     public void loadPage(String url) {
+        if (url.startsWith("link://")) {
+            handleCustomUrl(url);
+            return;
+        }
         if (url.startsWith("Link/AboutPage")) {
             webEngine.load(getClass().getResource("/AboutPage.html").toExternalForm());
         } else if (url.startsWith("Link/SettingsPage")) {
             webEngine.load(getClass().getResource("/SettingsPage.html").toExternalForm());
         } else {
             url = normalizeUrl(url);
+            applySiteSettings(url);
             webEngine.load(url);
         }
         statusBar.setStatus("Loading: " + url);
@@ -226,7 +672,7 @@ public class BrowserView {
     }
 
     /** Normalizes URL for consistent loading */
-    private String normalizeUrl(String url) {
+    static String normalizeUrl(String url) {
         if (url == null || url.trim().isEmpty()) return "about:blank";
         return URL_PATTERN.matcher(url).matches() ? url : "http://" + url;
     }
@@ -246,18 +692,135 @@ public class BrowserView {
             case "link://open/github" -> tabManager.createHtmlTab("GitHub", "https://github.com/Kobi401/Link");
             case "link://open/settings" -> loadSettingsPage();
             case "link://open/about" -> loadAboutPage();
-            case "link://settings/flash/on" -> {
-                configManager.setFlashEnabled(true);
-                flashHandler.setFlashEnabled(true);
-                System.out.println("Flash enabled.");
+            case "link://open/history" -> showHistoryPage(HistoryPage.URL);
+            case "link://open/plugins", PluginsPage.URL -> showPluginsPage();
+            case "link://open/bookmarks", BookmarksPage.URL -> showBookmarksPage();
+            case PerfPage.URL -> showPerfPage();
+            case NewTabPage.URL -> showNewTabPage();
+            default -> {
+                // Web pages can navigate to link:// URLs too, so none of them may change state;
+                // the internal pages do that through the page bridge
+                if (url.startsWith(HistoryPage.URL)) {
+                    showHistoryPage(url);
+                } else {
+                    System.out.println("Unhandled URL: " + url);
+                }
             }
-            case "link://settings/flash/off" -> {
-                configManager.setFlashEnabled(false);
-                flashHandler.setFlashEnabled(false);
-                System.out.println("Flash disabled.");
+        }
+    }
+
+    /**
+     * Shows the link://history page in this view, searching the history index if the URL has
+     * a query. The search and the rendering run off the FX thread.
+     */
+    private void showHistoryPage(String url) {
+        if (perfPage != null) {
+            closePerfPage();
+        }
+        contentPageUrl = url;
+        searchBar.getSearchField().setText(url);
+        statusBar.setStatus("Loading: " + url);
+        String query = HistoryPage.queryOf(url);
+        HistoryIndex index = HistoryIndex.getInstance();
+        CompletableFuture<String> page;
+        if (query.isEmpty()) {
+            page = CompletableFuture.supplyAsync(
+                    () -> HistoryPage.renderRecent(HistoryStore.getInstance().getRecent(HISTORY_PAGE_SIZE)),
+                    LinkExecutors.io());
+        } else {
+            long start = System.nanoTime();
+            page = index.searchAsync(query, HISTORY_PAGE_SIZE).thenApply((List<HistorySearchResult> results) ->
+                    HistoryPage.renderResults(query, results, (System.nanoTime() - start) / 1000, index.getPageCount()));
+        }
+        page.whenCompleteAsync((html, error) -> {
+            if (!url.equals(contentPageUrl)) return;
+            if (error != null) {
+                System.err.println("Failed to show history: " + error.getMessage());
+                updateStatus("Failed to load the page", false);
+                return;
             }
-            default -> System.out.println("Unhandled URL: " + url);
+            pageBridge.trustNextContent();
+            webEngine.loadContent(html);
+        }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
+    }
+
+    /**
+     * Shows the link://plugins page in this view.
+     */
+    private void showPluginsPage() {
+        if (perfPage != null) {
+            closePerfPage();
         }
+        PluginEventBus bus = PluginEventBus.getInstance();
+        contentPageUrl = PluginsPage.URL;
+        searchBar.getSearchField().setText(PluginsPage.URL);
+        pageBridge.trustNextContent();
+        webEngine.loadContent(PluginsPage.render(bus.getStats(), configManager.get(ConfigManager.PLUGIN_CPU_QUOTA_PERCENT),
+                configManager.get(ConfigManager.PLUGIN_ALLOCATION_QUOTA_MB)));
+    }
+
+    /**
+     * Shows the link://newtab page in this view. The page is pre-rendered, so this normally
+     * loads it at once; only the first new tab after startup waits for it to be built.
+     */
+    private void showNewTabPage() {
+        if (perfPage != null) {
+            closePerfPage();
+        }
+        contentPageUrl = NewTabPage.URL;
+        searchBar.getSearchField().setText(NewTabPage.URL);
+        CompletableFuture<String> page = NewTabPage.getInstance().getHtml();
+        if (page.isDone() && !page.isCompletedExceptionally()) {
+            webEngine.loadContent(page.join());
+            return;
+        }
+        page.whenCompleteAsync((html, error) -> {
+            if (!NewTabPage.URL.equals(contentPageUrl)) return;
+            if (error != null) {
+                updateStatus("Failed to load the page", false);
+                return;
+            }
+            webEngine.loadContent(html);
+        }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
+    }
+
+    /**
+     * Shows the link://bookmarks page in this view. The bookmarks are read off the FX thread.
+     */
+    private void showBookmarksPage() {
+        if (perfPage != null) {
+            closePerfPage();
+        }
+        contentPageUrl = BookmarksPage.URL;
+        searchBar.getSearchField().setText(BookmarksPage.URL);
+        CompletableFuture.supplyAsync(() -> BookmarksPage.render(BookmarkPersistence.loadBookmarks()), LinkExecutors.io())
+                .whenCompleteAsync((html, error) -> {
+                    if (!BookmarksPage.URL.equals(contentPageUrl)) return;
+                    if (error != null) {
+                        System.err.println("Failed to show bookmarks: " + error.getMessage());
+                        updateStatus("Failed to load the page", false);
+                        return;
+                    }
+                    webEngine.loadContent(html);
+                }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
+    }
+
+    /**
+     * Shows the link://perf dashboard in this view.
+     */
+    private void showPerfPage() {
+        if (perfPage == null) {
+            perfPage = new PerfPage(tabManager, webEngine);
+            perfPage.setActive(active);
+        }
+        webEngine.load(getClass().getResource(PerfPage.RESOURCE).toExternalForm());
+        searchBar.getSearchField().setText(PerfPage.URL);
+        statusBar.setStatus("Loading: " + PerfPage.URL);
+    }
+
+    private void closePerfPage() {
+        perfPage.stop();
+        perfPage = null;
     }
 
     /** Create a browser layout for the UI */
@@ -273,11 +836,92 @@ public class BrowserView {
         searchBarWithButtons.getChildren().addAll(searchBar.getSearchBarContainer(), spacer, mainMenuButton);
         layout.setTop(searchBarWithButtons);
         layout.setCenter(browserArea);
-        layout.setBottom(statusBar.getStatusBarContainer());
+        layout.setBottom(new VBox(findBar.getNode(), statusBar.getStatusBarContainer()));
         return layout;
     }
 
+    /**
+     * Opens the find bar, or focuses it if it is already open.
+     */
+    public void showFindBar() {
+        findBar.show();
+    }
+
     public WebView getBrowserArea() {
         return browserArea;
     }
+
+    /**
+     * Returns true while this view's tab is the selected one. Safe to call from any thread.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Called by the TabManager when this view's tab is selected or deselected.
+     *
+     * @param active True if this view is in the visible tab.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+        if (active) {
+            statusBar.setBytesSaved(DataSaver.getInstance().getBytesSaved());
+        }
+        statusBar.setActive(active);
+        flashHandler.setActive(active);
+        if (backgroundThrottle != null) {
+            backgroundThrottle.setHidden(!active);
+        }
+        if (perfPage != null) {
+            perfPage.setActive(active);
+        }
+    }
+
+    /**
+     * Releases listeners and background work held by this view. Called when its tab is closed.
+     */
+    public void dispose() {
+        pluginEvents.unregisterTab(tabId);
+        internalPageApi.dispose();
+        configManager.removeListener(ConfigManager.THROTTLE_BACKGROUND_TABS, throttleSettingListener);
+        DownloadManager.getInstance().removeListener(downloadListener);
+        SiteSettingsManager.getInstance().removeListener(siteSettingsListener);
+        findBar.hide();
+        if (perfPage != null) {
+            closePerfPage();
+        }
+    }
+
+    public PerfRecorder getPerfRecorder() {
+        return perfRecorder;
+    }
+
+    /**
+     * Returns the URL of the page currently shown in this view.
+     */
+    public String getCurrentUrl() {
+        String location = webEngine.getLocation();
+        if (perfPage != null) return PerfPage.URL;
+        return location == null ? "" : location;
+    }
+
+    /**
+     * Returns a URL {@link #loadPage} can open again in a later session. Internal pages are
+     * returned by their link:// or Link/ name rather than the resource URL they were loaded
+     * from; a blank view returns an empty string.
+     */
+    public String getSessionUrl() {
+        if (perfPage != null) return PerfPage.URL;
+        if (contentPageUrl != null) return contentPageUrl;
+        String location = getCurrentUrl();
+        if (location.equals(resourceUrl("/SettingsPage.html"))) return "Link/SettingsPage.html";
+        if (location.equals(resourceUrl("/AboutPage.html"))) return "Link/AboutPage.html";
+        return location.equals("about:blank") ? "" : location;
+    }
+
+    private static String resourceUrl(String resource) {
+        URL url = BrowserView.class.getResource(resource);
+        return url == null ? null : url.toExternalForm();
+    }
 }
\ No newline at end of file
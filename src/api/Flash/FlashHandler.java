@@ -1,7 +1,9 @@
 package api.Flash;
 
-import javafx.application.Platform;
-import javafx.concurrent.Worker;
+import api.concurrent.FxDispatcher;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.perf.PerfRecorder;
 import javafx.scene.web.WebEngine;
 
 import java.io.BufferedReader;
@@ -20,9 +22,12 @@ public class FlashHandler {
     private static final String RUFFLE_WASM_RESOURCE_PATH = "/ruffle/ruffle.wasm";
 
     private static final Logger LOGGER = Logger.getLogger(FlashHandler.class.getName());
+    private static final LatencyHistogram SCRIPT_INJECTION = Metrics.histogram("link_script_injection");
 
 
     private boolean isFlashEnabled;
+    private PerfRecorder perfRecorder;
+    private volatile boolean active = true;
 
     /**
      * Constructor for FlashHandler.
@@ -42,6 +47,25 @@ public class FlashHandler {
         this.isFlashEnabled = isFlashEnabled;
     }
 
+    /**
+     * Sets the recorder that receives the time spent executing injected scripts.
+     *
+     * @param perfRecorder The owning tab's recorder, or null to stop recording.
+     */
+    public void setPerfRecorder(PerfRecorder perfRecorder) {
+        this.perfRecorder = perfRecorder;
+    }
+
+    /**
+     * Marks the owning tab as visible or hidden. Scripts for hidden tabs are injected after
+     * pending updates of the visible tab.
+     *
+     * @param active True if the owning tab is currently selected.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
     /**
      * Checks if Flash/Ruffle is enabled.
      *
@@ -53,6 +77,7 @@ public class FlashHandler {
 
     /**
      * Injects Ruffle's JavaScript and configures it to replace Flash content within the WebEngine.
+     * Call once per page, after it has finished loading.
      *
      * @param webEngine The WebEngine instance where Flash content needs to be handled.
      */
@@ -70,18 +95,16 @@ public class FlashHandler {
         }
 
         // Execute Ruffle's JavaScript to initialize RufflePlayer
-        Platform.runLater(() -> {
+        FxDispatcher.dispatch(FxDispatcher.Lane.of(active), () -> {
+            long start = System.nanoTime();
             webEngine.executeScript(ruffleJs);
+            recordInjection(start);
             System.out.println("Ruffle JavaScript loaded successfully.");
         });
 
-        // Listen for the page load completion to inject the Flash replacement script
-        webEngine.getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
-            if (newState == Worker.State.SUCCEEDED) {
-                // After the page has fully loaded, inject the script to replace Flash objects
-                injectFlashReplacementScript(webEngine);
-            }
-        });
+        // Called once the page has loaded, so the Flash objects can be replaced right away.
+        // Queued after Ruffle itself, which the replacement script needs.
+        injectFlashReplacementScript(webEngine);
     }
 
     /**
@@ -151,9 +174,11 @@ public class FlashHandler {
             })();
             """, sanitizedWasmUrl);
 
-        Platform.runLater(() -> {
+        FxDispatcher.dispatch(FxDispatcher.Lane.of(active), () -> {
             try {
+                long start = System.nanoTime();
                 webEngine.executeScript(replacementScript);
+                recordInjection(start);
                 LOGGER.info("Flash replacement script injected successfully.");
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error injecting Flash replacement script: " + e.getMessage(), e);
@@ -162,6 +187,13 @@ public class FlashHandler {
         });
     }
 
+    private void recordInjection(long startNanos) {
+        SCRIPT_INJECTION.recordSince(startNanos);
+        if (perfRecorder != null) {
+            perfRecorder.record(PerfRecorder.Metric.SCRIPT_INJECTION, (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
     /**
      * Retrieves the URL of the Ruffle WASM file.
      *
@@ -1,27 +1,79 @@
 package api.Managers;
 
+import api.concurrent.LinkExecutors;
+import api.metrics.Metrics;
+import api.metrics.Span;
+import api.profile.ProfileStore;
 import api.security.EncryptionManager;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
- * ConfigManager class for managing and storing user settings securely using encryption.
+ * Process-wide settings store, persisted in the encrypted {@link ProfileStore}.
+ * <p>
+ * Settings are read from the profile once per process. Settings live in an immutable snapshot that
+ * is swapped atomically on every change, so {@link #get(Setting)} is a lock-free read of a
+ * cached, already parsed value. Listeners registered per {@link Setting} are told about changes,
+ * which lets open tabs react without reloading anything. Writes are debounced and flushed on a
+ * background thread: the settings that changed since the last flush are committed to the
+ * profile in one transaction, so a crash never leaves a half-applied change behind. A legacy
+ * config.properties file is imported once and then renamed.
  */
 public class ConfigManager {
 
+    public static final Setting<Boolean> ENABLE_FLASH = Setting.ofBoolean("enable_flash", true);
+    public static final Setting<Boolean> RESTORE_SESSION = Setting.ofBoolean("restore_session", false);
+    /** Slows down timers, animations and media of tabs that are not visible. */
+    public static final Setting<Boolean> THROTTLE_BACKGROUND_TABS = Setting.ofBoolean("throttle_background_tabs", true);
+    /** Turns on data-saver mode for every site without an override. */
+    public static final Setting<Boolean> DATA_SAVER = Setting.ofBoolean("data_saver", false);
+    /** Whether scripts still run in data-saver mode. */
+    public static final Setting<Boolean> DATA_SAVER_JAVASCRIPT = Setting.ofBoolean("data_saver_javascript", true);
+    /** Whether images still load eagerly in data-saver mode. */
+    public static final Setting<Boolean> DATA_SAVER_IMAGES = Setting.ofBoolean("data_saver_images", false);
+    /** Whether Flash content still loads in data-saver mode. */
+    public static final Setting<Boolean> DATA_SAVER_FLASH = Setting.ofBoolean("data_saver_flash", false);
+    /** Shared download bandwidth limit in bytes per second; 0 means unlimited. */
+    public static final Setting<Long> DOWNLOAD_BANDWIDTH_LIMIT = Setting.ofLong("download_bandwidth_limit", 0L);
+    public static final Setting<Integer> DOWNLOAD_CONNECTIONS = Setting.ofInteger("download_connections", 4);
+    /** Indexes the text of visited pages so history can be searched by content. */
+    public static final Setting<Boolean> HISTORY_INDEX = Setting.ofBoolean("history_index", true);
+    /** Size the history text index is trimmed to, oldest pages first, in megabytes. */
+    public static final Setting<Integer> HISTORY_INDEX_MAX_MB = Setting.ofInteger("history_index_max_mb", 64);
+    /** CPU each plugin may use, in percent of one core averaged over 10 seconds. */
+    public static final Setting<Integer> PLUGIN_CPU_QUOTA_PERCENT = Setting.ofInteger("plugin_cpu_quota_percent", 25);
+    /** Memory each plugin may allocate per 10 seconds, in megabytes. */
+    public static final Setting<Integer> PLUGIN_ALLOCATION_QUOTA_MB = Setting.ofInteger("plugin_allocation_quota_mb", 256);
+    /** Disables plugins that keep going over their quota instead of only pausing them. */
+    public static final Setting<Boolean> PLUGIN_AUTO_DISABLE = Setting.ofBoolean("plugin_auto_disable", true);
+    /** Most blank tabs kept built ahead of time so new tabs open at once; 0 turns the pool off. */
+    public static final Setting<Integer> TAB_POOL_MAX = Setting.ofInteger("tab_pool_max", 2);
+    /** FX thread stalls longer than this are sampled and reported, in milliseconds; 0 turns the watchdog off. */
+    public static final Setting<Integer> FX_STALL_THRESHOLD_MS = Setting.ofInteger("fx_stall_threshold_ms", 250);
+
     private static final String USER_HOME = System.getProperty("user.home");
     private static final String OS_NAME = System.getProperty("os.name").toLowerCase();
     private static final String CONFIG_DIRECTORY;
-    private static final String CONFIG_FILE;
+    private static final String CONFIG_FILE; // legacy location, imported into the profile
 
-    private Properties properties;
-    private EncryptionManager encryptionManager;
+    private static final String PROFILE_PREFIX = "settings/";
+    private static final long FLUSH_DELAY_MS = 500;
 
     // Static block to set platform-dependent paths
     static {
@@ -36,30 +88,98 @@ public class ConfigManager {
         }
     }
 
+    private static volatile ConfigManager instance;
+
+    private final ProfileStore profileStore;
+    private final AtomicReference<Snapshot> snapshot;
+    private final Map<Setting<?>, List<Consumer<?>>> listeners = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object writeLock = new Object();
+    private Snapshot lastWritten;
+
     /**
-     * Initializes the configuration manager and loads properties securely.
+     * Returns the shared settings store, loading it on first use.
      */
-    public ConfigManager() {
-        properties = new Properties();
-        encryptionManager = new EncryptionManager();
-
-        // Create the config directory if it doesn't exist
-        File configDir = new File(CONFIG_DIRECTORY);
-        if (!configDir.exists()) {
-            configDir.mkdirs();
-        }
-
-        // Create the config file if it doesn't exist
-        File configFile = new File(CONFIG_FILE);
-        if (!configFile.exists()) {
-            try {
-                configFile.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
+    public static ConfigManager getInstance() {
+        ConfigManager result = instance;
+        if (result == null) {
+            synchronized (ConfigManager.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ConfigManager();
+                    ConfigManager created = result;
+                    created.profileStore.addCloseHook(created::flush);
+                    instance = result;
+                }
             }
         }
+        return result;
+    }
+
+    /**
+     * Loads the settings from the default profile. Everything except benchmarks should use
+     * {@link #getInstance()}.
+     */
+    ConfigManager() {
+        this(ProfileStore.getInstance());
+    }
+
+    ConfigManager(ProfileStore profileStore) {
+        this.profileStore = profileStore;
+        Snapshot loaded = new Snapshot(loadFromProfile());
+        snapshot = new AtomicReference<>(loaded);
+        lastWritten = loaded;
+    }
+
+    /**
+     * Returns the current value of a setting.
+     *
+     * @param setting The setting.
+     * @return The stored value, or the setting's default if it is not set.
+     */
+    public <T> T get(Setting<T> setting) {
+        return snapshot.get().get(setting);
+    }
+
+    /**
+     * Changes a setting, notifies its listeners on the calling thread and schedules a write.
+     *
+     * @param setting The setting.
+     * @param value   The new value.
+     */
+    public <T> void set(Setting<T> setting, T value) {
+        String raw = setting.format(value);
+        Snapshot current;
+        Snapshot updated;
+        do {
+            current = snapshot.get();
+            if (raw.equals(current.raw.get(setting.getKey()))) return;
+            updated = current.with(setting.getKey(), raw);
+        } while (!snapshot.compareAndSet(current, updated));
+
+        notifyListeners(setting, updated.get(setting));
+        scheduleFlush();
+    }
+
+    /**
+     * Registers a listener called with the new value whenever the setting changes.
+     * Listeners run on the thread that changed the setting.
+     *
+     * @param setting  The setting to watch.
+     * @param listener The listener.
+     */
+    public <T> void addListener(Setting<T> setting, Consumer<? super T> listener) {
+        listeners.computeIfAbsent(setting, s -> new CopyOnWriteArrayList<>()).add(listener);
+    }
 
-        loadEncryptedProperties();
+    /**
+     * Removes a listener added with {@link #addListener(Setting, Consumer)}.
+     */
+    public <T> void removeListener(Setting<T> setting, Consumer<? super T> listener) {
+        List<Consumer<?>> registered = listeners.get(setting);
+        if (registered != null) {
+            registered.remove(listener);
+        }
     }
 
     /**
@@ -68,7 +188,7 @@ public class ConfigManager {
      * @return True if Flash is enabled, otherwise false.
      */
     public boolean isFlashEnabled() {
-        return Boolean.parseBoolean(properties.getProperty("enable_flash", "true"));
+        return get(ENABLE_FLASH);
     }
 
     /**
@@ -77,51 +197,144 @@ public class ConfigManager {
      * @param enabled True to enable Flash, otherwise false.
      */
     public void setFlashEnabled(boolean enabled) {
-        properties.setProperty("enable_flash", Boolean.toString(enabled));
-        saveEncryptedProperties();
+        set(ENABLE_FLASH, enabled);
+    }
+
+    /**
+     * Writes pending changes now. Called at shutdown; safe to call from any thread.
+     */
+    public void flush() {
+        flushScheduled.set(false);
+        saveToProfile(snapshot.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void notifyListeners(Setting<T> setting, T value) {
+        List<Consumer<?>> registered = listeners.get(setting);
+        if (registered == null) return;
+        for (Consumer<?> listener : registered) {
+            try {
+                ((Consumer<? super T>) listener).accept(value);
+            } catch (RuntimeException e) {
+                System.err.println("Settings listener for " + setting + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            LinkExecutors.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Commits the settings that differ from the last written snapshot in one transaction.
+     */
+    private void saveToProfile(Snapshot toWrite) {
+        synchronized (writeLock) {
+            if (toWrite == lastWritten) return;
+            Span saveSpan = Metrics.span("link_config_save");
+            try {
+                ProfileStore.Transaction transaction = profileStore.begin();
+                for (Map.Entry<String, String> entry : toWrite.raw.entrySet()) {
+                    if (!entry.getValue().equals(lastWritten.raw.get(entry.getKey()))) {
+                        transaction.putString(PROFILE_PREFIX + entry.getKey(), entry.getValue());
+                    }
+                }
+                for (String key : lastWritten.raw.keySet()) {
+                    if (!toWrite.raw.containsKey(key)) {
+                        transaction.delete(PROFILE_PREFIX + key);
+                    }
+                }
+                transaction.commit();
+                lastWritten = toWrite;
+                saveSpan.end("ok");
+            } catch (Exception e) {
+                saveSpan.end("failed");
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
-     * Saves the properties to an encrypted file.
+     * Loads the settings from the profile, importing a legacy config.properties file first.
      */
-    private void saveEncryptedProperties() {
+    private Map<String, String> loadFromProfile() {
+        Map<String, String> values = new HashMap<>();
+        Span loadSpan = Metrics.span("link_config_load");
+        try {
+            importLegacyFile();
+        } catch (Exception e) {
+            // The profile still holds whatever was saved there, so keep loading it
+            System.err.println("Failed to import the legacy config file: " + e.getMessage());
+        }
         try {
-            String propertiesString = convertPropertiesToString(properties);
-            String encryptedContent = encryptionManager.encrypt(propertiesString);
-            try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
-                fos.write(encryptedContent.getBytes());
+            for (Map.Entry<String, byte[]> entry : profileStore.scan(PROFILE_PREFIX).entrySet()) {
+                values.put(entry.getKey().substring(PROFILE_PREFIX.length()),
+                        new String(entry.getValue(), StandardCharsets.UTF_8));
             }
+            loadSpan.end("ok");
         } catch (Exception e) {
+            loadSpan.end("failed");
             e.printStackTrace();
         }
+        return values;
     }
 
     /**
-     * Loads the encrypted properties from the configuration file.
+     * Moves the encrypted config.properties of older builds into the profile and renames it to
+     * config.properties.imported. Settings already in the profile win.
      */
-    private void loadEncryptedProperties() {
-        try {
-            if (Files.exists(Paths.get(CONFIG_FILE))) {
-                String encryptedContent = new String(Files.readAllBytes(Paths.get(CONFIG_FILE)));
-                if (!encryptedContent.isEmpty()) {
-                    String decryptedContent = encryptionManager.decrypt(encryptedContent);
-                    properties.load(new java.io.StringReader(decryptedContent));
+    private void importLegacyFile() throws Exception {
+        Path configPath = Paths.get(CONFIG_FILE);
+        if (!Files.exists(configPath)) return;
+
+        String encryptedContent = new String(Files.readAllBytes(configPath), StandardCharsets.UTF_8);
+        ProfileStore.Transaction transaction = profileStore.begin();
+        if (!encryptedContent.isEmpty()) {
+            Properties properties = new Properties();
+            properties.load(new StringReader(new EncryptionManager().decrypt(encryptedContent)));
+            for (String key : properties.stringPropertyNames()) {
+                if (profileStore.get(PROFILE_PREFIX + key) == null) {
+                    transaction.putString(PROFILE_PREFIX + key, properties.getProperty(key));
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        transaction.commit();
+        Files.move(configPath, Paths.get(CONFIG_FILE + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Imported legacy settings from " + CONFIG_FILE);
     }
 
     /**
-     * Converts Properties to a formatted string.
-     *
-     * @param properties The properties object.
-     * @return The formatted properties string.
+     * Immutable view of all settings. Parsed values are cached per setting id the first time
+     * they are read; racing readers may both parse, which is harmless.
      */
-    private String convertPropertiesToString(Properties properties) {
-        StringBuilder sb = new StringBuilder();
-        properties.forEach((key, value) -> sb.append(key).append("=").append(value).append("\n"));
-        return sb.toString();
+    private static final class Snapshot {
+        private final Map<String, String> raw;
+        private final AtomicReferenceArray<Object> parsed = new AtomicReferenceArray<>(64);
+
+        private Snapshot(Map<String, String> raw) {
+            this.raw = Map.copyOf(raw);
+        }
+
+        private Snapshot with(String key, String value) {
+            Map<String, String> copy = new HashMap<>(raw);
+            copy.put(key, value);
+            return new Snapshot(copy);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T get(Setting<T> setting) {
+            int id = setting.getId();
+            if (id >= parsed.length()) {
+                return setting.parse(raw.get(setting.getKey()));
+            }
+            Object cached = parsed.get(id);
+            if (cached == null) {
+                cached = setting.parse(raw.get(setting.getKey()));
+                parsed.set(id, cached);
+            }
+            return (T) cached;
+        }
     }
 }
@@ -0,0 +1,90 @@
+package api.Managers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Typed key into the {@link ConfigManager} settings store.
+ * <p>
+ * A setting knows its property name, default value and how to convert to and from the string
+ * stored in config.properties. Each setting gets a small integer id so snapshots can cache the
+ * parsed value in an array slot instead of re-parsing on every read.
+ *
+ * @param <T> The value type.
+ */
+public final class Setting<T> {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id;
+    private final String key;
+    private final T defaultValue;
+    private final Function<String, T> parser;
+    private final Function<T, String> formatter;
+
+    private Setting(String key, T defaultValue, Function<String, T> parser, Function<T, String> formatter) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.key = key;
+        this.defaultValue = defaultValue;
+        this.parser = parser;
+        this.formatter = formatter;
+    }
+
+    public static Setting<Boolean> ofBoolean(String key, boolean defaultValue) {
+        return new Setting<>(key, defaultValue, Boolean::parseBoolean, String::valueOf);
+    }
+
+    public static Setting<Integer> ofInteger(String key, int defaultValue) {
+        return new Setting<>(key, defaultValue, Integer::parseInt, String::valueOf);
+    }
+
+    public static Setting<Long> ofLong(String key, long defaultValue) {
+        return new Setting<>(key, defaultValue, Long::parseLong, String::valueOf);
+    }
+
+    public static Setting<String> ofString(String key, String defaultValue) {
+        return new Setting<>(key, defaultValue, Function.identity(), Function.identity());
+    }
+
+    /**
+     * Creates a setting with custom conversions.
+     *
+     * @param key          Property name in config.properties.
+     * @param defaultValue Value used when the property is missing or unparsable.
+     * @param parser       Converts the stored string to a value.
+     * @param formatter    Converts a value to the stored string.
+     */
+    public static <T> Setting<T> of(String key, T defaultValue, Function<String, T> parser, Function<T, String> formatter) {
+        return new Setting<>(key, defaultValue, parser, formatter);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public T getDefaultValue() {
+        return defaultValue;
+    }
+
+    T parse(String raw) {
+        if (raw == null) return defaultValue;
+        try {
+            return parser.apply(raw);
+        } catch (RuntimeException e) {
+            return defaultValue;
+        }
+    }
+
+    String format(T value) {
+        return formatter.apply(value);
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
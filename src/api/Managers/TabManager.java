@@ -1,34 +1,74 @@
 package api.Managers;
 
 import api.BrowserView;
-import javafx.application.Platform;
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.concurrent.TaskScope;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.newtab.NewTabPage;
+import api.plugins.PluginEvent;
+import api.plugins.PluginEventBus;
+import javafx.concurrent.Worker;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.control.*;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.animation.TranslateTransition;
+import javafx.scene.transform.Transform;
+import javafx.scene.web.WebView;
 import javafx.util.Duration;
+import ui.TabMetricsPanel;
+import ui.TabOverview;
+import ui.TabThumbnailCache;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-public class TabManager {
+public final class TabManager {
 
     private TabPane tabPane;
     private Tab addTab;
     private Map<Tab, TabMemoryManager> tabMemoryManagers;
+    private Map<Tab, BrowserView> browserViews;
+    private Map<Tab, TaskScope> tabScopes;
     private static final long MEMORY_UPDATE_INTERVAL_MS = 2000;
+    private static final long THUMBNAIL_IDLE_DELAY_MS = 1500;
+    private static final long THUMBNAIL_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final LatencyHistogram SNAPSHOT_TIME = Metrics.histogram("link_tab_snapshot");
+    private static final LatencyHistogram TAB_OPEN_TIME = Metrics.histogram("link_tab_open");
+    private TabMetricsPanel metricsPanel;
     private VBox memoryUsagePanel;
     private boolean isPanelVisible = false;
+    private final TabThumbnailCache thumbnails = new TabThumbnailCache(THUMBNAIL_CACHE_BYTES);
+    private final Map<Tab, Future<?>> pendingThumbnails = new HashMap<>();
+    private TabOverview tabOverview;
+    private final TabPool tabPool;
 
     public TabManager() {
         tabPane = new TabPane();
         tabMemoryManagers = new HashMap<>();
+        browserViews = new HashMap<>();
+        tabScopes = new HashMap<>();
+        tabOverview = new TabOverview(thumbnails, tab -> tabPane.getSelectionModel().select(tab));
+        tabPool = new TabPool(this);
+        Metrics.gauge("link_tab_thumbnail_cache_bytes", thumbnails::getSizeBytes);
         createAddTabButton();
         setupMemoryUsagePanel();
     }
@@ -36,7 +76,7 @@ public class TabManager {
     private void createAddTabButton() {
         addTab = new Tab();
         Button addButton = new Button("+");
-        addButton.setOnAction(e -> createNewTab("New Tab", new BrowserView(this)));
+        addButton.setOnAction(e -> openNewTab());
         HBox buttonContainer = new HBox(addButton);
         buttonContainer.setAlignment(Pos.CENTER);
         addTab.setGraphic(buttonContainer);
@@ -44,99 +84,222 @@ public class TabManager {
         tabPane.getTabs().add(addTab);
     }
 
+    /**
+     * Opens a tab on the home page, using a view built ahead of time when one is ready.
+     */
+    public Tab openNewTab() {
+        long start = System.nanoTime();
+        BrowserView browserView = tabPool.take();
+        Tab tab = createNewTab("New Tab", browserView);
+        browserView.loadPage(BrowserView.HOME_PAGE);
+        TAB_OPEN_TIME.recordSince(start);
+        return tab;
+    }
+
     public Tab createNewTab(String title, BrowserView browserView) {
         Tab tab = new Tab(title);
         tab.setContent(browserView.createBrowserLayout());
+        tab.selectedProperty().addListener((obs, wasSelected, isSelected) -> browserView.setActive(isSelected));
+        browserView.setActive(tab.isSelected());
 
         TabMemoryManager tabMemoryManager = new TabMemoryManager(tab);
         tabMemoryManagers.put(tab, tabMemoryManager);
-        updateTabMemoryUsage(tab, tabMemoryManager, title);
+        browserViews.put(tab, browserView);
+        metricsPanel.update(tab, title, 0);
+        TaskScope scope = LinkExecutors.newScope("tab " + title);
+        tabScopes.put(tab, scope);
+        scheduleTabMemoryUpdates(tab, browserView, scope, tabMemoryManager, title);
+        watchForVisibleChanges(tab, browserView);
+        browserView.registerWithPlugins();
+        PluginEventBus.getInstance().publish(new PluginEvent.TabCreated(browserView.getTabId()));
+        tab.setOnClosed(e -> {
+            TaskScope closedScope = tabScopes.remove(tab);
+            if (closedScope != null) {
+                closedScope.close();
+            }
+            tabMemoryManagers.remove(tab);
+            BrowserView closedView = browserViews.remove(tab);
+            if (closedView != null) {
+                closedView.dispose();
+                PluginEventBus.getInstance().publish(new PluginEvent.TabClosed(closedView.getTabId()));
+            }
+            metricsPanel.remove(tab);
+            pendingThumbnails.remove(tab);
+            thumbnails.remove(tab);
+        });
 
         tabPane.getTabs().add(tabPane.getTabs().size() - 1, tab);
         tabPane.getSelectionModel().select(tab);
-
-        Platform.runLater(() -> updateMemoryUsagePanel());
         return tab;
     }
 
     public void createHtmlTab(String title, String htmlUrl) {
-        BrowserView browserView = new BrowserView(this);
-        browserView.loadPage(htmlUrl);
+        BrowserView browserView = tabPool.take();
         createNewTab(title, browserView);
+        browserView.loadPage(htmlUrl);
     }
 
-    private void updateTabMemoryUsage(Tab tab, TabMemoryManager tabMemoryManager, String baseTitle) {
-        Timer memoryUpdateTimer = new Timer(true);
-        memoryUpdateTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                tabMemoryManager.updateMemoryUsage();
-                String updatedTitle = baseTitle + " (Mem: " + tabMemoryManager.getFormattedMemoryUsage() + ")";
-                Platform.runLater(() -> {
+    private void scheduleTabMemoryUpdates(Tab tab, BrowserView browserView, TaskScope scope, TabMemoryManager tabMemoryManager, String baseTitle) {
+        scope.scheduleWithFixedDelay(() -> {
+            tabMemoryManager.updateMemoryUsage();
+            long memoryBytes = tabMemoryManager.getMemoryUsageBytes();
+            String updatedTitle = baseTitle + " (Mem: " + tabMemoryManager.getFormattedMemoryUsage() + ")";
+            // Coalesced per tab: a hidden tab's title may lag, but never queues up stale updates.
+            FxDispatcher.coalesce(tab, FxDispatcher.Lane.of(browserView.isActive()), () -> {
+                if (!updatedTitle.equals(tab.getText())) {
                     tab.setText(updatedTitle);
-                    updateMemoryUsagePanel();
-                });
+                }
+                if (tabMemoryManagers.containsKey(tab)) {
+                    metricsPanel.update(tab, updatedTitle, memoryBytes);
+                }
+            });
+        }, 0, MEMORY_UPDATE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refreshes a tab's thumbnail after anything that may have changed what it shows: a
+     * finished load, scrolling, clicks and typing, or the tab being selected again.
+     */
+    private void watchForVisibleChanges(Tab tab, BrowserView browserView) {
+        WebView webView = browserView.getBrowserArea();
+        webView.getEngine().getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED) scheduleThumbnail(tab);
+        });
+        webView.addEventFilter(ScrollEvent.SCROLL, e -> scheduleThumbnail(tab));
+        webView.addEventFilter(MouseEvent.MOUSE_RELEASED, e -> scheduleThumbnail(tab));
+        webView.addEventFilter(KeyEvent.KEY_RELEASED, e -> scheduleThumbnail(tab));
+        tab.selectedProperty().addListener((obs, wasSelected, isSelected) -> {
+            if (isSelected) scheduleThumbnail(tab);
+        });
+    }
+
+    /**
+     * Takes a thumbnail once the tab has been left alone for a moment. Requests made while one
+     * is pending are folded into it.
+     */
+    private void scheduleThumbnail(Tab tab) {
+        TaskScope scope = tabScopes.get(tab);
+        if (scope == null || scope.isClosed() || pendingThumbnails.containsKey(tab)) return;
+        pendingThumbnails.put(tab, scope.schedule(() -> FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> {
+            pendingThumbnails.remove(tab);
+            captureThumbnail(tab);
+        }), THUMBNAIL_IDLE_DELAY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Snapshots the visible tab at thumbnail size and hands the pixels to the cache, which
+     * compresses them off the FX thread. Hidden or loading tabs are skipped; they are captured
+     * again when shown or loaded.
+     *
+     * @return A future completing once the thumbnail is stored or skipped.
+     */
+    private CompletableFuture<?> captureThumbnail(Tab tab) {
+        BrowserView browserView = browserViews.get(tab);
+        if (browserView == null || !tab.isSelected()) return CompletableFuture.completedFuture(null);
+        WebView webView = browserView.getBrowserArea();
+        if (webView.getEngine().getLoadWorker().getState() == Worker.State.RUNNING
+                || webView.getWidth() <= 0 || webView.getHeight() <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.nanoTime();
+        double scale = Math.min(TabOverview.THUMBNAIL_WIDTH / webView.getWidth(),
+                TabOverview.THUMBNAIL_HEIGHT / webView.getHeight());
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setTransform(Transform.scale(scale, scale));
+        WritableImage snapshot = webView.snapshot(parameters, null);
+        int width = (int) snapshot.getWidth();
+        int height = (int) snapshot.getHeight();
+        int[] argb = new int[width * height];
+        snapshot.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        SNAPSHOT_TIME.recordSince(start);
+        // argb is a fresh copy of the snapshot that neither consumer modifies, so both may share it
+        NewTabPage.getInstance().offerThumbnail(webView.getEngine().getLocation(), width, height, argb);
+
+        return thumbnails.store(tab, width, height, argb).thenRun(() -> FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> {
+            // The tab may have closed while its pixels were being compressed.
+            if (!browserViews.containsKey(tab)) thumbnails.remove(tab);
+        }));
+    }
+
+    /**
+     * Covers the window with a grid of all tabs. The selected tab is snapshotted first so its
+     * card is current.
+     */
+    public void showTabOverview() {
+        Scene scene = tabPane.getScene();
+        if (scene == null || tabOverview.isShowing()) return;
+        Tab selected = tabPane.getSelectionModel().getSelectedItem();
+        captureThumbnail(selected).whenCompleteAsync((result, error) -> {
+            if (tabPane.getScene() != null && !tabOverview.isShowing()) {
+                tabOverview.show((Pane) tabPane.getScene().getRoot(), getOpenTabs(), selected);
             }
-        }, 0, MEMORY_UPDATE_INTERVAL_MS);
+        }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
+    }
+
+    /**
+     * Opens the find bar of the selected tab.
+     */
+    public void showFindBar() {
+        BrowserView browserView = browserViews.get(tabPane.getSelectionModel().getSelectedItem());
+        if (browserView != null) {
+            browserView.showFindBar();
+        }
     }
 
     public TabPane getTabPane() {
         return tabPane;
     }
 
+    /**
+     * Returns the browser tabs in display order, excluding the "+" tab.
+     */
+    public List<Tab> getOpenTabs() {
+        List<Tab> tabs = new ArrayList<>(tabPane.getTabs());
+        tabs.remove(addTab);
+        return tabs;
+    }
+
+    public BrowserView getBrowserView(Tab tab) {
+        return browserViews.get(tab);
+    }
+
+    public TabMemoryManager getTabMemoryManager(Tab tab) {
+        return tabMemoryManagers.get(tab);
+    }
+
+    /**
+     * Returns the task scope of a tab. Background work started for the tab should be submitted
+     * through it so it is cancelled when the tab closes.
+     */
+    public TaskScope getTabScope(Tab tab) {
+        return tabScopes.get(tab);
+    }
+
     private void setupMemoryUsagePanel() {
-        memoryUsagePanel = new VBox(5);
-        memoryUsagePanel.setId("memoryUsagePanel");
-        memoryUsagePanel.setAlignment(Pos.CENTER_LEFT);
-        memoryUsagePanel.setStyle("-fx-background-color: rgba(34,34,34,0.9); -fx-padding: 10px; -fx-background-radius: 5;");
-        memoryUsagePanel.setPrefWidth(300);
+        metricsPanel = new TabMetricsPanel();
+        memoryUsagePanel = metricsPanel.getNode();
         memoryUsagePanel.setTranslateY(-memoryUsagePanel.getPrefHeight());
 
         tabPane.sceneProperty().addListener((obs, oldScene, newScene) -> {
             if (newScene != null) {
-                Platform.runLater(() -> {
+                FxDispatcher.dispatch(FxDispatcher.Lane.VISIBLE, () -> {
                     Pane root = (Pane) newScene.getRoot();
                     root.getChildren().add(memoryUsagePanel);
                     memoryUsagePanel.setLayoutX((root.getWidth() - 300) / 2);
                     memoryUsagePanel.setLayoutY(0);
                     addMouseListenerForMemoryPanel(newScene);
+                    newScene.getAccelerators().put(
+                            new KeyCodeCombination(KeyCode.A, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+                            this::showTabOverview);
+                    newScene.getAccelerators().put(
+                            new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN),
+                            this::showFindBar);
                 });
             }
         });
     }
 
-    private void updateMemoryUsagePanel() {
-        if (memoryUsagePanel == null) return;
-        memoryUsagePanel.getChildren().clear();
-
-        for (Tab tab : tabPane.getTabs()) {
-            if (tab == addTab) continue;
-            TabMemoryManager tmm = tabMemoryManagers.get(tab);
-            if (tmm != null) {
-                HBox hbox = new HBox(10);
-                hbox.setAlignment(Pos.CENTER_LEFT);
-
-                Label tabTitle = new Label(tab.getText());
-                tabTitle.setStyle("-fx-text-fill: #e8eaed; -fx-font-size: 12px;");
-
-                double percentage = 0.0;
-                try {
-                    String memStr = tmm.getFormattedMemoryUsage().replaceAll("[^\\d.]", "");
-                    percentage = Double.parseDouble(memStr) / 1000.0;
-                    percentage = Math.min(percentage, 1.0);
-                } catch (NumberFormatException ex) {
-                    percentage = 0.0;
-                }
-
-                ProgressBar memBar = new ProgressBar(percentage);
-                memBar.setPrefWidth(100);
-
-                hbox.getChildren().addAll(tabTitle, memBar);
-                memoryUsagePanel.getChildren().add(hbox);
-            }
-        }
-    }
-
     private void addMouseListenerForMemoryPanel(Scene scene) {
         scene.addEventFilter(MouseEvent.MOUSE_MOVED, event -> {
             if (event.getSceneY() < 50) {
@@ -150,6 +313,7 @@ public class TabManager {
     private void slideMemoryPanelIn() {
         if (memoryUsagePanel == null || isPanelVisible) return;
         isPanelVisible = true;
+        metricsPanel.setShowing(true);
         TranslateTransition tt = new TranslateTransition(Duration.millis(300), memoryUsagePanel);
         tt.setToY(0);
         tt.play();
@@ -160,6 +324,11 @@ public class TabManager {
         isPanelVisible = false;
         TranslateTransition tt = new TranslateTransition(Duration.millis(300), memoryUsagePanel);
         tt.setToY(-memoryUsagePanel.getHeight());
+        tt.setOnFinished(e -> {
+            if (!isPanelVisible) {
+                metricsPanel.setShowing(false);
+            }
+        });
         tt.play();
     }
 }
@@ -6,7 +6,7 @@ import java.text.DecimalFormat;
 public class TabMemoryManager {
 
     private long initialMemory;
-    private long currentMemory;
+    private volatile long currentMemory;
     private Tab associatedTab;
     private static final Runtime RUNTIME = Runtime.getRuntime();
     private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#.##");
@@ -29,6 +29,13 @@ public class TabMemoryManager {
         }
     }
 
+    /**
+     * Returns the memory usage difference for this tab in bytes.
+     */
+    public long getMemoryUsageBytes() {
+        return currentMemory;
+    }
+
     /**
      * Returns a formatted string representing the memory usage difference for this tab.
      */
@@ -42,7 +49,7 @@ public class TabMemoryManager {
      * @param bytes The number of bytes.
      * @return A string such as "850 Bytes", "512 KB", "1.23 MB", or "2.34 GB".
      */
-    private static String formatBytes(long bytes) {
+    public static String formatBytes(long bytes) {
         double value = bytes;
         String unit = "Bytes";
         if (bytes >= 1024 && bytes < 1024 * 1024) {
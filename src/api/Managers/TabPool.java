@@ -0,0 +1,122 @@
+package api.Managers;
+
+import api.BrowserView;
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import ui.bookmark.BookmarkPersistence;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a few blank {@link BrowserView}s built ahead of time, so opening a tab hands one over
+ * instead of building a WebView, bookmark bar and menus on the FX thread while the user waits.
+ * <p>
+ * Views are built one per idle slice of the FX thread, a moment after a tab was taken so they
+ * do not compete with its first load. How many are kept follows how fast tabs are opened: one
+ * normally, up to {@link ConfigManager#TAB_POOL_MAX} during a burst, dropping back once the
+ * burst is over. A view whose bookmark bar is out of date is thrown away rather than used.
+ * <p>
+ * Must only be used on the FX thread.
+ */
+final class TabPool {
+
+    private static final long REFILL_DELAY_MS = 1000;
+    private static final long ADJUST_INTERVAL_MS = 30_000;
+    /** Tab opens are counted over this window to size the pool. */
+    private static final long RATE_WINDOW_MS = 60_000;
+    /** Each this many tabs opened within the window keeps one more view ready. */
+    private static final int OPENS_PER_VIEW = 3;
+
+    private static final Counter HITS = Metrics.counter("link_tab_pool_hits");
+    private static final Counter MISSES = Metrics.counter("link_tab_pool_misses");
+
+    private record Shell(BrowserView view, long bookmarkGeneration) {
+
+        boolean isStale() {
+            return bookmarkGeneration != BookmarkPersistence.getGeneration();
+        }
+    }
+
+    private final TabManager tabManager;
+    private final ConfigManager config = ConfigManager.getInstance();
+    private final Deque<Shell> shells = new ArrayDeque<>();
+    private final Deque<Long> opens = new ArrayDeque<>();
+    private volatile int size;
+    private boolean refillScheduled;
+
+    TabPool(TabManager tabManager) {
+        this.tabManager = tabManager;
+        Metrics.gauge("link_tab_pool_size", () -> size);
+        LinkExecutors.scheduleWithFixedDelay(() -> FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, this::adjust),
+                ADJUST_INTERVAL_MS, ADJUST_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        scheduleRefill();
+    }
+
+    /**
+     * Returns a blank view for a new tab, from the pool if one is ready.
+     */
+    BrowserView take() {
+        opens.addLast(System.currentTimeMillis());
+        scheduleRefill();
+        Shell shell;
+        while ((shell = shells.pollFirst()) != null) {
+            size = shells.size();
+            if (!shell.isStale()) {
+                HITS.increment();
+                return shell.view();
+            }
+            shell.view().dispose();
+        }
+        MISSES.increment();
+        return new BrowserView(tabManager, null);
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled) return;
+        refillScheduled = true;
+        LinkExecutors.schedule(() -> FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> {
+            refillScheduled = false;
+            adjust();
+        }), REFILL_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops stale views and views beyond the target size, or builds one view if the pool is
+     * short and queues another idle slice for the next.
+     */
+    private void adjust() {
+        int target = targetSize();
+        shells.removeIf(shell -> {
+            if (!shell.isStale()) return false;
+            shell.view().dispose();
+            return true;
+        });
+        while (shells.size() > target) {
+            shells.pollLast().view().dispose();
+        }
+        if (shells.size() < target) {
+            long generation = BookmarkPersistence.getGeneration();
+            BrowserView view = new BrowserView(tabManager, null);
+            view.setActive(false);
+            shells.addLast(new Shell(view, generation));
+            if (shells.size() < target) {
+                FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, this::adjust);
+            }
+        }
+        size = shells.size();
+    }
+
+    private int targetSize() {
+        int max = config.get(ConfigManager.TAB_POOL_MAX);
+        if (max <= 0) return 0;
+        long cutoff = System.currentTimeMillis() - RATE_WINDOW_MS;
+        while (!opens.isEmpty() && opens.peekFirst() < cutoff) {
+            opens.pollFirst();
+        }
+        return Math.min(max, 1 + opens.size() / OPENS_PER_VIEW);
+    }
+}
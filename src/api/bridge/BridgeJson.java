@@ -0,0 +1,79 @@
+package api.bridge;
+
+import java.util.Map;
+
+/**
+ * Writes the values bridge handlers return as JSON, which is also a valid script literal.
+ * Handlers return maps, lists, strings, numbers, booleans and null.
+ */
+final class BridgeJson {
+
+    private BridgeJson() {
+    }
+
+    static String write(Object value) {
+        StringBuilder json = new StringBuilder();
+        write(value, json);
+        return json.toString();
+    }
+
+    static void write(Object value, StringBuilder json) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Number number) {
+            double asDouble = number.doubleValue();
+            json.append(Double.isFinite(asDouble) ? number.toString() : "null");
+        } else if (value instanceof CharSequence text) {
+            writeString(text, json);
+        } else if (value instanceof Map<?, ?> map) {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) json.append(',');
+                first = false;
+                writeString(String.valueOf(entry.getKey()), json);
+                json.append(':');
+                write(entry.getValue(), json);
+            }
+            json.append('}');
+        } else if (value instanceof Iterable<?> items) {
+            json.append('[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first) json.append(',');
+                first = false;
+                write(item, json);
+            }
+            json.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot send a " + value.getClass().getSimpleName() + " to a page");
+        }
+    }
+
+    private static void writeString(CharSequence text, StringBuilder json) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                // Valid in JSON but line terminators in older script engines
+                case '\u2028' -> json.append("\\u2028");
+                case '\u2029' -> json.append("\\u2029");
+                default -> {
+                    if (c < 0x20 || c == '<') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,40 @@
+package api.bridge;
+
+import java.util.List;
+
+/**
+ * One message sent by an internal page through {@code link.request(type, ...args)}.
+ * <p>
+ * Arguments are the strings, numbers and booleans the page passed. The getters check their
+ * type, so a handler fails with a readable error instead of a {@code ClassCastException}.
+ */
+public record BridgeRequest(String type, List<Object> args) {
+
+    public String getString(int index) {
+        if (arg(index) instanceof String value) return value;
+        throw mismatch(index, "a string");
+    }
+
+    public boolean getBoolean(int index) {
+        if (arg(index) instanceof Boolean value) return value;
+        throw mismatch(index, "a boolean");
+    }
+
+    public int getInt(int index) {
+        if (arg(index) instanceof Number value && value.doubleValue() == Math.rint(value.doubleValue())) {
+            return value.intValue();
+        }
+        throw mismatch(index, "an integer");
+    }
+
+    private Object arg(int index) {
+        if (index >= args.size()) {
+            throw new IllegalArgumentException(type + " expects at least " + (index + 1) + " arguments");
+        }
+        return args.get(index);
+    }
+
+    private IllegalArgumentException mismatch(int index, String expected) {
+        return new IllegalArgumentException(type + " expects argument " + index + " to be " + expected);
+    }
+}
@@ -0,0 +1,32 @@
+package api.bridge;
+
+/**
+ * Text helpers for the internal pages that are built as HTML strings.
+ */
+public final class Html {
+
+    private Html() {
+    }
+
+    /**
+     * Escapes text for use in element content and in quoted attribute values.
+     *
+     * @return The escaped text, or an empty string for null.
+     */
+    public static String escape(String text) {
+        if (text == null) return "";
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package api.bridge;
+
+import api.Managers.ConfigManager;
+import api.Managers.Setting;
+import api.history.HistoryIndex;
+import api.plugins.LinkPlugin;
+import api.plugins.PluginEventBus;
+import api.plugins.PluginStats;
+import api.profile.HistoryStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The messages the internal pages can send through a {@link PageBridge}: settings, plugins,
+ * clearing the history and opening other internal pages. Settings changes are pushed to the
+ * page under the "settings" topic, whichever tab made them.
+ */
+public final class InternalPageApi {
+
+    private static final Set<String> PAGES = Set.of("about", "settings", "history", "bookmarks", "plugins", "github");
+
+    /** The settings pages may read and change, by key. */
+    private static final Map<String, Setting<Boolean>> SETTINGS = new LinkedHashMap<>();
+
+    static {
+        for (Setting<Boolean> setting : List.of(ConfigManager.ENABLE_FLASH, ConfigManager.DATA_SAVER,
+                ConfigManager.THROTTLE_BACKGROUND_TABS, ConfigManager.RESTORE_SESSION, ConfigManager.HISTORY_INDEX,
+                ConfigManager.PLUGIN_AUTO_DISABLE)) {
+            SETTINGS.put(setting.getKey(), setting);
+        }
+    }
+
+    private final ConfigManager config = ConfigManager.getInstance();
+    private final PluginEventBus plugins = PluginEventBus.getInstance();
+    private final Consumer<Boolean> settingsListener;
+    private final Runnable pluginsListener;
+
+    /**
+     * @param opener Opens a link://open/... URL in the view.
+     */
+    public InternalPageApi(PageBridge bridge, Consumer<String> opener) {
+        this.settingsListener = value -> bridge.push("settings", settings());
+        for (Setting<Boolean> setting : SETTINGS.values()) {
+            config.addListener(setting, settingsListener);
+        }
+        this.pluginsListener = () -> bridge.push("plugins", pluginList());
+        plugins.addStateListener(pluginsListener);
+
+        bridge.handle("settings.get", request -> CompletableFuture.completedFuture(settings()));
+        bridge.handle("settings.set", request -> {
+            Setting<Boolean> setting = SETTINGS.get(request.getString(0));
+            if (setting == null) {
+                throw new IllegalArgumentException("Unknown setting: " + request.getString(0));
+            }
+            config.set(setting, request.getBoolean(1));
+            return CompletableFuture.completedFuture(settings());
+        });
+        bridge.handle("settings.reset", request -> {
+            for (Setting<Boolean> setting : SETTINGS.values()) {
+                config.set(setting, setting.getDefaultValue());
+            }
+            return CompletableFuture.completedFuture(settings());
+        });
+
+        bridge.handle("plugins.list", request -> CompletableFuture.completedFuture(pluginList()));
+        bridge.handle("plugins.setEnabled", request -> {
+            String name = request.getString(0);
+            LinkPlugin plugin = plugins.getPlugin(name);
+            if (plugin == null) {
+                throw new IllegalArgumentException("No plugin named " + name);
+            }
+            if (request.getBoolean(1)) {
+                plugins.enable(name);
+            } else {
+                plugins.disable(plugin, "Disabled by the user");
+            }
+            return CompletableFuture.completedFuture(pluginList());
+        });
+        bridge.handle("plugins.uninstall", request -> {
+            String name = request.getString(0);
+            return plugins.uninstall(name).thenApply(deleted -> {
+                if (!deleted) {
+                    throw new IllegalStateException("Could not uninstall " + name);
+                }
+                return pluginList();
+            });
+        });
+
+        bridge.handle("history.clear", request ->
+                CompletableFuture.allOf(HistoryStore.getInstance().clear(), HistoryIndex.getInstance().clear()));
+
+        bridge.handle("navigate.open", request -> {
+            String page = request.getString(0);
+            if (!PAGES.contains(page)) {
+                throw new IllegalArgumentException("Unknown page: " + page);
+            }
+            opener.accept("link://open/" + page);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    public void dispose() {
+        for (Setting<Boolean> setting : SETTINGS.values()) {
+            config.removeListener(setting, settingsListener);
+        }
+        plugins.removeStateListener(pluginsListener);
+    }
+
+    private Map<String, Object> settings() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Setting<Boolean>> entry : SETTINGS.entrySet()) {
+            values.put(entry.getKey(), config.get(entry.getValue()));
+        }
+        return values;
+    }
+
+    private List<Object> pluginList() {
+        List<Object> list = new ArrayList<>();
+        for (PluginStats stats : plugins.getStats()) {
+            LinkPlugin plugin = plugins.getPlugin(stats.name());
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", stats.name());
+            entry.put("version", stats.version());
+            entry.put("description", plugin == null ? "" : plugin.getDescription());
+            entry.put("enabled", stats.state() != PluginStats.State.DISABLED);
+            entry.put("state", stats.state().name());
+            entry.put("reason", stats.disabledReason());
+            list.add(entry);
+        }
+        return list;
+    }
+}
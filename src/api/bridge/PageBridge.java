@@ -0,0 +1,278 @@
+package api.bridge;
+
+import api.concurrent.FxDispatcher;
+import api.metrics.Counter;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import javafx.scene.web.WebEngine;
+import netscape.javascript.JSObject;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Two-way message channel between a view's internal pages and Java.
+ * <p>
+ * On the bundled pages, and on pages the browser renders itself and marks with
+ * {@link #trustNextContent}, a connector object is set on {@code window} and a small script
+ * adds {@code link.request(type, ...args)}, which returns a promise, and
+ * {@code link.on(topic, callback)} for updates pushed from Java. Requests made in the same
+ * tick reach Java as one call; replies and pushes are collected and handed back in one script
+ * call per FX pulse, and a topic pushed several times before that is sent once with its
+ * latest value. Web content never sees the connector.
+ */
+public final class PageBridge {
+
+    private static final String CONNECTOR = "__linkConnector";
+    /** Stands for a null push value, which the map cannot hold. */
+    private static final Object NULL = new Object();
+    private static final Set<String> TRUSTED_PAGES = Stream.of("/SettingsPage.html", "/AboutPage.html")
+            .map(PageBridge.class::getResource)
+            .filter(Objects::nonNull)
+            .map(URL::toExternalForm)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private static final LatencyHistogram REQUEST_TIME = Metrics.histogram("link_bridge_request");
+    private static final Counter BATCHES = Metrics.counter("link_bridge_batches");
+
+    private static final String SHIM = """
+            (function () {
+              if (window.link && window.link.__bridge) return;
+              var connector = window.__linkConnector;
+              var nextId = 1, pending = {}, queue = [], listeners = {}, scheduled = false;
+              function flush() {
+                scheduled = false;
+                var batch = queue;
+                queue = [];
+                connector.post(batch);
+              }
+              window.link = {
+                __bridge: true,
+                request: function (type) {
+                  var args = Array.prototype.slice.call(arguments, 1);
+                  return new Promise(function (resolve, reject) {
+                    var id = nextId++;
+                    pending[id] = { resolve: resolve, reject: reject };
+                    queue.push({ id: id, type: type, args: args });
+                    if (!scheduled) {
+                      scheduled = true;
+                      setTimeout(flush, 0);
+                    }
+                  });
+                },
+                on: function (topic, callback) {
+                  (listeners[topic] = listeners[topic] || []).push(callback);
+                },
+                __receive: function (messages) {
+                  messages.forEach(function (message) {
+                    if (message.topic) {
+                      (listeners[message.topic] || []).forEach(function (callback) { callback(message.value); });
+                      return;
+                    }
+                    var request = pending[message.id];
+                    if (!request) return;
+                    delete pending[message.id];
+                    if (message.ok) request.resolve(message.value); else request.reject(new Error(message.error));
+                  });
+                }
+              };
+            })();
+            """;
+
+    private final WebEngine engine;
+    private final Map<String, Function<BridgeRequest, CompletionStage<?>>> handlers = new ConcurrentHashMap<>();
+    private final Queue<String> replies = new ConcurrentLinkedQueue<>();
+    private final Map<String, Object> pushes = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Held here: the page only keeps a weak reference to members set from Java
+    private final Connector connector = new Connector();
+    private volatile Object bridgedDocument;
+    // Only touched on the FX thread
+    private boolean contentTrusted;
+
+    public PageBridge(WebEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Returns whether the URL is one of the bundled pages allowed to use the bridge.
+     */
+    public static boolean isTrusted(String url) {
+        return url != null && TRUSTED_PAGES.contains(url);
+    }
+
+    /**
+     * Lets the next document loaded with {@code loadContent} use the bridge. Call on the FX
+     * thread right before loading HTML the browser generated; the next {@link #install} uses
+     * the mark up, whichever page it is for.
+     */
+    public void trustNextContent() {
+        contentTrusted = true;
+    }
+
+    /**
+     * Registers the handler for a message type. The handler is called on the FX thread and
+     * should hand anything slow to another thread; the page gets the value its future
+     * completes with, or the message of the exception it fails with.
+     */
+    public void handle(String type, Function<BridgeRequest, CompletionStage<?>> handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * Sets up the bridge in the loaded page if it is a bundled page or trusted generated
+     * content, then calls the page's {@code onLinkBridgeReady} function. Must be called on the
+     * FX thread once the page has loaded.
+     */
+    public void install() {
+        bridgedDocument = null;
+        replies.clear();
+        pushes.clear();
+        boolean content = contentTrusted;
+        contentTrusted = false;
+        String location = engine.getLocation();
+        // loadContent leaves no location; a page that navigated anywhere has one
+        boolean generated = content && (location == null || location.isEmpty() || location.equals("about:blank"));
+        if (!generated && !isTrusted(location)) return;
+        try {
+            JSObject window = (JSObject) engine.executeScript("window");
+            window.setMember(CONNECTOR, connector);
+            engine.executeScript(SHIM);
+            bridgedDocument = engine.getDocument();
+            engine.executeScript("window.onLinkBridgeReady && onLinkBridgeReady();");
+        } catch (RuntimeException e) {
+            System.err.println("Failed to set up the page bridge: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends an update to the page's {@code link.on(topic)} listeners, if a bundled page is
+     * showing. May be called from any thread.
+     */
+    public void push(String topic, Object value) {
+        if (bridgedDocument == null) return;
+        pushes.put(topic, value == null ? NULL : value);
+        scheduleFlush();
+    }
+
+    /**
+     * Receives request batches from the page. Public so the page can call it.
+     */
+    public final class Connector {
+
+        private Connector() {
+        }
+
+        public void post(JSObject batch) {
+            if (bridgedDocument == null || bridgedDocument != engine.getDocument()) return;
+            BATCHES.increment();
+            int length = ((Number) batch.getMember("length")).intValue();
+            for (int i = 0; i < length; i++) {
+                JSObject message = (JSObject) batch.getSlot(i);
+                Object id = message.getMember("id");
+                try {
+                    dispatch(id, new BridgeRequest(String.valueOf(message.getMember("type")),
+                            readArgs((JSObject) message.getMember("args"))));
+                } catch (RuntimeException e) {
+                    reply(id, false, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void dispatch(Object id, BridgeRequest request) {
+        Function<BridgeRequest, CompletionStage<?>> handler = handlers.get(request.type());
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown message type: " + request.type());
+        }
+        long start = System.nanoTime();
+        Object document = bridgedDocument;
+        CompletionStage<?> result;
+        try {
+            result = handler.apply(request);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            if (document != bridgedDocument) return;
+            REQUEST_TIME.recordSince(start);
+            if (error == null) {
+                reply(id, true, value);
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                reply(id, false, cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage());
+            }
+        });
+    }
+
+    private static List<Object> readArgs(JSObject args) {
+        int length = ((Number) args.getMember("length")).intValue();
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            Object value = args.getSlot(i);
+            if (value instanceof JSObject) {
+                throw new IllegalArgumentException("Only strings, numbers and booleans can be sent to Java");
+            }
+            values.add("undefined".equals(value) ? null : value);
+        }
+        return values;
+    }
+
+    private void reply(Object id, boolean ok, Object value) {
+        StringBuilder json = new StringBuilder("{\"id\":");
+        BridgeJson.write(id instanceof Number number ? number.intValue() : null, json);
+        json.append(",\"ok\":").append(ok).append(ok ? ",\"value\":" : ",\"error\":");
+        try {
+            BridgeJson.write(value, json);
+        } catch (IllegalArgumentException e) {
+            reply(id, false, e.getMessage());
+            return;
+        }
+        replies.add(json.append('}').toString());
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            FxDispatcher.dispatch(FxDispatcher.Lane.VISIBLE, this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        StringBuilder batch = new StringBuilder("[");
+        String reply;
+        while ((reply = replies.poll()) != null) {
+            if (batch.length() > 1) batch.append(',');
+            batch.append(reply);
+        }
+        for (String topic : pushes.keySet()) {
+            Object value = pushes.remove(topic);
+            if (batch.length() > 1) batch.append(',');
+            batch.append("{\"topic\":");
+            BridgeJson.write(topic, batch);
+            batch.append(",\"value\":");
+            BridgeJson.write(value == NULL ? null : value, batch);
+            batch.append('}');
+        }
+        if (batch.length() == 1 || bridgedDocument == null || bridgedDocument != engine.getDocument()) return;
+        try {
+            engine.executeScript("window.link && link.__receive(" + batch.append(']') + ");");
+        } catch (RuntimeException e) {
+            System.err.println("Failed to deliver bridge messages: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package api.concurrent;
+
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batches UI updates onto the FX application thread.
+ * <p>
+ * Updates are queued per {@link Lane}. The first update after a flush posts one
+ * {@code Platform.runLater}; everything queued until it runs is applied in that batch. A flush
+ * always drains {@link Lane#VISIBLE}, then works through {@link Lane#BACKGROUND} and
+ * {@link Lane#IDLE} within a {@value #FLUSH_BUDGET_MICROS} microsecond budget. Leftovers wait for the
+ * next pulse, so background tabs never delay the frame of the visible one.
+ * <p>
+ * {@link #coalesce} keeps only the latest update per key, for values that are overwritten
+ * anyway, such as a tab's title or a download's progress. A key still waiting in a lower lane
+ * moves up when an update for it arrives on a higher one.
+ * <p>
+ * Time from queueing to running is recorded per lane in the {@code link_fx_dispatch_*}
+ * histograms.
+ */
+public final class FxDispatcher {
+
+    /** Update priority, highest first. */
+    public enum Lane {
+        /** Affects what the user is looking at right now. */
+        VISIBLE,
+        /** Affects a hidden tab or panel. */
+        BACKGROUND,
+        /** Bookkeeping that may wait several frames. */
+        IDLE;
+
+        /**
+         * Returns {@link #VISIBLE} for a visible owner and {@link #BACKGROUND} otherwise.
+         */
+        public static Lane of(boolean visible) {
+            return visible ? VISIBLE : BACKGROUND;
+        }
+    }
+
+    private static final long FLUSH_BUDGET_MICROS = 4_000;
+    private static final Lane[] LANES = Lane.values();
+
+    private static final List<Queue<Update>> QUEUES = new ArrayList<>(LANES.length);
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[LANES.length];
+    private static final Map<Object, Pending> LATEST = new ConcurrentHashMap<>();
+    private static final AtomicBoolean FLUSH_POSTED = new AtomicBoolean(false);
+    private static final Executor[] EXECUTORS = new Executor[LANES.length];
+
+    private static AnimationTimer pulseTimer;
+
+    static {
+        for (Lane lane : LANES) {
+            Queue<Update> queue = new ConcurrentLinkedQueue<>();
+            QUEUES.add(queue);
+            String name = lane.name().toLowerCase();
+            LATENCY[lane.ordinal()] = Metrics.histogram("link_fx_dispatch_" + name + "_latency");
+            Metrics.gauge("link_fx_dispatch_" + name + "_queue_depth", queue::size);
+            EXECUTORS[lane.ordinal()] = task -> dispatch(lane, task);
+        }
+    }
+
+    private FxDispatcher() {
+    }
+
+    /**
+     * Queues an update. May be called from any thread, including the FX thread, in which case
+     * the update still runs after the ones already queued.
+     */
+    public static void dispatch(Lane lane, Runnable update) {
+        QUEUES.get(lane.ordinal()).add(new Update(null, update, System.nanoTime()));
+        requestFlush();
+    }
+
+    /**
+     * Queues an update that replaces any not yet applied update with the same key.
+     *
+     * @param key    Identity of the value being updated, compared with equals.
+     * @param lane   Priority.
+     * @param update The latest update for that key.
+     */
+    public static void coalesce(Object key, Lane lane, Runnable update) {
+        Pending previous = LATEST.put(key, new Pending(update, lane));
+        // A marker left behind in the lower lane finds the key gone and does nothing
+        if (previous == null || lane.compareTo(previous.lane()) < 0) {
+            QUEUES.get(lane.ordinal()).add(new Update(key, null, System.nanoTime()));
+            requestFlush();
+        }
+    }
+
+    /**
+     * Returns an executor that dispatches on a lane, for use with CompletableFuture's
+     * {@code *Async} methods.
+     */
+    public static Executor executor(Lane lane) {
+        return EXECUTORS[lane.ordinal()];
+    }
+
+    private static void requestFlush() {
+        if (FLUSH_POSTED.compareAndSet(false, true)) {
+            Platform.runLater(FxDispatcher::flush);
+        }
+    }
+
+    /** Runs on the FX thread. */
+    private static void flush() {
+        FLUSH_POSTED.set(false);
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(FLUSH_BUDGET_MICROS);
+        drain(Lane.VISIBLE, Long.MAX_VALUE);
+        boolean leftovers = false;
+        for (int i = 1; i < LANES.length; i++) {
+            leftovers |= !drain(LANES[i], deadline);
+        }
+        if (leftovers) {
+            continueNextPulse();
+        }
+    }
+
+    /**
+     * Runs the updates of one lane until it is empty or the deadline passes.
+     *
+     * @return True if the lane was emptied.
+     */
+    private static boolean drain(Lane lane, long deadline) {
+        Queue<Update> queue = QUEUES.get(lane.ordinal());
+        LatencyHistogram latency = LATENCY[lane.ordinal()];
+        // Only what was queued before the drain started, so an update that queues another
+        // cannot keep the loop going forever.
+        int budget = queue.size();
+        Update update;
+        while (budget-- > 0 && (update = queue.poll()) != null) {
+            latency.recordSince(update.queuedNanos);
+            Runnable task = update.key == null ? update.task : taskOf(LATEST.remove(update.key));
+            if (task != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("UI update failed: " + e);
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                return queue.isEmpty();
+            }
+        }
+        return queue.isEmpty();
+    }
+
+    private static Runnable taskOf(Pending pending) {
+        return pending == null ? null : pending.task();
+    }
+
+    private static void continueNextPulse() {
+        if (pulseTimer == null) {
+            pulseTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    stop();
+                    flush();
+                }
+            };
+        }
+        pulseTimer.start();
+    }
+
+    private record Update(Object key, Runnable task, long queuedNanos) {
+    }
+
+    /** The latest coalesced update for a key and the lane it was queued on. */
+    private record Pending(Runnable task, Lane lane) {
+    }
+}
@@ -0,0 +1,238 @@
+package api.concurrent;
+
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The executors all background work in Link runs on.
+ * <ul>
+ *     <li>{@link #io()}: one virtual thread per task, for anything that blocks on disk or
+ *     network. Costs next to nothing per task, so it needs no bound.</li>
+ *     <li>{@link #cpu()}: a bounded pool of platform threads for CPU-heavy work such as
+ *     decoding or indexing. When its queue is full the submitting thread runs the task itself,
+ *     which slows producers down instead of growing the queue.</li>
+ *     <li>{@link #schedule} / {@link #scheduleWithFixedDelay}: a single timer thread that only
+ *     hands due tasks over to {@link #io()}, so a slow task never delays the others.</li>
+ *     <li>{@link #serial(String)}: runs tasks one at a time in submission order on top of
+ *     {@link #io()}, for writers that must not interleave.</li>
+ *     <li>{@link #dedicated(String)}: like {@link #serial(String)} but on a platform thread of its
+ *     own, for work whose CPU time and allocations must be attributed to its owner.</li>
+ * </ul>
+ * Work that belongs to a tab should go through that tab's {@link TaskScope} so it is cancelled
+ * when the tab closes. Queue depths and in-flight counts are exported as gauges.
+ */
+public final class LinkExecutors {
+
+    private static final int CPU_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int CPU_QUEUE_CAPACITY = 1024;
+
+    private static final AtomicLong IO_IN_FLIGHT = new AtomicLong();
+    private static final ExecutorService IO_THREADS =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("link-io-", 0).factory());
+    private static final ThreadPoolExecutor CPU_POOL = new ThreadPoolExecutor(
+            CPU_POOL_SIZE, CPU_POOL_SIZE, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(CPU_QUEUE_CAPACITY),
+            platformThreads("link-cpu-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    private static final ScheduledThreadPoolExecutor SCHEDULER =
+            new ScheduledThreadPoolExecutor(1, platformThreads("link-scheduler-"));
+    static final AtomicInteger OPEN_SCOPES = new AtomicInteger();
+
+    private static final ExecutorService IO = new DelegatingExecutor() {
+        @Override
+        public void execute(Runnable task) {
+            IO_IN_FLIGHT.incrementAndGet();
+            IO_THREADS.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    IO_IN_FLIGHT.decrementAndGet();
+                }
+            });
+        }
+    };
+
+    // Declared after the executors: looking up metrics may initialize Metrics, whose exporter
+    // schedules itself here.
+    private static final LatencyHistogram CPU_QUEUE_WAIT = Metrics.histogram("link_executor_cpu_queue_wait");
+
+    private static final ExecutorService CPU = new DelegatingExecutor() {
+        @Override
+        public void execute(Runnable task) {
+            long queuedAt = System.nanoTime();
+            CPU_POOL.execute(() -> {
+                CPU_QUEUE_WAIT.recordSince(queuedAt);
+                task.run();
+            });
+        }
+    };
+
+    static {
+        CPU_POOL.allowCoreThreadTimeOut(true);
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+        Metrics.gauge("link_executor_io_in_flight", IO_IN_FLIGHT::get);
+        Metrics.gauge("link_executor_cpu_active", CPU_POOL::getActiveCount);
+        Metrics.gauge("link_executor_cpu_queue_depth", () -> CPU_POOL.getQueue().size());
+        Metrics.gauge("link_executor_scheduled_tasks", () -> SCHEDULER.getQueue().size());
+        Metrics.gauge("link_executor_open_scopes", OPEN_SCOPES::get);
+    }
+
+    private LinkExecutors() {
+    }
+
+    /**
+     * Returns the executor for blocking I/O. Every task gets its own virtual thread.
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * Returns the bounded executor for CPU-bound work.
+     */
+    public static ExecutorService cpu() {
+        return CPU;
+    }
+
+    /**
+     * Runs a task on {@link #io()} once the delay has passed.
+     *
+     * @return A future whose cancellation stops the task if it has not started yet.
+     */
+    public static CompletableFuture<Void> schedule(Runnable task, long delay, TimeUnit unit) {
+        CompletableFuture<Void> handle = new CompletableFuture<>();
+        ScheduledFuture<?> timer = SCHEDULER.schedule(() -> {
+            if (handle.isDone()) return;
+            IO.execute(() -> {
+                if (handle.isDone()) return;
+                try {
+                    task.run();
+                    handle.complete(null);
+                } catch (Throwable t) {
+                    handle.completeExceptionally(t);
+                }
+            });
+        }, delay, unit);
+        // Takes a cancelled task off the timer queue instead of leaving it to fire as a no-op
+        handle.whenComplete((ignored, error) -> timer.cancel(false));
+        return handle;
+    }
+
+    /**
+     * Runs a task on {@link #io()} repeatedly, waiting {@code delay} after each run completes.
+     * Runs never overlap. An exception is logged and does not stop the repetition.
+     *
+     * @return A future that never completes normally; cancel it to stop the repetition.
+     */
+    public static CompletableFuture<Void> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        CompletableFuture<Void> handle = new CompletableFuture<>();
+        AtomicReference<ScheduledFuture<?>> timer = new AtomicReference<>();
+        handle.whenComplete((ignored, error) -> {
+            ScheduledFuture<?> pending = timer.get();
+            if (pending != null) pending.cancel(false);
+        });
+        scheduleRepeat(task, handle, timer, initialDelay, delay, unit);
+        return handle;
+    }
+
+    private static void scheduleRepeat(Runnable task, CompletableFuture<Void> handle, AtomicReference<ScheduledFuture<?>> timer,
+                                       long wait, long delay, TimeUnit unit) {
+        if (handle.isDone()) return;
+        timer.set(SCHEDULER.schedule(() -> {
+            if (handle.isDone()) return;
+            IO.execute(() -> {
+                if (handle.isDone()) return;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    System.err.println("Scheduled task failed: " + t);
+                }
+                scheduleRepeat(task, handle, timer, delay, delay, unit);
+            });
+        }, wait, unit));
+        // Cancelled while the next run was being queued
+        if (handle.isDone()) timer.get().cancel(false);
+    }
+
+    /**
+     * Creates an executor that runs its tasks one at a time, in submission order, on
+     * {@link #io()} threads. Idle serial executors hold no thread.
+     *
+     * @param name Name used in error messages.
+     */
+    public static SerialExecutor serial(String name) {
+        return new SerialExecutor(name, IO);
+    }
+
+    /**
+     * Creates an executor that runs its tasks one at a time, in submission order, on a platform
+     * thread used by nothing else, so per-thread CPU time and allocation counters measure only
+     * its tasks. The thread exits after 30 seconds without work.
+     *
+     * @param name Thread name prefix, also used in error messages.
+     */
+    public static SerialExecutor dedicated(String name) {
+        ThreadPoolExecutor thread = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), platformThreads(name + "-"));
+        thread.allowCoreThreadTimeOut(true);
+        return new SerialExecutor(name, thread);
+    }
+
+    /**
+     * Opens a cancellation scope, typically one per tab.
+     *
+     * @param name Name used in error messages.
+     */
+    public static TaskScope newScope(String name) {
+        return new TaskScope(name);
+    }
+
+    private static ThreadFactory platformThreads(String prefix) {
+        return Thread.ofPlatform().name(prefix, 0).daemon(true).factory();
+    }
+
+    /**
+     * Executor view of a shared pool. The pool lives as long as the process, so the lifecycle
+     * methods are no-ops.
+     */
+    private abstract static class DelegatingExecutor extends AbstractExecutorService {
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
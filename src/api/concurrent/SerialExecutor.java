@@ -0,0 +1,65 @@
+package api.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time, in submission order, on a shared executor.
+ * <p>
+ * While tasks are queued a single drain loop runs them back to back; when the queue empties
+ * the loop ends and no thread is held. Exceptions are logged and do not stop later tasks.
+ */
+public final class SerialExecutor implements Executor {
+
+    private final String name;
+    private final Executor delegate;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    SerialExecutor(String name, Executor delegate) {
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queue.add(task);
+        if (draining.compareAndSet(false, true)) {
+            delegate.execute(this::drain);
+        }
+    }
+
+    /**
+     * Returns a future that completes once every task submitted before this call has run.
+     */
+    public CompletableFuture<Void> barrier() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        execute(() -> done.complete(null));
+        return done;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Task on " + name + " failed: " + e.getMessage());
+                }
+            }
+            draining.set(false);
+            // A task queued between the last poll and the flag reset would otherwise be stranded.
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
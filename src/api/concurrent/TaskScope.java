@@ -0,0 +1,111 @@
+package api.concurrent;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Groups background tasks that belong to one owner, usually a tab, so they can all be
+ * cancelled together.
+ * <p>
+ * Tasks submitted through a scope run on the shared {@link LinkExecutors}. Closing the scope
+ * cancels queued and scheduled tasks and interrupts running io/cpu tasks; submitting to a
+ * closed scope throws {@link RejectedExecutionException}. Finished tasks drop out of the scope
+ * on their own.
+ */
+public final class TaskScope implements AutoCloseable {
+
+    private final String name;
+    private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    TaskScope(String name) {
+        this.name = name;
+        LinkExecutors.OPEN_SCOPES.incrementAndGet();
+    }
+
+    /**
+     * Runs a blocking task on a virtual thread.
+     */
+    public Future<?> io(Runnable task) {
+        return submit(task, true);
+    }
+
+    /**
+     * Runs a CPU-bound task on the bounded pool.
+     */
+    public Future<?> cpu(Runnable task) {
+        return submit(task, false);
+    }
+
+    /**
+     * Runs a task on {@link LinkExecutors#io()} after a delay.
+     */
+    public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return track(LinkExecutors.schedule(task, delay, unit));
+    }
+
+    /**
+     * Runs a task repeatedly until the scope closes. See
+     * {@link LinkExecutors#scheduleWithFixedDelay}.
+     */
+    public Future<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        return track(LinkExecutors.scheduleWithFixedDelay(task, initialDelay, delay, unit));
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    public int getTaskCount() {
+        return tasks.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Cancels every task of this scope. Idempotent.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        LinkExecutors.OPEN_SCOPES.decrementAndGet();
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+        tasks.clear();
+    }
+
+    private Future<?> submit(Runnable task, boolean io) {
+        checkOpen();
+        FutureTask<Void> future = new FutureTask<>(task, null) {
+            @Override
+            protected void done() {
+                tasks.remove(this);
+            }
+        };
+        tasks.add(future);
+        (io ? LinkExecutors.io() : LinkExecutors.cpu()).execute(future);
+        if (closed.get()) future.cancel(true);
+        return future;
+    }
+
+    private Future<?> track(CompletableFuture<Void> future) {
+        checkOpen();
+        tasks.add(future);
+        future.whenComplete((result, error) -> tasks.remove(future));
+        if (closed.get()) future.cancel(true);
+        return future;
+    }
+
+    private void checkOpen() {
+        if (closed.get()) throw new RejectedExecutionException("Task scope " + name + " is closed");
+    }
+}
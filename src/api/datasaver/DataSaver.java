@@ -0,0 +1,120 @@
+package api.datasaver;
+
+import api.Managers.ConfigManager;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import api.site.SiteSettings;
+import api.site.SiteSettingsManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide data-saver policy.
+ * <p>
+ * The mode of a web page is resolved from, in order: the tab's own override, the JavaScript,
+ * image and Flash fields of the page's {@link SiteSettings}, and the global mode. Built-in pages
+ * and sites exempt from blocking always load in full. The global mode is
+ * {@link DataSaverMode#FULL} unless {@link ConfigManager#DATA_SAVER} is on, in which case the
+ * data_saver_* settings say what is still allowed.
+ * <p>
+ * Also keeps the running estimate of bytes saved, shown in every tab's status bar.
+ */
+public class DataSaver {
+
+    private static final Counter BYTES_SAVED = Metrics.counter("link_data_saver_bytes_saved");
+
+    private static volatile DataSaver instance;
+
+    private final ConfigManager configManager;
+    private final SiteSettingsManager siteSettings;
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public static DataSaver getInstance() {
+        if (instance == null) {
+            synchronized (DataSaver.class) {
+                if (instance == null) {
+                    instance = new DataSaver(ConfigManager.getInstance(), SiteSettingsManager.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public DataSaver(ConfigManager configManager, SiteSettingsManager siteSettings) {
+        this.configManager = configManager;
+        this.siteSettings = siteSettings;
+    }
+
+    /**
+     * Returns the mode used when neither the tab nor the site overrides it.
+     */
+    public DataSaverMode getGlobalMode() {
+        if (!configManager.get(ConfigManager.DATA_SAVER)) return DataSaverMode.FULL;
+        return new DataSaverMode(
+                configManager.get(ConfigManager.DATA_SAVER_JAVASCRIPT),
+                configManager.get(ConfigManager.DATA_SAVER_IMAGES),
+                configManager.get(ConfigManager.DATA_SAVER_FLASH));
+    }
+
+    /**
+     * Resolves the mode for a page.
+     *
+     * @param url         The page's URL.
+     * @param tabOverride The tab's own mode, or null to follow the site and global modes.
+     */
+    public DataSaverMode resolve(String url, DataSaverMode tabOverride) {
+        // Built-in pages ship with the browser and cost no bandwidth.
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) return DataSaverMode.FULL;
+        if (tabOverride != null) return tabOverride;
+        SiteSettings site = siteSettings.resolve(url);
+        if (Boolean.TRUE.equals(site.blockingExempt())) return DataSaverMode.FULL;
+        DataSaverMode global = getGlobalMode();
+        return new DataSaverMode(
+                site.javascript() != null ? site.javascript() : global.javascript(),
+                site.images() != null ? site.images() : global.images(),
+                site.flash() != null ? site.flash() : global.flash());
+    }
+
+    /**
+     * Returns the override saved for exactly a page's host, or null. Overrides inherited from
+     * parent domains or wildcards are not included.
+     */
+    public DataSaverMode getSiteOverride(String url) {
+        String pattern = SiteSettingsManager.patternFor(url);
+        if (pattern == null) return null;
+        SiteSettings site = siteSettings.get(pattern);
+        if (site.javascript() == null || site.images() == null || site.flash() == null) return null;
+        return new DataSaverMode(site.javascript(), site.images(), site.flash());
+    }
+
+    /**
+     * Saves or clears the override for a page's host, keeping its other site settings.
+     * Persisted asynchronously.
+     *
+     * @param url  Any URL of the site.
+     * @param mode The mode to remember, or null to follow the global mode again.
+     */
+    public void setSiteOverride(String url, DataSaverMode mode) {
+        String pattern = SiteSettingsManager.patternFor(url);
+        if (pattern == null) return;
+        siteSettings.update(pattern, site -> site
+                .withJavascript(mode == null ? null : mode.javascript())
+                .withImages(mode == null ? null : mode.images())
+                .withFlash(mode == null ? null : mode.flash()));
+    }
+
+    /**
+     * Adds to the running total of bytes not downloaded.
+     *
+     * @return The new total.
+     */
+    public long addBytesSaved(long bytes) {
+        if (bytes <= 0) return bytesSaved.get();
+        BYTES_SAVED.add(bytes);
+        return bytesSaved.addAndGet(bytes);
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+}
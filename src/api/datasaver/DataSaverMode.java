@@ -0,0 +1,51 @@
+package api.datasaver;
+
+/**
+ * Which kinds of content a page may load.
+ *
+ * @param javascript Whether page scripts run.
+ * @param images     Whether images load eagerly; when false they are deferred until scrolled
+ *                   into view.
+ * @param flash      Whether Flash content is replaced by Ruffle players.
+ */
+public record DataSaverMode(boolean javascript, boolean images, boolean flash) {
+
+    /** Everything allowed: data saver off. */
+    public static final DataSaverMode FULL = new DataSaverMode(true, true, true);
+
+    /**
+     * Returns true if anything is held back.
+     */
+    public boolean isSaving() {
+        return !(javascript && images && flash);
+    }
+
+    public DataSaverMode withJavascript(boolean javascript) {
+        return new DataSaverMode(javascript, images, flash);
+    }
+
+    public DataSaverMode withImages(boolean images) {
+        return new DataSaverMode(javascript, images, flash);
+    }
+
+    public DataSaverMode withFlash(boolean flash) {
+        return new DataSaverMode(javascript, images, flash);
+    }
+
+    /**
+     * Encodes this mode as three 0/1 flags, e.g. {@code "101"}.
+     */
+    public String encode() {
+        return (javascript ? "1" : "0") + (images ? "1" : "0") + (flash ? "1" : "0");
+    }
+
+    /**
+     * Parses the result of {@link #encode()}.
+     *
+     * @return The mode, or null if the value is malformed.
+     */
+    public static DataSaverMode decode(String value) {
+        if (value == null || value.length() != 3 || !value.matches("[01]{3}")) return null;
+        return new DataSaverMode(value.charAt(0) == '1', value.charAt(1) == '1', value.charAt(2) == '1');
+    }
+}
@@ -0,0 +1,269 @@
+package api.datasaver;
+
+import javafx.scene.web.WebEngine;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.util.Locale;
+
+/**
+ * Applies the data-saver mode to one tab's {@link WebEngine}.
+ * <p>
+ * JavaScript is switched through {@link WebEngine#setJavaScriptEnabled} when a navigation
+ * starts. Images are deferred by a shim that swaps each image's source for a placeholder as the
+ * parser inserts it and restores it once the image comes within 200 px of the viewport; WebView
+ * gives no hook to rewrite or downscale image requests, so deferring is the saving on offer.
+ * The shim needs scripts, so with JavaScript off images load normally. Flash is skipped by the
+ * caller checking {@link #getMode()} before injecting Ruffle.
+ * <p>
+ * Bytes saved are estimates: content that is never fetched has no size. Images with width and
+ * height attributes count half a byte per pixel, everything else an average size per item.
+ * WebKit's preload scanner can request an image before the shim sees it, so an image counts
+ * only if it is still held back when the page finishes and none of its sources appear in the
+ * page's resource timing entries.
+ * All methods must be called on the FX application thread.
+ */
+public class TabDataSaver {
+
+    static final long AVERAGE_IMAGE_BYTES = 40_000;
+    static final long AVERAGE_SCRIPT_BYTES = 25_000;
+    static final long AVERAGE_SWF_BYTES = 250_000;
+
+    private static final String LAZY_IMAGE_SCRIPT = """
+            (function() {
+                if (window.__linkDataSaver) return;
+                var PLACEHOLDER = 'data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7';
+                var S = window.__linkDataSaver = { deferred: 0, restored: 0 };
+                var timing = window.performance && performance.getEntriesByName ? performance : null;
+                // Entries dropped from a full buffer would make fetched images look never loaded
+                if (timing && timing.setResourceTimingBufferSize) timing.setResourceTimingBufferSize(100000);
+                var resolver = document.createElement('a');
+
+                function estimate(img) {
+                    var w = parseInt(img.getAttribute('width'), 10) || 0;
+                    var h = parseInt(img.getAttribute('height'), 10) || 0;
+                    return w > 0 && h > 0 ? Math.round(w * h / 2) : %d;
+                }
+
+                function absolute(url) {
+                    resolver.href = url;
+                    return resolver.href;
+                }
+
+                function sources(img) {
+                    var urls = [img.getAttribute('data-link-src')];
+                    var srcset = img.getAttribute('data-link-srcset');
+                    if (srcset) {
+                        srcset.split(',').forEach(function(candidate) {
+                            var url = candidate.trim().split(/\\s+/)[0];
+                            if (url) urls.push(url);
+                        });
+                    }
+                    return urls;
+                }
+
+                function fetched(url) {
+                    return url.indexOf('data:') === 0 || timing.getEntriesByName(absolute(url)).length > 0;
+                }
+
+                function restore(img) {
+                    if (!img.hasAttribute('data-link-src')) return;
+                    if (img.hasAttribute('data-link-srcset')) {
+                        img.setAttribute('srcset', img.getAttribute('data-link-srcset'));
+                        img.removeAttribute('data-link-srcset');
+                    }
+                    img.setAttribute('src', img.getAttribute('data-link-src'));
+                    img.removeAttribute('data-link-src');
+                    S.restored++;
+                }
+
+                var observer = window.IntersectionObserver ? new IntersectionObserver(function(entries) {
+                    entries.forEach(function(entry) {
+                        if (entry.isIntersecting) {
+                            observer.unobserve(entry.target);
+                            restore(entry.target);
+                        }
+                    });
+                }, { rootMargin: '200px' }) : null;
+                var waiting = [];
+
+                function checkWaiting() {
+                    var bottom = window.innerHeight + 200;
+                    waiting = waiting.filter(function(img) {
+                        var box = img.getBoundingClientRect();
+                        if (box.top < bottom && box.bottom > -200) {
+                            restore(img);
+                            return false;
+                        }
+                        return true;
+                    });
+                }
+
+                function defer(img) {
+                    var src = img.getAttribute('src');
+                    if (img.__linkDeferred || !src || src.indexOf('data:') === 0) return;
+                    img.__linkDeferred = true;
+                    img.setAttribute('data-link-src', src);
+                    if (img.hasAttribute('srcset')) {
+                        img.setAttribute('data-link-srcset', img.getAttribute('srcset'));
+                        img.removeAttribute('srcset');
+                    }
+                    img.setAttribute('src', PLACEHOLDER);
+                    S.deferred++;
+                    if (observer) observer.observe(img); else waiting.push(img);
+                }
+
+                function scan(node) {
+                    if (node.tagName === 'IMG') defer(node);
+                    else if (node.querySelectorAll) Array.prototype.forEach.call(node.querySelectorAll('img'), defer);
+                }
+
+                new MutationObserver(function(records) {
+                    records.forEach(function(record) {
+                        Array.prototype.forEach.call(record.addedNodes, scan);
+                    });
+                }).observe(document, { childList: true, subtree: true });
+                scan(document);
+
+                if (!observer) {
+                    window.addEventListener('scroll', checkWaiting, { passive: true });
+                    window.addEventListener('resize', checkWaiting);
+                    document.addEventListener('DOMContentLoaded', checkWaiting);
+                }
+                // The preload scanner may request an image before its source is swapped, so only
+                // images still held back whose sources were never fetched count, each URL once.
+                // Without resource timing nothing can be shown to be unloaded.
+                S.neverLoadedBytes = function() {
+                    if (!observer) checkWaiting();
+                    if (!timing) return 0;
+                    var counted = {};
+                    var bytes = 0;
+                    Array.prototype.forEach.call(document.querySelectorAll('img[data-link-src]'), function(img) {
+                        var urls = sources(img);
+                        var key = absolute(urls[0]);
+                        if (counted[key] || urls.some(fetched)) return;
+                        counted[key] = true;
+                        bytes += estimate(img);
+                    });
+                    return bytes;
+                };
+                S.restoreAll = function() {
+                    Array.prototype.forEach.call(document.querySelectorAll('img[data-link-src]'), restore);
+                };
+            })();
+            """.formatted(AVERAGE_IMAGE_BYTES);
+
+    private final WebEngine webEngine;
+    private final DataSaver dataSaver;
+    private DataSaverMode tabOverride;
+    private DataSaverMode mode = DataSaverMode.FULL;
+
+    public TabDataSaver(WebEngine webEngine, DataSaver dataSaver) {
+        this.webEngine = webEngine;
+        this.dataSaver = dataSaver;
+    }
+
+    /**
+     * Resolves the mode for a page about to load and applies the JavaScript switch.
+     *
+     * @param url The URL being navigated to.
+     * @return The mode in effect for the page.
+     */
+    public DataSaverMode apply(String url) {
+        mode = dataSaver.resolve(url, tabOverride);
+        if (webEngine.isJavaScriptEnabled() != mode.javascript()) {
+            webEngine.setJavaScriptEnabled(mode.javascript());
+        }
+        return mode;
+    }
+
+    /**
+     * Installs the lazy image shim if images are deferred. Call as soon as a new document
+     * exists, so images are caught while the parser inserts them.
+     */
+    public void install() {
+        if (mode.images() || !mode.javascript() || webEngine.getDocument() == null) return;
+        try {
+            webEngine.executeScript(LAZY_IMAGE_SCRIPT);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to install lazy image loading: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Estimates what the loaded page did not download and adds it to the running total.
+     * Call once per page, when it has finished loading.
+     *
+     * @return The running total across all tabs, in bytes.
+     */
+    public long collectSavings() {
+        Document document = webEngine.getDocument();
+        if (document == null || !mode.isSaving()) return dataSaver.getBytesSaved();
+        long saved = 0;
+        if (!mode.javascript()) {
+            saved += countWithAttribute(document, "script", "src", null) * AVERAGE_SCRIPT_BYTES;
+        }
+        if (!mode.flash()) {
+            long swfs = countWithAttribute(document, "object", "data", ".swf")
+                    + countWithAttribute(document, "embed", "src", ".swf");
+            saved += swfs * AVERAGE_SWF_BYTES;
+        }
+        if (!mode.images() && mode.javascript()) {
+            Object neverLoaded = execute("window.__linkDataSaver ? window.__linkDataSaver.neverLoadedBytes() : 0");
+            if (neverLoaded instanceof Number number) {
+                saved += number.longValue();
+            }
+        }
+        return dataSaver.addBytesSaved(saved);
+    }
+
+    /**
+     * Loads every image the shim is still holding back on the current page.
+     */
+    public void loadDeferredImages() {
+        execute("window.__linkDataSaver && window.__linkDataSaver.restoreAll()");
+    }
+
+    /**
+     * Sets the tab's own mode. Takes effect on the next navigation.
+     *
+     * @param tabOverride The mode, or null to follow the site and global modes.
+     */
+    public void setTabOverride(DataSaverMode tabOverride) {
+        this.tabOverride = tabOverride;
+    }
+
+    public DataSaverMode getTabOverride() {
+        return tabOverride;
+    }
+
+    /**
+     * Returns the mode of the current page.
+     */
+    public DataSaverMode getMode() {
+        return mode;
+    }
+
+    private static long countWithAttribute(Document document, String tag, String attribute, String suffix) {
+        NodeList elements = document.getElementsByTagName(tag);
+        long count = 0;
+        for (int i = 0; i < elements.getLength(); i++) {
+            String value = ((Element) elements.item(i)).getAttribute(attribute);
+            if (value == null || value.isEmpty()) continue;
+            String path = value.split("[?#]", 2)[0].toLowerCase(Locale.ROOT);
+            if (suffix == null || path.endsWith(suffix)) count++;
+        }
+        return count;
+    }
+
+    private Object execute(String script) {
+        if (webEngine.getDocument() == null) return null;
+        try {
+            return webEngine.executeScript(script);
+        } catch (RuntimeException e) {
+            System.err.println("Data saver script failed: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package api.download;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket shared by all download connections.
+ * <p>
+ * Connections call {@link #acquire(int)} before writing each chunk. With no limit set this is
+ * a single volatile read. Callers block by parking, which is cheap on the virtual threads the
+ * downloads run on. The bucket holds at most one second of tokens, so an idle period never
+ * turns into a burst above the configured rate.
+ */
+public class BandwidthThrottle {
+
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond Limit in bytes per second; 0 or less disables throttling.
+     */
+    public BandwidthThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Changes the limit. Takes effect for the next chunk of every connection.
+     *
+     * @param bytesPerSecond Limit in bytes per second; 0 or less disables throttling.
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = Math.min(tokens, Math.max(bytesPerSecond, 0));
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Blocks until {@code bytes} may be transferred.
+     *
+     * @throws InterruptedException If the calling download is cancelled while waiting.
+     */
+    public void acquire(int bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) return;
+        long waitNanos;
+        synchronized (this) {
+            long limit = bytesPerSecond;
+            if (limit <= 0) return;
+            long now = System.nanoTime();
+            tokens = Math.min(limit, tokens + (now - lastRefill) * limit / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / limit);
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        long remaining = waitNanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) throw new InterruptedException();
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package api.download;
+
+import api.profile.RecordCodec;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One file being downloaded, split into byte ranges that are fetched in parallel.
+ * <p>
+ * The state is written to the profile as the download progresses. Each part's {@code done}
+ * count is only advanced after its bytes are written, so a resumed download may fetch a few
+ * bytes twice but never skips any.
+ */
+public class Download {
+
+    public enum State {QUEUED, RUNNING, PAUSED, COMPLETED, FAILED, CANCELLED}
+
+    private final String id;
+    private final URI uri;
+    private volatile Path target;
+    private volatile long totalBytes;
+    private volatile String validator;
+    private volatile List<Part> parts = List.of();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private volatile State state = State.QUEUED;
+    private volatile String error;
+    private volatile long startedNanos;
+    private volatile long startedAtBytes;
+    volatile long lastNotifiedNanos;
+
+    Download(String id, URI uri, Path target) {
+        this.id = id;
+        this.uri = uri;
+        this.target = target;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Returns where the file is saved once complete.
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    public String getFileName() {
+        return target.getFileName().toString();
+    }
+
+    /**
+     * Returns the file size, or -1 if the server did not announce one.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * Returns the completed fraction, or -1 when the size is unknown.
+     */
+    public double getProgress() {
+        long total = totalBytes;
+        return total <= 0 ? -1 : Math.min(1.0, (double) receivedBytes.get() / total);
+    }
+
+    /**
+     * Returns the average transfer rate of the current run in bytes per second.
+     */
+    public long getBytesPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        if (startedNanos == 0 || elapsed <= 0) return 0;
+        return (long) ((receivedBytes.get() - startedAtBytes) * 1e9 / elapsed);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the reason of the last failure, or null.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    public boolean isFinished() {
+        State current = state;
+        return current == State.COMPLETED || current == State.FAILED || current == State.CANCELLED;
+    }
+
+    void setTarget(Path target) {
+        this.target = target;
+    }
+
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    String getValidator() {
+        return validator;
+    }
+
+    void setValidator(String validator) {
+        this.validator = validator;
+    }
+
+    List<Part> getParts() {
+        return parts;
+    }
+
+    /**
+     * Splits {@code [0, totalBytes)} into up to {@code count} ranges and resets all progress.
+     */
+    void planParts(int count) {
+        List<Part> planned = new ArrayList<>();
+        if (totalBytes <= 0) {
+            planned.add(new Part(0, -1));
+        } else {
+            int partCount = (int) Math.max(1, Math.min(count, totalBytes / DownloadManager.MIN_PART_BYTES));
+            long size = totalBytes / partCount;
+            for (int i = 0; i < partCount; i++) {
+                long start = i * size;
+                long end = i == partCount - 1 ? totalBytes - 1 : start + size - 1;
+                planned.add(new Part(start, end));
+            }
+        }
+        parts = List.copyOf(planned);
+        receivedBytes.set(0);
+    }
+
+    void addReceived(long bytes) {
+        receivedBytes.addAndGet(bytes);
+    }
+
+    void setState(State state) {
+        this.state = state;
+        if (state == State.RUNNING) {
+            startedNanos = System.nanoTime();
+            startedAtBytes = receivedBytes.get();
+        }
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Encodes the resume information: URL, target, size, validator and each part's progress.
+     */
+    byte[] encode() {
+        List<String> fields = new ArrayList<>();
+        fields.add(uri.toString());
+        fields.add(target.toString());
+        fields.add(Long.toString(totalBytes));
+        fields.add(validator == null ? "" : validator);
+        for (Part part : parts) {
+            fields.add(part.start + ":" + part.end + ":" + part.done.get());
+        }
+        return RecordCodec.encode(fields);
+    }
+
+    static Download decode(String id, byte[] record) {
+        List<String> fields = RecordCodec.decode(record);
+        Download download = new Download(id, URI.create(fields.get(0)), Path.of(fields.get(1)));
+        download.totalBytes = Long.parseLong(fields.get(2));
+        download.validator = fields.get(3).isEmpty() ? null : fields.get(3);
+        List<Part> decoded = new ArrayList<>();
+        long received = 0;
+        for (int i = 4; i < fields.size(); i++) {
+            String[] range = fields.get(i).split(":");
+            Part part = new Part(Long.parseLong(range[0]), Long.parseLong(range[1]));
+            part.done.set(Long.parseLong(range[2]));
+            received += part.done.get();
+            decoded.add(part);
+        }
+        download.parts = List.copyOf(decoded);
+        download.receivedBytes.set(received);
+        download.state = State.PAUSED;
+        return download;
+    }
+
+    /**
+     * A byte range {@code [start, end]} of the file; {@code end} is -1 for a single stream of
+     * unknown length.
+     */
+    static final class Part {
+        final long start;
+        final long end;
+        final AtomicLong done = new AtomicLong();
+
+        Part(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isComplete() {
+            return end >= 0 && start + done.get() > end;
+        }
+    }
+}
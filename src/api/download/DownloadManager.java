@@ -0,0 +1,672 @@
+package api.download;
+
+import api.Managers.ConfigManager;
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import api.metrics.Span;
+import api.profile.ProfileStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fetches files the WebView cannot render.
+ * <p>
+ * A download starts with a HEAD probe for the size, range support and a validator (strong ETag
+ * or Last-Modified). Large files on range-capable servers are split into parts that are fetched
+ * in parallel, one virtual thread per part, each writing its bytes straight to its offset of a
+ * shared {@code .linkpart} file with positioned {@link FileChannel} writes. Progress is stored
+ * in the {@link ProfileStore} about once a second, right after the part file is forced, so
+ * downloads resume after a restart. If-Range makes the server send the whole file again if it
+ * changed in the meantime. All connections share one {@link BandwidthThrottle}.
+ * <p>
+ * Listeners receive a {@link Download} on state changes and at most every
+ * {@value #NOTIFY_INTERVAL_MS} ms while it runs, on a download thread.
+ */
+public class DownloadManager {
+
+    static final long MIN_PART_BYTES = 1024 * 1024;
+
+    public static final String PART_SUFFIX = ".linkpart";
+    private static final String PROFILE_PREFIX = "downloads/";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PART_RETRIES = 3;
+    private static final long PERSIST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long NOTIFY_INTERVAL_MS = 250;
+
+    private static final Counter DOWNLOADS_STARTED = Metrics.counter("link_downloads_started");
+    private static final Counter DOWNLOADS_COMPLETED = Metrics.counter("link_downloads_completed");
+    private static final Counter DOWNLOADS_FAILED = Metrics.counter("link_downloads_failed");
+    private static final Counter DOWNLOAD_BYTES = Metrics.counter("link_download_bytes");
+
+    private static volatile DownloadManager instance;
+
+    private final Path downloadDirectory;
+    private final ProfileStore profileStore;
+    private final BandwidthThrottle throttle;
+    private final ExecutorService executor = LinkExecutors.io();
+    private final HttpClient client;
+    private final Map<String, Download> downloads = new ConcurrentHashMap<>();
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+    private final List<Consumer<Download>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private volatile int connections;
+
+    /**
+     * Returns the manager saving to ~/Downloads, configured from and kept in sync with settings.
+     */
+    public static DownloadManager getInstance() {
+        DownloadManager result = instance;
+        if (result == null) {
+            synchronized (DownloadManager.class) {
+                result = instance;
+                if (result == null) {
+                    ConfigManager config = ConfigManager.getInstance();
+                    result = new DownloadManager(Paths.get(System.getProperty("user.home"), "Downloads"),
+                            ProfileStore.getInstance(),
+                            config.get(ConfigManager.DOWNLOAD_BANDWIDTH_LIMIT),
+                            config.get(ConfigManager.DOWNLOAD_CONNECTIONS));
+                    DownloadManager created = result;
+                    config.addListener(ConfigManager.DOWNLOAD_BANDWIDTH_LIMIT, created.throttle::setBytesPerSecond);
+                    config.addListener(ConfigManager.DOWNLOAD_CONNECTIONS, created::setConnections);
+                    ProfileStore.getInstance().addCloseHook(created::pauseAll);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param downloadDirectory Where finished files are saved.
+     * @param profileStore      Store for resume information.
+     * @param bytesPerSecond    Shared bandwidth limit; 0 for unlimited.
+     * @param connections       Maximum parallel connections per download.
+     */
+    public DownloadManager(Path downloadDirectory, ProfileStore profileStore, long bytesPerSecond, int connections) {
+        this.downloadDirectory = downloadDirectory;
+        this.profileStore = profileStore;
+        this.throttle = new BandwidthThrottle(bytesPerSecond);
+        this.connections = Math.max(1, connections);
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(15))
+                .build();
+    }
+
+    public void addListener(Consumer<Download> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Download> listener) {
+        listeners.remove(listener);
+    }
+
+    public BandwidthThrottle getThrottle() {
+        return throttle;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    /**
+     * Returns all downloads known in this session, including resumed ones.
+     */
+    public List<Download> getDownloads() {
+        return new ArrayList<>(downloads.values());
+    }
+
+    /**
+     * Probes a URL on a virtual thread and tells whether it should be downloaded rather than
+     * shown: true for attachments and for content types the WebView cannot render.
+     */
+    public CompletableFuture<Boolean> isDownloadable(String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Probe probe = probe(URI.create(url));
+                return probe.ok && !isRenderable(probe.contentType, probe.disposition);
+            } catch (Exception e) {
+                return false;
+            }
+        }, executor);
+    }
+
+    /**
+     * Starts downloading a URL. If the same URL is already downloading, that download is
+     * returned instead of starting another.
+     */
+    public Download start(String url) {
+        URI uri = URI.create(url);
+        Download download;
+        // Held across the check and the put, so two callers cannot both start the same URL
+        synchronized (downloads) {
+            for (Download existing : downloads.values()) {
+                if (existing.getUri().equals(uri) && !existing.isFinished() && existing.getState() != Download.State.PAUSED) {
+                    return existing;
+                }
+            }
+            String id = Long.toString(System.currentTimeMillis(), 36) + "-" + idSequence.incrementAndGet();
+            download = new Download(id, uri, downloadDirectory.resolve(fileNameFromUri(uri)));
+            downloads.put(id, download);
+        }
+        DOWNLOADS_STARTED.increment();
+        launch(download, true);
+        return download;
+    }
+
+    /**
+     * Resumes every download that was still unfinished when the browser last closed.
+     */
+    public void resumePending() {
+        for (Map.Entry<String, byte[]> entry : profileStore.scan(PROFILE_PREFIX).entrySet()) {
+            String id = entry.getKey().substring(PROFILE_PREFIX.length());
+            if (downloads.containsKey(id)) continue;
+            try {
+                Download download = Download.decode(id, entry.getValue());
+                downloads.put(id, download);
+                launch(download, !Files.exists(partFile(download)));
+            } catch (RuntimeException e) {
+                System.err.println("Dropping unreadable download record " + id + ": " + e.getMessage());
+                profileStore.delete(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Resumes a paused or failed download from where it stopped.
+     */
+    public void resume(Download download) {
+        Download.State state = download.getState();
+        if (state == Download.State.PAUSED || state == Download.State.FAILED) {
+            launch(download, download.getParts().isEmpty());
+        }
+    }
+
+    /**
+     * Stops a download and keeps its progress for a later {@link #resume(Download)}.
+     */
+    public void pause(Download download) {
+        stop(download, Download.State.PAUSED);
+    }
+
+    /**
+     * Stops a download and deletes its partial file.
+     */
+    public void cancel(Download download) {
+        if (!stop(download, Download.State.CANCELLED)) {
+            discard(download);
+            download.setState(Download.State.CANCELLED);
+            notifyListeners(download, true);
+        }
+    }
+
+    /**
+     * Pauses all running downloads and waits briefly for their progress to be stored.
+     * Registered as a profile close hook.
+     */
+    public void pauseAll() {
+        for (Running run : running.values()) {
+            stop(run.download, Download.State.PAUSED);
+        }
+        for (Running run : running.values()) {
+            try {
+                run.finished.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean stop(Download download, Download.State state) {
+        Running run = running.get(download.getId());
+        if (run == null) return false;
+        run.stopState = state;
+        for (InputStream stream : run.openStreams) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // unblocks the reader; nothing else to do
+            }
+        }
+        for (Future<?> future : run.parts) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    private void launch(Download download, boolean fresh) {
+        Running run = new Running(download);
+        if (running.putIfAbsent(download.getId(), run) != null) return;
+        executor.execute(() -> {
+            try {
+                runDownload(run, fresh);
+            } finally {
+                running.remove(download.getId());
+                run.finished.countDown();
+            }
+        });
+    }
+
+    private void runDownload(Running run, boolean fresh) {
+        Download download = run.download;
+        try (Span downloadSpan = Metrics.span("link_download")) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    if (fresh) prepare(download);
+                    download.setState(Download.State.RUNNING);
+                    notifyListeners(download, true);
+                    fetchAllParts(run);
+                    break;
+                } catch (RangeNotHonoredException e) {
+                    if (attempt > 0) throw new IOException("Server keeps ignoring range requests");
+                    System.out.println("Download " + download.getFileName() + " changed on the server; restarting.");
+                    Files.deleteIfExists(partFile(download));
+                    fresh = true;
+                }
+            }
+
+            if (run.stopState != null) {
+                finishStopped(run);
+                downloadSpan.end(run.stopState.name().toLowerCase(Locale.ROOT));
+                return;
+            }
+            complete(download);
+            DOWNLOADS_COMPLETED.increment();
+            downloadSpan.end("ok");
+        } catch (Exception e) {
+            if (run.stopState != null) {
+                finishStopped(run);
+                return;
+            }
+            DOWNLOADS_FAILED.increment();
+            download.setError(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            download.setState(Download.State.FAILED);
+            persist(download);
+            System.err.println("Download of " + download.getUri() + " failed: " + download.getError());
+            notifyListeners(download, true);
+        }
+    }
+
+    /**
+     * Probes the URL, picks the file name and splits the file into parts.
+     */
+    private void prepare(Download download) throws IOException, InterruptedException {
+        Probe probe = probe(download.getUri());
+        if (!probe.ok) throw new IOException("HTTP " + probe.status);
+        String name = fileNameFromDisposition(probe.disposition);
+        if (name == null) name = download.getFileName();
+        download.setTarget(uniqueTarget(name, download));
+        // Any part file at the chosen name is a leftover of this download's own earlier attempt
+        Files.deleteIfExists(partFile(download));
+        download.setTotalBytes(probe.length);
+        download.setValidator(probe.acceptsRanges ? probe.validator : null);
+        download.planParts(probe.acceptsRanges && probe.length > 0 ? connections : 1);
+        Files.createDirectories(downloadDirectory);
+        persist(download);
+    }
+
+    private void fetchAllParts(Running run) throws Exception {
+        Download download = run.download;
+        try (FileChannel channel = FileChannel.open(partFile(download),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            run.channel = channel;
+            run.parts.clear();
+            for (Download.Part part : download.getParts()) {
+                if (!part.isComplete()) {
+                    run.parts.add(executor.submit(() -> {
+                        fetchPartWithRetries(run, part);
+                        return null;
+                    }));
+                }
+            }
+            Exception failure = null;
+            for (Future<?> future : run.parts) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null && e.getCause() instanceof Exception cause) failure = cause;
+                    stopSiblings(run);
+                } catch (CancellationException e) {
+                    // stopped by pause or cancel
+                }
+            }
+            if (failure != null && run.stopState == null) throw failure;
+            channel.force(false);
+        }
+    }
+
+    private void stopSiblings(Running run) {
+        for (Future<?> future : run.parts) {
+            future.cancel(true);
+        }
+    }
+
+    private void fetchPartWithRetries(Running run, Download.Part part) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                fetchPart(run, part);
+                return;
+            } catch (RangeNotHonoredException | InterruptedException e) {
+                throw e;
+            } catch (IOException e) {
+                if (run.stopState != null) return;
+                if (attempt >= MAX_PART_RETRIES || part.end < 0) throw e;
+                Thread.sleep(500L << attempt);
+            }
+        }
+    }
+
+    private void fetchPart(Running run, Download.Part part) throws IOException, InterruptedException {
+        Download download = run.download;
+        boolean ranged = part.end >= 0;
+        if (!ranged && part.done.get() > 0) {
+            // A stream of unknown length cannot be resumed; start it over.
+            download.addReceived(-part.done.getAndSet(0));
+        }
+        long from = part.start + part.done.get();
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(download.getUri()).GET();
+        if (ranged) {
+            request.header("Range", "bytes=" + from + "-" + part.end);
+            if (download.getValidator() != null) request.header("If-Range", download.getValidator());
+        }
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+        if (ranged && status == 200 && !(from == 0 && download.getParts().size() == 1)) {
+            response.body().close();
+            throw new RangeNotHonoredException();
+        }
+        if (status != 200 && status != 206) {
+            response.body().close();
+            throw new IOException("HTTP " + status);
+        }
+
+        long remaining = ranged ? part.end - from + 1 : Long.MAX_VALUE;
+        long position = from;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = response.body();
+        run.openStreams.add(in);
+        try (in) {
+            while (remaining > 0 && run.stopState == null) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) break;
+                throttle.acquire(read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    position += run.channel.write(chunk, position);
+                }
+                part.done.addAndGet(read);
+                download.addReceived(read);
+                DOWNLOAD_BYTES.add(read);
+                remaining -= read;
+                checkpoint(run);
+                notifyListeners(download, false);
+            }
+        } catch (IOException e) {
+            if (run.stopState != null) return;
+            throw e;
+        } finally {
+            run.openStreams.remove(in);
+        }
+        if (ranged && remaining > 0 && run.stopState == null) {
+            throw new IOException("Connection closed " + remaining + " bytes early");
+        }
+    }
+
+    /**
+     * Stores progress at most once per interval. The progress is read before the part file is
+     * forced, so the stored record never claims bytes that are not yet on disk.
+     */
+    private void checkpoint(Running run) throws IOException {
+        long now = System.nanoTime();
+        if (now - run.lastPersistNanos < PERSIST_INTERVAL_NANOS) return;
+        synchronized (run) {
+            if (now - run.lastPersistNanos < PERSIST_INTERVAL_NANOS) return;
+            run.lastPersistNanos = now;
+            byte[] record = run.download.encode();
+            run.channel.force(false);
+            persist(run.download.getId(), record);
+        }
+    }
+
+    private void complete(Download download) throws IOException {
+        if (download.getTotalBytes() <= 0) {
+            download.setTotalBytes(download.getReceivedBytes());
+        }
+        Path target = download.getTarget();
+        if (Files.exists(target)) {
+            target = uniqueTarget(target.getFileName().toString(), download);
+            download.setTarget(target);
+        }
+        Files.move(partFile(download), target, StandardCopyOption.ATOMIC_MOVE);
+        profileStore.delete(PROFILE_PREFIX + download.getId());
+        download.setState(Download.State.COMPLETED);
+        notifyListeners(download, true);
+    }
+
+    private void finishStopped(Running run) {
+        Download download = run.download;
+        if (run.stopState == Download.State.CANCELLED) {
+            discard(download);
+        } else {
+            persist(download);
+        }
+        download.setState(run.stopState);
+        notifyListeners(download, true);
+    }
+
+    private void discard(Download download) {
+        try {
+            Files.deleteIfExists(partFile(download));
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + partFile(download) + ": " + e.getMessage());
+        }
+        profileStore.delete(PROFILE_PREFIX + download.getId());
+    }
+
+    private void persist(Download download) {
+        persist(download.getId(), download.encode());
+    }
+
+    private void persist(String id, byte[] record) {
+        try {
+            profileStore.put(PROFILE_PREFIX + id, record);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to store download progress: " + e.getMessage());
+        }
+    }
+
+    private void notifyListeners(Download download, boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - download.lastNotifiedNanos < TimeUnit.MILLISECONDS.toNanos(NOTIFY_INTERVAL_MS)) return;
+        download.lastNotifiedNanos = now;
+        for (Consumer<Download> listener : listeners) {
+            try {
+                listener.accept(download);
+            } catch (RuntimeException e) {
+                System.err.println("Download listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Probe probe(URI uri) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(
+                HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 405 || response.statusCode() == 501) {
+            // No HEAD support: ask for the first byte instead and read the size from Content-Range.
+            response = client.send(HttpRequest.newBuilder(uri).header("Range", "bytes=0-0").GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+        Probe probe = new Probe();
+        probe.status = response.statusCode();
+        probe.ok = probe.status == 200 || probe.status == 206;
+        probe.contentType = response.headers().firstValue("Content-Type").orElse("");
+        probe.disposition = response.headers().firstValue("Content-Disposition").orElse("");
+        probe.acceptsRanges = probe.status == 206
+                || "bytes".equalsIgnoreCase(response.headers().firstValue("Accept-Ranges").orElse(""));
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        if (probe.status == 206 && contentRange.contains("/") && !contentRange.endsWith("/*")) {
+            probe.length = Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+        } else {
+            probe.length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        }
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        probe.validator = etag != null && !etag.startsWith("W/")
+                ? etag
+                : response.headers().firstValue("Last-Modified").orElse(null);
+        return probe;
+    }
+
+    /**
+     * Tells whether the WebView can show a response itself.
+     */
+    static boolean isRenderable(String contentType, String disposition) {
+        if (disposition != null && disposition.toLowerCase(Locale.ROOT).startsWith("attachment")) return false;
+        if (contentType == null || contentType.isEmpty()) return true;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) type = type.substring(0, parameters).trim();
+        return type.startsWith("text/")
+                || type.startsWith("image/")
+                || type.equals("application/xhtml+xml")
+                || type.equals("application/xml")
+                || type.equals("application/json")
+                || type.equals("application/javascript");
+    }
+
+    private Path partFile(Download download) {
+        return download.getTarget().resolveSibling(download.getFileName() + PART_SUFFIX);
+    }
+
+    /**
+     * Returns a free path for the name in the download directory, adding " (n)" before the
+     * extension when the name is taken on disk or by another unfinished download.
+     *
+     * @param owner The download asking; its own target and part file do not count as taken.
+     */
+    private Path uniqueTarget(String name, Download owner) {
+        Path candidate = downloadDirectory.resolve(name);
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; Files.exists(candidate) || hasForeignPartFile(candidate, owner)
+                || isClaimed(candidate, owner); i++) {
+            candidate = downloadDirectory.resolve(base + " (" + i + ")" + extension);
+        }
+        return candidate;
+    }
+
+    private boolean hasForeignPartFile(Path candidate, Download owner) {
+        return !candidate.equals(owner.getTarget())
+                && Files.exists(candidate.resolveSibling(candidate.getFileName() + PART_SUFFIX));
+    }
+
+    private boolean isClaimed(Path candidate, Download owner) {
+        for (Download download : downloads.values()) {
+            if (download != owner && !download.isFinished() && download.getTarget().equals(candidate)) return true;
+        }
+        return false;
+    }
+
+    private static String fileNameFromUri(URI uri) {
+        String path = uri.getPath();
+        String name = path == null ? "" : path.substring(path.lastIndexOf('/') + 1);
+        return sanitize(URLDecoder.decode(name, StandardCharsets.UTF_8));
+    }
+
+    static String fileNameFromDisposition(String disposition) {
+        if (disposition == null) return null;
+        for (String parameter : disposition.split(";")) {
+            String trimmed = parameter.trim();
+            String lower = trimmed.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("filename*=")) {
+                String value = trimmed.substring("filename*=".length());
+                int quote = value.indexOf("''");
+                if (quote >= 0) value = value.substring(quote + 2);
+                return sanitize(URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        for (String parameter : disposition.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("filename=")) {
+                return sanitize(trimmed.substring("filename=".length()).replace("\"", ""));
+            }
+        }
+        return null;
+    }
+
+    private static String sanitize(String name) {
+        String cleaned = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        while (cleaned.startsWith(".")) cleaned = cleaned.substring(1);
+        return cleaned.isEmpty() ? "download" : cleaned;
+    }
+
+    private static final class Probe {
+        private int status;
+        private boolean ok;
+        private String contentType;
+        private String disposition;
+        private boolean acceptsRanges;
+        private long length;
+        private String validator;
+    }
+
+    /** Bookkeeping for one download while its threads are alive. */
+    private static final class Running {
+        private final Download download;
+        private final List<Future<?>> parts = new CopyOnWriteArrayList<>();
+        private final Set<InputStream> openStreams = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Download.State stopState;
+        private volatile FileChannel channel;
+        private long lastPersistNanos = System.nanoTime();
+
+        private Running(Download download) {
+            this.download = download;
+        }
+    }
+
+    /** The server answered a range request with the full body, so the file changed. */
+    private static final class RangeNotHonoredException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private RangeNotHonoredException() {
+            super("Server ignored the range request");
+        }
+    }
+}
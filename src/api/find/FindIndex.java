@@ -0,0 +1,210 @@
+package api.find;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Text of one page, kept in document order as the segments reported by the find shim.
+ * <p>
+ * Each segment is one DOM text node, identified by the id the shim gave it. Segments of the
+ * same block element are joined directly, so "foo <b>bar</b>" is found as "foo bar", and a line
+ * break separates blocks. The joined text is rebuilt lazily, once per batch of changes rather
+ * than once per search, so typing only costs a scan. Not thread safe: confine to one thread.
+ */
+final class FindIndex {
+
+    /** Stop counting and storing matches past this many. */
+    static final int MAX_MATCHES = 100_000;
+
+    private final List<Segment> order = new ArrayList<>();
+    private final Map<Integer, Segment> byId = new HashMap<>();
+    private String text = "";
+    private Segment[] flat = new Segment[0];
+    private int[] starts = new int[0];
+    private boolean stale;
+
+    /**
+     * Applies records from the shim's read() or changes(). Each record is
+     * {@code <op><id>,<after>,<block>,<length>:<text>}, where op is 'i' (insert after the
+     * segment {@code after}; 0 for first, -1 for last), 'u' (new text) or 'r' (removed).
+     */
+    void apply(String records) {
+        int position = 0;
+        boolean removed = false;
+        while (position < records.length()) {
+            char op = records.charAt(position);
+            int idEnd = records.indexOf(',', position);
+            int afterEnd = records.indexOf(',', idEnd + 1);
+            int blockEnd = records.indexOf(',', afterEnd + 1);
+            int lengthEnd = records.indexOf(':', blockEnd + 1);
+            int id = Integer.parseInt(records, position + 1, idEnd, 10);
+            int after = Integer.parseInt(records, idEnd + 1, afterEnd, 10);
+            int block = Integer.parseInt(records, afterEnd + 1, blockEnd, 10);
+            int length = Integer.parseInt(records, blockEnd + 1, lengthEnd, 10);
+            String value = records.substring(lengthEnd + 1, lengthEnd + 1 + length);
+            position = lengthEnd + 1 + length;
+            switch (op) {
+                case 'i' -> insert(new Segment(id, block, value), after);
+                case 'u' -> {
+                    Segment segment = byId.get(id);
+                    if (segment != null) segment.text = value;
+                }
+                case 'r' -> {
+                    Segment segment = byId.remove(id);
+                    if (segment != null) {
+                        segment.removed = true;
+                        removed = true;
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown find record: " + op);
+            }
+            stale = true;
+        }
+        if (removed) {
+            // One pass for the whole batch; pages trimming old lines remove many at once
+            order.removeIf(segment -> segment.removed);
+        }
+    }
+
+    /**
+     * Returns the number of characters indexed.
+     */
+    int length() {
+        rebuild();
+        return text.length();
+    }
+
+    /**
+     * Finds every match of a pattern, in document order.
+     *
+     * @param pattern   The pattern; empty matches are skipped.
+     * @param cancelled Polled while scanning; once it returns true the search is abandoned.
+     * @throws CancellationException If the search was abandoned.
+     */
+    FindMatches search(Pattern pattern, BooleanSupplier cancelled) {
+        rebuild();
+        Matcher matcher = pattern.matcher(new CancellableText(text, cancelled));
+        int[] ranges = new int[64];
+        int count = 0;
+        while (count < MAX_MATCHES && matcher.find()) {
+            int start = matcher.start();
+            int end = matcher.end();
+            if (start == end) continue;
+            int first = segmentAt(start);
+            if (start >= starts[first] + flat[first].text.length()) {
+                // Starts on a block separator
+                first++;
+                start = starts[first];
+            }
+            int last = segmentAt(end - 1);
+            if (first > last) continue;
+            if (ranges.length < (count + 1) * 4) ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            ranges[count * 4] = flat[first].id;
+            ranges[count * 4 + 1] = start - starts[first];
+            ranges[count * 4 + 2] = flat[last].id;
+            ranges[count * 4 + 3] = Math.min(end - starts[last], flat[last].text.length());
+            count++;
+        }
+        boolean truncated = count == MAX_MATCHES && matcher.find();
+        return new FindMatches(count, truncated, Arrays.copyOf(ranges, count * 4));
+    }
+
+    private void insert(Segment segment, int after) {
+        byId.put(segment.id, segment);
+        if (after < 0 || order.isEmpty()) {
+            order.add(segment);
+        } else if (after == 0) {
+            order.add(0, segment);
+        } else if (order.get(order.size() - 1).id == after) {
+            // Appends are the common case: log viewers and infinite scroll add at the end
+            order.add(segment);
+        } else {
+            Segment previous = byId.get(after);
+            int index = previous == null || previous.removed ? -1 : order.lastIndexOf(previous);
+            order.add(index < 0 ? order.size() : index + 1, segment);
+        }
+    }
+
+    /** Returns the index of the last segment starting at or before a position of the text. */
+    private int segmentAt(int position) {
+        int index = Arrays.binarySearch(starts, position);
+        if (index >= 0) {
+            // Skip empty segments sharing the start
+            while (index + 1 < starts.length && starts[index + 1] == position) index++;
+            return index;
+        }
+        return -index - 2;
+    }
+
+    private void rebuild() {
+        if (!stale) return;
+        flat = order.toArray(new Segment[0]);
+        starts = new int[flat.length];
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < flat.length; i++) {
+            if (i > 0 && flat[i].block != flat[i - 1].block) builder.append('\n');
+            starts[i] = builder.length();
+            builder.append(flat[i].text);
+        }
+        text = builder.toString();
+        stale = false;
+    }
+
+    private static final class Segment {
+        final int id;
+        final int block;
+        String text;
+        boolean removed;
+
+        Segment(int id, int block, String text) {
+            this.id = id;
+            this.block = block;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Text that aborts the regex engine once the search is superseded, so a slow pattern on a
+     * huge page does not hold up the next keystroke's search.
+     */
+    private static final class CancellableText implements CharSequence {
+        private final String text;
+        private final BooleanSupplier cancelled;
+        private int reads;
+
+        CancellableText(String text, BooleanSupplier cancelled) {
+            this.text = text;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFFF) == 0 && cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
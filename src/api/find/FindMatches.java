@@ -0,0 +1,26 @@
+package api.find;
+
+/**
+ * Result of a search over a {@link FindIndex}.
+ *
+ * @param count     Number of matches found, at most {@link FindIndex#MAX_MATCHES}.
+ * @param truncated Whether there were more matches than were counted.
+ * @param ranges    Four ints per match: start node id, start offset, end node id, end offset.
+ */
+record FindMatches(int count, boolean truncated, int[] ranges) {
+
+    static final FindMatches NONE = new FindMatches(0, false, new int[0]);
+
+    /**
+     * Formats matches {@code [from, to)} as the shim's "startId,startOffset,endId,endOffset;..."
+     */
+    String format(int from, int to) {
+        StringBuilder builder = new StringBuilder((to - from) * 24);
+        for (int i = from; i < to; i++) {
+            if (i > from) builder.append(';');
+            builder.append(ranges[i * 4]).append(',').append(ranges[i * 4 + 1]).append(',')
+                    .append(ranges[i * 4 + 2]).append(',').append(ranges[i * 4 + 3]);
+        }
+        return builder.toString();
+    }
+}
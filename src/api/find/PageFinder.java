@@ -0,0 +1,458 @@
+package api.find;
+
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.concurrent.SerialExecutor;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import javafx.scene.web.WebEngine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Find in page for one tab.
+ * <p>
+ * A shim numbers the page's text nodes and hands their text over in chunks, each read in its
+ * own idle-lane task so the FX thread is never held for long. The text goes into a
+ * {@link FindIndex} on a background thread, once per page. A MutationObserver in the shim
+ * records added, edited and removed text, which is pulled twice a second while the find bar
+ * is open, so pages that keep growing stay searchable without a rescan.
+ * <p>
+ * Searches run in the background too. Each keystroke supersedes the previous search, which is
+ * abandoned mid-scan. The current match is highlighted and scrolled to at once; the rest are
+ * highlighted in batches, drawn as positioned boxes in an overlay so the page's own DOM is
+ * never split. Boxes are placed for the layout at search time. All public methods must be
+ * called on the FX application thread.
+ */
+public class PageFinder {
+
+    /**
+     * What the find bar shows.
+     *
+     * @param current   Index of the current match, or -1 if there is none.
+     * @param count     Number of matches.
+     * @param truncated Whether the page has more matches than were counted.
+     * @param indexing  Whether the page is still being read, so more matches may appear.
+     * @param error     Why the query cannot be searched, or null.
+     */
+    public record Status(int current, int count, boolean truncated, boolean indexing, String error) {
+        static final Status EMPTY = new Status(-1, 0, false, false, null);
+    }
+
+    private static final int READ_CHUNK_CHARS = 32_768;
+    private static final int CHUNKS_PER_INTERIM_SEARCH = 8;
+    private static final int HIGHLIGHT_BATCH = 200;
+    private static final int MAX_HIGHLIGHTS = 10_000;
+    private static final long CHANGE_POLL_MILLIS = 500;
+
+    private static final LatencyHistogram SEARCH_LATENCY = Metrics.histogram("link_find_search");
+    private static final LatencyHistogram INDEX_LATENCY = Metrics.histogram("link_find_index");
+
+    private static final String FIND_SCRIPT = """
+            (function() {
+                if (window.__linkFind) return;
+                var SKIP = { SCRIPT: 1, STYLE: 1, NOSCRIPT: 1, TEMPLATE: 1, TITLE: 1, TEXTAREA: 1 };
+                var BLOCK = /^(ADDRESS|ARTICLE|ASIDE|BLOCKQUOTE|BODY|CAPTION|DD|DETAILS|DIV|DL|DT|FIELDSET|FIGCAPTION|FIGURE|FOOTER|FORM|H[1-6]|HEADER|HR|HTML|LI|MAIN|NAV|OL|P|PRE|SECTION|SUMMARY|TABLE|TD|TH|TR|UL)$/;
+                var S = window.__linkFind = {};
+                var nodes = [null];
+                var nextBlock = 1;
+                var walker = null;
+                var done = false;
+                var added = [];
+                var dirty = {};
+                var overlay = null;
+                var batch = 0;
+
+                function blockOf(node) {
+                    var parent = node.parentNode;
+                    if (!parent || parent.nodeType !== 1 || SKIP[parent.nodeName] || parent === overlay) return 0;
+                    while (parent.nodeType === 1 && !BLOCK.test(parent.nodeName) && parent.parentNode) parent = parent.parentNode;
+                    return parent.__linkFindBlock || (parent.__linkFindBlock = nextBlock++);
+                }
+
+                function record(op, id, after, block, text) {
+                    return op + id + ',' + after + ',' + block + ',' + text.length + ':' + text;
+                }
+
+                function ahead(node) {
+                    return !done && (!walker || (walker.currentNode.compareDocumentPosition(node) & 4) !== 0);
+                }
+
+                function textNodes(root, into) {
+                    if (root.nodeType === 3) { into.push(root); return; }
+                    if (root.nodeType !== 1 && root.nodeType !== 11) return;
+                    var w = document.createTreeWalker(root, NodeFilter.SHOW_TEXT, null, false);
+                    var node;
+                    while ((node = w.nextNode())) into.push(node);
+                }
+
+                function previousId(node) {
+                    var w = document.createTreeWalker(document.documentElement, NodeFilter.SHOW_TEXT, null, false);
+                    w.currentNode = node;
+                    var previous;
+                    while ((previous = w.previousNode())) {
+                        if (previous.__linkFindId) return previous.__linkFindId;
+                    }
+                    return 0;
+                }
+
+                new MutationObserver(function(records) {
+                    for (var i = 0; i < records.length; i++) {
+                        var r = records[i];
+                        if (r.target === overlay) continue;
+                        if (r.type === 'characterData') {
+                            if (r.target.__linkFindId) dirty[r.target.__linkFindId] = 1;
+                            continue;
+                        }
+                        for (var j = 0; j < r.addedNodes.length; j++) {
+                            if (r.addedNodes[j] !== overlay) added.push(r.addedNodes[j]);
+                        }
+                        for (var k = 0; k < r.removedNodes.length; k++) {
+                            var removed = [];
+                            textNodes(r.removedNodes[k], removed);
+                            removed.forEach(function(node) { if (node.__linkFindId) dirty[node.__linkFindId] = 1; });
+                        }
+                    }
+                }).observe(document, { childList: true, subtree: true, characterData: true });
+
+                S.read = function(max) {
+                    if (done) return '';
+                    if (!walker) walker = document.createTreeWalker(document.documentElement, NodeFilter.SHOW_TEXT, null, false);
+                    var out = [], size = 0, node;
+                    while (size < max) {
+                        node = walker.nextNode();
+                        if (!node) { done = true; break; }
+                        if (node.__linkFindId) continue;
+                        var block = blockOf(node);
+                        if (!block) continue;
+                        node.__linkFindId = nodes.length;
+                        nodes.push(node);
+                        out.push(record('i', node.__linkFindId, -1, block, node.data));
+                        size += node.data.length + 16;
+                    }
+                    return out.join('');
+                };
+
+                S.changes = function() {
+                    var out = [];
+                    for (var key in dirty) {
+                        var node = nodes[key];
+                        if (!node) continue;
+                        if (document.documentElement.contains(node)) {
+                            out.push(record('u', key, 0, 0, node.data));
+                        } else {
+                            out.push(record('r', key, 0, 0, ''));
+                            nodes[key] = null;
+                            delete node.__linkFindId;
+                        }
+                    }
+                    dirty = {};
+                    var fresh = [];
+                    batch++;
+                    added.forEach(function(root) {
+                        var found = [];
+                        textNodes(root, found);
+                        found.forEach(function(node) {
+                            if (node.__linkFindBatch === batch || !document.documentElement.contains(node)) return;
+                            node.__linkFindBatch = batch;
+                            if (ahead(node) || !blockOf(node)) return;
+                            if (node.__linkFindId) {
+                                // Moved: forget where it was
+                                out.push(record('r', node.__linkFindId, 0, 0, ''));
+                                nodes[node.__linkFindId] = null;
+                                delete node.__linkFindId;
+                            }
+                            fresh.push(node);
+                        });
+                    });
+                    added = [];
+                    fresh.sort(function(a, b) { return (a.compareDocumentPosition(b) & 4) ? -1 : 1; });
+                    fresh.forEach(function(node) {
+                        var after = previousId(node);
+                        node.__linkFindId = nodes.length;
+                        nodes.push(node);
+                        out.push(record('i', node.__linkFindId, after, blockOf(node), node.data));
+                    });
+                    return out.join('');
+                };
+
+                function range(spec) {
+                    var p = spec.split(',');
+                    var start = nodes[+p[0]], end = nodes[+p[2]];
+                    if (!start || !end) return null;
+                    var r = document.createRange();
+                    try {
+                        r.setStart(start, Math.min(+p[1], start.data.length));
+                        r.setEnd(end, Math.min(+p[3], end.data.length));
+                    } catch (e) {
+                        return null;
+                    }
+                    return r;
+                }
+
+                function boxes(specs, color) {
+                    if (!overlay || !document.documentElement.contains(overlay)) {
+                        overlay = document.createElement('div');
+                        overlay.style.cssText = 'position:absolute;left:0;top:0;width:0;height:0;pointer-events:none;z-index:2147483647';
+                        document.documentElement.appendChild(overlay);
+                    }
+                    // Measure everything before adding anything, so layout runs once per batch
+                    var x = window.pageXOffset, y = window.pageYOffset, rects = [];
+                    specs.forEach(function(spec) {
+                        var r = range(spec);
+                        if (r) Array.prototype.push.apply(rects, r.getClientRects());
+                    });
+                    var fragment = document.createDocumentFragment(), elements = [];
+                    rects.forEach(function(rect) {
+                        var box = document.createElement('div');
+                        box.style.cssText = 'position:absolute;opacity:0.5;background:' + color + ';left:' + (rect.left + x)
+                            + 'px;top:' + (rect.top + y) + 'px;width:' + rect.width + 'px;height:' + rect.height + 'px';
+                        fragment.appendChild(box);
+                        elements.push(box);
+                    });
+                    overlay.appendChild(fragment);
+                    return { elements: elements, rects: rects };
+                }
+
+                S.mark = function(specs) {
+                    boxes(specs.split(';'), '#ffeb3b');
+                };
+
+                var current = [];
+                S.focus = function(spec) {
+                    current.forEach(function(box) { if (box.parentNode) box.parentNode.removeChild(box); });
+                    var drawn = boxes([spec], '#ff9632');
+                    current = drawn.elements;
+                    var rect = drawn.rects[0];
+                    if (!rect) return;
+                    if (rect.top < 0 || rect.bottom > window.innerHeight) window.scrollBy(0, rect.top - window.innerHeight / 2);
+                    if (rect.left < 0 || rect.right > window.innerWidth) window.scrollBy(rect.left - window.innerWidth / 2, 0);
+                };
+
+                S.clear = function() {
+                    if (overlay) overlay.textContent = '';
+                    current = [];
+                };
+            })();
+            """;
+
+    private final WebEngine webEngine;
+    private final SerialExecutor worker = LinkExecutors.serial("find-in-page");
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private Consumer<Status> statusListener = status -> { };
+
+    // Replaced on each page, only touched on the worker
+    private FindIndex index = new FindIndex();
+
+    private Object indexedDocument;
+    private boolean indexing;
+    private boolean open;
+    private CompletableFuture<Void> changePoll;
+    private Pattern pattern;
+    private FindMatches matches = FindMatches.NONE;
+    private int current = -1;
+
+    public PageFinder(WebEngine webEngine) {
+        this.webEngine = webEngine;
+    }
+
+    public void setStatusListener(Consumer<Status> statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    /**
+     * Starts reading the page, if it has not been read yet, and following its changes.
+     */
+    public void open() {
+        open = true;
+        ensureIndexed();
+        if (changePoll == null) {
+            changePoll = LinkExecutors.scheduleWithFixedDelay(
+                    () -> FxDispatcher.coalesce(this, FxDispatcher.Lane.IDLE, this::pullChanges),
+                    CHANGE_POLL_MILLIS, CHANGE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Removes the highlights and stops following the page. The index is kept for reopening.
+     */
+    public void close() {
+        open = false;
+        pattern = null;
+        searchGeneration.incrementAndGet();
+        matches = FindMatches.NONE;
+        current = -1;
+        if (changePoll != null) {
+            changePoll.cancel(false);
+            changePoll = null;
+        }
+        execute("window.__linkFind && window.__linkFind.clear()");
+    }
+
+    /**
+     * Forgets the page. Call when a new document replaces it; if the bar is open, call
+     * {@link #pageLoaded()} once the document has loaded.
+     */
+    public void reset() {
+        searchGeneration.incrementAndGet();
+        indexedDocument = null;
+        indexing = false;
+        matches = FindMatches.NONE;
+        current = -1;
+        worker.execute(() -> index = new FindIndex());
+        if (open) statusListener.accept(Status.EMPTY);
+    }
+
+    /**
+     * Reads the newly loaded page and repeats the search on it if the bar is open.
+     */
+    public void pageLoaded() {
+        if (!open) return;
+        ensureIndexed();
+        searchAgain();
+    }
+
+    /**
+     * Searches the page, superseding any search in progress.
+     *
+     * @param query         Text to find; an empty query clears the results.
+     * @param caseSensitive Whether case must match.
+     * @param regex         Whether the query is a regular expression.
+     */
+    public void search(String query, boolean caseSensitive, boolean regex) {
+        int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        try {
+            pattern = query.isEmpty() ? null : Pattern.compile(query, regex ? flags : flags | Pattern.LITERAL);
+        } catch (PatternSyntaxException e) {
+            pattern = null;
+            searchGeneration.incrementAndGet();
+            execute("window.__linkFind && window.__linkFind.clear()");
+            statusListener.accept(new Status(-1, 0, false, indexing, e.getDescription()));
+            return;
+        }
+        searchAgain();
+    }
+
+    /**
+     * Moves to the next match, wrapping around at the end.
+     */
+    public void next() {
+        step(1);
+    }
+
+    /**
+     * Moves to the previous match, wrapping around at the start.
+     */
+    public void previous() {
+        step(-1);
+    }
+
+    private void step(int direction) {
+        if (matches.count() == 0) return;
+        current = Math.floorMod(current + direction, matches.count());
+        focusCurrent();
+        publishStatus();
+    }
+
+    private void ensureIndexed() {
+        Object document = webEngine.getDocument();
+        if (document == null || document == indexedDocument) return;
+        indexedDocument = document;
+        execute(FIND_SCRIPT);
+        indexing = true;
+        long started = System.nanoTime();
+        FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> readChunk(document, started, 1));
+    }
+
+    /** Reads one chunk of the page's text and queues the next. */
+    private void readChunk(Object document, long started, int chunks) {
+        if (document != indexedDocument) return;
+        Object chunk = execute("window.__linkFind ? window.__linkFind.read(" + READ_CHUNK_CHARS + ") : ''");
+        if (chunk instanceof String records && !records.isEmpty()) {
+            worker.execute(() -> index.apply(records));
+            FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> readChunk(document, started, chunks + 1));
+            // Show matches while the rest of a long page is still being read
+            if (pattern != null && chunks % CHUNKS_PER_INTERIM_SEARCH == 0) searchAgain();
+            return;
+        }
+        indexing = false;
+        worker.execute(() -> INDEX_LATENCY.recordSince(started));
+        searchAgain();
+    }
+
+    /** Pulls what the page's MutationObserver recorded since the last pull. */
+    private void pullChanges() {
+        if (!open || indexing || indexedDocument == null || indexedDocument != webEngine.getDocument()) return;
+        Object changes = execute("window.__linkFind ? window.__linkFind.changes() : ''");
+        if (changes instanceof String records && !records.isEmpty()) {
+            worker.execute(() -> index.apply(records));
+            searchAgain();
+        }
+    }
+
+    private void searchAgain() {
+        int generation = searchGeneration.incrementAndGet();
+        execute("window.__linkFind && window.__linkFind.clear()");
+        Pattern searched = pattern;
+        if (searched == null) {
+            matches = FindMatches.NONE;
+            current = -1;
+            publishStatus();
+            return;
+        }
+        worker.execute(() -> {
+            if (generation != searchGeneration.get()) return;
+            long started = System.nanoTime();
+            FindMatches found;
+            try {
+                found = index.search(searched, () -> generation != searchGeneration.get());
+            } catch (CancellationException e) {
+                return;
+            }
+            SEARCH_LATENCY.recordSince(started);
+            FxDispatcher.dispatch(FxDispatcher.Lane.VISIBLE, () -> showMatches(generation, found));
+        });
+    }
+
+    private void showMatches(int generation, FindMatches found) {
+        if (generation != searchGeneration.get()) return;
+        matches = found;
+        current = found.count() == 0 ? -1 : Math.min(Math.max(current, 0), found.count() - 1);
+        if (current >= 0) focusCurrent();
+        publishStatus();
+        highlightBatch(generation, 0);
+    }
+
+    /** Highlights one batch of matches and queues the next, until superseded. */
+    private void highlightBatch(int generation, int from) {
+        if (generation != searchGeneration.get()) return;
+        int to = Math.min(Math.min(matches.count(), MAX_HIGHLIGHTS), from + HIGHLIGHT_BATCH);
+        if (from >= to) return;
+        execute("window.__linkFind && window.__linkFind.mark('" + matches.format(from, to) + "')");
+        FxDispatcher.dispatch(FxDispatcher.Lane.IDLE, () -> highlightBatch(generation, to));
+    }
+
+    private void focusCurrent() {
+        execute("window.__linkFind && window.__linkFind.focus('" + matches.format(current, current + 1) + "')");
+    }
+
+    private void publishStatus() {
+        statusListener.accept(new Status(current, matches.count(), matches.truncated(), indexing, null));
+    }
+
+    private Object execute(String script) {
+        if (webEngine.getDocument() == null) return null;
+        try {
+            return webEngine.executeScript(script);
+        } catch (RuntimeException e) {
+            System.err.println("Find in page script failed: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package api.history;
+
+import api.Managers.ConfigManager;
+import api.concurrent.LinkExecutors;
+import api.concurrent.SerialExecutor;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.metrics.Span;
+import api.profile.HistoryEntry;
+import api.profile.HistoryStore;
+import api.profile.ProfileStore;
+import api.security.EncryptionManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Full-text index of visited pages, for searching history by content.
+ * <p>
+ * Built like a small search engine. New pages collect in memory and are written out as an
+ * immutable {@link Segment} a couple of seconds after the last one, or sooner once enough have
+ * piled up. Whenever {@value #MERGE_FACTOR} neighbouring segments of a similar size exist they
+ * are merged into one, so the number of segments grows with the logarithm of the history. A
+ * merge also drops deleted pages, which is how revisited pages shed their older copy. Once the
+ * index is larger than {@link ConfigManager#HISTORY_INDEX_MAX_MB} the oldest pages are evicted.
+ * <p>
+ * All of this runs on one background thread. Searches run on the caller's thread against the
+ * current list of segments, which is swapped atomically, so they never wait for indexing.
+ * Results are joined with the {@link HistoryStore}; pages no longer in the history are left out
+ * and dropped from the index. Segment files are encrypted like the rest of the profile.
+ */
+public final class HistoryIndex {
+
+    /** Text beyond this many characters of a page is not indexed. */
+    public static final int MAX_TEXT_CHARS = 100_000;
+    /** Pages with longer URLs are not indexed; the history does not keep them either. */
+    static final int MAX_URL_CHARS = 2048;
+
+    static final int MERGE_FACTOR = 8;
+    private static final int FLUSH_DOCS = 256;
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final double MAX_DELETED_RATIO = 0.3;
+    private static final int TITLE_WEIGHT = 3;
+    private static final String DIRECTORY = "history-index";
+    private static final String SUFFIX = ".seg";
+
+    private static final LatencyHistogram SEARCH_LATENCY = Metrics.histogram("link_history_search");
+
+    private static volatile HistoryIndex instance;
+
+    private final Path directory;
+    private final EncryptionManager encryption;
+    private final HistoryStore history;
+    private final LongSupplier maxBytes;
+    private final SerialExecutor writer = LinkExecutors.serial("history-index");
+
+    private volatile List<Segment> segments = List.of();
+
+    // Only touched on the writer
+    private SegmentBuilder buffer = new SegmentBuilder();
+    private final Map<String, Long> latestGeneration = new HashMap<>();
+    private long nextGeneration = 1;
+    private CompletableFuture<Void> flushTimer;
+
+    public static HistoryIndex getInstance() {
+        if (instance == null) {
+            synchronized (HistoryIndex.class) {
+                if (instance == null) {
+                    ProfileStore store = ProfileStore.getInstance();
+                    ConfigManager config = ConfigManager.getInstance();
+                    HistoryIndex created = new HistoryIndex(store.getDirectory().resolve(DIRECTORY),
+                            new EncryptionManager(), HistoryStore.getInstance(),
+                            () -> config.get(ConfigManager.HISTORY_INDEX_MAX_MB) * 1024L * 1024L);
+                    store.addCloseHook(created::flush);
+                    instance = created;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the index in a directory. Existing segments are loaded in the background; searches
+     * find nothing until they are.
+     *
+     * @param maxBytes The size cap, read after every change.
+     */
+    public HistoryIndex(Path directory, EncryptionManager encryption, HistoryStore history, LongSupplier maxBytes) {
+        this.directory = directory;
+        this.encryption = encryption;
+        this.history = history;
+        this.maxBytes = maxBytes;
+        Metrics.gauge("link_history_index_bytes", this::getSizeBytes);
+        Metrics.gauge("link_history_index_pages", this::getPageCount);
+        Metrics.gauge("link_history_index_segments", () -> segments.size());
+        writer.execute(this::load);
+    }
+
+    /**
+     * Queues a page for indexing. Returns at once; tokenizing and writing happen in the background.
+     *
+     * @param url   The page's URL; pages with URLs over {@value #MAX_URL_CHARS} characters are skipped.
+     * @param title The page's title, possibly null.
+     * @param text  The page's visible text; only the first {@value #MAX_TEXT_CHARS} characters count.
+     */
+    public void index(String url, String title, String text) {
+        if (url == null || text == null || url.length() > MAX_URL_CHARS) return;
+        long now = System.currentTimeMillis();
+        writer.execute(() -> {
+            Map<String, Integer> terms = new HashMap<>();
+            int length = Tokenizer.count(title == null ? "" : title, TITLE_WEIGHT, terms)
+                    + Tokenizer.count(text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) : text, 1, terms);
+            buffer.add(url, now, terms, length);
+            if (buffer.size() >= FLUSH_DOCS) {
+                flushBuffer();
+            } else {
+                scheduleFlush();
+            }
+        });
+    }
+
+    /**
+     * Returns the best matching pages, best first. Safe to call from any thread; runs on it.
+     *
+     * @param query Words the pages must all contain; the last may be incomplete.
+     * @param limit Maximum number of results.
+     */
+    public List<HistorySearchResult> search(String query, int limit) {
+        long started = System.nanoTime();
+        // Ask for a few more, as some may have been removed from the history since
+        List<HistorySearcher.Hit> hits = HistorySearcher.search(segments, query, limit + limit / 2 + 2, System.currentTimeMillis());
+        List<HistorySearchResult> results = new ArrayList<>(Math.min(limit, hits.size()));
+        Set<String> gone = new HashSet<>();
+        for (HistorySearcher.Hit hit : hits) {
+            HistoryEntry entry = history.get(hit.url());
+            if (entry == null) {
+                gone.add(hit.url());
+                continue;
+            }
+            // Pages visited often are what people look for again
+            double score = hit.score() * (1 + 0.1 * Math.log(entry.getVisitCount()));
+            results.add(new HistorySearchResult(hit.url(), entry.getTitle(), entry.getLastVisit(), entry.getVisitCount(), score));
+        }
+        if (!gone.isEmpty()) {
+            writer.execute(() -> delete(gone));
+        }
+        results.sort(Comparator.comparingDouble(HistorySearchResult::score).reversed());
+        SEARCH_LATENCY.recordSince(started);
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Runs {@link #search} on the CPU pool.
+     */
+    public CompletableFuture<List<HistorySearchResult>> searchAsync(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> search(query, limit), LinkExecutors.cpu());
+    }
+
+    /**
+     * Deletes the whole index, including pages still waiting to be written.
+     *
+     * @return A future completed once the index is empty.
+     */
+    public CompletableFuture<Void> clear() {
+        writer.execute(() -> {
+            buffer = new SegmentBuilder();
+            latestGeneration.clear();
+            List<Segment> old = segments;
+            segments = List.of();
+            for (Segment segment : old) {
+                deleteFile(segment);
+            }
+        });
+        return writer.barrier();
+    }
+
+    /**
+     * Writes pages waiting in memory and waits for it, for at most five seconds.
+     */
+    public void flush() {
+        writer.execute(this::flushBuffer);
+        try {
+            writer.barrier().get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("History index did not flush: " + e.getMessage());
+        }
+    }
+
+    public long getSizeBytes() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.sizeBytes();
+        return size;
+    }
+
+    public long getPageCount() {
+        long pages = 0;
+        for (Segment segment : segments) pages += segment.liveDocs;
+        return pages;
+    }
+
+    // ---------------------------------------------------------------- writer thread
+
+    private void load() {
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                stream.forEach(files::add);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to open history index: " + e.getMessage());
+            return;
+        }
+        List<Segment> loaded = new ArrayList<>();
+        Span span = Metrics.span("link_history_index_load");
+        for (Path file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    encryption.newDecryptingStream(Files.newInputStream(file))))) {
+                loaded.add(Segment.read(in));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Dropping unreadable history index segment " + file.getFileName() + ": " + e.getMessage());
+                deleteQuietly(file);
+            }
+        }
+        span.end("ok");
+        // Oldest pages first, as maintain() evicts from the front. A merge left behind with its
+        // inputs by a crash shares their order and sorts after them, so its copies win below.
+        loaded.sort(Comparator.<Segment>comparingLong(segment -> segment.order).thenComparingLong(segment -> segment.generation));
+        // Newest copy of each page wins; a crash between writing a merge and deleting its
+        // inputs leaves older copies behind
+        for (int s = loaded.size() - 1; s >= 0; s--) {
+            Segment segment = loaded.get(s);
+            List<Integer> stale = new ArrayList<>();
+            for (int doc = segment.docCount() - 1; doc >= 0; doc--) {
+                if (segment.isDeleted(doc)) continue;
+                if (latestGeneration.putIfAbsent(segment.urls[doc], segment.generation) != null) stale.add(doc);
+            }
+            if (!stale.isEmpty()) {
+                loaded.set(s, segment.withDeleted(stale.stream().mapToInt(Integer::intValue).toArray()));
+            }
+            nextGeneration = Math.max(nextGeneration, segment.generation + 1);
+        }
+        segments = List.copyOf(loaded);
+        maintain();
+    }
+
+    private void flushBuffer() {
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        if (buffer.isEmpty()) return;
+        SegmentBuilder flushed = buffer;
+        buffer = new SegmentBuilder();
+        Span span = Metrics.span("link_history_index_flush");
+        Segment segment = null;
+        boolean written = false;
+        try {
+            segment = flushed.build(nextGeneration++);
+            written = write(segment);
+        } finally {
+            span.end(written ? "ok" : "failed");
+            if (!written) {
+                // Nothing else ran on the writer since the swap: keep the pages for another try
+                buffer = flushed;
+                scheduleFlush();
+            }
+        }
+        if (!written) return;
+        // Older copies of the pages just written are now superseded
+        Set<Long> superseded = new HashSet<>();
+        List<String> urls = flushed.urls();
+        for (int doc = 0; doc < urls.size(); doc++) {
+            if (flushed.isReplaced(doc)) continue;
+            Long previous = latestGeneration.put(urls.get(doc), segment.generation);
+            if (previous != null) superseded.add(previous);
+        }
+        List<Segment> updated = new ArrayList<>(segments);
+        if (!superseded.isEmpty()) {
+            Set<String> replaced = new HashSet<>(urls);
+            for (int i = 0; i < updated.size(); i++) {
+                Segment old = updated.get(i);
+                if (superseded.contains(old.generation)) {
+                    updated.set(i, old.withDeleted(liveDocsOf(old, replaced)));
+                }
+            }
+        }
+        updated.add(segment);
+        segments = List.copyOf(updated);
+        maintain();
+    }
+
+    private void scheduleFlush() {
+        if (flushTimer == null) {
+            flushTimer = LinkExecutors.schedule(() -> writer.execute(this::flushBuffer), FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Deletes pages that have left the history. */
+    private void delete(Set<String> urls) {
+        List<Segment> updated = new ArrayList<>(segments);
+        for (int i = 0; i < updated.size(); i++) {
+            int[] docs = liveDocsOf(updated.get(i), urls);
+            if (docs.length > 0) updated.set(i, updated.get(i).withDeleted(docs));
+        }
+        urls.forEach(latestGeneration::remove);
+        segments = List.copyOf(updated);
+        maintain();
+    }
+
+    /** Evicts old pages while over the size cap, then merges. */
+    private void maintain() {
+        long excess = getSizeBytes() - maxBytes.getAsLong();
+        if (excess > 0) {
+            // Aim below the cap so the next few pages do not trigger another eviction
+            excess += maxBytes.getAsLong() / 10;
+            List<Segment> updated = new ArrayList<>(segments);
+            while (excess > 0 && !updated.isEmpty()) {
+                Segment oldest = updated.get(0);
+                long size = oldest.sizeBytes();
+                if (size <= excess || updated.size() == 1 && excess >= size / 2) {
+                    updated.remove(0);
+                    deleteFile(oldest);
+                    for (String url : oldest.urls) latestGeneration.remove(url, oldest.generation);
+                    excess -= size;
+                } else {
+                    // Segments hold pages oldest first: evict a matching share from the front
+                    int count = (int) Math.min(oldest.docCount(), (excess * oldest.docCount() + size - 1) / size);
+                    int[] docs = new int[count];
+                    for (int doc = 0; doc < count; doc++) docs[doc] = doc;
+                    for (int doc = 0; doc < count; doc++) latestGeneration.remove(oldest.urls[doc], oldest.generation);
+                    updated.set(0, oldest.withDeleted(docs));
+                    excess = 0;
+                }
+            }
+            segments = List.copyOf(updated);
+        }
+        mergeSegments();
+    }
+
+    /**
+     * Merges runs of {@value #MERGE_FACTOR} neighbouring segments in the same size tier, and
+     * rewrites segments that are mostly deleted pages.
+     */
+    private void mergeSegments() {
+        while (true) {
+            List<Segment> current = segments;
+            int from = -1;
+            int to = -1;
+            for (int i = 0; i < current.size() && from < 0; i++) {
+                Segment segment = current.get(i);
+                if (segment.docCount() > 0 && segment.liveDocs < segment.docCount() * (1 - MAX_DELETED_RATIO)) {
+                    from = i;
+                    to = i + 1;
+                }
+            }
+            for (int i = 0; i + MERGE_FACTOR <= current.size() && from < 0; i++) {
+                int tier = tier(current.get(i));
+                int j = i + 1;
+                while (j < current.size() && tier(current.get(j)) == tier) j++;
+                if (j - i >= MERGE_FACTOR) {
+                    from = i;
+                    to = i + MERGE_FACTOR;
+                }
+            }
+            if (from < 0) return;
+            List<Segment> inputs = current.subList(from, to);
+            Span span = Metrics.span("link_history_index_merge");
+            Segment merged = null;
+            boolean written = false;
+            try {
+                merged = Segment.merge(nextGeneration++, inputs);
+                written = merged.docCount() == 0 || write(merged);
+            } finally {
+                span.end(written ? "ok" : "failed");
+            }
+            if (!written) return;
+            List<Segment> updated = new ArrayList<>(current.subList(0, from));
+            if (merged.docCount() > 0) updated.add(merged);
+            updated.addAll(current.subList(to, current.size()));
+            // Searches may still be reading the inputs: publish before deleting their files
+            segments = List.copyOf(updated);
+            for (String url : merged.urls) latestGeneration.put(url, merged.generation);
+            for (Segment input : inputs) deleteFile(input);
+        }
+    }
+
+    /** Size class of a segment: segments within a factor of {@value #MERGE_FACTOR} share one. */
+    private static int tier(Segment segment) {
+        int tier = 0;
+        for (long docs = segment.liveDocs; docs >= MERGE_FACTOR; docs /= MERGE_FACTOR) tier++;
+        return tier;
+    }
+
+    private static int[] liveDocsOf(Segment segment, Set<String> urls) {
+        Segment.IntList docs = new Segment.IntList();
+        for (int doc = 0; doc < segment.docCount(); doc++) {
+            if (!segment.isDeleted(doc) && urls.contains(segment.urls[doc])) docs.add(doc);
+        }
+        return docs.toArray();
+    }
+
+    private boolean write(Segment segment) {
+        Path file = fileOf(segment);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    encryption.newEncryptingStream(Files.newOutputStream(temporary))))) {
+                segment.write(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed to write history index segment: " + e.getMessage());
+            deleteQuietly(temporary);
+            return false;
+        }
+    }
+
+    private void deleteFile(Segment segment) {
+        deleteQuietly(fileOf(segment));
+    }
+
+    private Path fileOf(Segment segment) {
+        return directory.resolve(String.format("%016x", segment.generation) + SUFFIX);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package api.history;
+
+import api.bridge.Html;
+import api.profile.HistoryEntry;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Renders the internal link://history page: a search box over the {@link HistoryIndex}, and the
+ * most recent visits when nothing is searched for. The page is plain HTML; its form navigates
+ * to link://history?q=..., which the browser view renders again. Clearing the history goes
+ * through the page bridge, so no link:// URL can do it.
+ */
+public final class HistoryPage {
+
+    public static final String URL = "link://history";
+
+    private HistoryPage() {
+    }
+
+    /**
+     * Returns the search query of a link://history URL, or an empty string.
+     */
+    public static String queryOf(String url) {
+        int start = url.indexOf("q=");
+        if (start < 0) return "";
+        int end = url.indexOf('&', start);
+        String value = url.substring(start + 2, end < 0 ? url.length() : end);
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8).trim();
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    /**
+     * Renders search results.
+     *
+     * @param tookMicros How long the search took, shown under the box.
+     */
+    public static String renderResults(String query, List<HistorySearchResult> results, long tookMicros,
+                                       long indexedPages) {
+        StringBuilder body = new StringBuilder();
+        body.append("<p class=\"meta\">").append(results.size()).append(results.size() == 1 ? " page" : " pages")
+                .append(" in ").append(String.format("%.1f", tookMicros / 1000.0)).append(" ms, searching ")
+                .append(indexedPages).append(" indexed pages</p>");
+        if (results.isEmpty()) {
+            body.append("<p>No visited page contains all of these words.</p>");
+        }
+        for (HistorySearchResult result : results) {
+            appendItem(body, result.url(), result.title(), result.lastVisit(), result.visitCount());
+        }
+        return page(query, body);
+    }
+
+    /**
+     * Renders the most recent visits.
+     */
+    public static String renderRecent(List<HistoryEntry> entries) {
+        StringBuilder body = new StringBuilder("<h2>Recently visited</h2>");
+        if (entries.isEmpty()) {
+            body.append("<p>Your history is empty.</p>");
+        }
+        for (HistoryEntry entry : entries) {
+            appendItem(body, entry.getUrl(), entry.getTitle(), entry.getLastVisit(), entry.getVisitCount());
+        }
+        return page("", body);
+    }
+
+    private static void appendItem(StringBuilder body, String url, String title, long lastVisit, int visits) {
+        String shown = title == null || title.isBlank() ? url : title;
+        body.append("<div class=\"item\"><a href=\"").append(Html.escape(url)).append("\">").append(Html.escape(shown))
+                .append("</a><div class=\"url\">").append(Html.escape(url)).append("</div><div class=\"meta\">")
+                .append(Html.escape(DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT).format(new Date(lastVisit))))
+                .append(" &middot; ").append(visits).append(visits == 1 ? " visit" : " visits").append("</div></div>");
+    }
+
+    private static String page(String query, CharSequence body) {
+        return """
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>History</title><style>
+                body { font-family: Tahoma, sans-serif; margin: 24px auto; max-width: 760px; color: #222; }
+                form { display: flex; gap: 8px; margin-bottom: 8px; }
+                input { flex: 1; font-size: 15px; padding: 6px; }
+                .item { margin: 14px 0; }
+                .item a { font-size: 15px; color: #1a4fb0; text-decoration: none; }
+                .url { color: #2a7a2a; font-size: 12px; word-break: break-all; }
+                .meta { color: #777; font-size: 12px; }
+                </style></head><body>
+                <h1>History</h1>
+                <form action="%s" method="get">
+                <input name="q" value="%s" placeholder="Search the text of pages you have visited" autofocus>
+                <button type="submit">Search</button>
+                </form>
+                <p class="meta"><button id="clear" type="button">Clear browsing history</button></p>
+                %s
+                <script>
+                document.getElementById('clear').onclick = function () {
+                  var button = this;
+                  button.disabled = true;
+                  link.request('history.clear').then(function () {
+                    link.request('navigate.open', 'history');
+                  }, function (error) {
+                    button.disabled = false;
+                    button.textContent = 'Clearing failed: ' + error.message;
+                  });
+                };
+                </script>
+                </body></html>
+                """.formatted(URL, Html.escape(query), body);
+    }
+}
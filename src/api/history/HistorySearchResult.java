@@ -0,0 +1,13 @@
+package api.history;
+
+/**
+ * One page found by {@link HistoryIndex#search}.
+ *
+ * @param url        The page's URL.
+ * @param title      The page's title from the history, possibly empty.
+ * @param lastVisit  When the page was last visited, in epoch milliseconds.
+ * @param visitCount How often the page was visited.
+ * @param score      Relevance; higher is better. Only comparable within one result list.
+ */
+public record HistorySearchResult(String url, String title, long lastVisit, int visitCount, double score) {
+}
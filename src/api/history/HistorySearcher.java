@@ -0,0 +1,119 @@
+package api.history;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks the pages of a set of segments against a query.
+ * <p>
+ * Every query term must match. Scores are BM25 with statistics summed over all segments, so a
+ * page scores the same whichever segment it is in, times a boost for pages indexed recently.
+ * The last term also matches longer terms starting with it, since the omnibox searches while
+ * the user is still typing it.
+ */
+final class HistorySearcher {
+
+    static final int MAX_QUERY_TERMS = 8;
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double RECENCY_HALF_LIFE_MS = 30 * 24 * 3600_000.0;
+
+    record Hit(String url, double score) {
+    }
+
+    private HistorySearcher() {
+    }
+
+    static List<Hit> search(List<Segment> segments, String query, int limit, long now) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) return List.of();
+        if (tokens.size() > MAX_QUERY_TERMS) tokens = tokens.subList(0, MAX_QUERY_TERMS);
+        boolean prefixLast = !query.isEmpty() && Character.isLetterOrDigit(query.charAt(query.length() - 1));
+
+        long docs = 0;
+        long live = 0;
+        long totalLength = 0;
+        for (Segment segment : segments) {
+            docs += segment.docCount();
+            live += segment.liveDocs;
+            totalLength += segment.totalLength;
+        }
+        if (live == 0) return List.of();
+        long liveDocs = live;
+        double averageLength = Math.max(1, totalLength / (double) docs);
+
+        // Terms each query token stands for, with their inverse document frequency
+        List<Map<String, Double>> expansions = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Map<String, Integer> docFreqs = new HashMap<>();
+            String token = tokens.get(i);
+            boolean prefix = prefixLast && i == tokens.size() - 1;
+            for (Segment segment : segments) {
+                if (!prefix) {
+                    int term = segment.findTerm(token);
+                    if (term >= 0) docFreqs.merge(token, segment.docFreqs[term], Integer::sum);
+                    continue;
+                }
+                int end = Math.min(segment.terms.length, segment.prefixStart(token) + MAX_PREFIX_EXPANSIONS);
+                for (int term = segment.prefixStart(token); term < end && segment.terms[term].startsWith(token); term++) {
+                    docFreqs.merge(segment.terms[term], segment.docFreqs[term], Integer::sum);
+                }
+            }
+            if (docFreqs.isEmpty()) return List.of();
+            Map<String, Double> idfs = new HashMap<>();
+            docFreqs.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(MAX_PREFIX_EXPANSIONS)
+                    .forEach(entry -> {
+                        double df = Math.min(entry.getValue(), liveDocs);
+                        idfs.put(entry.getKey(), Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5)));
+                    });
+            expansions.add(idfs);
+        }
+
+        int allTerms = (1 << tokens.size()) - 1;
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::score));
+        for (Segment segment : segments) {
+            if (segment.liveDocs == 0) continue;
+            float[] scores = new float[segment.docCount()];
+            int[] matched = new int[segment.docCount()];
+            Segment.Postings postings = segment.new Postings();
+            for (int i = 0; i < expansions.size(); i++) {
+                for (Map.Entry<String, Double> expansion : expansions.get(i).entrySet()) {
+                    int term = segment.findTerm(expansion.getKey());
+                    if (term < 0) continue;
+                    double idf = expansion.getValue();
+                    postings.reset(term);
+                    while (postings.next()) {
+                        int doc = postings.doc;
+                        double tf = postings.freq;
+                        double norm = K1 * (1 - B + B * segment.lengths[doc] / averageLength);
+                        scores[doc] += (float) (idf * tf * (K1 + 1) / (tf + norm));
+                        matched[doc] |= 1 << i;
+                    }
+                }
+            }
+            for (int doc = 0; doc < scores.length; doc++) {
+                if (matched[doc] != allTerms || segment.isDeleted(doc)) continue;
+                double age = Math.max(0, now - segment.indexedAt[doc]);
+                double score = scores[doc] * (1 + 0.5 * Math.pow(0.5, age / RECENCY_HALF_LIFE_MS));
+                if (best.size() < limit) {
+                    best.add(new Hit(segment.urls[doc], score));
+                } else if (score > best.peek().score()) {
+                    best.poll();
+                    best.add(new Hit(segment.urls[doc], score));
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+}
@@ -0,0 +1,318 @@
+package api.history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable piece of the history index: a set of pages and the inverted index over them.
+ * <p>
+ * Terms are sorted, so exact and prefix lookups are binary searches. Each term's postings are
+ * (document, frequency) pairs in document order, stored as variable-length deltas in one shared
+ * byte array, which keeps a page's postings to about two bytes per distinct term. Deletion
+ * never changes a segment: {@link #withDeleted} returns a copy sharing everything but the
+ * deletion bits, so searches can run against a snapshot without locks.
+ */
+final class Segment {
+
+    private static final int MAGIC = 0x4C4B4849; // "LKHI"
+    private static final int FORMAT_VERSION = 2;
+
+    final long generation;
+    /**
+     * Age of the pages: the generation of the oldest segment merged into this one. The index
+     * keeps segments sorted by it, as a merge gets a new generation but holds old pages.
+     */
+    final long order;
+    final String[] urls;
+    final long[] indexedAt;
+    final int[] lengths;
+    final String[] terms;
+    final int[] docFreqs;
+    /** Start of each term's postings; one more entry than there are terms. */
+    final int[] postingOffsets;
+    final byte[] postings;
+    final long[] deleted;
+    final int liveDocs;
+    final long totalLength;
+
+    Segment(long generation, long order, String[] urls, long[] indexedAt, int[] lengths, String[] terms, int[] docFreqs,
+            int[] postingOffsets, byte[] postings, long[] deleted) {
+        this.generation = generation;
+        this.order = order;
+        this.urls = urls;
+        this.indexedAt = indexedAt;
+        this.lengths = lengths;
+        this.terms = terms;
+        this.docFreqs = docFreqs;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.deleted = deleted;
+        int dead = 0;
+        for (long word : deleted) dead += Long.bitCount(word);
+        this.liveDocs = urls.length - dead;
+        long total = 0;
+        for (int length : lengths) total += length;
+        this.totalLength = total;
+    }
+
+    int docCount() {
+        return urls.length;
+    }
+
+    boolean isDeleted(int doc) {
+        return (deleted[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    /**
+     * Returns a copy with more documents deleted.
+     */
+    Segment withDeleted(int... docs) {
+        long[] bits = deleted.clone();
+        for (int doc : docs) bits[doc >>> 6] |= 1L << doc;
+        return new Segment(generation, order, urls, indexedAt, lengths, terms, docFreqs, postingOffsets, postings, bits);
+    }
+
+    /**
+     * Rough heap footprint, used for the index size cap.
+     */
+    long sizeBytes() {
+        long size = postings.length + postingOffsets.length * 4L + docFreqs.length * 4L + deleted.length * 8L;
+        for (String term : terms) size += 40 + term.length();
+        for (String url : urls) size += 40 + url.length() + 12;
+        return size;
+    }
+
+    /**
+     * Returns the index of a term, or a negative number if the segment does not contain it.
+     */
+    int findTerm(String term) {
+        return Arrays.binarySearch(terms, term);
+    }
+
+    /**
+     * Returns the first term index not less than {@code prefix}; terms starting with it follow
+     * consecutively from there.
+     */
+    int prefixStart(String prefix) {
+        int index = Arrays.binarySearch(terms, prefix);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Reads the postings of one term. Reusable: {@link #reset} it for the next term.
+     */
+    final class Postings {
+        private int position;
+        private int end;
+        int doc;
+        int freq;
+
+        Postings reset(int term) {
+            position = postingOffsets[term];
+            end = postingOffsets[term + 1];
+            doc = 0;
+            return this;
+        }
+
+        boolean next() {
+            if (position >= end) return false;
+            doc += readVarint();
+            freq = readVarint();
+            return true;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Merges segments into one, dropping deleted documents. Documents keep their order, so the
+     * oldest pages stay first.
+     */
+    static Segment merge(long generation, List<Segment> segments) {
+        int live = 0;
+        long oldest = Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            live += segment.liveDocs;
+            oldest = Math.min(oldest, segment.order);
+        }
+        String[] urls = new String[live];
+        long[] indexedAt = new long[live];
+        int[] lengths = new int[live];
+        int[][] remap = new int[segments.size()][];
+        int next = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            remap[s] = new int[segment.docCount()];
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                if (segment.isDeleted(doc)) {
+                    remap[s][doc] = -1;
+                    continue;
+                }
+                remap[s][doc] = next;
+                urls[next] = segment.urls[doc];
+                indexedAt[next] = segment.indexedAt[doc];
+                lengths[next] = segment.lengths[doc];
+                next++;
+            }
+        }
+
+        // Walk the sorted term lists of all segments together, like the merge step of merge sort
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> {
+            int order = segments.get(a[0]).terms[a[1]].compareTo(segments.get(b[0]).terms[b[1]]);
+            return order != 0 ? order : Integer.compare(a[0], b[0]);
+        });
+        for (int s = 0; s < segments.size(); s++) {
+            if (segments.get(s).terms.length > 0) cursors.add(new int[]{s, 0});
+        }
+        List<String> terms = new ArrayList<>();
+        IntList docFreqs = new IntList();
+        IntList offsets = new IntList();
+        Encoder encoder = new Encoder();
+        List<int[]> sameTerm = new ArrayList<>();
+        while (!cursors.isEmpty()) {
+            sameTerm.clear();
+            int[] first = cursors.poll();
+            String term = segments.get(first[0]).terms[first[1]];
+            sameTerm.add(first);
+            while (!cursors.isEmpty() && segments.get(cursors.peek()[0]).terms[cursors.peek()[1]].equals(term)) {
+                sameTerm.add(cursors.poll());
+            }
+            int start = encoder.size;
+            int previous = 0;
+            int docFreq = 0;
+            for (int[] cursor : sameTerm) {
+                Segment segment = segments.get(cursor[0]);
+                Postings postings = segment.new Postings().reset(cursor[1]);
+                while (postings.next()) {
+                    int doc = remap[cursor[0]][postings.doc];
+                    if (doc < 0) continue;
+                    encoder.varint(doc - previous);
+                    encoder.varint(postings.freq);
+                    previous = doc;
+                    docFreq++;
+                }
+                if (cursor[1] + 1 < segment.terms.length) {
+                    cursors.add(new int[]{cursor[0], cursor[1] + 1});
+                }
+            }
+            if (docFreq == 0) {
+                encoder.size = start;
+                continue;
+            }
+            terms.add(term);
+            docFreqs.add(docFreq);
+            offsets.add(start);
+        }
+        offsets.add(encoder.size);
+        return new Segment(generation, oldest, urls, indexedAt, lengths, terms.toArray(new String[0]), docFreqs.toArray(),
+                offsets.toArray(), encoder.toArray(), new long[(live + 63) >>> 6]);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(generation);
+        out.writeLong(order);
+        out.writeInt(urls.length);
+        for (int doc = 0; doc < urls.length; doc++) {
+            out.writeUTF(urls[doc]);
+            out.writeLong(indexedAt[doc]);
+            out.writeInt(lengths[doc]);
+        }
+        out.writeInt(terms.length);
+        for (int term = 0; term < terms.length; term++) {
+            out.writeUTF(terms[term]);
+            out.writeInt(docFreqs[term]);
+            out.writeInt(postingOffsets[term]);
+        }
+        out.writeInt(postings.length);
+        out.write(postings);
+        for (long word : deleted) out.writeLong(word);
+    }
+
+    static Segment read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a history index segment");
+        }
+        int version = in.readInt();
+        if (version != 1 && version != FORMAT_VERSION) {
+            throw new IOException("Unsupported history index segment version " + version);
+        }
+        long generation = in.readLong();
+        // Version 1 did not store the order; its merged segments sort as if they were new
+        long order = version == 1 ? generation : in.readLong();
+        int docs = in.readInt();
+        String[] urls = new String[docs];
+        long[] indexedAt = new long[docs];
+        int[] lengths = new int[docs];
+        for (int doc = 0; doc < docs; doc++) {
+            urls[doc] = in.readUTF();
+            indexedAt[doc] = in.readLong();
+            lengths[doc] = in.readInt();
+        }
+        int termCount = in.readInt();
+        String[] terms = new String[termCount];
+        int[] docFreqs = new int[termCount];
+        int[] offsets = new int[termCount + 1];
+        for (int term = 0; term < termCount; term++) {
+            terms[term] = in.readUTF();
+            docFreqs[term] = in.readInt();
+            offsets[term] = in.readInt();
+        }
+        byte[] postings = new byte[in.readInt()];
+        in.readFully(postings);
+        offsets[termCount] = postings.length;
+        long[] deleted = new long[(docs + 63) >>> 6];
+        for (int i = 0; i < deleted.length; i++) deleted[i] = in.readLong();
+        return new Segment(generation, order, urls, indexedAt, lengths, terms, docFreqs, offsets, postings, deleted);
+    }
+
+    /** Growable byte array of variable-length ints. */
+    static final class Encoder {
+        byte[] bytes = new byte[1024];
+        int size;
+
+        void varint(int value) {
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /** Growable int array. */
+    static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
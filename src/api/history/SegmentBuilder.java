@@ -0,0 +1,86 @@
+package api.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects newly indexed pages until they are turned into a {@link Segment}. Not thread safe.
+ */
+final class SegmentBuilder {
+
+    private final List<String> urls = new ArrayList<>();
+    private final Segment.IntList lengths = new Segment.IntList();
+    private long[] indexedAt = new long[16];
+    private final Map<String, Segment.IntList> postings = new HashMap<>();
+    private final Map<String, Integer> docsByUrl = new HashMap<>();
+    private long[] deleted = new long[1];
+
+    /**
+     * Adds a page. A page already in the builder under the same URL is replaced.
+     *
+     * @param terms  Count of each term in the page.
+     * @param length Number of terms in the page.
+     */
+    void add(String url, long time, Map<String, Integer> terms, int length) {
+        int doc = urls.size();
+        Integer previous = docsByUrl.put(url, doc);
+        if (previous != null) {
+            deleted[previous >>> 6] |= 1L << previous;
+        }
+        urls.add(url);
+        lengths.add(length);
+        if (doc == indexedAt.length) indexedAt = Arrays.copyOf(indexedAt, doc * 2);
+        indexedAt[doc] = time;
+        if ((doc >>> 6) >= deleted.length) deleted = Arrays.copyOf(deleted, deleted.length * 2);
+        for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+            Segment.IntList list = postings.computeIfAbsent(entry.getKey(), term -> new Segment.IntList());
+            list.add(doc);
+            list.add(entry.getValue());
+        }
+    }
+
+    int size() {
+        return urls.size();
+    }
+
+    boolean isEmpty() {
+        return urls.isEmpty();
+    }
+
+    List<String> urls() {
+        return urls;
+    }
+
+    /**
+     * Returns whether the document is an older copy of a page replaced in this builder.
+     */
+    boolean isReplaced(int doc) {
+        return (deleted[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    Segment build(long generation) {
+        String[] terms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] docFreqs = new int[terms.length];
+        int[] offsets = new int[terms.length + 1];
+        Segment.Encoder encoder = new Segment.Encoder();
+        for (int t = 0; t < terms.length; t++) {
+            Segment.IntList list = postings.get(terms[t]);
+            offsets[t] = encoder.size;
+            int previous = 0;
+            for (int i = 0; i < list.size; i += 2) {
+                encoder.varint(list.values[i] - previous);
+                encoder.varint(list.values[i + 1]);
+                previous = list.values[i];
+            }
+            docFreqs[t] = list.size / 2;
+        }
+        offsets[terms.length] = encoder.size;
+        int docs = urls.size();
+        return new Segment(generation, generation, urls.toArray(new String[0]), Arrays.copyOf(indexedAt, docs), lengths.toArray(),
+                terms, docFreqs, offsets, encoder.toArray(), Arrays.copyOf(deleted, (docs + 63) >>> 6));
+    }
+}
@@ -0,0 +1,64 @@
+package api.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Splits text into index terms: runs of letters and digits, lower-cased. Terms shorter than two
+ * characters or longer than {@value #MAX_TERM_LENGTH} are dropped; the first are too common to
+ * be useful and the second are mostly hashes and base64.
+ */
+final class Tokenizer {
+
+    static final int MAX_TERM_LENGTH = 32;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Adds the terms of a text to a count per term.
+     *
+     * @param weight What each occurrence adds to its term's count.
+     * @return The number of terms in the text.
+     */
+    static int count(CharSequence text, int weight, Map<String, Integer> counts) {
+        int[] total = {0};
+        split(text, term -> {
+            counts.merge(term, weight, Integer::sum);
+            total[0]++;
+        });
+        return total[0];
+    }
+
+    /**
+     * Returns the terms of a text in order, duplicates included.
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        split(text, terms::add);
+        return terms;
+    }
+
+    private static void split(CharSequence text, Consumer<String> sink) {
+        StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+        boolean tooLong = false;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                } else {
+                    tooLong = true;
+                }
+            } else if (!term.isEmpty()) {
+                if (term.length() >= 2 && !tooLong) {
+                    sink.accept(term.toString());
+                }
+                term.setLength(0);
+                tooLong = false;
+            }
+        }
+    }
+}
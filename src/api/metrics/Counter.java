@@ -0,0 +1,36 @@
+package api.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic lock-free counter. Obtained from {@link Metrics#counter(String)}; when metrics are
+ * disabled a shared no-op instance is returned and every call is a single null check.
+ */
+public class Counter {
+
+    static final Counter NOOP = new Counter(null, null);
+
+    private final String name;
+    private final LongAdder adder;
+
+    Counter(String name, LongAdder adder) {
+        this.name = name;
+        this.adder = adder;
+    }
+
+    public void increment() {
+        if (adder != null) adder.increment();
+    }
+
+    public void add(long amount) {
+        if (adder != null) adder.add(amount);
+    }
+
+    public long get() {
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
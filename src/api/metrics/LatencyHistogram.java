@@ -0,0 +1,131 @@
+package api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * <p>
+ * Values below 16 are counted exactly; above that every power of two is split into 8
+ * sub-buckets, which keeps the relative error under 12.5% for any value up to
+ * {@code Long.MAX_VALUE} with a fixed 488-slot array. Values are microseconds by convention.
+ */
+public class LatencyHistogram {
+
+    static final LatencyHistogram NOOP = new LatencyHistogram(null, false);
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - 4) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    LatencyHistogram(String name, boolean enabled) {
+        this.name = name;
+        this.buckets = enabled ? new AtomicLongArray(BUCKET_COUNT) : null;
+        this.count = enabled ? new LongAdder() : null;
+        this.sum = enabled ? new LongAdder() : null;
+        this.max = enabled ? new AtomicLong() : null;
+    }
+
+    /**
+     * Records one value.
+     *
+     * @param value The value, normally a duration in microseconds. Negative values count as 0.
+     */
+    public void record(long value) {
+        if (buckets == null) return;
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        long currentMax = max.get();
+        while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()} value, in microseconds.
+     *
+     * @param startNanos The start timestamp.
+     */
+    public void recordSince(long startNanos) {
+        if (buckets == null) return;
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getSum() {
+        return sum == null ? 0 : sum.sum();
+    }
+
+    public long getMax() {
+        return max == null ? 0 : max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return The upper edge of the bucket containing that percentile, or 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        if (buckets == null) return 0;
+        long[] snapshot = snapshotBuckets();
+        long total = 0;
+        for (long c : snapshot) total += c;
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Copies the bucket counts. Counts may be slightly inconsistent with {@link #getCount()}
+     * while writers are active.
+     */
+    long[] snapshotBuckets() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        if (buckets == null) return snapshot;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+        }
+        return snapshot;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+}
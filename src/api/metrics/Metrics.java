@@ -0,0 +1,163 @@
+package api.metrics;
+
+import api.concurrent.LinkExecutors;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics registry for the browser core.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Dlink.metrics=jsonl} or
+ * {@code -Dlink.metrics=openmetrics}. While off, every factory method returns a shared no-op
+ * instance, so instrumented code pays a null check per call. While on, a scheduled task exports
+ * a snapshot every {@value #EXPORT_INTERVAL_SECONDS} seconds (and once more at shutdown) to
+ * {@code -Dlink.metrics.file}, defaulting to user.home/LinkBrowser/metrics.jsonl or metrics.prom.
+ * <p>
+ * Callers are expected to look metrics up once and keep them in static fields.
+ */
+public final class Metrics {
+
+    public enum Format { OFF, JSONL, OPENMETRICS }
+
+    private static final long EXPORT_INTERVAL_SECONDS = 10;
+    private static final int MAX_PENDING_TRACES = 10_000;
+
+    private static final Format FORMAT = parseFormat(System.getProperty("link.metrics", "off"));
+    private static final boolean ENABLED = FORMAT != Format.OFF;
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final Queue<TraceEvent> TRACES = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger PENDING_TRACES = new AtomicInteger();
+    private static final LongAdder DROPPED_TRACES = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            registerGcGauges();
+            startExporter();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name Metric name in snake_case, without the "_total" suffix.
+     */
+    public static Counter counter(String name) {
+        if (!ENABLED) return Counter.NOOP;
+        return COUNTERS.computeIfAbsent(name, n -> new Counter(n, new LongAdder()));
+    }
+
+    /**
+     * Returns the latency histogram with the given name, creating it on first use.
+     *
+     * @param name Metric name in snake_case, without a unit suffix. Values are microseconds.
+     */
+    public static LatencyHistogram histogram(String name) {
+        if (!ENABLED) return LatencyHistogram.NOOP;
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram(n, true));
+    }
+
+    /**
+     * Registers a gauge sampled at export time. Re-registering a name replaces the supplier.
+     *
+     * @param name     Metric name in snake_case.
+     * @param supplier Supplies the current value; must be cheap and thread-safe.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        if (!ENABLED) return;
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * Starts a span whose duration is recorded in the histogram of the same name.
+     *
+     * @param name Histogram name.
+     */
+    public static Span span(String name) {
+        if (!ENABLED) return Span.NOOP;
+        return new Span(histogram(name), System.nanoTime(), System.currentTimeMillis() * 1000);
+    }
+
+    static void trace(String name, long startEpochMicros, long durationMicros, String outcome) {
+        if (FORMAT != Format.JSONL) return;
+        if (PENDING_TRACES.incrementAndGet() > MAX_PENDING_TRACES) {
+            PENDING_TRACES.decrementAndGet();
+            DROPPED_TRACES.increment();
+            return;
+        }
+        TRACES.add(new TraceEvent(name, startEpochMicros, durationMicros, outcome, Thread.currentThread().getName()));
+    }
+
+    static TraceEvent pollTrace() {
+        TraceEvent event = TRACES.poll();
+        if (event != null) PENDING_TRACES.decrementAndGet();
+        return event;
+    }
+
+    static long getDroppedTraces() {
+        return DROPPED_TRACES.sum();
+    }
+
+    static Map<String, Counter> getCounters() {
+        return COUNTERS;
+    }
+
+    static Map<String, LatencyHistogram> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    static Map<String, LongSupplier> getGauges() {
+        return GAUGES;
+    }
+
+    private static void registerGcGauges() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String id = gc.getName().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+            gauge("link_gc_" + id + "_collections", gc::getCollectionCount);
+            gauge("link_gc_" + id + "_time_ms", gc::getCollectionTime);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        gauge("link_heap_used_bytes", () -> runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private static void startExporter() {
+        String defaultName = FORMAT == Format.JSONL ? "metrics.jsonl" : "metrics.prom";
+        String file = System.getProperty("link.metrics.file",
+                System.getProperty("user.home") + File.separator + "LinkBrowser" + File.separator + defaultName);
+        MetricsExporter exporter = new MetricsExporter(FORMAT, new File(file));
+
+        LinkExecutors.scheduleWithFixedDelay(exporter::export, EXPORT_INTERVAL_SECONDS, EXPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(exporter::export, "link-metrics-final-export"));
+    }
+
+    private static Format parseFormat(String value) {
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "jsonl", "json" -> Format.JSONL;
+            case "openmetrics", "prometheus" -> Format.OPENMETRICS;
+            default -> Format.OFF;
+        };
+    }
+
+    record TraceEvent(String name, long startEpochMicros, long durationMicros, String outcome, String thread) {
+    }
+}
@@ -0,0 +1,133 @@
+package api.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes registry snapshots to a local file.
+ * <p>
+ * JSON lines mode appends one object per metric plus one per finished span on every export.
+ * OpenMetrics mode rewrites the file with the current totals (via a temporary file and a
+ * rename, so scrapers never see a half-written file).
+ */
+class MetricsExporter {
+
+    private final Metrics.Format format;
+    private final File file;
+
+    MetricsExporter(Metrics.Format format, File file) {
+        this.format = format;
+        this.file = file;
+    }
+
+    synchronized void export() {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            System.err.println("Failed to create metrics directory: " + dir);
+            return;
+        }
+        try {
+            if (format == Metrics.Format.JSONL) {
+                exportJsonLines();
+            } else {
+                exportOpenMetrics();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to export metrics: " + e.getMessage());
+        }
+    }
+
+    private void exportJsonLines() throws IOException {
+        long ts = System.currentTimeMillis();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            for (Counter counter : sorted(Metrics.getCounters()).values()) {
+                writer.write("{\"ts\":" + ts + ",\"type\":\"counter\",\"name\":\"" + counter.getName()
+                        + "\",\"value\":" + counter.get() + "}\n");
+            }
+            for (Map.Entry<String, LongSupplier> gauge : sorted(Metrics.getGauges()).entrySet()) {
+                writer.write("{\"ts\":" + ts + ",\"type\":\"gauge\",\"name\":\"" + gauge.getKey()
+                        + "\",\"value\":" + gauge.getValue().getAsLong() + "}\n");
+            }
+            for (LatencyHistogram h : sorted(Metrics.getHistograms()).values()) {
+                writer.write("{\"ts\":" + ts + ",\"type\":\"histogram\",\"name\":\"" + h.getName()
+                        + "\",\"count\":" + h.getCount() + ",\"sumMicros\":" + h.getSum()
+                        + ",\"p50Micros\":" + h.getPercentile(50) + ",\"p90Micros\":" + h.getPercentile(90)
+                        + ",\"p99Micros\":" + h.getPercentile(99) + ",\"maxMicros\":" + h.getMax() + "}\n");
+            }
+            Metrics.TraceEvent event;
+            while ((event = Metrics.pollTrace()) != null) {
+                writer.write("{\"ts\":" + ts + ",\"type\":\"span\",\"name\":\"" + event.name()
+                        + "\",\"startMicros\":" + event.startEpochMicros() + ",\"durationMicros\":" + event.durationMicros()
+                        + ",\"outcome\":\"" + event.outcome() + "\",\"thread\":\"" + escapeJson(event.thread()) + "\"}\n");
+            }
+            long dropped = Metrics.getDroppedTraces();
+            if (dropped > 0) {
+                writer.write("{\"ts\":" + ts + ",\"type\":\"counter\",\"name\":\"link_dropped_spans\",\"value\":" + dropped + "}\n");
+            }
+        }
+    }
+
+    private void exportOpenMetrics() throws IOException {
+        StringBuilder out = new StringBuilder(4096);
+        for (Counter counter : sorted(Metrics.getCounters()).values()) {
+            out.append("# TYPE ").append(counter.getName()).append(" counter\n");
+            out.append(counter.getName()).append("_total ").append(counter.get()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> gauge : sorted(Metrics.getGauges()).entrySet()) {
+            out.append("# TYPE ").append(gauge.getKey()).append(" gauge\n");
+            out.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        for (LatencyHistogram h : sorted(Metrics.getHistograms()).values()) {
+            appendHistogram(out, h);
+        }
+        out.append("# EOF\n");
+
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.writeString(tmp.toPath(), out, StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Emits cumulative buckets at every power-of-two microsecond boundary up to the largest
+     * observed value, converted to seconds as OpenMetrics expects.
+     */
+    private static void appendHistogram(StringBuilder out, LatencyHistogram h) {
+        String name = h.getName() + "_seconds";
+        long[] buckets = h.snapshotBuckets();
+        out.append("# TYPE ").append(name).append(" histogram\n");
+
+        long cumulative = 0;
+        int index = 0;
+        long max = h.getMax();
+        for (long bound = 1; ; bound <<= 1) {
+            while (index < buckets.length && LatencyHistogram.bucketUpperBound(index) <= bound) {
+                cumulative += buckets[index++];
+            }
+            out.append(name).append("_bucket{le=\"").append(bound / 1_000_000.0).append("\"} ").append(cumulative).append('\n');
+            if (bound > max || bound >= (1L << 40)) break;
+        }
+        long total = cumulative;
+        while (index < buckets.length) total += buckets[index++];
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_count ").append(total).append('\n');
+        out.append(name).append("_sum ").append(h.getSum() / 1_000_000.0).append('\n');
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> metrics) {
+        return new TreeMap<>(metrics);
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,42 @@
+package api.metrics;
+
+/**
+ * A timed operation. Ending a span records its duration into the histogram of the same name
+ * and, when tracing is exported, queues a trace event.
+ * <p>
+ * Spans can be used with try-with-resources or ended later from another callback (for example
+ * when a page load started in SCHEDULED finishes in SUCCEEDED). Ending a span twice has no effect.
+ */
+public class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null, 0, 0);
+
+    private final LatencyHistogram histogram;
+    private final long startNanos;
+    private final long startEpochMicros;
+    private boolean ended = false;
+
+    Span(LatencyHistogram histogram, long startNanos, long startEpochMicros) {
+        this.histogram = histogram;
+        this.startNanos = startNanos;
+        this.startEpochMicros = startEpochMicros;
+    }
+
+    /**
+     * Ends the span.
+     *
+     * @param outcome Short outcome label stored with the trace event, such as "ok" or "failed".
+     */
+    public void end(String outcome) {
+        if (histogram == null || ended) return;
+        ended = true;
+        long durationMicros = (System.nanoTime() - startNanos) / 1000;
+        histogram.record(durationMicros);
+        Metrics.trace(histogram.getName(), startEpochMicros, durationMicros, outcome);
+    }
+
+    @Override
+    public void close() {
+        end("ok");
+    }
+}
@@ -0,0 +1,291 @@
+package api.newtab;
+
+import api.bridge.Html;
+import api.concurrent.LinkExecutors;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.profile.HistoryEntry;
+import api.profile.HistoryStore;
+import api.profile.ProfileStore;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import ui.bookmark.Bookmark;
+import ui.bookmark.BookmarkPersistence;
+import ui.bookmark.FaviconCache;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The internal link://newtab page that new tabs open on: the most visited sites as thumbnail
+ * tiles, and the bookmarks.
+ * <p>
+ * The page is built from the profile alone, with thumbnails and favicons embedded as data URIs,
+ * so showing it never touches the network. The HTML is kept pre-rendered: a tab gets the cached
+ * copy at once, and a copy older than {@value #MAX_AGE_MS} ms, or one a new thumbnail or
+ * bookmark has made out of date, is rebuilt in the background for the next tab.
+ * <p>
+ * Thumbnails come from the snapshots the tab strip already takes, and are only kept for sites
+ * that are currently tiles.
+ */
+public final class NewTabPage {
+
+    public static final String URL = "link://newtab";
+
+    private static final int TOP_SITES = 8;
+    private static final int MAX_BOOKMARKS = 16;
+    private static final long MAX_AGE_MS = 60_000;
+    /** A site's thumbnail is replaced at most this often. */
+    private static final long THUMBNAIL_INTERVAL_MS = 10 * 60_000;
+    private static final int THUMBNAIL_WIDTH = 160;
+    private static final int THUMBNAIL_HEIGHT = 100;
+    private static final int MAX_URL_BYTES = 480;
+    private static final String THUMBNAIL_PREFIX = "newtab/thumbnails/";
+
+    private static final LatencyHistogram RENDER_TIME = Metrics.histogram("link_newtab_render");
+
+    private static volatile NewTabPage instance;
+
+    private record Rendered(String html, long renderedAt, long bookmarkGeneration) {
+    }
+
+    private final ProfileStore store;
+    private final HistoryStore history;
+    private final Map<String, String> favicons = new ConcurrentHashMap<>();
+    private final Map<String, Long> thumbnailTimes = new ConcurrentHashMap<>();
+    private volatile Set<String> tileUrls = Set.of();
+    private volatile Rendered rendered;
+    private volatile boolean dirty;
+    private CompletableFuture<String> rendering;
+
+    public static NewTabPage getInstance() {
+        NewTabPage result = instance;
+        if (result == null) {
+            synchronized (NewTabPage.class) {
+                result = instance;
+                if (result == null) {
+                    instance = result = new NewTabPage(ProfileStore.getInstance(), HistoryStore.getInstance());
+                }
+            }
+        }
+        return result;
+    }
+
+    public NewTabPage(ProfileStore store, HistoryStore history) {
+        this.store = store;
+        this.history = history;
+    }
+
+    /**
+     * Returns the page's HTML. Completes at once with the cached copy when there is one, which
+     * is rebuilt in the background if out of date; the very first call waits for a build.
+     */
+    public CompletableFuture<String> getHtml() {
+        Rendered current = rendered;
+        if (current == null) {
+            return refresh();
+        }
+        if (dirty || current.bookmarkGeneration() != BookmarkPersistence.getGeneration()
+                || System.currentTimeMillis() - current.renderedAt() > MAX_AGE_MS) {
+            refresh();
+        }
+        return CompletableFuture.completedFuture(current.html());
+    }
+
+    /**
+     * Builds the page in the background unless a build is already running.
+     */
+    public synchronized CompletableFuture<String> refresh() {
+        if (rendering != null && !rendering.isDone()) return rendering;
+        dirty = false;
+        rendering = CompletableFuture.supplyAsync(this::render, LinkExecutors.io());
+        rendering.exceptionally(error -> {
+            System.err.println("Failed to build the new tab page: " + error.getMessage());
+            return null;
+        });
+        return rendering;
+    }
+
+    /**
+     * Keeps a snapshot of a page as its tile's thumbnail, if the page is a tile and its
+     * thumbnail has not been replaced recently. Scaling and encoding happen off the caller's
+     * thread.
+     *
+     * @param argb Pixels in row order, read later on a worker thread; not modified, and the
+     *             caller must not change them after handing them over.
+     */
+    public void offerThumbnail(String url, int width, int height, int[] argb) {
+        if (url == null || !tileUrls.contains(url) || width <= 0 || height <= 0) return;
+        long now = System.currentTimeMillis();
+        Long last = thumbnailTimes.get(url);
+        if (last != null && now - last < THUMBNAIL_INTERVAL_MS) return;
+        thumbnailTimes.put(url, now);
+        CompletableFuture.runAsync(() -> {
+            int[] scaled = scale(argb, width, height);
+            byte[] png = PngEncoder.encode(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, scaled);
+            store.submit(() -> store.put(THUMBNAIL_PREFIX + url, png));
+            dirty = true;
+        }, LinkExecutors.cpu());
+    }
+
+    private String render() {
+        long start = System.nanoTime();
+        long generation = BookmarkPersistence.getGeneration();
+        List<HistoryEntry> topSites = new ArrayList<>();
+        for (HistoryEntry entry : history.getMostVisited(TOP_SITES * 2)) {
+            if (topSites.size() < TOP_SITES && entry.getUrl().getBytes(StandardCharsets.UTF_8).length <= MAX_URL_BYTES) {
+                topSites.add(entry);
+            }
+        }
+        List<Bookmark> bookmarks = BookmarkPersistence.loadBookmarks();
+
+        Set<String> urls = new HashSet<>();
+        StringBuilder tiles = new StringBuilder();
+        for (HistoryEntry site : topSites) {
+            urls.add(site.getUrl());
+            String title = site.getTitle() == null || site.getTitle().isBlank() ? hostOf(site.getUrl()) : site.getTitle();
+            byte[] thumbnail = store.get(THUMBNAIL_PREFIX + site.getUrl());
+            tiles.append("<a class=\"tile\" href=\"").append(Html.escape(site.getUrl())).append("\" title=\"")
+                    .append(Html.escape(site.getUrl())).append("\">");
+            if (thumbnail != null) {
+                tiles.append("<img class=\"shot\" src=\"").append(dataUri(thumbnail)).append("\">");
+            } else {
+                tiles.append("<div class=\"shot blank\">").append(Html.escape(initialOf(site.getUrl()))).append("</div>");
+            }
+            tiles.append("<div class=\"name\">").append(favicon(site.getUrl())).append(Html.escape(title)).append("</div></a>");
+        }
+        if (topSites.isEmpty()) {
+            tiles.append("<p class=\"meta\">Sites you visit often will show up here.</p>");
+        }
+        tileUrls = Set.copyOf(urls);
+        dropUnusedThumbnails(urls);
+
+        StringBuilder marks = new StringBuilder();
+        for (Bookmark bookmark : bookmarks.subList(0, Math.min(MAX_BOOKMARKS, bookmarks.size()))) {
+            String name = bookmark.getName() == null || bookmark.getName().isBlank() ? hostOf(bookmark.getUrl()) : bookmark.getName();
+            marks.append("<a class=\"bookmark\" href=\"").append(Html.escape(bookmark.getUrl())).append("\">")
+                    .append(favicon(bookmark.getUrl())).append(Html.escape(name)).append("</a>");
+        }
+
+        String html = """
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>New Tab</title><style>
+                body { font-family: Tahoma, sans-serif; margin: 40px auto; max-width: 760px; color: #222; }
+                h2 { font-size: 14px; color: #555; font-weight: normal; margin: 28px 0 10px; }
+                .tiles { display: flex; flex-wrap: wrap; gap: 16px; }
+                .tile { width: 172px; text-decoration: none; color: #222; }
+                .shot { display: block; width: 160px; height: 100px; border: 6px solid #eee; border-radius: 6px; background: #f7f7f7; }
+                .blank { display: flex; align-items: center; justify-content: center; font-size: 36px; color: #aaa; }
+                .tile:hover .shot { border-color: #d6e2f5; }
+                .name { font-size: 12px; margin-top: 4px; white-space: nowrap; overflow: hidden; text-overflow: ellipsis; }
+                .icon { width: 16px; height: 16px; vertical-align: -3px; margin-right: 5px; }
+                .bookmarks { display: flex; flex-wrap: wrap; gap: 8px; }
+                .bookmark { font-size: 13px; color: #1a4fb0; text-decoration: none; padding: 5px 10px; border-radius: 4px; background: #f0f0f0; }
+                .meta { color: #777; font-size: 12px; }
+                </style></head><body>
+                <h2>Top sites</h2>
+                <div class="tiles">%s</div>
+                %s
+                </body></html>
+                """.formatted(tiles, marks.isEmpty() ? "" : "<h2>Bookmarks</h2><div class=\"bookmarks\">" + marks + "</div>");
+        rendered = new Rendered(html, System.currentTimeMillis(), generation);
+        RENDER_TIME.recordSince(start);
+        return html;
+    }
+
+    /**
+     * Returns an img tag for the site's favicon if it has been fetched. Otherwise starts the
+     * fetch, so the icon is there the next time the page is built.
+     */
+    private String favicon(String url) {
+        String host = hostOf(url);
+        String uri = favicons.get(host);
+        if (uri == null) {
+            Image image = FaviconCache.getIfLoaded(url);
+            if (image == null) {
+                FaviconCache.get(url).thenRun(() -> dirty = true);
+                return "";
+            }
+            uri = encodeIcon(image);
+            favicons.put(host, uri);
+        }
+        return uri.isEmpty() ? "" : "<img class=\"icon\" src=\"" + uri + "\">";
+    }
+
+    private static String encodeIcon(Image image) {
+        PixelReader reader = image.getPixelReader();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (reader == null || image.isError() || width <= 0 || height <= 0) return "";
+        int[] argb = new int[width * height];
+        reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        for (int i = 0; i < argb.length; i++) {
+            // Blend onto white, since the encoder drops alpha
+            int alpha = argb[i] >>> 24;
+            int r = ((argb[i] >> 16 & 0xff) * alpha + 255 * (255 - alpha)) / 255;
+            int g = ((argb[i] >> 8 & 0xff) * alpha + 255 * (255 - alpha)) / 255;
+            int b = ((argb[i] & 0xff) * alpha + 255 * (255 - alpha)) / 255;
+            argb[i] = r << 16 | g << 8 | b;
+        }
+        return dataUri(PngEncoder.encode(width, height, argb));
+    }
+
+    /** Scales a snapshot to thumbnail size, cropping it to the thumbnail's aspect ratio. */
+    private static int[] scale(int[] argb, int width, int height) {
+        double scale = Math.max((double) THUMBNAIL_WIDTH / width, (double) THUMBNAIL_HEIGHT / height);
+        int[] scaled = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        for (int y = 0; y < THUMBNAIL_HEIGHT; y++) {
+            int sourceY = Math.min(height - 1, (int) (y / scale));
+            for (int x = 0; x < THUMBNAIL_WIDTH; x++) {
+                scaled[y * THUMBNAIL_WIDTH + x] = argb[sourceY * width + Math.min(width - 1, (int) (x / scale))];
+            }
+        }
+        return scaled;
+    }
+
+    private void dropUnusedThumbnails(Set<String> urls) {
+        List<String> unused = new ArrayList<>();
+        for (String key : store.keys(THUMBNAIL_PREFIX)) {
+            if (!urls.contains(key.substring(THUMBNAIL_PREFIX.length()))) {
+                unused.add(key);
+            }
+        }
+        if (unused.isEmpty()) return;
+        store.submit(() -> {
+            ProfileStore.Transaction transaction = store.begin();
+            for (String key : unused) {
+                transaction.delete(key);
+            }
+            transaction.commit();
+        });
+    }
+
+    private static String dataUri(byte[] png) {
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+    }
+
+    private static String initialOf(String url) {
+        String host = hostOf(url);
+        if (host.startsWith("www.")) host = host.substring(4);
+        return host.isEmpty() ? "?" : host.substring(0, 1).toUpperCase(Locale.ROOT);
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package api.newtab;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes opaque ARGB pixels as an 8-bit RGB PNG, so cached thumbnails and icons can be embedded
+ * in generated pages without pulling in AWT. Rows use the Sub filter, which suits screenshots.
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte FILTER_SUB = 1;
+
+    private PngEncoder() {
+    }
+
+    /**
+     * @param argb Pixels in row order; alpha is dropped.
+     */
+    static byte[] encode(int width, int height, int[] argb) {
+        byte[] raw = new byte[height * (1 + width * 3)];
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            raw[pos++] = FILTER_SUB;
+            int left = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                raw[pos++] = (byte) ((pixel >> 16) - (left >> 16));
+                raw[pos++] = (byte) ((pixel >> 8) - (left >> 8));
+                raw[pos++] = (byte) (pixel - left);
+                left = pixel;
+            }
+        }
+
+        Deflater deflater = new Deflater();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(compressed.size() + 64);
+        png.writeBytes(SIGNATURE);
+        writeChunk(png, "IHDR", ByteBuffer.allocate(13).putInt(width).putInt(height)
+                .put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0).array());
+        writeChunk(png, "IDAT", compressed.toByteArray());
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        out.writeBytes(typeBytes);
+        out.writeBytes(data);
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
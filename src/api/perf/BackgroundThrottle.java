@@ -0,0 +1,258 @@
+package api.perf;
+
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import javafx.scene.web.WebEngine;
+
+/**
+ * Slows down a tab's page while the tab is hidden.
+ * <p>
+ * A shim installed in every document wraps {@code setInterval}, {@code setTimeout} and
+ * {@code requestAnimationFrame}. While the tab is hidden, intervals and timeouts fire at most
+ * once per {@value #HIDDEN_TIMER_INTERVAL_MS} ms and animation frames are batched onto the same
+ * period; media elements and Ruffle players are paused. Showing the tab restores the original
+ * periods, flushes the pending frames and resumes what was paused.
+ * <p>
+ * Page scripts run on the FX thread, so every skipped callback is FX time given back to the
+ * visible tab. The shim counts the callbacks it avoided and times the ones it ran; on resume,
+ * their product is reported as the estimated time saved. Timers a page starts before the shim
+ * is installed keep their original period. All methods must be called on the FX application
+ * thread.
+ */
+public class BackgroundThrottle {
+
+    static final long HIDDEN_TIMER_INTERVAL_MS = 1000;
+
+    private static final Counter CALLBACKS_AVOIDED = Metrics.counter("link_background_callbacks_avoided");
+    private static final Counter CPU_SAVED_MICROS = Metrics.counter("link_background_cpu_saved_micros");
+    private static final Counter MEDIA_PAUSED = Metrics.counter("link_background_media_paused");
+
+    private static final String SHIM_SCRIPT = """
+            (function() {
+                if (window.__linkThrottle) return;
+                var nativeSetInterval = window.setInterval.bind(window);
+                var nativeClearInterval = window.clearInterval.bind(window);
+                var nativeSetTimeout = window.setTimeout.bind(window);
+                var nativeClearTimeout = window.clearTimeout.bind(window);
+                var nativeRaf = window.requestAnimationFrame ? window.requestAnimationFrame.bind(window) : null;
+                var nativeCancelRaf = window.cancelAnimationFrame ? window.cancelAnimationFrame.bind(window) : null;
+                var MIN_DELAY = %d;
+                var T = window.__linkThrottle = {
+                    hidden: false, frameRequests: 0, runs: 0, runMs: 0, hiddenSince: 0,
+                    intervals: {}, frames: {}, frameTimer: null, paused: []
+                };
+                var nextId = 1000000;
+                var nextFrameId = 0;
+
+                function timed(fn, args) {
+                    var start = performance.now();
+                    try {
+                        return typeof fn === 'function' ? fn.apply(window, args) : (0, eval)(fn);
+                    } finally {
+                        T.runs++;
+                        T.runMs += performance.now() - start;
+                    }
+                }
+
+                function startInterval(entry) {
+                    entry.period = T.hidden ? Math.max(entry.delay, MIN_DELAY) : entry.delay;
+                    entry.nativeId = nativeSetInterval(function() { timed(entry.fn, entry.args); }, entry.period);
+                }
+
+                window.setInterval = function(fn, delay) {
+                    var entry = { fn: fn, delay: Math.max(0, delay || 0), args: Array.prototype.slice.call(arguments, 2) };
+                    var id = nextId++;
+                    T.intervals[id] = entry;
+                    startInterval(entry);
+                    return id;
+                };
+                function clearTimer(id, nativeClear) {
+                    var entry = T.intervals[id];
+                    if (!entry) return nativeClear(id);
+                    nativeClearInterval(entry.nativeId);
+                    delete T.intervals[id];
+                }
+                window.clearInterval = function(id) { return clearTimer(id, nativeClearInterval); };
+                // Timer ids are shared between the two, so clearTimeout stops an interval too
+                window.clearTimeout = function(id) { return clearTimer(id, nativeClearTimeout); };
+                window.setTimeout = function(fn, delay) {
+                    var args = Array.prototype.slice.call(arguments, 2);
+                    var wait = Math.max(0, delay || 0);
+                    if (T.hidden && wait < MIN_DELAY) wait = MIN_DELAY;
+                    return nativeSetTimeout(function() { timed(fn, args); }, wait);
+                };
+
+                if (nativeRaf) {
+                    window.requestAnimationFrame = function(callback) {
+                        if (!T.hidden) return nativeRaf(callback);
+                        T.frameRequests++;
+                        // Negative, and never reused, so they cannot be mistaken for native ids
+                        var id = -(++nextFrameId);
+                        T.frames[id] = callback;
+                        if (T.frameTimer === null) {
+                            T.frameTimer = nativeSetTimeout(T.flushFrames, MIN_DELAY);
+                        }
+                        return id;
+                    };
+                    window.cancelAnimationFrame = function(id) {
+                        if (id < 0) { delete T.frames[id]; return; }
+                        nativeCancelRaf(id);
+                    };
+                }
+                T.flushFrames = function() {
+                    T.frameTimer = null;
+                    var frames = T.frames;
+                    T.frames = {};
+                    var now = performance.now();
+                    for (var id in frames) {
+                        timed(frames[id], [now]);
+                    }
+                };
+
+                function restartIntervals() {
+                    for (var id in T.intervals) {
+                        var entry = T.intervals[id];
+                        nativeClearInterval(entry.nativeId);
+                        startInterval(entry);
+                    }
+                }
+
+                T.hide = function() {
+                    if (T.hidden) return 0;
+                    T.hidden = true;
+                    T.hiddenSince = performance.now();
+                    T.frameRequests = 0;
+                    restartIntervals();
+                    var media = document.querySelectorAll('video, audio, ruffle-player, ruffle-object, ruffle-embed');
+                    for (var i = 0; i < media.length; i++) {
+                        var element = media[i];
+                        var playing = element.tagName === 'VIDEO' || element.tagName === 'AUDIO'
+                                ? !element.paused
+                                : element.isPlaying !== false;
+                        if (playing && typeof element.pause === 'function') {
+                            element.pause();
+                            T.paused.push(element);
+                        }
+                    }
+                    return T.paused.length;
+                };
+
+                T.show = function() {
+                    if (!T.hidden) return '0,0';
+                    var hiddenMs = performance.now() - T.hiddenSince;
+                    var avoided = 0;
+                    for (var id in T.intervals) {
+                        var entry = T.intervals[id];
+                        if (entry.period > entry.delay) {
+                            avoided += Math.floor(hiddenMs / Math.max(entry.delay, 4)) - Math.floor(hiddenMs / entry.period);
+                        }
+                    }
+                    T.hidden = false;
+                    restartIntervals();
+                    if (T.frameTimer !== null) { nativeClearTimeout(T.frameTimer); T.frameTimer = null; }
+                    var frames = T.frames;
+                    T.frames = {};
+                    for (var frameId in frames) {
+                        nativeRaf(frames[frameId]);
+                    }
+                    // An animation loop would have run at roughly 60 frames per second.
+                    if (T.frameRequests > 0) avoided += Math.max(0, Math.floor(hiddenMs / 16.7) - Math.floor(hiddenMs / MIN_DELAY));
+                    for (var j = 0; j < T.paused.length; j++) {
+                        var element = T.paused[j];
+                        if (element.isConnected !== false && typeof element.play === 'function') element.play();
+                    }
+                    T.paused = [];
+                    var averageMs = T.runs > 0 ? T.runMs / T.runs : 0;
+                    return avoided + ',' + Math.round(avoided * averageMs * 1000);
+                };
+            })();
+            """.formatted(HIDDEN_TIMER_INTERVAL_MS);
+
+    private final WebEngine webEngine;
+    private boolean enabled = true;
+    private boolean hidden = false;
+
+    public BackgroundThrottle(WebEngine webEngine) {
+        this.webEngine = webEngine;
+    }
+
+    /**
+     * Installs the shim in the current document and re-applies the hidden state. Call whenever
+     * a new document is created; installing twice is harmless.
+     */
+    public void install() {
+        if (webEngine.getDocument() == null) return;
+        try {
+            webEngine.executeScript(SHIM_SCRIPT);
+            if (hidden && enabled) {
+                pausePage();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to install background throttle: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Throttles or restores the page as its tab is hidden or shown.
+     *
+     * @param hidden True if the tab is no longer the visible one.
+     */
+    public void setHidden(boolean hidden) {
+        if (this.hidden == hidden) return;
+        this.hidden = hidden;
+        if (!enabled) return;
+        if (hidden) {
+            pausePage();
+        } else {
+            resumePage();
+        }
+    }
+
+    /**
+     * Turns throttling on or off. Turning it off restores a hidden page at once.
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) return;
+        if (!enabled && hidden) {
+            resumePage();
+        }
+        this.enabled = enabled;
+        if (enabled && hidden) {
+            pausePage();
+        }
+    }
+
+    public boolean isThrottling() {
+        return enabled && hidden;
+    }
+
+    private void pausePage() {
+        Object paused = execute("window.__linkThrottle ? window.__linkThrottle.hide() : 0");
+        if (paused instanceof Number number && number.intValue() > 0) {
+            MEDIA_PAUSED.add(number.intValue());
+        }
+    }
+
+    private void resumePage() {
+        Object savings = execute("window.__linkThrottle ? window.__linkThrottle.show() : '0,0'");
+        if (!(savings instanceof String text)) return;
+        String[] parts = text.split(",");
+        if (parts.length != 2) return;
+        try {
+            CALLBACKS_AVOIDED.add(Long.parseLong(parts[0]));
+            CPU_SAVED_MICROS.add(Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid throttle report: " + text);
+        }
+    }
+
+    private Object execute(String script) {
+        if (webEngine.getDocument() == null) return null;
+        try {
+            return webEngine.executeScript(script);
+        } catch (RuntimeException e) {
+            System.err.println("Background throttle script failed: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package api.perf;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Records the interval between FX pulses.
+ * <p>
+ * A running {@link AnimationTimer} forces a pulse every frame, so the monitor is reference
+ * counted and only runs while someone (the link://perf page) is looking at its numbers.
+ * Must be used from the FX application thread.
+ */
+public final class FxPulseMonitor {
+
+    /** Frames slower than this (about two 60 Hz frames) are reported as late. */
+    public static final long LATE_FRAME_MICROS = 33_000;
+
+    private static final PerfRingBuffer FRAME_INTERVALS = new PerfRingBuffer(600);
+    private static int users = 0;
+    private static long lastPulseNanos = 0;
+
+    private static final AnimationTimer TIMER = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (lastPulseNanos != 0) {
+                FRAME_INTERVALS.record((now - lastPulseNanos) / 1000);
+            }
+            lastPulseNanos = now;
+        }
+    };
+
+    private FxPulseMonitor() {
+    }
+
+    /** Starts sampling, or joins an already running sampler. */
+    public static void acquire() {
+        if (users++ == 0) {
+            lastPulseNanos = 0;
+            TIMER.start();
+        }
+    }
+
+    /** Leaves the sampler, stopping it when nobody else uses it. */
+    public static void release() {
+        if (users > 0 && --users == 0) {
+            TIMER.stop();
+        }
+    }
+
+    public static PerfRingBuffer getFrameIntervals() {
+        return FRAME_INTERVALS;
+    }
+}
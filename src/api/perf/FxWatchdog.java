@@ -0,0 +1,198 @@
+package api.perf;
+
+import api.Managers.ConfigManager;
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.profile.ProfileStore;
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Detects stalls of the FX application thread and records what it was doing.
+ * <p>
+ * A watchdog thread posts a heartbeat with {@code Platform.runLater}, checks that it ran, and
+ * posts the next {@value #HEARTBEAT_MS} ms later. A heartbeat still waiting after
+ * {@link ConfigManager#FX_STALL_THRESHOLD_MS} means the FX thread is stuck. From half the
+ * threshold until the heartbeat runs, the FX thread's stack is sampled every
+ * {@value #SAMPLE_INTERVAL_MS} ms, so the report also covers how the stall began; samples of a
+ * heartbeat that arrives before the threshold are thrown away. Each stall is written to the
+ * {@value #REPORT_DIRECTORY} directory of the profile as folded stacks, one
+ * {@code frame;frame;frame count} line per distinct stack, which flame graph tools read as is.
+ * The profile and settings are only opened on the watchdog's threads.
+ * <p>
+ * Outside a stall the cost is one posted runnable per heartbeat. Unlike an
+ * {@link javafx.animation.AnimationTimer}, a heartbeat does not force a render pulse.
+ */
+public final class FxWatchdog {
+
+    public static final String REPORT_DIRECTORY = "stalls";
+
+    private static final long HEARTBEAT_MS = 100;
+    private static final long SAMPLE_INTERVAL_MS = 10;
+    /** Sampling stops and the report is written after this long; the stall is still timed until it ends. */
+    private static final long MAX_SAMPLING_MS = 30_000;
+    private static final int MAX_REPORTS = 20;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Counter STALLS = Metrics.counter("link_fx_stalls");
+    private static final LatencyHistogram STALL_TIME = Metrics.histogram("link_fx_stall");
+
+    private static volatile FxWatchdog instance;
+
+    private final Supplier<Path> reportDirectory;
+    private final Supplier<ConfigManager> config;
+    private volatile Thread fxThread;
+    private volatile long beatNanos;
+    private Thread watchdog;
+
+    public static FxWatchdog getInstance() {
+        FxWatchdog result = instance;
+        if (result == null) {
+            synchronized (FxWatchdog.class) {
+                result = instance;
+                if (result == null) {
+                    instance = result = new FxWatchdog(
+                            () -> ProfileStore.getInstance().getDirectory().resolve(REPORT_DIRECTORY),
+                            ConfigManager::getInstance);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param reportDirectory Where stall reports are written; asked for and created when the
+     *                        first is written.
+     * @param config          Asked for once the watchdog thread runs.
+     */
+    public FxWatchdog(Supplier<Path> reportDirectory, Supplier<ConfigManager> config) {
+        this.reportDirectory = reportDirectory;
+        this.config = config;
+    }
+
+    /**
+     * Starts watching, unless already started. May be called from any thread.
+     */
+    public synchronized void start() {
+        if (watchdog != null) return;
+        watchdog = Thread.ofPlatform().daemon().name("link-fx-watchdog").start(this::run);
+    }
+
+    public synchronized void stop() {
+        if (watchdog == null) return;
+        watchdog.interrupt();
+        watchdog = null;
+    }
+
+    private void run() {
+        try {
+            ConfigManager settings = config.get();
+            while (!Thread.currentThread().isInterrupted()) {
+                long thresholdMs = settings.get(ConfigManager.FX_STALL_THRESHOLD_MS);
+                if (thresholdMs <= 0) {
+                    Thread.sleep(HEARTBEAT_MS * 10);
+                    continue;
+                }
+                long posted = System.nanoTime();
+                long beatBefore = beatNanos;
+                Platform.runLater(() -> {
+                    fxThread = Thread.currentThread();
+                    beatNanos = System.nanoTime();
+                });
+                Thread.sleep(thresholdMs / 2);
+                if (beatNanos == beatBefore && fxThread != null) {
+                    watchStall(posted, beatBefore, thresholdMs);
+                }
+                Thread.sleep(HEARTBEAT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Samples the FX thread until the heartbeat posted at {@code posted} runs, then records
+     * the stall if it lasted the threshold. A stall that outlasts {@value #MAX_SAMPLING_MS} ms
+     * is reported then, so a deadlocked FX thread still leaves a report.
+     */
+    private void watchStall(long posted, long beatBefore, long thresholdMs) throws InterruptedException {
+        Thread thread = fxThread;
+        Map<String, Integer> stacks = new HashMap<>();
+        boolean reported = false;
+        while (beatNanos == beatBefore) {
+            if (!reported && System.nanoTime() - posted >= MAX_SAMPLING_MS * 1_000_000) {
+                report(MAX_SAMPLING_MS, stacks);
+                reported = true;
+            }
+            if (!reported) {
+                String stack = fold(thread.getStackTrace());
+                if (!stack.isEmpty()) {
+                    stacks.merge(stack, 1, Integer::sum);
+                }
+            }
+            Thread.sleep(SAMPLE_INTERVAL_MS);
+        }
+        long micros = (beatNanos - posted) / 1000;
+        if (micros < thresholdMs * 1000) return;
+        STALLS.increment();
+        STALL_TIME.record(micros);
+        System.err.println("FX thread stalled for " + micros / 1000 + " ms");
+        if (!reported) {
+            report(micros / 1000, stacks);
+        }
+    }
+
+    private void report(long millis, Map<String, Integer> stacks) {
+        if (stacks.isEmpty()) return;
+        Map<String, Integer> snapshot = Map.copyOf(stacks);
+        LinkExecutors.io().execute(() -> writeReport(millis, snapshot));
+    }
+
+    /** Joins the frames root first, as flame graph tools expect. */
+    private static String fold(StackTraceElement[] frames) {
+        StringBuilder folded = new StringBuilder();
+        for (int i = frames.length - 1; i >= 0; i--) {
+            if (!folded.isEmpty()) folded.append(';');
+            folded.append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+        }
+        return folded.toString();
+    }
+
+    private void writeReport(long millis, Map<String, Integer> stacks) {
+        StringBuilder report = new StringBuilder();
+        stacks.forEach((stack, count) -> report.append(stack).append(' ').append(count).append('\n'));
+        try {
+            Path directory = reportDirectory.get();
+            Path file = directory.resolve("fx-stall-" + LocalDateTime.now().format(FILE_TIME) + "-" + millis + "ms.folded");
+            Files.createDirectories(directory);
+            Files.writeString(file, report, StandardCharsets.UTF_8);
+            System.err.println("Wrote FX stall report to " + file);
+            deleteOldReports(directory);
+        } catch (IOException e) {
+            System.err.println("Failed to write FX stall report: " + e.getMessage());
+        }
+    }
+
+    private static void deleteOldReports(Path directory) throws IOException {
+        List<Path> reports;
+        try (Stream<Path> files = Files.list(directory)) {
+            reports = files.filter(path -> path.getFileName().toString().endsWith(".folded")).sorted().toList();
+        }
+        for (int i = 0; i < reports.size() - MAX_REPORTS; i++) {
+            Files.deleteIfExists(reports.get(i));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package api.perf;
+
+import api.BrowserView;
+import api.Managers.TabManager;
+import api.Managers.TabMemoryManager;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Tab;
+import javafx.scene.web.WebEngine;
+import javafx.util.Duration;
+
+/**
+ * Drives the internal link://perf dashboard.
+ * <p>
+ * The page itself is a static resource; once it has loaded, a snapshot of every tab's
+ * {@link PerfRecorder}, memory estimate and the FX pulse intervals is pushed into it once per
+ * second. Refreshing pauses while the dashboard's tab is not visible, and the pulse sampler
+ * only runs while the dashboard is open.
+ */
+public class PerfPage {
+
+    public static final String URL = "link://perf";
+    public static final String RESOURCE = "/PerfPage.html";
+
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(1);
+
+    private final TabManager tabManager;
+    private final WebEngine webEngine;
+    private final Timeline refreshTimeline;
+    private final PerfRingBuffer refreshCost = new PerfRingBuffer(60);
+    private boolean started = false;
+    private boolean active = true;
+
+    public PerfPage(TabManager tabManager, WebEngine webEngine) {
+        this.tabManager = tabManager;
+        this.webEngine = webEngine;
+        this.refreshTimeline = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> refresh()));
+        this.refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    /** Starts pushing data once the dashboard document has loaded. */
+    public void start() {
+        if (started) return;
+        started = true;
+        FxPulseMonitor.acquire();
+        if (active) {
+            refresh();
+            refreshTimeline.play();
+        }
+    }
+
+    /** Stops refreshing and releases the pulse sampler. */
+    public void stop() {
+        if (!started) return;
+        started = false;
+        refreshTimeline.stop();
+        FxPulseMonitor.release();
+    }
+
+    /**
+     * Pauses or resumes refreshing when the dashboard's tab is hidden or shown.
+     *
+     * @param active True if the dashboard's tab is visible.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+        if (!started) return;
+        if (active) {
+            refresh();
+            refreshTimeline.play();
+        } else {
+            refreshTimeline.pause();
+        }
+    }
+
+    private void refresh() {
+        long startNanos = System.nanoTime();
+        try {
+            webEngine.executeScript("window.updatePerf && updatePerf(" + buildSnapshotJson() + ");");
+        } catch (Exception e) {
+            System.err.println("Failed to refresh perf page: " + e.getMessage());
+        }
+        refreshCost.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    private String buildSnapshotJson() {
+        Runtime runtime = Runtime.getRuntime();
+        PerfRingBuffer frames = FxPulseMonitor.getFrameIntervals();
+
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"heapUsed\":").append(runtime.totalMemory() - runtime.freeMemory())
+                .append(",\"heapMax\":").append(runtime.maxMemory())
+                .append(",\"refreshCost\":").append(refreshCost.getPercentile(50))
+                .append(",\"frames\":{\"count\":").append(frames.getCount())
+                .append(",\"p50\":").append(frames.getPercentile(50))
+                .append(",\"p95\":").append(frames.getPercentile(95))
+                .append(",\"max\":").append(frames.getPercentile(100))
+                .append(",\"late\":").append(frames.countAbove(FxPulseMonitor.LATE_FRAME_MICROS))
+                .append("},\"tabs\":[");
+
+        boolean first = true;
+        for (Tab tab : tabManager.getOpenTabs()) {
+            BrowserView view = tabManager.getBrowserView(tab);
+            if (view == null) continue;
+            TabMemoryManager memory = tabManager.getTabMemoryManager(tab);
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"title\":\"").append(escapeJson(tab.getText()))
+                    .append("\",\"url\":\"").append(escapeJson(view.getCurrentUrl()))
+                    .append("\",\"memory\":").append(memory == null ? 0 : memory.getMemoryUsageBytes())
+                    .append(",\"metrics\":{");
+            PerfRecorder recorder = view.getPerfRecorder();
+            boolean firstMetric = true;
+            for (PerfRecorder.Metric metric : PerfRecorder.Metric.values()) {
+                PerfRingBuffer buffer = recorder.getBuffer(metric);
+                if (!firstMetric) json.append(',');
+                firstMetric = false;
+                json.append('"').append(metric.getDisplayName()).append("\":{\"count\":").append(buffer.getCount())
+                        .append(",\"last\":").append(buffer.getLast())
+                        .append(",\"p50\":").append(buffer.getPercentile(50))
+                        .append(",\"p95\":").append(buffer.getPercentile(95))
+                        .append('}');
+            }
+            json.append("}}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String escapeJson(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
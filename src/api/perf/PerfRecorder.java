@@ -0,0 +1,96 @@
+package api.perf;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-tab performance recorder backing the link://perf page.
+ * <p>
+ * Each metric keeps the last {@value #CAPACITY} samples in a {@link PerfRingBuffer}. All values
+ * are stored in microseconds.
+ */
+public class PerfRecorder {
+
+    public enum Metric {
+        DNS("DNS"),
+        CONNECT("Connect"),
+        TTFB("TTFB"),
+        DOM_CONTENT_LOADED("DOMContentLoaded"),
+        LOAD("Load"),
+        SCRIPT_INJECTION("Script injection");
+
+        private final String displayName;
+
+        Metric(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private static final int CAPACITY = 64;
+
+    /**
+     * Reads the Navigation Timing API of the current document as a comma-separated list of
+     * DNS, connect, TTFB, DOMContentLoaded and load durations in milliseconds.
+     */
+    public static final String NAVIGATION_TIMING_SCRIPT = """
+            (function() {
+                if (!window.performance || !performance.timing) return '';
+                var t = performance.timing;
+                var start = t.navigationStart;
+                return [t.domainLookupEnd - t.domainLookupStart,
+                        t.connectEnd - t.connectStart,
+                        t.responseStart - t.requestStart,
+                        (t.domContentLoadedEventEnd || Date.now()) - start,
+                        (t.loadEventEnd || Date.now()) - start].join(',');
+            })();
+            """;
+
+    private static final Metric[] NAVIGATION_METRICS = {
+            Metric.DNS, Metric.CONNECT, Metric.TTFB, Metric.DOM_CONTENT_LOADED, Metric.LOAD
+    };
+
+    private final Map<Metric, PerfRingBuffer> buffers = new EnumMap<>(Metric.class);
+
+    public PerfRecorder() {
+        for (Metric metric : Metric.values()) {
+            buffers.put(metric, new PerfRingBuffer(CAPACITY));
+        }
+    }
+
+    /**
+     * Records a sample for the given metric.
+     *
+     * @param metric The metric.
+     * @param micros The duration in microseconds.
+     */
+    public void record(Metric metric, long micros) {
+        buffers.get(metric).record(micros);
+    }
+
+    /**
+     * Records the result of {@link #NAVIGATION_TIMING_SCRIPT}.
+     *
+     * @param timing The value returned by the script.
+     */
+    public void recordNavigationTiming(Object timing) {
+        if (!(timing instanceof String) || ((String) timing).isEmpty()) return;
+        String[] parts = ((String) timing).split(",");
+        if (parts.length != NAVIGATION_METRICS.length) return;
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                long millis = Math.max(0, (long) Double.parseDouble(parts[i]));
+                record(NAVIGATION_METRICS[i], millis * 1000);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid navigation timing: " + timing);
+        }
+    }
+
+    public PerfRingBuffer getBuffer(Metric metric) {
+        return buffers.get(metric);
+    }
+}
@@ -0,0 +1,73 @@
+package api.perf;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of long samples.
+ * <p>
+ * Recording is two array writes and never allocates, so it can sit on hot paths such as
+ * every pulse or every page load. Statistics are computed on demand by the reader.
+ * Instances are not thread-safe; they are written and read on the FX application thread.
+ */
+public class PerfRingBuffer {
+
+    private final long[] samples;
+    private long count = 0;
+
+    public PerfRingBuffer(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Records a sample, overwriting the oldest one once the buffer is full.
+     *
+     * @param value The sample value.
+     */
+    public void record(long value) {
+        samples[(int) (count % samples.length)] = value;
+        count++;
+    }
+
+    /**
+     * Returns the total number of samples recorded, including overwritten ones.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the most recent sample, or 0 if nothing was recorded yet.
+     */
+    public long getLast() {
+        return count == 0 ? 0 : samples[(int) ((count - 1) % samples.length)];
+    }
+
+    /**
+     * Returns the given percentile over the retained samples.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return The sample at that percentile, or 0 if the buffer is empty.
+     */
+    public long getPercentile(double percentile) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+
+    /**
+     * Returns the number of retained samples strictly greater than the threshold.
+     *
+     * @param threshold The threshold value.
+     */
+    public int countAbove(long threshold) {
+        int size = (int) Math.min(count, samples.length);
+        int above = 0;
+        for (int i = 0; i < size; i++) {
+            if (samples[i] > threshold) above++;
+        }
+        return above;
+    }
+}
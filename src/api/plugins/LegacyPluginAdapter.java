@@ -0,0 +1,76 @@
+package api.plugins;
+
+import api.concurrent.FxDispatcher;
+import org.kobi401.Plugin;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a v1 {@link Plugin} on the v2 event bus.
+ * <p>
+ * A v1 plugin expects one engine in {@code initialize}. It gets the engine of the first tab,
+ * on the FX thread, as soon as a tab exists; plugins loaded during start-up used to be handed
+ * the engine before any tab was open. The event bus calls {@link #stop} on the FX thread as well,
+ * so {@code shutdown} runs where {@code initialize} did.
+ */
+final class LegacyPluginAdapter implements LinkPlugin {
+
+    private final Plugin plugin;
+    private final AtomicBoolean initialized = new AtomicBoolean();
+    private volatile PluginContext.Subscription waitingForTab;
+
+    LegacyPluginAdapter(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    Plugin getPlugin() {
+        return plugin;
+    }
+
+    @Override
+    public String getName() {
+        return plugin.getName();
+    }
+
+    @Override
+    public String getVersion() {
+        return plugin.getVersion();
+    }
+
+    @Override
+    public String getDescription() {
+        return plugin.getDescription();
+    }
+
+    @Override
+    public void start(PluginContext context) {
+        // Subscribe first so a tab opened while looking for one is not missed
+        waitingForTab = context.subscribe(PluginEvent.TabCreated.class, event -> initialize(context, event.tabId()));
+        long openTab = PluginEventBus.getInstance().getFirstTabId();
+        if (openTab >= 0) {
+            initialize(context, openTab);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (initialized.getAndSet(false)) {
+            plugin.shutdown();
+        }
+    }
+
+    private void initialize(PluginContext context, long tabId) {
+        if (initialized.get()) return;
+        FxDispatcher.dispatch(FxDispatcher.Lane.VISIBLE, () -> context.getEngine(tabId).ifPresent(engine -> {
+            if (!initialized.compareAndSet(false, true)) return;
+            waitingForTab.cancel();
+            try {
+                plugin.initialize(engine);
+                System.out.println("Initialized plugin: " + plugin.getName() + " v" + plugin.getVersion());
+            } catch (RuntimeException e) {
+                PluginManager.PLUGIN_INIT_FAILURES.increment();
+                System.err.println("Failed to initialize plugin " + plugin.getName() + ": " + e.getMessage());
+            }
+        }));
+    }
+}
@@ -0,0 +1,31 @@
+package api.plugins;
+
+/**
+ * A version 2 browser plugin.
+ * <p>
+ * Unlike {@link org.kobi401.Plugin}, a v2 plugin is not handed a {@code WebEngine} to attach
+ * listeners to. It subscribes to {@link PluginEvent}s through its {@link PluginContext} and is
+ * called only when something it asked for happens. Handlers run on the plugin's own serial
+ * executor, never on the FX thread, so a slow plugin delays only itself.
+ */
+public interface LinkPlugin {
+
+    String getName();
+
+    String getVersion();
+
+    default String getDescription() {
+        return "";
+    }
+
+    /**
+     * Called once when the plugin is loaded. Subscribe to events and add request hooks here.
+     */
+    void start(PluginContext context);
+
+    /**
+     * Called when the plugin is unloaded. Its subscriptions and hooks are already removed.
+     */
+    default void stop() {
+    }
+}
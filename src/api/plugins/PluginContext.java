@@ -0,0 +1,43 @@
+package api.plugins;
+
+import javafx.scene.web.WebEngine;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * What a {@link LinkPlugin} gets to talk to the browser.
+ */
+public interface PluginContext {
+
+    /**
+     * Handle for removing a subscription or request hook.
+     */
+    interface Subscription {
+        void cancel();
+    }
+
+    String getPluginName();
+
+    /**
+     * Calls the handler for every event of the given type, on the plugin's serial executor and
+     * in the order the events happened. If the plugin falls more than
+     * {@link PluginEventBus#MAX_PENDING_EVENTS} events behind, further events are dropped until
+     * it catches up; {@link #getDroppedEvents()} counts them.
+     */
+    <E extends PluginEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler);
+
+    /**
+     * Asks the hook about every top-level navigation. Navigations are not held up: a decision
+     * that arrives after {@link PluginEventBus#REQUEST_HOOK_DEADLINE_MS} is ignored and the
+     * page loads as if the hook allowed it.
+     */
+    Subscription addRequestHook(RequestHook hook);
+
+    /**
+     * Returns the engine of an open tab. The engine may only be used on the FX thread.
+     */
+    Optional<WebEngine> getEngine(long tabId);
+
+    long getDroppedEvents();
+}
@@ -0,0 +1,37 @@
+package api.plugins;
+
+import javafx.concurrent.Worker;
+
+/**
+ * Something a {@link LinkPlugin} can subscribe to. Every event names the tab it happened in.
+ */
+public sealed interface PluginEvent {
+
+    long tabId();
+
+    record TabCreated(long tabId) implements PluginEvent {
+    }
+
+    record TabClosed(long tabId) implements PluginEvent {
+    }
+
+    /**
+     * The tab started loading a new page. {@link RequestHook}s are asked about the same URL.
+     */
+    record NavigationStarted(long tabId, String url) implements PluginEvent {
+    }
+
+    /**
+     * The new page's document exists; scripts and resources are still loading.
+     */
+    record NavigationCommitted(long tabId, String url) implements PluginEvent {
+    }
+
+    /**
+     * The load ended.
+     *
+     * @param state {@code SUCCEEDED}, {@code FAILED} or {@code CANCELLED}.
+     */
+    record NavigationFinished(long tabId, String url, Worker.State state) implements PluginEvent {
+    }
+}
@@ -0,0 +1,369 @@
+package api.plugins;
+
+import api.Managers.ConfigManager;
+import api.concurrent.FxDispatcher;
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.LatencyHistogram;
+import api.metrics.Metrics;
+import api.profile.ProfileStore;
+import javafx.scene.web.WebEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Delivers browser events to v2 plugins.
+ * <p>
+ * Publishing never waits for a plugin: each plugin has a serial executor and a bound on the
+ * events queued for it, and events past the bound are dropped for that plugin alone. Event
+ * types nobody subscribed to cost a map lookup, so idle plugins cost nothing.
+ * <p>
+ * Each plugin's handlers run on a thread of its own and are held to the CPU and allocation
+ * quotas in the {@link ConfigManager}. A plugin over quota is paused; one that stays over quota
+ * is disabled, and stays disabled across restarts until it is enabled again.
+ */
+public final class PluginEventBus {
+
+    /** Events a plugin may fall behind by before further events to it are dropped. */
+    public static final int MAX_PENDING_EVENTS = 256;
+    /** How long a navigation waits for request hooks before their decisions are ignored. */
+    public static final long REQUEST_HOOK_DEADLINE_MS = 100;
+    /** Handlers slower than this are counted as slow. */
+    public static final long SLOW_HANDLER_MS = 50;
+    /** How often handlers that are still running are checked against the quotas. */
+    static final long SAMPLE_INTERVAL_MS = 250;
+
+    static final LatencyHistogram HANDLER_TIME = Metrics.histogram("link_plugin_handler");
+    static final Counter DROPPED_EVENTS = Metrics.counter("link_plugin_events_dropped");
+    static final Counter LATE_DECISIONS = Metrics.counter("link_plugin_request_hook_timeouts");
+    static final Counter THROTTLES = Metrics.counter("link_plugin_quota_exceeded");
+
+    private static final String DISABLED_PREFIX = "plugins/disabled/";
+
+    private static final AtomicLong NEXT_TAB_ID = new AtomicLong();
+    private static volatile PluginEventBus instance;
+
+    private record Subscriber<E extends PluginEvent>(PluginHost host, Consumer<? super E> handler) {
+    }
+
+    private record Hook(PluginHost host, RequestHook hook) {
+    }
+
+    private final Map<Class<?>, Subscriber<?>[]> subscribers = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Hook> requestHooks = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<PluginHost> hosts = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Runnable> stateListeners = new CopyOnWriteArrayList<>();
+    private final Map<Long, WebEngine> engines = new ConcurrentHashMap<>();
+    private final ProfileStore profile;
+    private final ConfigManager config;
+    private CompletableFuture<Void> sampler;
+
+    public static PluginEventBus getInstance() {
+        PluginEventBus result = instance;
+        if (result == null) {
+            synchronized (PluginEventBus.class) {
+                result = instance;
+                if (result == null) {
+                    instance = result = new PluginEventBus(ProfileStore.getInstance(), ConfigManager.getInstance());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param profile Remembers which plugins are disabled.
+     * @param config  Supplies the quotas.
+     */
+    public PluginEventBus(ProfileStore profile, ConfigManager config) {
+        this.profile = profile;
+        this.config = config;
+    }
+
+    /**
+     * Returns a new id for a tab; events about the tab carry it.
+     */
+    public static long nextTabId() {
+        return NEXT_TAB_ID.incrementAndGet();
+    }
+
+    /**
+     * Starts a plugin, unless it was disabled. A plugin whose {@code start} throws is not
+     * registered.
+     */
+    public void register(LinkPlugin plugin) {
+        register(plugin, null);
+    }
+
+    /**
+     * Starts a plugin loaded from a jar, unless it was disabled.
+     *
+     * @param source The jar, deleted by {@link #uninstall}.
+     */
+    public void register(LinkPlugin plugin, Path source) {
+        PluginHost host = new PluginHost(plugin, this, source);
+        String disabledReason = profile.getString(DISABLED_PREFIX + plugin.getName());
+        if (disabledReason != null) {
+            host.setDisabledReason(disabledReason);
+        } else {
+            try {
+                plugin.start(host);
+            } catch (RuntimeException e) {
+                host.close();
+                throw e;
+            }
+        }
+        hosts.add(host);
+        startSampler();
+    }
+
+    /**
+     * Stops delivering events to the plugin and then stops it, once handlers already queued
+     * have run.
+     */
+    public CompletableFuture<Void> unregister(LinkPlugin plugin) {
+        PluginHost host = findHost(plugin.getName());
+        if (host == null) return CompletableFuture.completedFuture(null);
+        hosts.remove(host);
+        fireStateChanged();
+        return host.isDisabled() ? host.close() : stop(host);
+    }
+
+    /**
+     * Stops the plugin and remembers that it is disabled.
+     *
+     * @param reason Shown on the plugin page.
+     */
+    public CompletableFuture<Void> disable(LinkPlugin plugin, String reason) {
+        PluginHost host = findHost(plugin.getName());
+        if (host == null) return CompletableFuture.completedFuture(null);
+        synchronized (host) {
+            if (host.isDisabled()) return CompletableFuture.completedFuture(null);
+            host.setDisabledReason(reason);
+        }
+        System.err.println("Disabled plugin " + plugin.getName() + ": " + reason);
+        profile.putString(DISABLED_PREFIX + plugin.getName(), reason);
+        fireStateChanged();
+        return stop(host);
+    }
+
+    /**
+     * Starts a disabled plugin again with a clean quota record.
+     *
+     * @return Whether the plugin was disabled and started without error.
+     */
+    public boolean enable(String name) {
+        PluginHost host = findHost(name);
+        if (host == null) return false;
+        synchronized (host) {
+            if (!host.isDisabled()) return false;
+            host.setDisabledReason(null);
+        }
+        profile.delete(DISABLED_PREFIX + name);
+        fireStateChanged();
+        try {
+            host.getPlugin().start(host);
+            return true;
+        } catch (RuntimeException e) {
+            disable(host.getPlugin(), "Failed to start: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops the plugin and deletes the jar it was loaded from.
+     *
+     * @return Whether the jar was deleted.
+     */
+    public CompletableFuture<Boolean> uninstall(String name) {
+        PluginHost host = findHost(name);
+        if (host == null || host.getSource() == null) return CompletableFuture.completedFuture(false);
+        Path source = host.getSource();
+        profile.delete(DISABLED_PREFIX + name);
+        return unregister(host.getPlugin()).thenApplyAsync(ignored -> {
+            try {
+                Files.deleteIfExists(source);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Failed to delete plugin " + name + ": " + e.getMessage());
+                return false;
+            }
+        }, LinkExecutors.io());
+    }
+
+    /**
+     * Returns the plugin with the given name, or null.
+     */
+    public LinkPlugin getPlugin(String name) {
+        PluginHost host = findHost(name);
+        return host == null ? null : host.getPlugin();
+    }
+
+    /**
+     * Hands the event to every plugin subscribed to its type.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends PluginEvent> void publish(E event) {
+        Subscriber<?>[] current = subscribers.get(event.getClass());
+        if (current == null) return;
+        for (Subscriber<?> subscriber : current) {
+            Subscriber<E> typed = (Subscriber<E>) subscriber;
+            typed.host().deliver(event, typed.handler());
+        }
+    }
+
+    /**
+     * Asks the request hooks about a navigation that has started. The navigation is not held
+     * up: {@code onVeto} is called on the FX thread only if a hook blocks or redirects it
+     * within {@link #REQUEST_HOOK_DEADLINE_MS}. With several such hooks the first plugin
+     * loaded wins.
+     */
+    public void checkRequest(PluginEvent.NavigationStarted request, Consumer<RequestHook.Decision> onVeto) {
+        if (requestHooks.isEmpty()) return;
+        List<CompletableFuture<RequestHook.Decision>> decisions = new ArrayList<>();
+        for (Hook hook : requestHooks) {
+            decisions.add(hook.host().ask(hook.hook(), request));
+        }
+        CompletableFuture.allOf(decisions.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            for (CompletableFuture<RequestHook.Decision> decision : decisions) {
+                RequestHook.Decision result = decision.join();
+                if (result.action() != RequestHook.Action.ALLOW) {
+                    FxDispatcher.dispatch(FxDispatcher.Lane.VISIBLE, () -> onVeto.accept(result));
+                    return;
+                }
+            }
+        });
+    }
+
+    public void registerTab(long tabId, WebEngine engine) {
+        engines.put(tabId, engine);
+    }
+
+    public void unregisterTab(long tabId) {
+        engines.remove(tabId);
+    }
+
+    Optional<WebEngine> getEngine(long tabId) {
+        return Optional.ofNullable(engines.get(tabId));
+    }
+
+    /**
+     * Returns the lowest id of an open tab, or -1 if no tab is open.
+     */
+    long getFirstTabId() {
+        return engines.keySet().stream().mapToLong(Long::longValue).min().orElse(-1);
+    }
+
+    double getCpuQuotaShare() {
+        return config.get(ConfigManager.PLUGIN_CPU_QUOTA_PERCENT) / 100.0;
+    }
+
+    long getAllocationQuotaBytes() {
+        return config.get(ConfigManager.PLUGIN_ALLOCATION_QUOTA_MB) * 1024L * 1024;
+    }
+
+    boolean isAutoDisable() {
+        return config.get(ConfigManager.PLUGIN_AUTO_DISABLE);
+    }
+
+    private PluginHost findHost(String name) {
+        for (PluginHost host : hosts) {
+            if (host.getPlugin().getName().equals(name)) {
+                return host;
+            }
+        }
+        return null;
+    }
+
+    private static CompletableFuture<Void> stop(PluginHost host) {
+        LinkPlugin plugin = host.getPlugin();
+        // A v1 plugin was initialized on the FX thread and expects to be shut down there too
+        Executor executor = plugin instanceof LegacyPluginAdapter
+                ? FxDispatcher.executor(FxDispatcher.Lane.VISIBLE)
+                : Runnable::run;
+        return host.close().thenRunAsync(() -> {
+            try {
+                plugin.stop();
+            } catch (RuntimeException e) {
+                System.err.println("Error stopping plugin " + plugin.getName() + ": " + e.getMessage());
+            }
+        }, executor);
+    }
+
+    /**
+     * Calls the listener, on the thread making the change, whenever a plugin is enabled,
+     * disabled (also automatically) or removed.
+     */
+    public void addStateListener(Runnable listener) {
+        stateListeners.add(listener);
+    }
+
+    public void removeStateListener(Runnable listener) {
+        stateListeners.remove(listener);
+    }
+
+    /**
+     * Starts checking running handlers once the first plugin is registered, so a bus without
+     * plugins costs nothing.
+     */
+    private synchronized void startSampler() {
+        if (sampler != null) return;
+        sampler = LinkExecutors.scheduleWithFixedDelay(() -> {
+            for (PluginHost host : hosts) {
+                host.sampleRunningHandler();
+            }
+        }, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void fireStateChanged() {
+        for (Runnable listener : stateListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("Plugin state listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public List<PluginStats> getStats() {
+        List<PluginStats> stats = new ArrayList<>();
+        for (PluginHost host : hosts) {
+            stats.add(host.getStats());
+        }
+        return stats;
+    }
+
+    <E extends PluginEvent> PluginContext.Subscription addSubscriber(PluginHost host, Class<E> type,
+                                                                    Consumer<? super E> handler) {
+        Subscriber<E> subscriber = new Subscriber<>(host, handler);
+        subscribers.merge(type, new Subscriber<?>[]{subscriber}, (current, added) -> {
+            Subscriber<?>[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = subscriber;
+            return grown;
+        });
+        return () -> subscribers.computeIfPresent(type, (key, current) -> {
+            Subscriber<?>[] remaining = Arrays.stream(current).filter(s -> s != subscriber).toArray(Subscriber<?>[]::new);
+            return remaining.length == 0 ? null : remaining;
+        });
+    }
+
+    PluginContext.Subscription addRequestHook(PluginHost host, RequestHook hook) {
+        Hook registered = new Hook(host, hook);
+        requestHooks.add(registered);
+        return () -> requestHooks.remove(registered);
+    }
+}
@@ -0,0 +1,254 @@
+package api.plugins;
+
+import api.concurrent.LinkExecutors;
+import api.concurrent.SerialExecutor;
+import javafx.scene.web.WebEngine;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * One loaded plugin as the event bus sees it: its serial executor, the events waiting on it,
+ * and what running its handlers has cost so far.
+ */
+final class PluginHost implements PluginContext {
+
+    private final LinkPlugin plugin;
+    private final PluginEventBus bus;
+    private final SerialExecutor executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder lateDecisions = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+    private final PluginUsage usage = new PluginUsage();
+    private final Path source;
+    private volatile String disabledReason;
+
+    PluginHost(LinkPlugin plugin, PluginEventBus bus, Path source) {
+        this.plugin = plugin;
+        this.bus = bus;
+        this.source = source;
+        // A thread of its own, so its CPU time and allocations are the plugin's alone
+        this.executor = LinkExecutors.dedicated("link-plugin-" + plugin.getName());
+    }
+
+    LinkPlugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Returns the jar the plugin was loaded from, or null.
+     */
+    Path getSource() {
+        return source;
+    }
+
+    @Override
+    public String getPluginName() {
+        return plugin.getName();
+    }
+
+    @Override
+    public <E extends PluginEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        Subscription subscription = bus.addSubscriber(this, type, handler);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    @Override
+    public Subscription addRequestHook(RequestHook hook) {
+        Subscription subscription = bus.addRequestHook(this, hook);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    @Override
+    public Optional<WebEngine> getEngine(long tabId) {
+        return bus.getEngine(tabId);
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queues the event for the handler, or drops it if the plugin is too far behind.
+     */
+    <E extends PluginEvent> void deliver(E event, Consumer<? super E> handler) {
+        if (!reserve()) return;
+        String what = event.getClass().getSimpleName();
+        executor.execute(() -> runHandler(what, () -> {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                failures.increment();
+                System.err.println("Plugin " + plugin.getName() + " failed handling " + what + ": " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Asks the hook about a navigation. The future always completes, with
+     * {@link RequestHook.Decision#ALLOW} if the hook fails, is too slow or cannot be queued.
+     */
+    CompletableFuture<RequestHook.Decision> ask(RequestHook hook, PluginEvent.NavigationStarted request) {
+        if (isDisabled() || !reserve()) return CompletableFuture.completedFuture(RequestHook.Decision.ALLOW);
+        CompletableFuture<RequestHook.Decision> decision = new CompletableFuture<>();
+        executor.execute(() -> {
+            boolean ran = runHandler("request hook", () -> {
+                try {
+                    hook.onRequest(request).whenComplete((result, error) ->
+                            decision.complete(error != null || result == null ? RequestHook.Decision.ALLOW : result));
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    System.err.println("Request hook of plugin " + plugin.getName() + " failed: " + e.getMessage());
+                    decision.complete(RequestHook.Decision.ALLOW);
+                }
+            });
+            if (!ran) {
+                decision.complete(RequestHook.Decision.ALLOW);
+            }
+        });
+        return decision.orTimeout(PluginEventBus.REQUEST_HOOK_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(error -> {
+                    if (error instanceof TimeoutException) {
+                        lateDecisions.increment();
+                        PluginEventBus.LATE_DECISIONS.increment();
+                    } else {
+                        failures.increment();
+                    }
+                    return RequestHook.Decision.ALLOW;
+                });
+    }
+
+    /**
+     * Stops delivery to this plugin and waits for handlers already queued to finish.
+     */
+    CompletableFuture<Void> close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+        return executor.barrier();
+    }
+
+    boolean isDisabled() {
+        return disabledReason != null;
+    }
+
+    String getDisabledReason() {
+        return disabledReason;
+    }
+
+    void setDisabledReason(String reason) {
+        disabledReason = reason;
+        if (reason == null) {
+            usage.reset();
+        }
+    }
+
+    PluginStats getStats() {
+        long count = delivered.sum();
+        PluginStats.State state = isDisabled() ? PluginStats.State.DISABLED
+                : usage.isStuck() ? PluginStats.State.HUNG
+                : usage.isPaused() ? PluginStats.State.THROTTLED : PluginStats.State.RUNNING;
+        return new PluginStats(plugin.getName(), plugin.getVersion(), state, disabledReason, count, dropped.sum(),
+                failures.sum(), slow.sum(), lateDecisions.sum(), count == 0 ? 0 : totalMicros.sum() / count,
+                maxMicros.get(), pending.get(), usage.getTotalCpuNanos() / 1_000_000, usage.getLastCpuShare() * 100,
+                usage.getTotalAllocatedBytes(), usage.getLastAllocatedBytes());
+    }
+
+    /**
+     * Runs one handler on the plugin's thread: waits out a quota pause, then accounts the
+     * handler's time, CPU and allocations.
+     *
+     * @return False if the plugin was disabled in the meantime and the handler did not run.
+     */
+    private boolean runHandler(String what, Runnable handler) {
+        pending.decrementAndGet();
+        if (isDisabled()) return false;
+        usage.awaitPause();
+        long start = System.nanoTime();
+        usage.begin();
+        try {
+            handler.run();
+        } finally {
+            recordTime(what, start);
+            PluginUsage.Verdict verdict = usage.end(bus.getCpuQuotaShare(), bus.getAllocationQuotaBytes());
+            apply(verdict, "Used more than its CPU or memory quota " + PluginUsage.MAX_STRIKES + " times in a row");
+        }
+        return true;
+    }
+
+    /**
+     * Checks the handler running on the plugin's thread, if any, against the quotas, so one that
+     * spins or blocks while allocating is paused and disabled without waiting for it to return.
+     * Called from the bus's sampling task.
+     */
+    void sampleRunningHandler() {
+        if (isDisabled()) return;
+        PluginUsage.Verdict verdict = usage.sample(bus.getCpuQuotaShare(), bus.getAllocationQuotaBytes());
+        if (verdict == PluginUsage.Verdict.OK) return;
+        System.err.println("Plugin " + plugin.getName() + " is over its quota in a handler that has not returned");
+        apply(verdict, "Hung in a handler over its CPU or memory quota for "
+                + PluginUsage.MAX_STRIKES + " periods in a row");
+        bus.fireStateChanged();
+    }
+
+    private void apply(PluginUsage.Verdict verdict, String disableReason) {
+        if (verdict != PluginUsage.Verdict.OK) {
+            PluginEventBus.THROTTLES.increment();
+        }
+        if (verdict == PluginUsage.Verdict.DISABLE && bus.isAutoDisable()) {
+            bus.disable(plugin, disableReason);
+        }
+    }
+
+    /**
+     * Takes a queue slot for an event, unless the queue is full or a handler is hung, in which
+     * case the event is dropped rather than piling up behind it.
+     */
+    private boolean reserve() {
+        if (usage.isStuck()) {
+            dropped.increment();
+            PluginEventBus.DROPPED_EVENTS.increment();
+            return false;
+        }
+        if (pending.incrementAndGet() > PluginEventBus.MAX_PENDING_EVENTS) {
+            pending.decrementAndGet();
+            dropped.increment();
+            PluginEventBus.DROPPED_EVENTS.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void recordTime(String what, long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        delivered.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+        PluginEventBus.HANDLER_TIME.record(micros);
+        if (micros > PluginEventBus.SLOW_HANDLER_MS * 1000) {
+            slow.increment();
+            if (slow.sum() == 1) {
+                System.err.println("Plugin " + plugin.getName() + " took " + micros / 1000 + " ms handling " + what
+                        + "; further slow handlers are only counted");
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package api.plugins;
 
-import javafx.scene.web.WebEngine;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import api.metrics.Span;
 
 import org.kobi401.Plugin;
 
@@ -13,29 +15,34 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * PluginManager handles the loading, initialization, and management of browser plugins.
+ * <p>
+ * Both v2 {@link LinkPlugin}s and v1 {@link Plugin}s are loaded; v1 plugins run on the event
+ * bus through a {@link LegacyPluginAdapter}.
  */
 public class PluginManager {
+    static final Counter PLUGIN_INIT_FAILURES = Metrics.counter("link_plugin_init_failures");
     private static final String PLUGINS_DIR = System.getProperty("user.home") + File.separator + "LinkBrowser" + File.separator + "plugins";
-    private List<Plugin> loadedPlugins;
-    private WebEngine webEngine;
+    private List<LinkPlugin> loadedPlugins;
+    // Kept open while the plugins run: their classes may still load more classes from the jar
+    private List<URLClassLoader> classLoaders;
     private Consumer<String> messageConsumer;
 
     /**
      * Constructor for PluginManager.
      *
-     * @param webEngine The WebEngine instance of the browser.
+     * @param messageConsumer Receives progress messages while plugins load.
      */
-    public PluginManager(WebEngine webEngine, Consumer<String> messageConsumer) {
-        this.webEngine = webEngine;
+    public PluginManager(Consumer<String> messageConsumer) {
         this.loadedPlugins = new ArrayList<>();
+        this.classLoaders = new ArrayList<>();
         this.messageConsumer = messageConsumer;
-        loadPlugins();
     }
 
     /**
@@ -79,11 +86,11 @@ public class PluginManager {
      * @throws IOException If an I/O error occurs.
      */
     private void loadPluginFromJar(File jarFile) throws IOException {
-        JarFile jar = new JarFile(jarFile);
-        Enumeration<JarEntry> entries = jar.entries();
-
-        URL[] urls = { new URL("jar:file:" + jarFile.getAbsolutePath() + "!/") };
-        try (URLClassLoader cl = URLClassLoader.newInstance(urls)) {
+        try (JarFile jar = new JarFile(jarFile)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            URL[] urls = { new URL("jar:file:" + jarFile.getAbsolutePath() + "!/") };
+            URLClassLoader cl = URLClassLoader.newInstance(urls);
+            classLoaders.add(cl);
             while (entries.hasMoreElements()) {
                 JarEntry je = entries.nextElement();
                 if(je.isDirectory() || !je.getName().endsWith(".class")){
@@ -94,12 +101,28 @@ public class PluginManager {
                 className = className.replace('/', '.');
                 try {
                     Class<?> c = cl.loadClass(className);
-                    if (Plugin.class.isAssignableFrom(c) && !Modifier.isAbstract(c.getModifiers())) {
-                        Plugin plugin = (Plugin) c.getDeclaredConstructor().newInstance();
-                        plugin.initialize(webEngine);
-                        loadedPlugins.add(plugin);
-                        System.out.println("Loaded plugin: " + plugin.getName() + " v" + plugin.getVersion());
+                    if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+                        continue;
+                    }
+                    LinkPlugin plugin;
+                    if (LinkPlugin.class.isAssignableFrom(c)) {
+                        plugin = (LinkPlugin) c.getDeclaredConstructor().newInstance();
+                    } else if (Plugin.class.isAssignableFrom(c)) {
+                        plugin = new LegacyPluginAdapter((Plugin) c.getDeclaredConstructor().newInstance());
+                    } else {
+                        continue;
                     }
+                    Span initSpan = Metrics.span("link_plugin_init");
+                    try {
+                        PluginEventBus.getInstance().register(plugin, jarFile.toPath());
+                    } catch (RuntimeException e) {
+                        initSpan.end("failed");
+                        PLUGIN_INIT_FAILURES.increment();
+                        throw e;
+                    }
+                    initSpan.end("ok");
+                    loadedPlugins.add(plugin);
+                    System.out.println("Loaded plugin: " + plugin.getName() + " v" + plugin.getVersion());
                 } catch (ClassNotFoundException | NoClassDefFoundError e) {
                     System.err.println("Class not found: " + className);
                 } catch (Exception e) {
@@ -115,15 +138,23 @@ public class PluginManager {
      * Shuts down all loaded plugins.
      */
     public void shutdownPlugins() {
-        for (Plugin plugin : loadedPlugins) {
-            try {
-                plugin.shutdown();
-                System.out.println("Shutdown plugin: " + plugin.getName());
-            } catch (Exception e) {
-                System.err.println("Error shutting down plugin " + plugin.getName() + ": " + e.getMessage());
-            }
+        List<CompletableFuture<Void>> stopped = new ArrayList<>();
+        for (LinkPlugin plugin : loadedPlugins) {
+            stopped.add(PluginEventBus.getInstance().unregister(plugin)
+                    .thenRun(() -> System.out.println("Shutdown plugin: " + plugin.getName())));
         }
         loadedPlugins.clear();
+        List<URLClassLoader> loaders = new ArrayList<>(classLoaders);
+        classLoaders.clear();
+        CompletableFuture.allOf(stopped.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            for (URLClassLoader loader : loaders) {
+                try {
+                    loader.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close plugin class loader: " + e.getMessage());
+                }
+            }
+        });
     }
 
     /**
@@ -131,7 +162,7 @@ public class PluginManager {
      *
      * @return List of loaded plugins.
      */
-    public List<Plugin> getLoadedPlugins() {
+    public List<LinkPlugin> getLoadedPlugins() {
         return loadedPlugins;
     }
 }
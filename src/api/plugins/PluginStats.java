@@ -0,0 +1,28 @@
+package api.plugins;
+
+/**
+ * What a plugin's event handlers have cost since it was loaded.
+ *
+ * @param state               Whether the plugin runs, is paused for using too much, is stuck in a
+ *                            handler that went over quota without returning, or is disabled.
+ * @param disabledReason      Why the plugin is disabled, or null.
+ * @param handled             Events and request hooks the plugin has handled.
+ * @param dropped             Events not delivered because the plugin was too far behind or hung.
+ * @param failures            Handlers that threw.
+ * @param slow                Handlers that took longer than {@link PluginEventBus#SLOW_HANDLER_MS}.
+ * @param lateDecisions       Request hook decisions that missed the deadline and were ignored.
+ * @param averageMicros       Mean handler time.
+ * @param maxMicros           Longest handler time.
+ * @param pending             Events waiting to be handled right now.
+ * @param cpuMillis           CPU time used by the plugin's handlers.
+ * @param cpuPercent          Percent of one core used during the last quota window.
+ * @param allocatedBytes      Bytes allocated by the plugin's handlers.
+ * @param windowAllocatedBytes Bytes allocated during the last quota window.
+ */
+public record PluginStats(String name, String version, State state, String disabledReason, long handled,
+                          long dropped, long failures, long slow, long lateDecisions, long averageMicros,
+                          long maxMicros, int pending, long cpuMillis, double cpuPercent, long allocatedBytes,
+                          long windowAllocatedBytes) {
+
+    public enum State { RUNNING, THROTTLED, HUNG, DISABLED }
+}
@@ -0,0 +1,204 @@
+package api.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time and allocations of one plugin's handlers, checked against its quotas.
+ * <p>
+ * Handlers run on the plugin's own thread, so the thread's CPU and allocation counters read
+ * before and after a handler measure the handler alone. Usage is summed over fixed windows of
+ * {@link #WINDOW_MS}. A plugin over quota is paused for the rest of the window; one that is
+ * over quota in {@link #MAX_STRIKES} windows in a row is also reported for disabling. A handler
+ * that never returns is caught by {@link #sample}, which reads the counters of the running
+ * handler's thread from outside. Only the plugin's thread calls {@link #begin} and
+ * {@link #end}; the other methods may be called from any thread.
+ */
+final class PluginUsage {
+
+    static final long WINDOW_MS = 10_000;
+    static final int MAX_STRIKES = 3;
+
+    private static final long WINDOW_NANOS = WINDOW_MS * 1_000_000;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported() ? bean : null;
+
+    enum Verdict { OK, THROTTLE, DISABLE }
+
+    private volatile long windowStart = System.nanoTime();
+    private long windowCpu;
+    private long windowAllocated;
+    private boolean windowOverQuota;
+    private int strikes;
+    private long runningThread = -1;
+    private long startCpu;
+    private long startAllocated;
+    private volatile boolean stuck;
+
+    private volatile long totalCpu;
+    private volatile long totalAllocated;
+    private volatile double lastCpuShare;
+    private volatile long lastAllocated;
+    private volatile long pausedUntil = System.nanoTime();
+
+    static {
+        if (THREADS.isThreadCpuTimeSupported() && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /**
+     * Called before a handler runs.
+     */
+    synchronized void begin() {
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            closeWindow(now);
+        }
+        runningThread = Thread.currentThread().threadId();
+        startCpu = cpuTime();
+        startAllocated = allocatedBytes();
+    }
+
+    /**
+     * Called after a handler ran.
+     *
+     * @param cpuQuotaShare   Share of one core the plugin may use on average, 0 to 1.
+     * @param allocationQuota Bytes the plugin may allocate per window.
+     */
+    synchronized Verdict end(double cpuQuotaShare, long allocationQuota) {
+        account(cpuTime(), allocatedBytes());
+        runningThread = -1;
+        stuck = false;
+        if (windowCpu <= cpuQuotaShare * WINDOW_NANOS && windowAllocated <= allocationQuota) {
+            return Verdict.OK;
+        }
+        return strike();
+    }
+
+    /**
+     * Checks the handler running right now, if any, counting what it has used so far. A
+     * handler still running when its window ends has its usage up to then booked to that
+     * window and the rest to the next, so one that spins for several windows collects a strike
+     * in each.
+     *
+     * @return {@link Verdict#THROTTLE} or {@link Verdict#DISABLE} if this sample put the current
+     *         window over quota, otherwise {@link Verdict#OK}.
+     */
+    synchronized Verdict sample(double cpuQuotaShare, long allocationQuota) {
+        if (runningThread < 0 || !THREADS.isThreadCpuTimeSupported()) return Verdict.OK;
+        long cpu = THREADS.getThreadCpuTime(runningThread);
+        long allocated = ALLOCATIONS == null ? 0 : ALLOCATIONS.getThreadAllocatedBytes(runningThread);
+        if (cpu < 0) return Verdict.OK;
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            account(cpu, allocated);
+            closeWindow(now);
+        }
+        if (windowCpu + cpu - startCpu <= cpuQuotaShare * WINDOW_NANOS
+                && windowAllocated + allocated - startAllocated <= allocationQuota) {
+            return Verdict.OK;
+        }
+        stuck = true;
+        return windowOverQuota ? Verdict.OK : strike();
+    }
+
+    /**
+     * Whether the running handler went over quota without returning.
+     */
+    boolean isStuck() {
+        return stuck;
+    }
+
+    /**
+     * Sleeps until the plugin's pause ends, if it is paused.
+     */
+    void awaitPause() {
+        long wait = pausedUntil - System.nanoTime();
+        if (wait <= 0) return;
+        try {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isPaused() {
+        return pausedUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * Forgets past strikes and pauses, for a plugin that was enabled again.
+     */
+    synchronized void reset() {
+        pausedUntil = System.nanoTime();
+        strikes = 0;
+        windowOverQuota = false;
+    }
+
+    long getTotalCpuNanos() {
+        return totalCpu;
+    }
+
+    long getTotalAllocatedBytes() {
+        return totalAllocated;
+    }
+
+    /**
+     * Share of one core used in the last complete window.
+     */
+    double getLastCpuShare() {
+        return isIdle() ? 0 : lastCpuShare;
+    }
+
+    long getLastAllocatedBytes() {
+        return isIdle() ? 0 : lastAllocated;
+    }
+
+    /** Books the running handler's usage up to the given counter readings. */
+    private void account(long cpuNow, long allocatedNow) {
+        long cpu = Math.max(0, cpuNow - startCpu);
+        long allocated = Math.max(0, allocatedNow - startAllocated);
+        windowCpu += cpu;
+        windowAllocated += allocated;
+        totalCpu += cpu;
+        totalAllocated += allocated;
+        startCpu = cpuNow;
+        startAllocated = allocatedNow;
+    }
+
+    private void closeWindow(long now) {
+        long length = now - windowStart;
+        lastCpuShare = windowCpu / (double) length;
+        lastAllocated = windowAllocated;
+        // A window with no handlers at all is one under quota too
+        if (!windowOverQuota || length >= 2 * WINDOW_NANOS) strikes = 0;
+        windowStart = now;
+        windowCpu = 0;
+        windowAllocated = 0;
+        windowOverQuota = false;
+    }
+
+    private Verdict strike() {
+        if (!windowOverQuota) {
+            windowOverQuota = true;
+            strikes++;
+        }
+        pausedUntil = windowStart + WINDOW_NANOS;
+        return strikes >= MAX_STRIKES ? Verdict.DISABLE : Verdict.THROTTLE;
+    }
+
+    /** Windows are only closed while a handler runs; after a quiet window the last one is stale. */
+    private boolean isIdle() {
+        return System.nanoTime() - windowStart >= 2 * WINDOW_NANOS;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+    }
+}
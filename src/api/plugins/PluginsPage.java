@@ -0,0 +1,96 @@
+package api.plugins;
+
+import api.bridge.Html;
+
+import java.util.List;
+
+/**
+ * Renders the internal link://plugins page: every loaded plugin with what it has cost, and
+ * buttons to disable or enable it, which act through the page bridge.
+ */
+public final class PluginsPage {
+
+    public static final String URL = "link://plugins";
+
+    private PluginsPage() {
+    }
+
+    /**
+     * @param cpuQuotaPercent   The CPU quota, in percent of one core.
+     * @param allocationQuotaMb The allocation quota per window, in megabytes.
+     */
+    public static String render(List<PluginStats> plugins, int cpuQuotaPercent, int allocationQuotaMb) {
+        StringBuilder rows = new StringBuilder();
+        for (PluginStats stats : plugins) {
+            boolean disabled = stats.state() == PluginStats.State.DISABLED;
+            String action = "<button type=\"button\" data-plugin=\"" + Html.escape(stats.name()) + "\" data-enable=\""
+                    + disabled + "\">" + (disabled ? "Enable" : "Disable") + "</button>";
+            String state = switch (stats.state()) {
+                case RUNNING -> "Running";
+                case THROTTLED -> "<span class=\"warn\">Paused (over quota)</span>";
+                case HUNG -> "<span class=\"off\">Hung</span><div class=\"meta\">A handler is over quota and has not returned;"
+                        + " no events are delivered until it does</div>";
+                case DISABLED -> "<span class=\"off\">Disabled</span><div class=\"meta\">"
+                        + Html.escape(stats.disabledReason()) + "</div>";
+            };
+            rows.append("<tr><td><b>").append(Html.escape(stats.name())).append("</b> ").append(Html.escape(stats.version()))
+                    .append("</td><td>").append(state)
+                    .append("</td><td>").append(String.format("%.1f%%", stats.cpuPercent()))
+                    .append("</td><td>").append(stats.cpuMillis()).append(" ms")
+                    .append("</td><td>").append(megabytes(stats.windowAllocatedBytes()))
+                    .append("</td><td>").append(megabytes(stats.allocatedBytes()))
+                    .append("</td><td>").append(stats.handled())
+                    .append("</td><td>").append(String.format("%.2f / %.1f ms", stats.averageMicros() / 1000.0, stats.maxMicros() / 1000.0))
+                    .append("</td><td>").append(stats.dropped()).append(" / ").append(stats.slow()).append(" / ")
+                    .append(stats.failures()).append(" / ").append(stats.lateDecisions())
+                    .append("</td><td>").append(action).append("</td></tr>");
+        }
+        if (plugins.isEmpty()) {
+            rows.append("<tr><td colspan=\"10\">No plugins are loaded.</td></tr>");
+        }
+        return """
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>Plugins</title><style>
+                body { font-family: Tahoma, sans-serif; margin: 24px; color: #222; }
+                table { border-collapse: collapse; font-size: 13px; }
+                th, td { border-bottom: 1px solid #ddd; padding: 6px 10px; text-align: left; vertical-align: top; }
+                th { background: #f0f0f0; }
+                .meta { color: #777; font-size: 12px; }
+                .warn { color: #b06000; }
+                .off { color: #b00020; }
+                </style></head><body>
+                <h1>Plugins</h1>
+                <p class="meta">Each plugin may use %d%% of one core and allocate %d MB per %d seconds.
+                A plugin over quota is paused until the period ends; one over quota %d periods in a row is disabled.
+                Handlers still running are checked too, so a hung plugin is paused and disabled the same way.
+                <a href="%s">Refresh</a></p>
+                <table><tr><th>Plugin</th><th>State</th><th>CPU (last period)</th><th>CPU (total)</th>
+                <th>Allocated (last period)</th><th>Allocated (total)</th><th>Events</th><th>Handler avg / max</th>
+                <th>Dropped / slow / failed / late</th><th></th></tr>
+                %s
+                </table>
+                <script>
+                var buttons = document.querySelectorAll('button[data-plugin]');
+                for (var i = 0; i < buttons.length; i++) {
+                  buttons[i].onclick = function () {
+                    var button = this;
+                    button.disabled = true;
+                    link.request('plugins.setEnabled', button.getAttribute('data-plugin'),
+                        button.getAttribute('data-enable') === 'true').then(function () {
+                      link.request('navigate.open', 'plugins');
+                    }, function (error) {
+                      button.disabled = false;
+                      button.textContent = error.message;
+                    });
+                  };
+                }
+                </script>
+                </body></html>
+                """.formatted(cpuQuotaPercent, allocationQuotaMb, PluginUsage.WINDOW_MS / 1000,
+                PluginUsage.MAX_STRIKES, URL, rows);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
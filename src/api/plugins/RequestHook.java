@@ -0,0 +1,31 @@
+package api.plugins;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Decides whether a top-level navigation may go ahead.
+ */
+@FunctionalInterface
+public interface RequestHook {
+
+    enum Action { ALLOW, BLOCK, REDIRECT }
+
+    /**
+     * @param redirectUrl Where to go instead; only set for {@link Action#REDIRECT}.
+     */
+    record Decision(Action action, String redirectUrl) {
+
+        public static final Decision ALLOW = new Decision(Action.ALLOW, null);
+        public static final Decision BLOCK = new Decision(Action.BLOCK, null);
+
+        public static Decision redirect(String url) {
+            return new Decision(Action.REDIRECT, url);
+        }
+    }
+
+    /**
+     * Called on the plugin's serial executor. The page is already loading; the decision only
+     * takes effect if it completes within {@link PluginEventBus#REQUEST_HOOK_DEADLINE_MS}.
+     */
+    CompletionStage<Decision> onRequest(PluginEvent.NavigationStarted request);
+}
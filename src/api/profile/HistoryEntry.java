@@ -0,0 +1,37 @@
+package api.profile;
+
+/**
+ * One visited URL in the browsing history.
+ */
+public class HistoryEntry {
+    private final String url;
+    private final String title;
+    private final int visitCount;
+    private final long lastVisit;
+
+    public HistoryEntry(String url, String title, int visitCount, long lastVisit) {
+        this.url = url;
+        this.title = title;
+        this.visitCount = visitCount;
+        this.lastVisit = lastVisit;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    /**
+     * Returns the time of the most recent visit in epoch milliseconds.
+     */
+    public long getLastVisit() {
+        return lastVisit;
+    }
+}
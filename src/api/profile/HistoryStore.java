@@ -0,0 +1,140 @@
+package api.profile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Browsing history kept in the {@link ProfileStore}.
+ * <p>
+ * Each visited URL is one record under {@code history/}. Two secondary indexes order the
+ * records by last visit time and by visit count, so "recent" and "most visited" queries never
+ * scan the whole history.
+ */
+public class HistoryStore {
+
+    private static final String PREFIX = "history/";
+    private static final String BY_TIME = "history_by_time";
+    private static final String BY_VISITS = "history_by_visits";
+    private static final int MAX_URL_BYTES = 480;
+
+    private static volatile HistoryStore instance;
+
+    private final ProfileStore store;
+
+    /**
+     * Returns the history of the default profile.
+     */
+    public static HistoryStore getInstance() {
+        HistoryStore result = instance;
+        if (result == null) {
+            synchronized (HistoryStore.class) {
+                result = instance;
+                if (result == null) {
+                    result = new HistoryStore(ProfileStore.getInstance());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public HistoryStore(ProfileStore store) {
+        this.store = store;
+        store.defineIndex(BY_TIME, PREFIX, value -> String.format("%019d", decode("", value).getLastVisit()));
+        store.defineIndex(BY_VISITS, PREFIX, value -> String.format("%010d", decode("", value).getVisitCount()));
+    }
+
+    /**
+     * Records a visit asynchronously on the profile writer thread.
+     * URLs that are too long to be used as a key are not recorded.
+     *
+     * @param url   The visited URL.
+     * @param title The page title, possibly null.
+     */
+    public void recordVisit(String url, String title) {
+        if (url == null || url.isEmpty() || url.getBytes(StandardCharsets.UTF_8).length > MAX_URL_BYTES) return;
+        long now = System.currentTimeMillis();
+        store.submit(() -> {
+            HistoryEntry previous = get(url);
+            int visits = previous == null ? 1 : previous.getVisitCount() + 1;
+            String newTitle = title == null || title.isBlank()
+                    ? (previous == null ? "" : previous.getTitle())
+                    : title;
+            store.put(PREFIX + url, encode(new HistoryEntry(url, newTitle, visits, now)));
+        });
+    }
+
+    /**
+     * Returns the entry for a URL, or null if it was never visited.
+     */
+    public HistoryEntry get(String url) {
+        byte[] value = store.get(PREFIX + url);
+        return value == null ? null : decode(url, value);
+    }
+
+    /**
+     * Returns the most recently visited entries, newest first.
+     */
+    public List<HistoryEntry> getRecent(int limit) {
+        return load(store.queryIndex(BY_TIME, null, null, true, limit));
+    }
+
+    /**
+     * Returns the entries with the most visits, most visited first.
+     */
+    public List<HistoryEntry> getMostVisited(int limit) {
+        return load(store.queryIndex(BY_VISITS, null, null, true, limit));
+    }
+
+    /**
+     * Removes one URL from the history asynchronously.
+     */
+    public void remove(String url) {
+        store.submit(() -> store.delete(PREFIX + url));
+    }
+
+    /**
+     * Removes the whole history asynchronously, in one transaction.
+     *
+     * @return A future completed once the transaction is committed.
+     */
+    public CompletableFuture<Void> clear() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        store.submit(() -> {
+            try {
+                ProfileStore.Transaction transaction = store.begin();
+                for (String key : store.keys(PREFIX)) {
+                    transaction.delete(key);
+                }
+                transaction.commit();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                throw e;
+            }
+        });
+        return done;
+    }
+
+    private List<HistoryEntry> load(List<String> keys) {
+        List<HistoryEntry> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            byte[] value = store.get(key);
+            if (value != null) {
+                entries.add(decode(key.substring(PREFIX.length()), value));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] encode(HistoryEntry entry) {
+        return RecordCodec.encode(entry.getTitle(), Integer.toString(entry.getVisitCount()), Long.toString(entry.getLastVisit()));
+    }
+
+    private static HistoryEntry decode(String url, byte[] value) {
+        List<String> fields = RecordCodec.decode(value);
+        return new HistoryEntry(url, fields.get(0), Integer.parseInt(fields.get(1)), Long.parseLong(fields.get(2)));
+    }
+}
@@ -0,0 +1,848 @@
+package api.profile;
+
+import api.concurrent.LinkExecutors;
+import api.concurrent.SerialExecutor;
+import api.metrics.Metrics;
+import api.metrics.Span;
+import api.security.EncryptionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Embedded, encrypted, page-based key-value store holding the user's profile (bookmarks,
+ * history, sessions and settings).
+ * <p>
+ * <b>On disk.</b> profile.db is an array of fixed-size pages, each encrypted on its own with
+ * AES-GCM and authenticated against its page number, so pages cannot be swapped around. Page 0
+ * is a header; data pages hold many small records; values larger than {@value #MAX_INLINE_VALUE}
+ * bytes spill into a chain of overflow pages.
+ * <p>
+ * <b>Durability.</b> A commit first appends the full image of every page it touched to
+ * profile.wal, followed by a commit marker, and fsyncs the log. Pages are copied into
+ * profile.db only at checkpoints; after those writes are synced, the log is truncated. On open,
+ * committed groups left in the log are replayed and an uncommitted tail is dropped, so a crash
+ * at any point leaves either the old or the new state of each transaction.
+ * <p>
+ * <b>In memory.</b> Pages are decoded once at open. A sorted primary index maps keys to pages,
+ * and secondary indexes registered with {@link #defineIndex} map derived values to keys.
+ * Reads take a shared lock and never touch the disk.
+ */
+public class ProfileStore implements AutoCloseable {
+
+    static final int PAGE_SIZE = 4096;
+    private static final int STORED_PAGE_SIZE = PAGE_SIZE + EncryptionManager.RECORD_OVERHEAD;
+    private static final int MAX_KEY_BYTES = 512;
+    static final int MAX_INLINE_VALUE = 1024;
+    private static final long CHECKPOINT_WAL_BYTES = 1024 * 1024;
+
+    private static final byte TYPE_HEADER = 0;
+    private static final byte TYPE_DATA = 1;
+    private static final byte TYPE_OVERFLOW = 2;
+    private static final byte TYPE_FREE = 3;
+
+    private static final byte[] MAGIC = {'L', 'K', 'D', 'B'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int COMMIT_MARKER = -1;
+    private static final int OVERFLOW_HEADER = 1 + 4 + 2;
+    private static final int OVERFLOW_CAPACITY = PAGE_SIZE - OVERFLOW_HEADER;
+
+    private static final String PROFILE_DIRECTORY;
+
+    static {
+        String osName = System.getProperty("os.name").toLowerCase();
+        String userHome = System.getProperty("user.home");
+        if (osName.contains("win")) {
+            PROFILE_DIRECTORY = userHome + "\\AppData\\Local\\LinkBrowser\\Profile";
+        } else {
+            PROFILE_DIRECTORY = userHome + "/.config/LinkBrowser/Profile";
+        }
+    }
+
+    private static final SerialExecutor WRITER = LinkExecutors.serial("profile-writer");
+
+    private static volatile ProfileStore instance;
+
+    private final Path directory;
+    private final EncryptionManager encryptionManager;
+    private final FileChannel dbChannel;
+    private final FileChannel walChannel;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Runnable> closeHooks = new CopyOnWriteArrayList<>();
+    private final List<Page> pages = new ArrayList<>();
+    private final ArrayDeque<Integer> freePages = new ArrayDeque<>();
+    private final Set<Integer> uncheckpointedPages = new TreeSet<>();
+    private final TreeMap<String, Integer> primaryIndex = new TreeMap<>();
+    private final Map<String, SecondaryIndex> secondaryIndexes = new HashMap<>();
+    private int fillPage = -1;
+    private long walSequence = 0;
+    private boolean closed = false;
+
+    /**
+     * Returns the store for the default profile directory, opening it on first use.
+     */
+    public static ProfileStore getInstance() {
+        ProfileStore result = instance;
+        if (result == null) {
+            synchronized (ProfileStore.class) {
+                result = instance;
+                if (result == null) {
+                    try {
+                        result = new ProfileStore(Paths.get(PROFILE_DIRECTORY));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to open profile at " + PROFILE_DIRECTORY, e);
+                    }
+                    ProfileStore opened = result;
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "link-profile-close"));
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Opens (or creates) a store in the given directory, recovering from the write-ahead log.
+     *
+     * @param directory Directory holding profile.db and profile.wal.
+     * @throws IOException If the files cannot be opened or a checkpointed page is corrupt.
+     */
+    public ProfileStore(Path directory) throws IOException {
+        File dir = directory.toFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create profile directory: " + directory);
+        }
+        this.directory = directory;
+        encryptionManager = new EncryptionManager();
+        dbChannel = FileChannel.open(directory.resolve("profile.db"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        walChannel = FileChannel.open(directory.resolve("profile.wal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        Span openSpan = Metrics.span("link_profile_open");
+        String outcome = "failed";
+        try {
+            if (dbChannel.size() == 0) {
+                writePageToDb(0, encodeHeader());
+                dbChannel.force(true);
+            }
+            recoverFromWal();
+            loadPages();
+            outcome = "ok";
+        } finally {
+            openSpan.end(outcome);
+        }
+    }
+
+    /**
+     * Returns the directory holding the store. Other per-profile files, such as caches too large
+     * for the store, belong next to it.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // ---------------------------------------------------------------- reads
+
+    /**
+     * Returns the value stored under a key, or null.
+     */
+    public byte[] get(String key) {
+        lock.readLock().lock();
+        try {
+            Integer pageNo = primaryIndex.get(key);
+            if (pageNo == null) return null;
+            return readValue(pages.get(pageNo).records.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the UTF-8 value stored under a key, or null.
+     */
+    public String getString(String key) {
+        byte[] value = get(key);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns all keys starting with the prefix, in key order.
+     */
+    public List<String> keys(String prefix) {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(prefixView(primaryIndex, prefix).keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all entries whose key starts with the prefix, in key order.
+     */
+    public Map<String, byte[]> scan(String prefix) {
+        lock.readLock().lock();
+        try {
+            Map<String, byte[]> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : prefixView(primaryIndex, prefix).entrySet()) {
+                result.put(entry.getKey(), readValue(pages.get(entry.getValue()).records.get(entry.getKey())));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- secondary indexes
+
+    /**
+     * Registers a secondary index over the records whose key starts with {@code prefix} and
+     * builds it from the current contents. Defining an existing name again replaces it.
+     *
+     * @param name      Index name used in queries.
+     * @param prefix    Key prefix of the indexed records.
+     * @param extractor Derives the index value from a record's value; null leaves it unindexed.
+     */
+    public void defineIndex(String name, String prefix, Function<byte[], String> extractor) {
+        lock.writeLock().lock();
+        try {
+            SecondaryIndex index = new SecondaryIndex(prefix, extractor);
+            for (Map.Entry<String, Integer> entry : prefixView(primaryIndex, prefix).entrySet()) {
+                index.add(entry.getKey(), readValue(pages.get(entry.getValue()).records.get(entry.getKey())));
+            }
+            secondaryIndexes.put(name, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns keys whose index value lies in {@code [from, to)}, ordered by index value.
+     *
+     * @param name       The index.
+     * @param from       Inclusive lower bound, or null for unbounded.
+     * @param to         Exclusive upper bound, or null for unbounded.
+     * @param descending True to return the highest index values first.
+     * @param limit      Maximum number of keys to return.
+     */
+    public List<String> queryIndex(String name, String from, String to, boolean descending, int limit) {
+        lock.readLock().lock();
+        try {
+            SecondaryIndex index = secondaryIndexes.get(name);
+            if (index == null) throw new IllegalArgumentException("No such index: " + name);
+            NavigableMap<String, TreeSet<String>> range = index.byValue;
+            if (from != null && to != null) range = range.subMap(from, true, to, false);
+            else if (from != null) range = range.tailMap(from, true);
+            else if (to != null) range = range.headMap(to, false);
+            if (descending) range = range.descendingMap();
+
+            List<String> keys = new ArrayList<>();
+            for (TreeSet<String> bucket : range.values()) {
+                for (String key : descending ? bucket.descendingSet() : bucket) {
+                    if (keys.size() >= limit) return keys;
+                    keys.add(key);
+                }
+            }
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    /**
+     * Starts a transaction. Nothing is visible or durable until {@link Transaction#commit()}.
+     */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * Runs a task on the store's writer thread. Tasks run one at a time in submission order, so
+     * read-modify-write sequences submitted here never interleave, and the fsync of a commit
+     * stays off the calling thread.
+     *
+     * @param task The task; exceptions are logged and swallowed.
+     */
+    public void submit(Runnable task) {
+        WRITER.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Profile write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes a single key durably. Shorthand for a one-operation transaction.
+     */
+    public void put(String key, byte[] value) {
+        begin().put(key, value).commit();
+    }
+
+    /**
+     * Writes a single UTF-8 value durably.
+     */
+    public void putString(String key, String value) {
+        begin().putString(key, value).commit();
+    }
+
+    /**
+     * Deletes a single key durably. Shorthand for a one-operation transaction.
+     */
+    public void delete(String key) {
+        begin().delete(key).commit();
+    }
+
+    /**
+     * Batch of puts and deletes applied atomically. Transactions are single-use.
+     */
+    public final class Transaction {
+        private final LinkedHashMap<String, byte[]> writes = new LinkedHashMap<>();
+        private boolean done = false;
+
+        private Transaction() {
+        }
+
+        public Transaction put(String key, byte[] value) {
+            if (key.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Key too long: " + key);
+            }
+            writes.put(key, value.clone());
+            return this;
+        }
+
+        public Transaction putString(String key, String value) {
+            return put(key, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public Transaction delete(String key) {
+            writes.put(key, null);
+            return this;
+        }
+
+        /**
+         * Applies the batch, logs every touched page and fsyncs the log before returning.
+         *
+         * @throws UncheckedIOException If the log cannot be written; the in-memory state is then
+         *                              ahead of disk and the store should be reopened.
+         */
+        public void commit() {
+            if (done) throw new IllegalStateException("Transaction already committed");
+            done = true;
+            if (writes.isEmpty()) return;
+            ProfileStore.this.commit(writes);
+        }
+
+        /**
+         * Commits on the writer thread instead of the calling one. See {@link #submit(Runnable)}.
+         */
+        public void commitAsync() {
+            submit(this::commit);
+        }
+    }
+
+    private void commit(Map<String, byte[]> writes) {
+        lock.writeLock().lock();
+        Span commitSpan = Metrics.span("link_profile_commit");
+        String outcome = "failed";
+        try {
+            if (closed) throw new IllegalStateException("Profile store is closed");
+            Set<Integer> dirty = new LinkedHashSet<>();
+            for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+                removeRecord(write.getKey(), dirty);
+                if (write.getValue() != null) {
+                    insertRecord(write.getKey(), write.getValue(), dirty);
+                }
+            }
+            appendToWal(dirty);
+            uncheckpointedPages.addAll(dirty);
+            if (walChannel.size() > CHECKPOINT_WAL_BYTES) {
+                checkpointLocked();
+            }
+            outcome = "ok";
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to commit profile transaction", e);
+        } finally {
+            commitSpan.end(outcome);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies logged pages into profile.db and truncates the write-ahead log.
+     */
+    public void checkpoint() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) checkpointLocked();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to checkpoint profile", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a task that runs at the start of {@link #close()}, while the store still accepts
+     * writes. Owners of write-behind caches use it to flush, since shutdown hooks run in no
+     * particular order.
+     */
+    public void addCloseHook(Runnable hook) {
+        closeHooks.add(hook);
+    }
+
+    /**
+     * Checkpoints and closes the files. Close hooks run first, then async writes submitted
+     * before this call complete.
+     */
+    @Override
+    public void close() {
+        for (Runnable hook : closeHooks) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                System.err.println("Profile close hook failed: " + e.getMessage());
+            }
+        }
+        try {
+            WRITER.barrier().get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("Profile writer did not drain before close: " + e.getMessage());
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            checkpointLocked();
+            closed = true;
+            dbChannel.close();
+            walChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close profile store: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- record placement
+
+    private void removeRecord(String key, Set<Integer> dirty) {
+        Integer pageNo = primaryIndex.remove(key);
+        if (pageNo == null) return;
+        Page page = pages.get(pageNo);
+        Record old = page.records.remove(key);
+        page.usedBytes -= old.encodedSize();
+        dirty.add(pageNo);
+        freeOverflowChain(old.overflowPage, dirty);
+        for (SecondaryIndex index : secondaryIndexes.values()) {
+            index.remove(key);
+        }
+    }
+
+    private void insertRecord(String key, byte[] value, Set<Integer> dirty) {
+        Record record;
+        if (value.length > MAX_INLINE_VALUE) {
+            record = new Record(key, null, writeOverflowChain(value, dirty), value.length);
+        } else {
+            record = new Record(key, value, -1, value.length);
+        }
+        int pageNo = findDataPage(record.encodedSize());
+        Page page = pages.get(pageNo);
+        page.records.put(key, record);
+        page.usedBytes += record.encodedSize();
+        primaryIndex.put(key, pageNo);
+        dirty.add(pageNo);
+        for (SecondaryIndex index : secondaryIndexes.values()) {
+            if (key.startsWith(index.prefix)) index.add(key, value);
+        }
+    }
+
+    private int findDataPage(int recordSize) {
+        if (fillPage >= 0 && pages.get(fillPage).freeBytes() >= recordSize) {
+            return fillPage;
+        }
+        for (int i = 1; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page.type == TYPE_DATA && page.freeBytes() >= recordSize) {
+                fillPage = i;
+                return i;
+            }
+        }
+        fillPage = allocatePage(TYPE_DATA);
+        return fillPage;
+    }
+
+    private int writeOverflowChain(byte[] value, Set<Integer> dirty) {
+        int chunks = (value.length + OVERFLOW_CAPACITY - 1) / OVERFLOW_CAPACITY;
+        int[] chain = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            chain[i] = allocatePage(TYPE_OVERFLOW);
+        }
+        for (int i = 0; i < chunks; i++) {
+            Page page = pages.get(chain[i]);
+            int offset = i * OVERFLOW_CAPACITY;
+            page.overflowData = Arrays.copyOfRange(value, offset, Math.min(value.length, offset + OVERFLOW_CAPACITY));
+            page.nextPage = i + 1 < chunks ? chain[i + 1] : -1;
+            dirty.add(chain[i]);
+        }
+        return chain[0];
+    }
+
+    private void freeOverflowChain(int pageNo, Set<Integer> dirty) {
+        while (pageNo >= 0) {
+            Page page = pages.get(pageNo);
+            int next = page.nextPage;
+            page.type = TYPE_FREE;
+            page.overflowData = null;
+            page.nextPage = -1;
+            freePages.add(pageNo);
+            dirty.add(pageNo);
+            pageNo = next;
+        }
+    }
+
+    private int allocatePage(byte type) {
+        Integer reused = freePages.poll();
+        Page page = new Page(type);
+        if (reused != null) {
+            pages.set(reused, page);
+            return reused;
+        }
+        pages.add(page);
+        return pages.size() - 1;
+    }
+
+    private byte[] readValue(Record record) {
+        if (record.inlineValue != null) return record.inlineValue.clone();
+        byte[] value = new byte[record.valueLength];
+        int offset = 0;
+        int pageNo = record.overflowPage;
+        while (pageNo >= 0 && offset < value.length) {
+            Page page = pages.get(pageNo);
+            System.arraycopy(page.overflowData, 0, value, offset, page.overflowData.length);
+            offset += page.overflowData.length;
+            pageNo = page.nextPage;
+        }
+        return value;
+    }
+
+    // ---------------------------------------------------------------- WAL and page I/O
+
+    private void appendToWal(Set<Integer> dirty) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(4 + 4 + STORED_PAGE_SIZE);
+        walChannel.position(walChannel.size());
+        for (int pageNo : dirty) {
+            ByteBuffer plain = ByteBuffer.allocate(4 + PAGE_SIZE);
+            plain.putInt(pageNo).put(encodePage(pages.get(pageNo))).flip();
+            writeWalEntry(entry, plain);
+        }
+        ByteBuffer marker = ByteBuffer.allocate(4 + 8);
+        marker.putInt(COMMIT_MARKER).putLong(dirty.size()).flip();
+        writeWalEntry(entry, marker);
+        walChannel.force(false);
+    }
+
+    private void writeWalEntry(ByteBuffer entry, ByteBuffer plain) throws IOException {
+        entry.clear();
+        entry.position(4);
+        try {
+            int length = encryptionManager.encrypt(plain, entry, walAad(walSequence++));
+            entry.putInt(0, length).flip();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt WAL entry", e);
+        }
+        while (entry.hasRemaining()) walChannel.write(entry);
+    }
+
+    private void recoverFromWal() throws IOException {
+        if (walChannel.size() == 0) return;
+        Map<Integer, byte[]> pending = new LinkedHashMap<>();
+        Map<Integer, byte[]> committed = new LinkedHashMap<>();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        long position = 0;
+        long sequence = 0;
+        while (true) {
+            lengthBuffer.clear();
+            if (walChannel.read(lengthBuffer, position) < 4) break;
+            int length = lengthBuffer.getInt(0);
+            if (length <= 0 || length > STORED_PAGE_SIZE + 4) break;
+            ByteBuffer record = ByteBuffer.allocate(length);
+            if (walChannel.read(record, position + 4) < length) break;
+            record.flip();
+            ByteBuffer plain = ByteBuffer.allocate(length);
+            try {
+                encryptionManager.decrypt(record, plain, walAad(sequence));
+            } catch (GeneralSecurityException e) {
+                break; // torn or foreign tail: everything after the last commit marker is dropped
+            }
+            plain.flip();
+            int pageNo = plain.getInt();
+            if (pageNo == COMMIT_MARKER) {
+                committed.putAll(pending);
+                pending.clear();
+            } else {
+                byte[] image = new byte[PAGE_SIZE];
+                plain.get(image);
+                pending.put(pageNo, image);
+            }
+            position += 4 + length;
+            sequence++;
+        }
+        for (Map.Entry<Integer, byte[]> page : committed.entrySet()) {
+            writePageToDb(page.getKey(), page.getValue());
+        }
+        dbChannel.force(true);
+        walChannel.truncate(0);
+        walChannel.force(true);
+        if (!committed.isEmpty()) {
+            System.out.println("Recovered " + committed.size() + " profile page(s) from the write-ahead log.");
+        }
+    }
+
+    private void checkpointLocked() throws IOException {
+        if (uncheckpointedPages.isEmpty() && walChannel.size() == 0) return;
+        Span checkpointSpan = Metrics.span("link_profile_checkpoint");
+        String outcome = "failed";
+        try {
+            for (int pageNo : uncheckpointedPages) {
+                writePageToDb(pageNo, encodePage(pages.get(pageNo)));
+            }
+            dbChannel.force(true);
+            uncheckpointedPages.clear();
+            walChannel.truncate(0);
+            walChannel.force(true);
+            walSequence = 0;
+            outcome = "ok";
+        } finally {
+            checkpointSpan.end(outcome);
+        }
+    }
+
+    private void loadPages() throws IOException {
+        long pageCount = dbChannel.size() / STORED_PAGE_SIZE;
+        ByteBuffer stored = ByteBuffer.allocate(STORED_PAGE_SIZE);
+        ByteBuffer plain = ByteBuffer.allocate(PAGE_SIZE);
+        for (int pageNo = 0; pageNo < pageCount; pageNo++) {
+            stored.clear();
+            dbChannel.read(stored, (long) pageNo * STORED_PAGE_SIZE);
+            stored.flip();
+            plain.clear();
+            try {
+                encryptionManager.decrypt(stored, plain, pageAad(pageNo));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Profile page " + pageNo + " is corrupt or was written with another key", e);
+            }
+            plain.flip();
+            Page page = decodePage(plain);
+            pages.add(page);
+            if (pageNo == 0) continue;
+            if (page.type == TYPE_FREE) {
+                freePages.add(pageNo);
+            } else if (page.type == TYPE_DATA) {
+                for (String key : page.records.keySet()) {
+                    primaryIndex.put(key, pageNo);
+                }
+            }
+        }
+        if (pages.isEmpty()) {
+            throw new IOException("Profile header page is missing");
+        }
+    }
+
+    private void writePageToDb(int pageNo, byte[] image) throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(STORED_PAGE_SIZE);
+        try {
+            encryptionManager.encrypt(ByteBuffer.wrap(image), stored, pageAad(pageNo));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt profile page " + pageNo, e);
+        }
+        stored.flip();
+        long position = (long) pageNo * STORED_PAGE_SIZE;
+        while (stored.hasRemaining()) {
+            position += dbChannel.write(stored, position);
+        }
+    }
+
+    private static byte[] pageAad(int pageNo) {
+        return ByteBuffer.allocate(8).put(MAGIC).putInt(pageNo).array();
+    }
+
+    private static byte[] walAad(long sequence) {
+        return ByteBuffer.allocate(12).put(new byte[]{'W', 'A', 'L', '1'}).putLong(sequence).array();
+    }
+
+    // ---------------------------------------------------------------- page encoding
+
+    private static byte[] encodeHeader() {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.put(TYPE_HEADER).put(MAGIC).putInt(FORMAT_VERSION);
+        return buffer.array();
+    }
+
+    private static byte[] encodePage(Page page) {
+        if (page.type == TYPE_HEADER) return encodeHeader();
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.put(page.type);
+        if (page.type == TYPE_DATA) {
+            buffer.putShort((short) page.records.size());
+            for (Record record : page.records.values()) {
+                byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) key.length).put(key);
+                if (record.inlineValue != null) {
+                    buffer.put((byte) 0).putShort((short) record.inlineValue.length).put(record.inlineValue);
+                } else {
+                    buffer.put((byte) 1).putInt(record.overflowPage).putInt(record.valueLength);
+                }
+            }
+        } else if (page.type == TYPE_OVERFLOW) {
+            buffer.putInt(page.nextPage).putShort((short) page.overflowData.length).put(page.overflowData);
+        }
+        return buffer.array();
+    }
+
+    private static Page decodePage(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        Page page = new Page(type);
+        switch (type) {
+            case TYPE_HEADER -> {
+                byte[] magic = new byte[MAGIC.length];
+                buffer.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a Link profile database");
+                int version = buffer.getInt();
+                if (version > FORMAT_VERSION) throw new IOException("Profile format " + version + " is newer than this build");
+            }
+            case TYPE_DATA -> {
+                int count = buffer.getShort() & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    byte[] key = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get(key);
+                    String keyString = new String(key, StandardCharsets.UTF_8);
+                    Record record;
+                    if (buffer.get() == 0) {
+                        byte[] value = new byte[buffer.getShort() & 0xFFFF];
+                        buffer.get(value);
+                        record = new Record(keyString, value, -1, value.length);
+                    } else {
+                        int overflowPage = buffer.getInt();
+                        record = new Record(keyString, null, overflowPage, buffer.getInt());
+                    }
+                    page.records.put(keyString, record);
+                    page.usedBytes += record.encodedSize();
+                }
+            }
+            case TYPE_OVERFLOW -> {
+                page.nextPage = buffer.getInt();
+                page.overflowData = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(page.overflowData);
+            }
+            case TYPE_FREE -> {
+            }
+            default -> throw new IOException("Unknown profile page type " + type);
+        }
+        return page;
+    }
+
+    private static <V> NavigableMap<String, V> prefixView(TreeMap<String, V> map, String prefix) {
+        if (prefix.isEmpty()) return map;
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static final class Page {
+        private static final int DATA_HEADER = 1 + 2;
+
+        private byte type;
+        private final TreeMap<String, Record> records = new TreeMap<>();
+        private int usedBytes = DATA_HEADER;
+        private byte[] overflowData;
+        private int nextPage = -1;
+
+        private Page(byte type) {
+            this.type = type;
+        }
+
+        private int freeBytes() {
+            return PAGE_SIZE - usedBytes;
+        }
+    }
+
+    private static final class Record {
+        private final String key;
+        private final byte[] inlineValue;
+        private final int overflowPage;
+        private final int valueLength;
+        private final int encodedSize;
+
+        private Record(String key, byte[] inlineValue, int overflowPage, int valueLength) {
+            this.key = key;
+            this.inlineValue = inlineValue;
+            this.overflowPage = overflowPage;
+            this.valueLength = valueLength;
+            int keyBytes = key.getBytes(StandardCharsets.UTF_8).length;
+            this.encodedSize = 2 + keyBytes + 1 + (inlineValue != null ? 2 + inlineValue.length : 8);
+        }
+
+        private int encodedSize() {
+            return encodedSize;
+        }
+    }
+
+    private static final class SecondaryIndex {
+        private final String prefix;
+        private final Function<byte[], String> extractor;
+        private final TreeMap<String, TreeSet<String>> byValue = new TreeMap<>();
+        private final Map<String, String> valueByKey = new HashMap<>();
+
+        private SecondaryIndex(String prefix, Function<byte[], String> extractor) {
+            this.prefix = prefix;
+            this.extractor = extractor;
+        }
+
+        private void add(String key, byte[] value) {
+            String indexValue;
+            try {
+                indexValue = extractor.apply(value);
+            } catch (RuntimeException e) {
+                indexValue = null;
+            }
+            if (indexValue == null) return;
+            byValue.computeIfAbsent(indexValue, v -> new TreeSet<>()).add(key);
+            valueByKey.put(key, indexValue);
+        }
+
+        private void remove(String key) {
+            String indexValue = valueByKey.remove(key);
+            if (indexValue == null) return;
+            TreeSet<String> keys = byValue.get(indexValue);
+            keys.remove(key);
+            if (keys.isEmpty()) byValue.remove(indexValue);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package api.profile;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes profile records as a sequence of length-prefixed UTF-8 strings.
+ */
+public final class RecordCodec {
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Encodes the fields in order. Null fields are stored as empty strings.
+     */
+    public static byte[] encode(String... fields) {
+        return encode(List.of(nullSafe(fields)));
+    }
+
+    /**
+     * Encodes the fields in order.
+     */
+    public static byte[] encode(List<String> fields) {
+        byte[][] encoded = new byte[fields.size()][];
+        int size = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = fields.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] field : encoded) {
+            buffer.putInt(field.length).put(field);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes all fields of a record written by {@link #encode(List)}.
+     *
+     * @throws IllegalArgumentException If the record is truncated.
+     */
+    public static List<String> decode(byte[] record) {
+        List<String> fields = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < 4) throw new IllegalArgumentException("Truncated profile record");
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Truncated profile record");
+            fields.add(new String(record, buffer.position(), length, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + length);
+        }
+        return fields;
+    }
+
+    private static String[] nullSafe(String[] fields) {
+        String[] copy = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            copy[i] = fields[i] == null ? "" : fields[i];
+        }
+        return copy;
+    }
+}
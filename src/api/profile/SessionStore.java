@@ -0,0 +1,34 @@
+package api.profile;
+
+import java.util.List;
+
+/**
+ * Remembers the URLs of the tabs that were open when the browser last closed.
+ */
+public class SessionStore {
+
+    private static final String LAST_SESSION = "session/last";
+
+    private final ProfileStore store;
+
+    public SessionStore(ProfileStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Replaces the saved session. Runs synchronously so it can be called while shutting down.
+     *
+     * @param urls URLs of the open tabs, in tab order.
+     */
+    public void saveLastSession(List<String> urls) {
+        store.put(LAST_SESSION, RecordCodec.encode(urls));
+    }
+
+    /**
+     * Returns the URLs saved by {@link #saveLastSession(List)}, or an empty list.
+     */
+    public List<String> loadLastSession() {
+        byte[] value = store.get(LAST_SESSION);
+        return value == null ? List.of() : RecordCodec.decode(value);
+    }
+}
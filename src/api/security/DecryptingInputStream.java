@@ -0,0 +1,109 @@
+package api.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Reads streams written by {@link EncryptingOutputStream}, one authenticated chunk at a time,
+ * so memory use stays at one chunk regardless of the stream's size.
+ */
+class DecryptingInputStream extends InputStream {
+
+    private static final int MAX_CHUNK = EncryptingOutputStream.CHUNK_SIZE + EncryptionManager.TAG_LENGTH;
+
+    private final DataInputStream in;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] baseNonce = new byte[EncryptionManager.NONCE_LENGTH];
+    private final byte[] encrypted = new byte[MAX_CHUNK];
+    private final byte[] plain = new byte[EncryptingOutputStream.CHUNK_SIZE];
+    private int plainLength = 0;
+    private int plainPosition = 0;
+    private long chunkIndex = 0;
+    private boolean headerRead = false;
+    private boolean finished = false;
+
+    DecryptingInputStream(InputStream in, SecretKey key) {
+        this.in = new DataInputStream(in);
+        this.key = key;
+        try {
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) return -1;
+        return plain[plainPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureData()) return -1;
+        int n = Math.min(len, plainLength - plainPosition);
+        System.arraycopy(plain, plainPosition, b, off, n);
+        plainPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return plainLength - plainPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean ensureData() throws IOException {
+        while (plainPosition == plainLength) {
+            if (finished) return false;
+            readChunk();
+        }
+        return true;
+    }
+
+    private void readChunk() throws IOException {
+        try {
+            if (!headerRead) {
+                byte[] magic = new byte[EncryptingOutputStream.MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, EncryptingOutputStream.MAGIC)) {
+                    throw new IOException("Not an encrypted Link stream");
+                }
+                in.readFully(baseNonce);
+                headerRead = true;
+            }
+            int header = in.readInt();
+            boolean last = (header & EncryptingOutputStream.FINAL_FLAG) != 0;
+            int length = header & ~EncryptingOutputStream.FINAL_FLAG;
+            if (length < EncryptionManager.TAG_LENGTH || length > MAX_CHUNK) {
+                throw new IOException("Corrupt chunk length " + length);
+            }
+            in.readFully(encrypted, 0, length);
+
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(EncryptionManager.TAG_LENGTH * 8,
+                    EncryptingOutputStream.chunkNonce(baseNonce, chunkIndex)));
+            cipher.updateAAD(EncryptingOutputStream.chunkAad(chunkIndex, last));
+            plainLength = cipher.doFinal(encrypted, 0, length, plain, 0);
+            plainPosition = 0;
+            chunkIndex++;
+            finished = last;
+        } catch (EOFException e) {
+            throw new IOException("Encrypted stream is truncated", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encrypted chunk " + chunkIndex + " failed authentication", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package api.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Chunked AES-GCM encrypting stream (see {@link EncryptionManager#newEncryptingStream(OutputStream)}).
+ * <p>
+ * Layout: the magic bytes {@code LKS1} and a random 12-byte base nonce, then chunks of
+ * {@value #CHUNK_SIZE} plain bytes or fewer. Each chunk is a 4-byte length, whose high bit marks
+ * the final chunk, followed by ciphertext and tag. A chunk's nonce is the base nonce XOR its
+ * index, and the index and final flag are authenticated as associated data, so chunks cannot
+ * be reordered, dropped or cut off without detection.
+ */
+class EncryptingOutputStream extends OutputStream {
+
+    static final byte[] MAGIC = {'L', 'K', 'S', '1'};
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int FINAL_FLAG = 0x80000000;
+
+    private final DataOutputStream out;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] baseNonce = new byte[EncryptionManager.NONCE_LENGTH];
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private final byte[] encrypted = new byte[CHUNK_SIZE + EncryptionManager.TAG_LENGTH];
+    private int buffered = 0;
+    private long chunkIndex = 0;
+    private boolean headerWritten = false;
+    private boolean closed = false;
+
+    EncryptingOutputStream(OutputStream out, SecretKey key, SecureRandom random) {
+        this.out = new DataOutputStream(out);
+        this.key = key;
+        try {
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+        random.nextBytes(baseNonce);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (buffered == CHUNK_SIZE) writeChunk(false);
+        buffer[buffered++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            // Only emit a full chunk once more data arrives, so the last chunk can be marked final
+            if (buffered == CHUNK_SIZE) writeChunk(false);
+            int n = Math.min(len, CHUNK_SIZE - buffered);
+            System.arraycopy(b, off, buffer, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writeChunk(true);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean last) throws IOException {
+        if (closed && !last) throw new IOException("Stream closed");
+        if (!headerWritten) {
+            out.write(MAGIC);
+            out.write(baseNonce);
+            headerWritten = true;
+        }
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(EncryptionManager.TAG_LENGTH * 8,
+                    chunkNonce(baseNonce, chunkIndex)));
+            cipher.updateAAD(chunkAad(chunkIndex, last));
+            int length = cipher.doFinal(buffer, 0, buffered, encrypted, 0);
+            out.writeInt(last ? length | FINAL_FLAG : length);
+            out.write(encrypted, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt chunk " + chunkIndex, e);
+        }
+        chunkIndex++;
+        buffered = 0;
+    }
+
+    static byte[] chunkNonce(byte[] baseNonce, long index) {
+        byte[] nonce = baseNonce.clone();
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+        return nonce;
+    }
+
+    static byte[] chunkAad(long index, boolean last) {
+        byte[] aad = new byte[9];
+        for (int i = 0; i < 8; i++) {
+            aad[i] = (byte) (index >>> (56 - 8 * i));
+        }
+        aad[8] = (byte) (last ? 1 : 0);
+        return aad;
+    }
+}
@@ -3,21 +3,53 @@ package api.security;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Base64;
 
 /**
  * EncryptionManager for securely handling data encryption and decryption.
+ * <p>
+ * Everything is encrypted with AES-GCM, so tampering is detected on decryption. Each record
+ * gets its own random 96-bit nonce, stored in front of the ciphertext. Cipher instances are
+ * cached per thread (streams own one for their lifetime) and the key is loaded once per process.
+ * <p>
+ * Three shapes of API are offered: Base64 strings for small values such as config files,
+ * {@link ByteBuffer}s for fixed-size records such as database pages, and streams
+ * ({@link #newEncryptingStream(OutputStream)}) for large stores that should be processed block
+ * by block rather than held in memory.
  */
 public class EncryptionManager {
 
     private static final String ENCRYPTION_ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES";
+    private static final String LEGACY_TRANSFORMATION = "AES";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    /** Prefix of strings produced by {@link #encrypt(String)}; older files are plain Base64 AES/ECB. */
+    private static final String GCM_PREFIX = "v2:";
+
+    public static final int NONCE_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+    /** Bytes added to every record by {@link #encrypt(ByteBuffer, ByteBuffer, byte[])}. */
+    public static final int RECORD_OVERHEAD = NONCE_LENGTH + TAG_LENGTH;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    });
 
     private static final String SECRET_KEY_FILE;
     static {
@@ -29,22 +61,31 @@ public class EncryptionManager {
         }
     }
 
+    private static volatile SecretKey sharedKey;
+
     private SecretKey secretKey;
 
     /**
-     * Initializes the EncryptionManager by generating or loading a secret key.
+     * Initializes the EncryptionManager by generating or loading the secret key. The key file
+     * is only read by the first instance in the process.
      */
     public EncryptionManager() {
-        try {
-            File keyFile = new File(SECRET_KEY_FILE);
-            if (keyFile.exists()) {
-                loadSecretKey();
-            } else {
-                generateAndSaveSecretKey();
+        SecretKey key = sharedKey;
+        if (key == null) {
+            synchronized (EncryptionManager.class) {
+                key = sharedKey;
+                if (key == null) {
+                    try {
+                        File keyFile = new File(SECRET_KEY_FILE);
+                        key = keyFile.exists() ? loadSecretKey() : generateAndSaveSecretKey();
+                        sharedKey = key;
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        this.secretKey = key;
     }
 
     /**
@@ -55,23 +96,101 @@ public class EncryptionManager {
      * @throws Exception If encryption fails.
      */
     public String encrypt(String data) throws Exception {
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(encryptedBytes);
+        byte[] plain = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(plain.length + RECORD_OVERHEAD);
+        encrypt(ByteBuffer.wrap(plain), out, null);
+        return GCM_PREFIX + Base64.getEncoder().encodeToString(out.array());
     }
 
     /**
-     * Decrypts the given encrypted string and returns the plain text.
+     * Decrypts the given encrypted string and returns the plain text. Strings written by older
+     * versions (AES/ECB without a prefix) are still accepted.
      *
      * @param encryptedData The encrypted string.
      * @return The decrypted plain text.
-     * @throws Exception If decryption fails.
+     * @throws Exception If decryption fails or the data was tampered with.
      */
     public String decrypt(String encryptedData) throws Exception {
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        if (!encryptedData.startsWith(GCM_PREFIX)) {
+            return decryptLegacy(encryptedData);
+        }
+        byte[] record = Base64.getDecoder().decode(encryptedData.substring(GCM_PREFIX.length()));
+        ByteBuffer out = ByteBuffer.allocate(Math.max(0, record.length - RECORD_OVERHEAD));
+        decrypt(ByteBuffer.wrap(record), out, null);
+        return new String(out.array(), 0, out.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encrypts all remaining bytes of {@code plain} into {@code out} as one record:
+     * a fresh nonce followed by the ciphertext and tag.
+     *
+     * @param plain Source bytes; consumed.
+     * @param out   Destination with at least {@code plain.remaining() + RECORD_OVERHEAD} bytes free.
+     * @param aad   Optional associated data (for example a page number) authenticated but not stored.
+     * @return The number of bytes written to {@code out}.
+     * @throws GeneralSecurityException If encryption fails.
+     */
+    public int encrypt(ByteBuffer plain, ByteBuffer out, byte[] aad) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        int start = out.position();
+        out.put(nonce);
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        if (aad != null) cipher.updateAAD(aad);
+        cipher.doFinal(plain, out);
+        return out.position() - start;
+    }
+
+    /**
+     * Decrypts one record produced by {@link #encrypt(ByteBuffer, ByteBuffer, byte[])}.
+     *
+     * @param record All remaining bytes form the record; consumed.
+     * @param out    Destination with at least {@code record.remaining() - RECORD_OVERHEAD} bytes free.
+     * @param aad    The associated data used when encrypting, or null.
+     * @return The number of plain bytes written to {@code out}.
+     * @throws GeneralSecurityException If the record is corrupt, tampered with or the AAD differs.
+     */
+    public int decrypt(ByteBuffer record, ByteBuffer out, byte[] aad) throws GeneralSecurityException {
+        if (record.remaining() < RECORD_OVERHEAD) {
+            throw new GeneralSecurityException("Encrypted record is truncated");
+        }
+        byte[] nonce = new byte[NONCE_LENGTH];
+        record.get(nonce);
+        int start = out.position();
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        if (aad != null) cipher.updateAAD(aad);
+        cipher.doFinal(record, out);
+        return out.position() - start;
+    }
+
+    /**
+     * Wraps a stream so everything written to it is encrypted in independently authenticated
+     * chunks. Closing the returned stream writes the final chunk and closes {@code out}.
+     *
+     * @param out The destination stream.
+     * @return A stream accepting plain bytes.
+     */
+    public OutputStream newEncryptingStream(OutputStream out) {
+        return new EncryptingOutputStream(out, secretKey, RANDOM);
+    }
+
+    /**
+     * Wraps a stream produced by {@link #newEncryptingStream(OutputStream)}. Reads fail with an
+     * IOException if a chunk was modified, reordered, or the stream was cut short.
+     *
+     * @param in The encrypted source stream.
+     * @return A stream yielding the plain bytes.
+     */
+    public InputStream newDecryptingStream(InputStream in) {
+        return new DecryptingInputStream(in, secretKey);
+    }
+
+    private String decryptLegacy(String encryptedData) throws Exception {
+        Cipher cipher = Cipher.getInstance(LEGACY_TRANSFORMATION);
         cipher.init(Cipher.DECRYPT_MODE, secretKey);
-        byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
+        byte[] decodedBytes = Base64.getDecoder().decode(encryptedData.trim());
         byte[] decryptedBytes = cipher.doFinal(decodedBytes);
         return new String(decryptedBytes, StandardCharsets.UTF_8);
     }
@@ -79,12 +198,12 @@ public class EncryptionManager {
     /**
      * Generates a new secret key and saves it to a file for future use.
      */
-    private void generateAndSaveSecretKey() throws Exception {
+    private SecretKey generateAndSaveSecretKey() throws Exception {
         KeyGenerator keyGen = KeyGenerator.getInstance(ENCRYPTION_ALGORITHM);
         keyGen.init(256, new SecureRandom());  // Use a 256-bit key
         SecretKey key = keyGen.generateKey();
         saveSecretKey(key);
-        this.secretKey = key;
+        return key;
     }
 
     /**
@@ -93,8 +212,13 @@ public class EncryptionManager {
      * @param key The secret key to be saved.
      */
     private void saveSecretKey(SecretKey key) throws Exception {
+        File keyFile = new File(SECRET_KEY_FILE);
+        File parent = keyFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
         byte[] keyBytes = key.getEncoded();
-        try (FileOutputStream fos = new FileOutputStream(SECRET_KEY_FILE)) {
+        try (FileOutputStream fos = new FileOutputStream(keyFile)) {
             fos.write(keyBytes);
         }
     }
@@ -102,12 +226,12 @@ public class EncryptionManager {
     /**
      * Loads the secret key from a file.
      */
-    private void loadSecretKey() throws Exception {
+    private SecretKey loadSecretKey() throws Exception {
         File keyFile = new File(SECRET_KEY_FILE);
         byte[] keyBytes = new byte[(int) keyFile.length()];
         try (FileInputStream fis = new FileInputStream(keyFile)) {
-            fis.read(keyBytes);
-            this.secretKey = new SecretKeySpec(keyBytes, ENCRYPTION_ALGORITHM);
+            fis.readNBytes(keyBytes, 0, keyBytes.length);
+            return new SecretKeySpec(keyBytes, ENCRYPTION_ALGORITHM);
         }
     }
 }
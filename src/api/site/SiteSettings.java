@@ -0,0 +1,96 @@
+package api.site;
+
+import api.profile.RecordCodec;
+
+import java.util.List;
+
+/**
+ * Settings for one site pattern. Every field is optional; null means "inherit from the parent
+ * domain, or use the global setting".
+ *
+ * @param javascript     Whether page scripts run.
+ * @param images         Whether images load eagerly rather than being deferred.
+ * @param flash          Whether Flash content is replaced by Ruffle players.
+ * @param userAgent      User agent string sent to the site.
+ * @param zoom           Page zoom factor, 1.0 being 100%.
+ * @param blockingExempt Whether the site is exempt from content blocking, including data saver.
+ */
+public record SiteSettings(Boolean javascript, Boolean images, Boolean flash, String userAgent,
+                           Double zoom, Boolean blockingExempt) {
+
+    /** No overrides at all. */
+    public static final SiteSettings EMPTY = new SiteSettings(null, null, null, null, null, null);
+
+    /**
+     * Returns these settings with every non-null field of {@code more specific} taking precedence.
+     */
+    public SiteSettings overriddenBy(SiteSettings moreSpecific) {
+        if (moreSpecific == null || moreSpecific.isEmpty()) return this;
+        if (isEmpty()) return moreSpecific;
+        return new SiteSettings(
+                moreSpecific.javascript != null ? moreSpecific.javascript : javascript,
+                moreSpecific.images != null ? moreSpecific.images : images,
+                moreSpecific.flash != null ? moreSpecific.flash : flash,
+                moreSpecific.userAgent != null ? moreSpecific.userAgent : userAgent,
+                moreSpecific.zoom != null ? moreSpecific.zoom : zoom,
+                moreSpecific.blockingExempt != null ? moreSpecific.blockingExempt : blockingExempt);
+    }
+
+    public boolean isEmpty() {
+        return javascript == null && images == null && flash == null && userAgent == null
+                && zoom == null && blockingExempt == null;
+    }
+
+    public SiteSettings withJavascript(Boolean javascript) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    public SiteSettings withImages(Boolean images) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    public SiteSettings withFlash(Boolean flash) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    public SiteSettings withUserAgent(String userAgent) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    public SiteSettings withZoom(Double zoom) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    public SiteSettings withBlockingExempt(Boolean blockingExempt) {
+        return new SiteSettings(javascript, images, flash, userAgent, zoom, blockingExempt);
+    }
+
+    byte[] encode() {
+        return RecordCodec.encode(format(javascript), format(images), format(flash), userAgent,
+                zoom == null ? null : zoom.toString(), format(blockingExempt));
+    }
+
+    /**
+     * Parses the result of {@link #encode()}; unknown or malformed fields are treated as unset.
+     */
+    static SiteSettings decode(byte[] value) {
+        List<String> fields = RecordCodec.decode(value);
+        if (fields.size() < 6) return EMPTY;
+        Double zoom = null;
+        try {
+            zoom = fields.get(4).isEmpty() ? null : Double.valueOf(fields.get(4));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid site zoom: " + fields.get(4));
+        }
+        return new SiteSettings(parse(fields.get(0)), parse(fields.get(1)), parse(fields.get(2)),
+                fields.get(3).isEmpty() ? null : fields.get(3), zoom, parse(fields.get(5)));
+    }
+
+    private static String format(Boolean value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static Boolean parse(String value) {
+        return value.isEmpty() ? null : Boolean.valueOf(value);
+    }
+}
@@ -0,0 +1,151 @@
+package api.site;
+
+import api.profile.ProfileStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+/**
+ * Process-wide per-site settings, persisted in the {@link ProfileStore}.
+ * <p>
+ * Lookups go through an immutable {@link SiteSettingsTree} held in a volatile field, so
+ * resolving the settings of a navigation is a lock-free, allocation-free walk over the host.
+ * Changes rebuild the tree, which is cheap next to how rarely they happen, write the pattern
+ * to the profile in the background and notify listeners so open tabs can re-apply their
+ * settings.
+ */
+public class SiteSettingsManager {
+
+    private static final String PREFIX = "site/";
+
+    private static volatile SiteSettingsManager instance;
+
+    private final ProfileStore store;
+    private final Map<String, SiteSettings> patterns = new TreeMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile SiteSettingsTree tree = SiteSettingsTree.EMPTY;
+
+    public static SiteSettingsManager getInstance() {
+        if (instance == null) {
+            synchronized (SiteSettingsManager.class) {
+                if (instance == null) {
+                    instance = new SiteSettingsManager(ProfileStore.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public SiteSettingsManager(ProfileStore store) {
+        this.store = store;
+        for (Map.Entry<String, byte[]> entry : store.scan(PREFIX).entrySet()) {
+            String pattern = SiteSettingsTree.normalizePattern(entry.getKey().substring(PREFIX.length()));
+            SiteSettings settings = SiteSettings.decode(entry.getValue());
+            if (pattern != null && !settings.isEmpty()) {
+                patterns.put(pattern, settings);
+            }
+        }
+        tree = SiteSettingsTree.build(patterns);
+    }
+
+    /**
+     * Returns the settings in effect for a URL, merged from every matching pattern. Fields no
+     * pattern sets are null. Safe to call from any thread; allocates nothing.
+     */
+    public SiteSettings resolve(String url) {
+        return url == null ? tree.resolveUrl("") : tree.resolveUrl(url);
+    }
+
+    /**
+     * Returns the settings stored for exactly this pattern, or {@link SiteSettings#EMPTY}.
+     */
+    public synchronized SiteSettings get(String pattern) {
+        SiteSettings settings = patterns.get(SiteSettingsTree.normalizePattern(pattern));
+        return settings == null ? SiteSettings.EMPTY : settings;
+    }
+
+    /**
+     * Returns a copy of all stored patterns in alphabetical order.
+     */
+    public synchronized Map<String, SiteSettings> getAll() {
+        return new TreeMap<>(patterns);
+    }
+
+    /**
+     * Stores the settings of a pattern, replacing what was there. Empty settings remove it.
+     *
+     * @param pattern  "example.com", "*.example.com" or "*".
+     * @param settings The settings.
+     * @throws IllegalArgumentException If the pattern is not valid.
+     */
+    public void set(String pattern, SiteSettings settings) {
+        update(pattern, current -> settings);
+    }
+
+    /**
+     * Changes the settings of a pattern based on its current value.
+     *
+     * @param pattern "example.com", "*.example.com" or "*".
+     * @param change  Receives the current settings, {@link SiteSettings#EMPTY} if none.
+     * @throws IllegalArgumentException If the pattern is not valid.
+     */
+    public void update(String pattern, UnaryOperator<SiteSettings> change) {
+        String normalized = SiteSettingsTree.normalizePattern(pattern);
+        if (normalized == null) throw new IllegalArgumentException("Invalid site pattern: " + pattern);
+        synchronized (this) {
+            SiteSettings current = patterns.getOrDefault(normalized, SiteSettings.EMPTY);
+            SiteSettings updated = change.apply(current);
+            if (updated == null) updated = SiteSettings.EMPTY;
+            if (updated.equals(current)) return;
+            if (updated.isEmpty()) {
+                patterns.remove(normalized);
+                store.submit(() -> store.delete(PREFIX + normalized));
+            } else {
+                patterns.put(normalized, updated);
+                byte[] encoded = updated.encode();
+                store.submit(() -> store.put(PREFIX + normalized, encoded));
+            }
+            tree = SiteSettingsTree.build(patterns);
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Removes a pattern's settings.
+     */
+    public void remove(String pattern) {
+        set(pattern, SiteSettings.EMPTY);
+    }
+
+    /**
+     * Registers a listener called on the changing thread after any pattern changes.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Host patterns for a URL's own host: the pattern "Remember for this site" and similar
+     * actions write to.
+     *
+     * @return The lower-cased host, or null if the URL has none.
+     */
+    public static String patternFor(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) return null;
+        try {
+            String host = java.net.URI.create(url).getHost();
+            return host == null ? null : SiteSettingsTree.normalizePattern(host);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
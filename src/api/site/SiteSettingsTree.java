@@ -0,0 +1,239 @@
+package api.site;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable reverse-domain radix tree of site patterns.
+ * <p>
+ * Hosts are matched from their last character to their first, so "www.example.com" walks
+ * through "com", "example" and "www" in that order and every domain is a prefix of its
+ * subdomains. Edges hold runs of characters, as in any radix tree, so a lookup touches each
+ * character of the host at most once.
+ * <p>
+ * Patterns are either a domain ("example.com"), which applies to the domain and all its
+ * subdomains, a wildcard ("*.example.com"), which applies only to subdomains, or "*" for every
+ * site. More specific patterns override less specific ones field by field. The merged settings
+ * of every node are computed when the tree is built, so a lookup allocates nothing: it returns
+ * a shared {@link SiteSettings} instance.
+ */
+final class SiteSettingsTree {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    static final SiteSettingsTree EMPTY = build(Map.of());
+
+    private final Node root;
+
+    private SiteSettingsTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a tree from normalized patterns, as returned by {@link #normalizePattern(String)}.
+     */
+    static SiteSettingsTree build(Map<String, SiteSettings> patterns) {
+        Node root = new Node(new char[0]);
+        for (Map.Entry<String, SiteSettings> entry : patterns.entrySet()) {
+            String pattern = entry.getKey();
+            if (pattern.equals("*")) {
+                root.exact = entry.getValue();
+                continue;
+            }
+            boolean wildcard = pattern.startsWith("*.");
+            String domain = wildcard ? pattern.substring(2) : pattern;
+            Node node = insert(root, new StringBuilder(domain).reverse().toString().toCharArray());
+            if (wildcard) {
+                node.wildcard = entry.getValue();
+            } else {
+                node.exact = entry.getValue();
+            }
+        }
+        root.hasSettings = true;
+        root.self = SiteSettings.EMPTY.overriddenBy(root.exact);
+        root.sub = root.self;
+        resolveChildren(root, root.sub);
+        return new SiteSettingsTree(root);
+    }
+
+    /**
+     * Returns the settings in effect for the host of a URL. Allocation free.
+     *
+     * @param url An absolute URL, or a bare host.
+     */
+    SiteSettings resolveUrl(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') break;
+            if (c == '@') start = end + 1;
+            end++;
+        }
+        // Drop the port; an IPv6 literal contains colons but ends in ']'.
+        for (int i = end - 1; i >= start; i--) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                end = i;
+                break;
+            }
+            if (c < '0' || c > '9') break;
+        }
+        if (end > start && url.charAt(end - 1) == '.') end--;
+        return resolveHost(url, start, end);
+    }
+
+    /**
+     * Returns the settings in effect for a host. Allocation free.
+     *
+     * @param text  Text containing the host.
+     * @param start Index of the host's first character.
+     * @param end   Index after the host's last character.
+     */
+    SiteSettings resolveHost(CharSequence text, int start, int end) {
+        Node node = root;
+        SiteSettings best = root.sub;
+        int i = end;
+        while (true) {
+            if (node != root && node.hasSettings) {
+                if (i == start) return node.self;
+                if (text.charAt(i - 1) == '.') best = node.sub;
+            }
+            if (i == start) return best;
+            Node child = node.child(Character.toLowerCase(text.charAt(i - 1)));
+            if (child == null) return best;
+            char[] label = child.label;
+            for (char expected : label) {
+                if (i == start || Character.toLowerCase(text.charAt(i - 1)) != expected) return best;
+                i--;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Lower-cases a pattern and checks its syntax.
+     *
+     * @return The normalized pattern, or null if it is not a valid pattern.
+     */
+    static String normalizePattern(String pattern) {
+        if (pattern == null) return null;
+        String normalized = pattern.trim().toLowerCase(Locale.ROOT);
+        while (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.equals("*")) return normalized;
+        String domain = normalized.startsWith("*.") ? normalized.substring(2) : normalized;
+        if (domain.isEmpty() || domain.startsWith(".") || domain.contains("..")) return null;
+        for (int i = 0; i < domain.length(); i++) {
+            char c = domain.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+                    || c == '_' || c == ':' || c == '[' || c == ']';
+            if (!valid) return null;
+        }
+        return normalized;
+    }
+
+    private static Node insert(Node root, char[] key) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length) {
+            Node child = node.child(key[position]);
+            if (child == null) {
+                child = new Node(Arrays.copyOfRange(key, position, key.length));
+                node.addChild(child);
+                return child;
+            }
+            int common = 0;
+            while (common < child.label.length && position + common < key.length
+                    && child.label[common] == key[position + common]) {
+                common++;
+            }
+            if (common < child.label.length) {
+                child = split(node, child, common);
+            }
+            position += common;
+            node = child;
+        }
+        return node;
+    }
+
+    /** Splits a child's edge after {@code length} characters and returns the new middle node. */
+    private static Node split(Node parent, Node child, int length) {
+        Node middle = new Node(Arrays.copyOfRange(child.label, 0, length));
+        parent.replaceChild(child, middle);
+        child.label = Arrays.copyOfRange(child.label, length, child.label.length);
+        middle.addChild(child);
+        return middle;
+    }
+
+    /**
+     * Computes the merged settings top down. A node inherits from a configured ancestor only if
+     * it is a subdomain of it, that is, if the characters after the ancestor start with a dot;
+     * "ample.com" shares a prefix with "example.com" but is not its parent.
+     */
+    private static void resolveChildren(Node node, SiteSettings inherited) {
+        for (Node child : node.children) {
+            SiteSettings childInherited = node.hasSettings && child.label[0] == '.' ? node.sub : inherited;
+            if (child.exact != null || child.wildcard != null) {
+                child.hasSettings = true;
+                child.self = childInherited.overriddenBy(child.exact);
+                child.sub = child.self.overriddenBy(child.wildcard);
+            }
+            resolveChildren(child, childInherited);
+        }
+    }
+
+    private static final class Node {
+        char[] label;
+        Node[] children = NO_CHILDREN;
+        SiteSettings exact;
+        SiteSettings wildcard;
+        boolean hasSettings;
+        SiteSettings self;
+        SiteSettings sub;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = children[middle].label[0];
+                if (c < first) {
+                    low = middle + 1;
+                } else if (c > first) {
+                    high = middle - 1;
+                } else {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node child) {
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            int index = grown.length - 1;
+            while (index > 0 && grown[index - 1].label[0] > child.label[0]) {
+                grown[index] = grown[index - 1];
+                index--;
+            }
+            grown[index] = child;
+            children = grown;
+        }
+
+        void replaceChild(Node old, Node replacement) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == old) {
+                    children[i] = replacement;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ui;
+
+import api.find.PageFinder;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+
+/**
+ * Find bar shown above the status bar. Searches as the user types; Enter and Shift+Enter move
+ * between matches and Escape closes it. The searching itself is done by a {@link PageFinder}.
+ * All methods must be called on the FX application thread.
+ */
+public class FindBar {
+
+    private final PageFinder finder;
+    private final HBox container;
+    private final TextField queryField;
+    private final ToggleButton caseButton;
+    private final ToggleButton regexButton;
+    private final Label countLabel;
+    private Runnable onClose = () -> { };
+
+    public FindBar(PageFinder finder) {
+        this.finder = finder;
+
+        queryField = new TextField();
+        queryField.setPromptText("Find in page");
+        queryField.setPrefWidth(260);
+
+        caseButton = new ToggleButton("Aa");
+        caseButton.setTooltip(new Tooltip("Match case"));
+        regexButton = new ToggleButton(".*");
+        regexButton.setTooltip(new Tooltip("Regular expression"));
+
+        Button previousButton = new Button("\u25B2");
+        previousButton.setTooltip(new Tooltip("Previous match (Shift+Enter)"));
+        previousButton.setOnAction(e -> finder.previous());
+        Button nextButton = new Button("\u25BC");
+        nextButton.setTooltip(new Tooltip("Next match (Enter)"));
+        nextButton.setOnAction(e -> finder.next());
+        Button closeButton = new Button("\u2715");
+        closeButton.setOnAction(e -> hide());
+
+        countLabel = new Label();
+        countLabel.setMinWidth(110);
+
+        container = new HBox(5, queryField, caseButton, regexButton, previousButton, nextButton, countLabel, closeButton);
+        container.setAlignment(Pos.CENTER_LEFT);
+        container.setPadding(new Insets(3, 10, 3, 10));
+        container.setStyle("-fx-background-color: #f0f0f0; -fx-border-color: #ccc; -fx-border-width: 1 0 0 0;");
+        container.setVisible(false);
+        container.setManaged(false);
+
+        queryField.textProperty().addListener((obs, oldText, newText) -> search());
+        caseButton.selectedProperty().addListener((obs, was, selected) -> search());
+        regexButton.selectedProperty().addListener((obs, was, selected) -> search());
+        queryField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                if (event.isShiftDown()) finder.previous(); else finder.next();
+                event.consume();
+            } else if (event.getCode() == KeyCode.ESCAPE) {
+                hide();
+                event.consume();
+            }
+        });
+        finder.setStatusListener(this::showStatus);
+    }
+
+    public HBox getNode() {
+        return container;
+    }
+
+    public boolean isShowing() {
+        return container.isVisible();
+    }
+
+    /**
+     * Sets what to do after the bar closes, such as giving focus back to the page.
+     */
+    public void setOnClose(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
+    /**
+     * Shows the bar, or focuses it if it is already showing, and searches for what it holds.
+     */
+    public void show() {
+        if (!isShowing()) {
+            container.setVisible(true);
+            container.setManaged(true);
+            finder.open();
+            search();
+        }
+        queryField.requestFocus();
+        queryField.selectAll();
+    }
+
+    public void hide() {
+        if (!isShowing()) return;
+        container.setVisible(false);
+        container.setManaged(false);
+        finder.close();
+        countLabel.setText("");
+        onClose.run();
+    }
+
+    private void search() {
+        if (isShowing()) {
+            finder.search(queryField.getText(), caseButton.isSelected(), regexButton.isSelected());
+        }
+    }
+
+    private void showStatus(PageFinder.Status status) {
+        queryField.setStyle(status.error() != null || (status.count() == 0 && !queryField.getText().isEmpty() && !status.indexing())
+                ? "-fx-control-inner-background: #ffe0e0;" : "");
+        String text;
+        if (status.error() != null) {
+            text = status.error();
+        } else if (queryField.getText().isEmpty()) {
+            text = status.indexing() ? "Reading page..." : "";
+        } else {
+            String count = status.count() + (status.truncated() || status.indexing() ? "+" : "");
+            text = (status.current() + 1) + " of " + count;
+        }
+        countLabel.setText(text);
+    }
+}
@@ -1,5 +1,9 @@
 package ui;
 
+import api.concurrent.FxDispatcher;
+import api.history.HistoryIndex;
+import api.history.HistorySearchResult;
+
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
@@ -16,10 +20,16 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.control.ScrollPane;
 import javafx.stage.Popup;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * SearchBar class with autofill (autocomplete) functionality and common website suggestions.
  */
 public class SearchBar {
+    private static final int MIN_HISTORY_QUERY = 2;
+    private static final int MAX_HISTORY_SUGGESTIONS = 6;
+
     private TextField searchField;
     private HBox searchBarContainer;
     private Button backButton;
@@ -116,25 +126,59 @@ public class SearchBar {
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
             if (newValue.isEmpty()) {
                 suggestionPopup.hide();
-            } else {
-                ObservableList<String> filteredSuggestions = commonWebsites.filtered(
-                        url -> url.toLowerCase().contains(newValue.toLowerCase())
-                );
-                if (!filteredSuggestions.isEmpty()) {
-                    suggestionListView.setItems(filteredSuggestions);
-                    if (!suggestionPopup.isShowing()) {
-                        suggestionPopup.getContent().clear();
-                        suggestionPopup.getContent().add(new ScrollPane(suggestionListView));
-                        suggestionPopup.show(searchField, searchField.localToScreen(0, 0).getX(),
-                                searchField.localToScreen(0, 0).getY() + searchField.getHeight());
+                return;
+            }
+            List<String> suggestions = filterSuggestions(commonWebsites, newValue);
+            showSuggestions(suggestions);
+            // Only typing searches history; text set by navigation does not
+            if (searchField.isFocused() && newValue.trim().length() >= MIN_HISTORY_QUERY) {
+                HistoryIndex.getInstance().searchAsync(newValue, MAX_HISTORY_SUGGESTIONS).thenAcceptAsync(results -> {
+                    if (!newValue.equals(searchField.getText()) || results.isEmpty()) return;
+                    List<String> merged = new ArrayList<>(suggestions);
+                    for (HistorySearchResult result : results) {
+                        if (!merged.contains(result.url())) merged.add(result.url());
                     }
-                } else {
-                    suggestionPopup.hide();
-                }
+                    showSuggestions(merged);
+                }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
             }
         });
     }
 
+    /**
+     * Shows the suggestions below the search field, or hides the popup if there are none.
+     */
+    private void showSuggestions(List<String> suggestions) {
+        if (suggestions.isEmpty()) {
+            suggestionPopup.hide();
+            return;
+        }
+        suggestionListView.setItems(FXCollections.observableArrayList(suggestions));
+        if (!suggestionPopup.isShowing()) {
+            suggestionPopup.getContent().clear();
+            suggestionPopup.getContent().add(new ScrollPane(suggestionListView));
+            suggestionPopup.show(searchField, searchField.localToScreen(0, 0).getX(),
+                    searchField.localToScreen(0, 0).getY() + searchField.getHeight());
+        }
+    }
+
+    /**
+     * Returns the candidates containing the query, ignoring case.
+     *
+     * @param candidates The suggestions to filter.
+     * @param query      The text typed by the user.
+     * @return The matching suggestions in their original order.
+     */
+    static List<String> filterSuggestions(List<String> candidates, String query) {
+        String lowerQuery = query.toLowerCase();
+        List<String> matches = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (candidate.toLowerCase().contains(lowerQuery)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
     /**
      * Arranges the search bar components horizontally and applies container styling.
      */
@@ -1,5 +1,7 @@
 package ui;
 
+import api.Managers.TabMemoryManager;
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
@@ -7,13 +9,37 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 
+import java.util.Objects;
+
+/**
+ * Status bar shown at the bottom of every tab.
+ * <p>
+ * Setters only record the latest requested state; it is rendered at most once per pulse by
+ * an {@link AnimationTimer}, and only while the owning tab is the visible one. A page firing
+ * hundreds of location/progress events therefore costs one label/progress update per frame.
+ * All methods must be called on the FX application thread.
+ */
 public class StatusBar {
 
     private Label statusLabel;
     private ProgressBar loadingBar;
+    private Label downloadLabel;
+    private ProgressBar downloadBar;
+    private Label savedLabel;
     private HBox statusBarContainer;
     private String currentLoadingBarStyle;
 
+    private String pendingStatus = "Ready";
+    private double pendingProgress = ProgressBar.INDETERMINATE_PROGRESS;
+    private boolean pendingLoadingBarVisible = false;
+    private String pendingDownloadText = null;
+    private double pendingDownloadProgress = ProgressBar.INDETERMINATE_PROGRESS;
+    private long pendingBytesSaved = 0;
+    private boolean dirty = false;
+    private boolean active = true;
+    private boolean timerRunning = false;
+    private final AnimationTimer renderTimer;
+
     public StatusBar() {
         statusLabel = new Label("Ready");
         statusLabel.setPadding(new Insets(3, 5, 3, 5));
@@ -24,28 +50,166 @@ public class StatusBar {
 
         setLoadingBarStyle("red");
 
+        downloadLabel = new Label();
+        downloadLabel.setPadding(new Insets(3, 5, 3, 5));
+        downloadBar = new ProgressBar();
+        downloadBar.setPrefWidth(80);
+        downloadBar.setStyle("-fx-accent: #28a745; -fx-control-inner-background: #e0f7e7;");
+        setDownloadNodesVisible(false);
+
+        savedLabel = new Label();
+        savedLabel.setPadding(new Insets(3, 5, 3, 5));
+        savedLabel.setStyle("-fx-text-fill: #28a745;");
+        savedLabel.setVisible(false);
+        savedLabel.setManaged(false);
+
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
         statusBarContainer = new HBox(5);
         statusBarContainer.setPadding(new Insets(2, 5, 2, 5));
-        statusBarContainer.getChildren().addAll(statusLabel, spacer, loadingBar);
+        statusBarContainer.getChildren().addAll(statusLabel, spacer, savedLabel, downloadLabel, downloadBar, loadingBar);
 
         statusBarContainer.setStyle("-fx-background-color: #e5e5e5; "
                 + "-fx-border-color: #7f9db9; -fx-border-width: 1; "
                 + "-fx-padding: 2; -fx-font-size: 11px; -fx-font-family: Tahoma;");
+
+        renderTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                render();
+            }
+        };
     }
 
+    /**
+     * @param status The text to show, or null to clear the bar.
+     */
     public void setStatus(String status) {
-        statusLabel.setText(status);
+        String text = status == null ? "" : status;
+        if (text.equals(pendingStatus)) return;
+        pendingStatus = text;
+        markDirty();
     }
 
     public void showLoadingBar(boolean show) {
-        loadingBar.setVisible(show);
+        if (show == pendingLoadingBarVisible) return;
+        pendingLoadingBarVisible = show;
+        markDirty();
     }
 
     public void setLoadingProgress(double progress) {
-        loadingBar.setProgress(progress);
+        if (progress == pendingProgress) return;
+        pendingProgress = progress;
+        markDirty();
+    }
+
+    /**
+     * Shows a download indicator next to the loading bar.
+     *
+     * @param text     Short description, or null to hide the indicator.
+     * @param progress Completed fraction, or a negative value when the size is unknown.
+     */
+    public void setDownloadProgress(String text, double progress) {
+        double clamped = progress < 0 ? ProgressBar.INDETERMINATE_PROGRESS : progress;
+        if (Objects.equals(text, pendingDownloadText) && clamped == pendingDownloadProgress) return;
+        pendingDownloadText = text;
+        pendingDownloadProgress = clamped;
+        markDirty();
+    }
+
+    /**
+     * Shows the running data-saver total. Hidden while nothing has been saved.
+     *
+     * @param bytes Estimated bytes not downloaded so far.
+     */
+    public void setBytesSaved(long bytes) {
+        if (bytes == pendingBytesSaved) return;
+        pendingBytesSaved = bytes;
+        markDirty();
+    }
+
+    /**
+     * Marks this status bar as belonging to the visible tab (or not). Inactive status bars keep
+     * collecting state but do not render it until they become active again.
+     *
+     * @param active True if the owning tab is currently selected.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+        if (active && dirty) {
+            startRenderTimer();
+        }
+    }
+
+    public String getStatus() {
+        return pendingStatus;
+    }
+
+    public double getLoadingProgress() {
+        return pendingProgress;
+    }
+
+    private void markDirty() {
+        dirty = true;
+        if (active) {
+            startRenderTimer();
+        }
+    }
+
+    private void startRenderTimer() {
+        if (!timerRunning) {
+            timerRunning = true;
+            renderTimer.start();
+        }
+    }
+
+    /** Applies the coalesced state to the nodes and parks the timer until the next change. */
+    private void render() {
+        if (active && dirty) {
+            dirty = false;
+            if (!pendingStatus.equals(statusLabel.getText())) {
+                statusLabel.setText(pendingStatus);
+            }
+            if (loadingBar.getProgress() != pendingProgress) {
+                loadingBar.setProgress(pendingProgress);
+            }
+            if (loadingBar.isVisible() != pendingLoadingBarVisible) {
+                loadingBar.setVisible(pendingLoadingBarVisible);
+            }
+            boolean savedVisible = pendingBytesSaved > 0;
+            if (savedLabel.isVisible() != savedVisible) {
+                savedLabel.setVisible(savedVisible);
+                savedLabel.setManaged(savedVisible);
+            }
+            if (savedVisible) {
+                String savedText = "Saved ~" + TabMemoryManager.formatBytes(pendingBytesSaved);
+                if (!savedText.equals(savedLabel.getText())) {
+                    savedLabel.setText(savedText);
+                }
+            }
+            boolean downloadVisible = pendingDownloadText != null;
+            if (downloadLabel.isVisible() != downloadVisible) {
+                setDownloadNodesVisible(downloadVisible);
+            }
+            if (downloadVisible) {
+                if (!pendingDownloadText.equals(downloadLabel.getText())) {
+                    downloadLabel.setText(pendingDownloadText);
+                }
+                if (downloadBar.getProgress() != pendingDownloadProgress) {
+                    downloadBar.setProgress(pendingDownloadProgress);
+                }
+            }
+        }
+        timerRunning = false;
+        renderTimer.stop();
+    }
+
+    private void setDownloadNodesVisible(boolean visible) {
+        downloadLabel.setVisible(visible);
+        downloadLabel.setManaged(visible);
+        downloadBar.setVisible(visible);
+        downloadBar.setManaged(visible);
     }
 
     public void setLoadingBarStyle(String style) {
@@ -0,0 +1,123 @@
+package ui;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Tab;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Drop-down panel listing per-tab metrics.
+ * <p>
+ * One row is kept per tab and holds the raw numbers last reported for it. Updates only touch
+ * the nodes whose value actually changed, and nothing is rendered while the panel is hidden;
+ * the pending values are applied in one pass when it slides back in.
+ * All methods must be called on the FX application thread.
+ */
+public class TabMetricsPanel {
+
+    /** Memory usage at which a row's bar is drawn full. */
+    private static final double FULL_SCALE_BYTES = 1024.0 * 1024.0 * 1024.0;
+
+    private final VBox container;
+    private final Map<Tab, Row> rows = new IdentityHashMap<>();
+    private boolean showing = false;
+
+    public TabMetricsPanel() {
+        container = new VBox(5);
+        container.setId("memoryUsagePanel");
+        container.setAlignment(Pos.CENTER_LEFT);
+        container.setStyle("-fx-background-color: rgba(34,34,34,0.9); -fx-padding: 10px; -fx-background-radius: 5;");
+        container.setPrefWidth(300);
+    }
+
+    /**
+     * Records the latest metrics for a tab, creating its row on first use.
+     *
+     * @param tab         The tab the metrics belong to.
+     * @param title       The title to show for the tab.
+     * @param memoryBytes The tab's estimated memory usage in bytes.
+     */
+    public void update(Tab tab, String title, long memoryBytes) {
+        Row row = rows.get(tab);
+        if (row == null) {
+            row = new Row();
+            rows.put(tab, row);
+            container.getChildren().add(row.box);
+        }
+        row.title = title;
+        row.memoryBytes = memoryBytes;
+        if (showing) {
+            row.render();
+        }
+    }
+
+    /**
+     * Removes the row of a closed tab.
+     *
+     * @param tab The tab that was closed.
+     */
+    public void remove(Tab tab) {
+        Row row = rows.remove(tab);
+        if (row != null) {
+            container.getChildren().remove(row.box);
+        }
+    }
+
+    /**
+     * Tells the panel whether it is on screen. Becoming visible applies all pending values.
+     *
+     * @param showing True if the panel is visible to the user.
+     */
+    public void setShowing(boolean showing) {
+        this.showing = showing;
+        if (showing) {
+            for (Row row : rows.values()) {
+                row.render();
+            }
+        }
+    }
+
+    public boolean isShowing() {
+        return showing;
+    }
+
+    public VBox getNode() {
+        return container;
+    }
+
+    private static final class Row {
+        private final HBox box;
+        private final Label titleLabel;
+        private final ProgressBar memoryBar;
+
+        private String title = "";
+        private long memoryBytes = 0;
+        private String renderedTitle = null;
+        private long renderedMemoryBytes = -1;
+
+        private Row() {
+            titleLabel = new Label();
+            titleLabel.setStyle("-fx-text-fill: #e8eaed; -fx-font-size: 12px;");
+            memoryBar = new ProgressBar(0);
+            memoryBar.setPrefWidth(100);
+            box = new HBox(10, titleLabel, memoryBar);
+            box.setAlignment(Pos.CENTER_LEFT);
+        }
+
+        private void render() {
+            if (!title.equals(renderedTitle)) {
+                titleLabel.setText(title);
+                renderedTitle = title;
+            }
+            if (memoryBytes != renderedMemoryBytes) {
+                memoryBar.setProgress(Math.min(memoryBytes / FULL_SCALE_BYTES, 1.0));
+                renderedMemoryBytes = memoryBytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ui;
+
+import api.concurrent.FxDispatcher;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tab;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.TilePane;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Full-window grid of tab thumbnails for switching among many tabs.
+ * <p>
+ * Cells hold a static image and a title, never a live WebView, and thumbnails are decoded by
+ * {@link TabThumbnailCache} off the FX thread, so opening the grid with a hundred tabs costs a
+ * hundred small image views. Tabs without a thumbnail show a blank card. Pressing Escape or
+ * clicking outside a card closes the grid. Must be used on the FX application thread.
+ */
+public class TabOverview {
+
+    public static final double THUMBNAIL_WIDTH = 240;
+    public static final double THUMBNAIL_HEIGHT = 150;
+
+    private final ScrollPane overlay;
+    private final TilePane grid;
+    private final TabThumbnailCache thumbnails;
+    private final Consumer<Tab> onSelect;
+    private Pane host;
+    private final InvalidationListener fitToHost = obs -> fitToHost();
+
+    /**
+     * @param thumbnails Source of the tab images.
+     * @param onSelect   Called with the tab the user picked, after the grid has closed.
+     */
+    public TabOverview(TabThumbnailCache thumbnails, Consumer<Tab> onSelect) {
+        this.thumbnails = thumbnails;
+        this.onSelect = onSelect;
+
+        grid = new TilePane(16, 16);
+        grid.setPadding(new Insets(24));
+        grid.setAlignment(Pos.TOP_CENTER);
+        grid.setPrefTileWidth(THUMBNAIL_WIDTH + 12);
+
+        overlay = new ScrollPane(grid);
+        // Sized by hand: the root may be a BorderPane, which only lays out its five regions.
+        overlay.setManaged(false);
+        overlay.setFitToWidth(true);
+        overlay.setStyle("-fx-background: rgba(34,34,34,0.92); -fx-background-color: transparent;");
+        overlay.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ESCAPE) hide();
+        });
+        grid.setOnMouseClicked(e -> {
+            if (e.getTarget() == grid) hide();
+        });
+    }
+
+    /**
+     * Covers a root pane with the grid of the given tabs.
+     *
+     * @param root The scene's root pane.
+     * @param tabs The tabs to show, in display order.
+     * @param selected The tab to highlight, or null.
+     */
+    public void show(Pane root, List<Tab> tabs, Tab selected) {
+        hide();
+        host = root;
+        grid.getChildren().clear();
+        for (Tab tab : tabs) {
+            grid.getChildren().add(createCard(tab, tab == selected));
+        }
+        root.widthProperty().addListener(fitToHost);
+        root.heightProperty().addListener(fitToHost);
+        root.getChildren().add(overlay);
+        fitToHost();
+        overlay.requestFocus();
+    }
+
+    public boolean isShowing() {
+        return host != null;
+    }
+
+    public void hide() {
+        if (host == null) return;
+        host.getChildren().remove(overlay);
+        host.widthProperty().removeListener(fitToHost);
+        host.heightProperty().removeListener(fitToHost);
+        grid.getChildren().clear();
+        host = null;
+    }
+
+    private void fitToHost() {
+        overlay.resizeRelocate(0, 0, host.getWidth(), host.getHeight());
+    }
+
+    private VBox createCard(Tab tab, boolean selected) {
+        ImageView image = new ImageView();
+        image.setFitWidth(THUMBNAIL_WIDTH);
+        image.setFitHeight(THUMBNAIL_HEIGHT);
+        image.setPreserveRatio(true);
+
+        StackPane frame = new StackPane(image);
+        frame.setPrefSize(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        frame.setMaxSize(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        frame.setAlignment(Pos.TOP_LEFT);
+        frame.setStyle("-fx-background-color: white;");
+
+        Label title = new Label(tab.getText());
+        title.setMaxWidth(THUMBNAIL_WIDTH);
+        title.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
+
+        VBox card = new VBox(6, frame, title);
+        card.setPadding(new Insets(6));
+        card.setStyle(selected
+                ? "-fx-background-color: #0a64ad; -fx-background-radius: 5; -fx-cursor: hand;"
+                : "-fx-background-color: rgba(255,255,255,0.08); -fx-background-radius: 5; -fx-cursor: hand;");
+        card.setOnMouseClicked(e -> {
+            hide();
+            onSelect.accept(tab);
+        });
+
+        thumbnails.load(tab).thenAcceptAsync(decoded -> {
+            if (decoded != null) image.setImage(decoded);
+        }, FxDispatcher.executor(FxDispatcher.Lane.VISIBLE));
+        return card;
+    }
+}
@@ -0,0 +1,163 @@
+package ui;
+
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import javafx.scene.control.Tab;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed, size-bounded store of tab thumbnails.
+ * <p>
+ * Thumbnails are kept as deflated ARGB pixels, which shrinks typical pages several times over,
+ * and the least recently used ones are dropped once the total exceeds the byte budget. A
+ * snapshot identical to the stored one is not compressed again. Compression and decoding both
+ * run on {@link LinkExecutors#cpu()}, so the FX thread only takes the snapshot and shows the
+ * decoded image. Thread-safe.
+ */
+public class TabThumbnailCache {
+
+    private static final Counter UNCHANGED = Metrics.counter("link_tab_thumbnail_unchanged");
+    private static final Counter EVICTIONS = Metrics.counter("link_tab_thumbnail_evictions");
+
+    private final long maxBytes;
+    private final Map<Tab, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    /**
+     * @param maxBytes Upper bound for the compressed size of all thumbnails together.
+     */
+    public TabThumbnailCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Compresses and stores a tab's thumbnail off the FX thread.
+     *
+     * @param tab    The tab the pixels show.
+     * @param width  Width in pixels.
+     * @param height Height in pixels.
+     * @param argb   Pixels in {@link PixelFormat#getIntArgbInstance()} order; not modified.
+     * @return A future completing with false if the thumbnail was identical to the stored one.
+     */
+    public CompletableFuture<Boolean> store(Tab tab, int width, int height, int[] argb) {
+        return CompletableFuture.supplyAsync(() -> {
+            int hash = Arrays.hashCode(argb);
+            synchronized (this) {
+                Entry current = entries.get(tab);
+                if (current != null && current.hash == hash && current.width == width && current.height == height) {
+                    UNCHANGED.increment();
+                    return false;
+                }
+            }
+            Entry entry = new Entry(width, height, hash, deflate(argb));
+            synchronized (this) {
+                Entry replaced = entries.put(tab, entry);
+                if (replaced != null) totalBytes -= replaced.data.length;
+                totalBytes += entry.data.length;
+                evictOverBudget();
+            }
+            return true;
+        }, LinkExecutors.cpu());
+    }
+
+    /**
+     * Decodes a tab's thumbnail off the FX thread.
+     *
+     * @return A future completing with the image, or null if the tab has no thumbnail.
+     */
+    public CompletableFuture<Image> load(Tab tab) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(tab);
+        }
+        if (entry == null) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.supplyAsync(() -> decode(entry), LinkExecutors.cpu());
+    }
+
+    public synchronized boolean contains(Tab tab) {
+        return entries.containsKey(tab);
+    }
+
+    /** Drops the thumbnail of a closed tab. */
+    public synchronized void remove(Tab tab) {
+        Entry removed = entries.remove(tab);
+        if (removed != null) totalBytes -= removed.data.length;
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictOverBudget() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        // Keep at least the newest thumbnail even if it alone exceeds the budget.
+        while (totalBytes > maxBytes && entries.size() > 1 && eldest.hasNext()) {
+            totalBytes -= eldest.next().data.length;
+            eldest.remove();
+            EVICTIONS.increment();
+        }
+    }
+
+    private static byte[] deflate(int[] argb) {
+        ByteBuffer raw = ByteBuffer.allocate(argb.length * 4);
+        raw.asIntBuffer().put(argb);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(argb.length);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Image decode(Entry entry) {
+        byte[] raw = new byte[entry.width * entry.height * 4];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(entry.data);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            System.err.println("Corrupt tab thumbnail: " + e.getMessage());
+            return null;
+        } finally {
+            inflater.end();
+        }
+        int[] argb = new int[entry.width * entry.height];
+        ByteBuffer.wrap(raw).asIntBuffer().get(argb);
+        // Not yet part of a scene, so it may be filled here rather than on the FX thread.
+        WritableImage image = new WritableImage(entry.width, entry.height);
+        image.getPixelWriter().setPixels(0, 0, entry.width, entry.height,
+                PixelFormat.getIntArgbInstance(), argb, 0, entry.width);
+        return image;
+    }
+
+    private record Entry(int width, int height, int hash, byte[] data) {
+    }
+}
@@ -1,24 +1,67 @@
 package ui.bookmark;
 
 import api.BrowserView;
-import javafx.application.Platform;
-import javafx.concurrent.WorkerStateEvent;
-import javafx.event.EventHandler;
+import api.concurrent.FxDispatcher;
+import api.metrics.Counter;
+import api.metrics.Metrics;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.Button;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.OverrunStyle;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Single-row bookmark bar.
+ * <p>
+ * Only the bookmarks that fit the bar's width get a button; the rest sit behind an overflow
+ * chevron whose menu is built when it opens and discarded when it closes. Button widths are
+ * computed from the text, so deciding what fits needs no layout pass, and buttons are reused
+ * across resizes. Favicons come from the shared {@link FaviconCache} and all bars share one
+ * context menu, so a tab's bar costs a handful of nodes however many bookmarks there are.
+ * <p>
+ * All methods must be called on the FX application thread.
+ */
 public class BookmarkBar {
-    private FlowPane bookmarkBarContainer;
+
+    private static final double HGAP = 10;
+    private static final double ICON_SIZE = 16;
+    private static final double ICON_GAP = 5;
+    private static final double BUTTON_PADDING = 18;
+    private static final double MAX_BUTTON_WIDTH = 180;
+    private static final double CHEVRON_WIDTH = 36;
+    private static final Insets BAR_PADDING = new Insets(5, 10, 5, 10);
+    private static final Font LABEL_FONT = Font.font(12);
+    private static final String BUTTON_STYLE = "-fx-background-color: transparent; -fx-cursor: hand;";
+    private static final String LABEL_STYLE = "-fx-text-fill: #333333; -fx-font-size: 12px;";
+
+    private static final Counter BUTTONS_CREATED = Metrics.counter("link_bookmark_buttons_created");
+
+    private static final Text MEASURE = new Text();
+    private static ContextMenu sharedContextMenu;
+    private static MenuItem sharedRemoveItem;
+
+    private HBox bookmarkBarContainer;
+    private MenuButton overflowButton;
     private List<Bookmark> bookmarks;
     private BrowserView browserView;
+    private final Map<Bookmark, Button> buttons = new IdentityHashMap<>();
+    private final Map<Bookmark, Double> widths = new IdentityHashMap<>();
+    private int visibleCount = 0;
 
     public BookmarkBar(BrowserView browserView) {
         this.browserView = browserView;
@@ -28,17 +71,24 @@ public class BookmarkBar {
     }
 
     /**
-     * Initializes the bookmark bar container.
+     * Initializes the bookmark bar container and its overflow chevron.
      */
     private void initializeBookmarkBar() {
-        bookmarkBarContainer = new FlowPane();
-        bookmarkBarContainer.setHgap(10);
-        bookmarkBarContainer.setVgap(5);
-        bookmarkBarContainer.setPadding(new Insets(5, 10, 5, 10));
+        bookmarkBarContainer = new HBox(HGAP);
+        bookmarkBarContainer.setPadding(BAR_PADDING);
         bookmarkBarContainer.setAlignment(Pos.CENTER_LEFT);
         bookmarkBarContainer.getStyleClass().add("bookmark-bar");
+        bookmarkBarContainer.setMinWidth(0);
         bookmarkBarContainer.setMaxWidth(Double.MAX_VALUE);
         HBox.setHgrow(bookmarkBarContainer, Priority.ALWAYS);
+        bookmarkBarContainer.widthProperty().addListener((obs, oldWidth, newWidth) -> requestLayout());
+
+        overflowButton = new MenuButton("\u00BB");
+        overflowButton.setStyle(BUTTON_STYLE);
+        overflowButton.setMinWidth(CHEVRON_WIDTH);
+        overflowButton.setPrefWidth(CHEVRON_WIDTH);
+        overflowButton.setOnShowing(e -> populateOverflowMenu());
+        overflowButton.setOnHidden(e -> overflowButton.getItems().clear());
     }
 
     /**
@@ -48,9 +98,8 @@ public class BookmarkBar {
      * @param url  The URL of the website.
      */
     public void addBookmark(String name, String url) {
-        Bookmark bookmark = new Bookmark(name, url);
-        bookmarks.add(bookmark);
-        createBookmarkButton(bookmark);
+        bookmarks.add(new Bookmark(name, url));
+        requestLayout();
         BookmarkPersistence.saveBookmarks(bookmarks);
     }
 
@@ -61,80 +110,184 @@ public class BookmarkBar {
      */
     public void removeBookmark(String url) {
         bookmarks.removeIf(b -> b.getUrl().equals(url));
+        widths.keySet().removeIf(b -> b.getUrl().equals(url));
         refreshBookmarks();
         BookmarkPersistence.saveBookmarks(bookmarks);
     }
 
     /**
-     * Loads bookmarks from persistent storage and ensures they render properly.
+     * Loads bookmarks from persistent storage. Buttons are created once the bar has a width.
      */
     private void loadBookmarks() {
-        List<Bookmark> loadedBookmarks = BookmarkPersistence.loadBookmarks();
-        for (Bookmark bookmark : loadedBookmarks) {
-            bookmarks.add(bookmark);
-            createBookmarkButton(bookmark);
+        bookmarks.addAll(BookmarkPersistence.loadBookmarks());
+        requestLayout();
+    }
+
+    /**
+     * Refreshes the bookmark bar UI after removal.
+     */
+    private void refreshBookmarks() {
+        requestLayout();
+    }
+
+    /**
+     * Schedules a relayout. Resizing fires many width changes per frame; they collapse into one.
+     */
+    private void requestLayout() {
+        FxDispatcher.Lane lane = FxDispatcher.Lane.of(browserView == null || browserView.isActive());
+        FxDispatcher.coalesce(this, lane, this::relayout);
+    }
+
+    /**
+     * Shows buttons for the leading bookmarks that fit the current width and moves the rest
+     * behind the chevron. Buttons of bookmarks that stay visible are reused.
+     */
+    private void relayout() {
+        double available = bookmarkBarContainer.getWidth() - BAR_PADDING.getLeft() - BAR_PADDING.getRight();
+        int fitting = countFitting(available);
+        if (fitting < bookmarks.size()) {
+            fitting = countFitting(available - CHEVRON_WIDTH - HGAP);
+        }
+
+        Map<Bookmark, Button> kept = new IdentityHashMap<>();
+        List<Node> children = new ArrayList<>(fitting + 1);
+        for (int i = 0; i < fitting; i++) {
+            Bookmark bookmark = bookmarks.get(i);
+            Button button = buttons.get(bookmark);
+            if (button == null) {
+                button = createBookmarkButton(bookmark);
+            }
+            kept.put(bookmark, button);
+            children.add(button);
+        }
+        if (fitting < bookmarks.size()) {
+            children.add(overflowButton);
+        }
+        buttons.clear();
+        buttons.putAll(kept);
+        visibleCount = fitting;
+        bookmarkBarContainer.getChildren().setAll(children);
+    }
+
+    private int countFitting(double available) {
+        double used = 0;
+        int count = 0;
+        for (Bookmark bookmark : bookmarks) {
+            used += (count == 0 ? 0 : HGAP) + widthOf(bookmark);
+            if (used > available) break;
+            count++;
         }
+        return count;
+    }
+
+    /**
+     * Returns the width of a bookmark's button, computed from its text and capped at
+     * {@value #MAX_BUTTON_WIDTH}.
+     */
+    private double widthOf(Bookmark bookmark) {
+        return widths.computeIfAbsent(bookmark, b -> {
+            MEASURE.setFont(LABEL_FONT);
+            MEASURE.setText(b.getName());
+            double width = BUTTON_PADDING + ICON_SIZE + ICON_GAP + Math.ceil(MEASURE.getLayoutBounds().getWidth());
+            return Math.min(width, MAX_BUTTON_WIDTH);
+        });
     }
 
     /**
      * Creates a bookmark button with favicon and label.
      *
      * @param bookmark The Bookmark object.
+     * @return The button, not yet added to the bar.
      */
-    private void createBookmarkButton(Bookmark bookmark) {
+    private Button createBookmarkButton(Bookmark bookmark) {
+        BUTTONS_CREATED.increment();
         Button bookmarkButton = new Button();
         bookmarkButton.getStyleClass().add("bookmark-button");
-        bookmarkButton.setStyle("-fx-background-color: transparent; -fx-cursor: hand;");
+        bookmarkButton.setStyle(BUTTON_STYLE);
         bookmarkButton.setAlignment(Pos.CENTER_LEFT);
+        double width = widthOf(bookmark);
+        bookmarkButton.setMinWidth(width);
+        bookmarkButton.setPrefWidth(width);
+        bookmarkButton.setMaxWidth(width);
 
-        ImageView faviconView = new ImageView();
-        faviconView.setFitWidth(16);
-        faviconView.setFitHeight(16);
-        faviconView.setPreserveRatio(true);
-        faviconView.setSmooth(true);
-        faviconView.setCache(true);
-
-        javafx.scene.control.Label nameLabel = new javafx.scene.control.Label(bookmark.getName());
+        Label nameLabel = new Label(bookmark.getName());
         nameLabel.getStyleClass().add("bookmark-label");
-        nameLabel.setStyle("-fx-text-fill: #333333; -fx-font-size: 12px;");
+        nameLabel.setStyle(LABEL_STYLE);
+        nameLabel.setTextOverrun(OverrunStyle.ELLIPSIS);
 
-        HBox content = new HBox(5, faviconView, nameLabel);
+        HBox content = new HBox(ICON_GAP, faviconView(bookmark), nameLabel);
         content.setAlignment(Pos.CENTER_LEFT);
         bookmarkButton.setGraphic(content);
 
-        FaviconFetcher.fetchFaviconTask(bookmark.getUrl()).setOnSucceeded(event -> {
-            Image favicon = (Image) event.getSource().getValue();
-            faviconView.setImage(favicon);
+        bookmarkButton.setOnAction(e -> open(bookmark));
+        bookmarkButton.setOnContextMenuRequested(e -> {
+            showContextMenu(bookmarkButton, bookmark, e.getScreenX(), e.getScreenY());
+            e.consume();
         });
-        new Thread(FaviconFetcher.fetchFaviconTask(bookmark.getUrl())).start();
+        return bookmarkButton;
+    }
 
-        javafx.scene.control.ContextMenu contextMenu = new javafx.scene.control.ContextMenu();
-        javafx.scene.control.MenuItem removeItem = new javafx.scene.control.MenuItem("Remove Bookmark");
-        removeItem.setOnAction(e -> removeBookmark(bookmark.getUrl()));
-        contextMenu.getItems().add(removeItem);
-        bookmarkButton.setContextMenu(contextMenu);
+    /**
+     * Returns an icon view showing the bookmark's favicon, filled in once it has been fetched.
+     */
+    private ImageView faviconView(Bookmark bookmark) {
+        ImageView faviconView = new ImageView();
+        faviconView.setFitWidth(ICON_SIZE);
+        faviconView.setFitHeight(ICON_SIZE);
+        faviconView.setPreserveRatio(true);
+        faviconView.setSmooth(true);
+        Image cached = FaviconCache.getIfLoaded(bookmark.getUrl());
+        if (cached != null) {
+            faviconView.setImage(cached);
+        } else {
+            FaviconCache.get(bookmark.getUrl()).thenAcceptAsync(faviconView::setImage,
+                    FxDispatcher.executor(FxDispatcher.Lane.IDLE));
+        }
+        return faviconView;
+    }
 
-        Platform.runLater(() -> bookmarkBarContainer.getChildren().add(bookmarkButton));
+    /** Fills the chevron menu with the bookmarks that did not fit, just before it opens. */
+    private void populateOverflowMenu() {
+        List<MenuItem> items = new ArrayList<>(bookmarks.size() - visibleCount);
+        for (Bookmark bookmark : bookmarks.subList(visibleCount, bookmarks.size())) {
+            MenuItem item = new MenuItem(bookmark.getName());
+            Image favicon = FaviconCache.getIfLoaded(bookmark.getUrl());
+            if (favicon != null) {
+                ImageView icon = new ImageView(favicon);
+                icon.setFitWidth(ICON_SIZE);
+                icon.setFitHeight(ICON_SIZE);
+                item.setGraphic(icon);
+            }
+            item.setOnAction(e -> open(bookmark));
+            items.add(item);
+        }
+        overflowButton.getItems().setAll(items);
+    }
+
+    private void open(Bookmark bookmark) {
+        if (browserView != null) {
+            browserView.loadPage(bookmark.getUrl());
+        }
     }
 
     /**
-     * Refreshes the bookmark bar UI after removal.
+     * Shows the context menu shared by every bookmark button, pointed at one bookmark.
      */
-    private void refreshBookmarks() {
-        Platform.runLater(() -> {
-            bookmarkBarContainer.getChildren().clear();
-            for (Bookmark bookmark : bookmarks) {
-                createBookmarkButton(bookmark);
-            }
-        });
+    private void showContextMenu(Node anchor, Bookmark bookmark, double screenX, double screenY) {
+        if (sharedContextMenu == null) {
+            sharedRemoveItem = new MenuItem("Remove Bookmark");
+            sharedContextMenu = new ContextMenu(sharedRemoveItem);
+        }
+        sharedRemoveItem.setOnAction(e -> removeBookmark(bookmark.getUrl()));
+        sharedContextMenu.show(anchor, screenX, screenY);
     }
 
     /**
-     * Gets the container FlowPane containing the bookmarks.
+     * Gets the container holding the visible bookmark buttons and the overflow chevron.
      *
-     * @return The FlowPane containing the bookmarks.
+     * @return The container.
      */
-    public FlowPane getBookmarkBarContainer() {
+    public HBox getBookmarkBarContainer() {
         return bookmarkBarContainer;
     }
 
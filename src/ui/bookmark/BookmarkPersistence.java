@@ -1,69 +1,129 @@
 package ui.bookmark;
 
-import javafx.application.Platform;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
+import api.profile.ProfileStore;
+import api.profile.RecordCodec;
 
 import java.io.*;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * BookmarkPersistence class handles saving and loading bookmarks manually without external libraries.
- * Bookmarks are stored in JSON format in the user.home/LinkBrowser/bookmarks.json file.
+ * BookmarkPersistence class handles saving and loading bookmarks.
+ * Bookmarks are stored in order as records of the encrypted {@link ProfileStore}. A legacy
+ * user.home/LinkBrowser/bookmarks.json file is imported once and then renamed, so it is never
+ * read again.
  */
 public class BookmarkPersistence {
     private static final String BOOKMARKS_DIR = System.getProperty("user.home") + File.separator + "LinkBrowser";
     private static final String BOOKMARKS_FILE = BOOKMARKS_DIR + File.separator + "bookmarks.json";
+    private static final String PREFIX = "bookmarks/";
+    private static final String IMPORTED_MARKER = "meta/legacy_bookmarks_imported";
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final Object IMPORT_LOCK = new Object();
+    private static boolean legacyChecked = false;
 
     /**
-     * Saves the list of bookmarks to a JSON file in user.home/LinkBrowser/bookmarks.json.
+     * Replaces the stored bookmarks with the given list in one transaction.
+     * The write happens on the profile writer thread.
      *
      * @param bookmarks List of bookmarks to save.
      */
     public static void saveBookmarks(List<Bookmark> bookmarks) {
-        File dir = new File(BOOKMARKS_DIR);
-        if (!dir.exists()) {
-            boolean created = dir.mkdirs();
-            if (!created) {
-                System.err.println("Failed to create bookmarks directory: " + BOOKMARKS_DIR);
-                return;
+        List<Bookmark> snapshot = new ArrayList<>(bookmarks);
+        GENERATION.incrementAndGet();
+        ProfileStore store = ProfileStore.getInstance();
+        store.submit(() -> {
+            ProfileStore.Transaction transaction = store.begin();
+            List<String> existing = store.keys(PREFIX);
+            for (int i = snapshot.size(); i < existing.size(); i++) {
+                transaction.delete(existing.get(i));
             }
-        }
+            for (int i = 0; i < snapshot.size(); i++) {
+                Bookmark bookmark = snapshot.get(i);
+                transaction.put(keyFor(i), RecordCodec.encode(bookmark.getName(), bookmark.getUrl()));
+            }
+            transaction.commit();
+        });
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(BOOKMARKS_FILE))) {
-            String json = serializeBookmarksToJson(bookmarks);
-            writer.write(json);
-        } catch (IOException e) {
-            System.err.println("Failed to save bookmarks: " + e.getMessage());
-        }
+    /**
+     * Returns a number that changes whenever the bookmarks are saved, so a copy loaded
+     * earlier can be told apart from the current list.
+     */
+    public static long getGeneration() {
+        return GENERATION.get();
     }
 
     /**
-     * Loads the list of bookmarks from the JSON file in user.home/LinkBrowser/bookmarks.json.
+     * Loads the stored bookmarks, importing the legacy JSON file on first use.
      *
      * @return List of bookmarks, or an empty list if loading fails.
      */
     public static List<Bookmark> loadBookmarks() {
+        List<Bookmark> bookmarks = new ArrayList<>();
+        try {
+            ProfileStore store = ProfileStore.getInstance();
+            importLegacyFile(store);
+            for (byte[] value : store.scan(PREFIX).values()) {
+                List<String> fields = RecordCodec.decode(value);
+                bookmarks.add(new Bookmark(fields.get(0), fields.get(1)));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to load bookmarks: " + e.getMessage());
+        }
+        return bookmarks;
+    }
+
+    /**
+     * Moves bookmarks.json into the profile store and renames the file to bookmarks.json.imported.
+     * Bookmarks are loaded from several threads at startup, so the check and the import run
+     * under one lock; callers that arrive during the import wait for it before reading.
+     */
+    private static void importLegacyFile(ProfileStore store) {
+        synchronized (IMPORT_LOCK) {
+            if (legacyChecked) {
+                return;
+            }
+            legacyChecked = true;
+            importLegacyFileLocked(store);
+        }
+    }
+
+    private static void importLegacyFileLocked(ProfileStore store) {
         File file = new File(BOOKMARKS_FILE);
-        if (!file.exists()) {
-            return new ArrayList<>();
+        if (!file.exists() || store.get(IMPORTED_MARKER) != null) {
+            return;
         }
 
         StringBuilder jsonBuilder = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(BOOKMARKS_FILE))) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 jsonBuilder.append(line.trim());
             }
-            String json = jsonBuilder.toString();
-            return deserializeJsonToBookmarks(json);
         } catch (IOException e) {
-            System.err.println("Failed to load bookmarks: " + e.getMessage());
-            return new ArrayList<>();
+            System.err.println("Failed to read legacy bookmarks: " + e.getMessage());
+            return;
+        }
+
+        List<Bookmark> imported = deserializeJsonToBookmarks(jsonBuilder.toString());
+        ProfileStore.Transaction transaction = store.begin();
+        int next = store.keys(PREFIX).size();
+        for (Bookmark bookmark : imported) {
+            transaction.put(keyFor(next++), RecordCodec.encode(bookmark.getName(), bookmark.getUrl()));
         }
+        transaction.putString(IMPORTED_MARKER, BOOKMARKS_FILE);
+        transaction.commit();
+        if (!file.renameTo(new File(BOOKMARKS_FILE + ".imported"))) {
+            System.err.println("Imported bookmarks but could not rename " + BOOKMARKS_FILE);
+        } else {
+            System.out.println("Imported " + imported.size() + " bookmark(s) into the profile.");
+        }
+    }
+
+    private static String keyFor(int index) {
+        return PREFIX + String.format("%06d", index);
     }
 
     /**
@@ -72,7 +132,7 @@ public class BookmarkPersistence {
      * @param bookmarks List of bookmarks to serialize.
      * @return JSON-formatted string representing the list of bookmarks.
      */
-    private static String serializeBookmarksToJson(List<Bookmark> bookmarks) {
+    static String serializeBookmarksToJson(List<Bookmark> bookmarks) {
         StringBuilder jsonBuilder = new StringBuilder();
         jsonBuilder.append("[\n");
         for (int i = 0; i < bookmarks.size(); i++) {
@@ -96,7 +156,7 @@ public class BookmarkPersistence {
      * @param json JSON-formatted string representing the list of bookmarks.
      * @return List of Bookmark objects.
      */
-    private static List<Bookmark> deserializeJsonToBookmarks(String json) {
+    static List<Bookmark> deserializeJsonToBookmarks(String json) {
         List<Bookmark> bookmarks = new ArrayList<>();
         json = json.trim();
         if (!json.startsWith("[") || !json.endsWith("]")) {
@@ -0,0 +1,41 @@
+package ui.bookmark;
+
+import api.bridge.Html;
+
+import java.util.List;
+
+/**
+ * Renders the internal link://bookmarks page, a plain list of the saved bookmarks.
+ */
+public final class BookmarksPage {
+
+    public static final String URL = "link://bookmarks";
+
+    private BookmarksPage() {
+    }
+
+    public static String render(List<Bookmark> bookmarks) {
+        StringBuilder items = new StringBuilder();
+        for (Bookmark bookmark : bookmarks) {
+            String name = bookmark.getName() == null || bookmark.getName().isBlank() ? bookmark.getUrl() : bookmark.getName();
+            items.append("<li><a href=\"").append(Html.escape(bookmark.getUrl())).append("\">").append(Html.escape(name))
+                    .append("</a><div class=\"url\">").append(Html.escape(bookmark.getUrl())).append("</div></li>");
+        }
+        if (bookmarks.isEmpty()) {
+            items.append("<li>No bookmarks yet.</li>");
+        }
+        return """
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>Bookmarks</title><style>
+                body { font-family: Tahoma, sans-serif; margin: 24px auto; max-width: 760px; color: #222; }
+                ul { list-style: none; padding: 0; }
+                li { margin: 12px 0; }
+                a { font-size: 15px; color: #1a4fb0; text-decoration: none; }
+                .url { color: #2a7a2a; font-size: 12px; word-break: break-all; }
+                </style></head><body>
+                <h1>Bookmarks</h1>
+                <ul>%s</ul>
+                </body></html>
+                """.formatted(items);
+    }
+}
@@ -0,0 +1,82 @@
+package ui.bookmark;
+
+import api.concurrent.LinkExecutors;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import javafx.scene.image.Image;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Process-wide favicon cache keyed by host.
+ * <p>
+ * Every tab has its own bookmark bar, but they all show the same icons, so each host's favicon
+ * is fetched once and the same {@link Image} is shared by every view that shows it. Holds the
+ * {@value #MAX_ENTRIES} most recently used hosts. Thread-safe.
+ */
+public final class FaviconCache {
+
+    private static final int MAX_ENTRIES = 256;
+    private static final Counter HITS = Metrics.counter("link_favicon_cache_hits");
+    private static final Counter MISSES = Metrics.counter("link_favicon_cache_misses");
+
+    private static final Map<String, CompletableFuture<Image>> ENTRIES =
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Image>> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private FaviconCache() {
+    }
+
+    /**
+     * Returns the favicon of a site, fetching it on an io thread the first time its host is
+     * asked for. Concurrent callers for the same host share one fetch.
+     *
+     * @param websiteUrl Any URL of the site.
+     * @return A future completed off the FX thread.
+     */
+    public static CompletableFuture<Image> get(String websiteUrl) {
+        String host = hostOf(websiteUrl);
+        CompletableFuture<Image> favicon;
+        synchronized (ENTRIES) {
+            favicon = ENTRIES.get(host);
+            if (favicon != null) {
+                HITS.increment();
+                return favicon;
+            }
+            MISSES.increment();
+            favicon = new CompletableFuture<>();
+            ENTRIES.put(host, favicon);
+        }
+        CompletableFuture<Image> pending = favicon;
+        LinkExecutors.io().execute(() -> pending.complete(FaviconFetcher.fetchFavicon(websiteUrl)));
+        return favicon;
+    }
+
+    /**
+     * Returns the favicon of a site if it has already been fetched, without starting a fetch.
+     */
+    public static Image getIfLoaded(String websiteUrl) {
+        CompletableFuture<Image> favicon;
+        synchronized (ENTRIES) {
+            favicon = ENTRIES.get(hostOf(websiteUrl));
+        }
+        return favicon != null && favicon.isDone() ? favicon.join() : null;
+    }
+
+    private static String hostOf(String websiteUrl) {
+        try {
+            String host = URI.create(websiteUrl).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : websiteUrl;
+        } catch (IllegalArgumentException e) {
+            return websiteUrl;
+        }
+    }
+}
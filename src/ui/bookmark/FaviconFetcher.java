@@ -1,35 +1,48 @@
 package ui.bookmark;
 
-import javafx.concurrent.Task;
+import api.metrics.Counter;
+import api.metrics.Metrics;
+import api.metrics.Span;
 import javafx.scene.image.Image;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 
 public class FaviconFetcher {
+    private static final Counter FETCH_FAILURES = Metrics.counter("link_favicon_fetch_failures");
+
     /**
-     * Fetches the favicon for the given website URL.
+     * Fetches the favicon for the given website URL on the calling thread.
      *
      * @param websiteUrl The URL of the website.
-     * @return A Task that returns the Image of the favicon.
+     * @return The favicon, or the default favicon if the URL is invalid or the fetch failed
+     *         before any request was made.
      */
-    public static Task<Image> fetchFaviconTask(String websiteUrl) {
-        return new Task<>() {
-            @Override
-            protected Image call() {
-                try {
-                    URL url = new URL(websiteUrl);
-                    String faviconUrl = url.getProtocol() + "://" + url.getHost() + "/favicon.ico";
-                    return new Image(faviconUrl, 16, 16, true, true, true);
-                } catch (MalformedURLException e) {
-                    System.err.println("Invalid URL: " + websiteUrl);
-                    return new Image(FaviconFetcher.class.getResourceAsStream("/Images/default_favicon.png"));
-                } catch (Exception e) {
-                    System.err.println("Failed to fetch favicon for: " + websiteUrl);
-                    return new Image(FaviconFetcher.class.getResourceAsStream("/Images/default_favicon.png"));
-                }
-            }
-        };
+    public static Image fetchFavicon(String websiteUrl) {
+        Span fetchSpan = Metrics.span("link_favicon_fetch");
+        try {
+            URL url = new URL(websiteUrl);
+            String faviconUrl = url.getProtocol() + "://" + url.getHost() + "/favicon.ico";
+            // Already on a worker thread, so load synchronously; this also makes the span measure the fetch
+            Image favicon = new Image(faviconUrl, 16, 16, true, true, false);
+            fetchSpan.end(favicon.isError() ? "failed" : "ok");
+            if (favicon.isError()) FETCH_FAILURES.increment();
+            return favicon;
+        } catch (MalformedURLException e) {
+            fetchSpan.end("failed");
+            FETCH_FAILURES.increment();
+            System.err.println("Invalid URL: " + websiteUrl);
+            return defaultFavicon();
+        } catch (Exception e) {
+            fetchSpan.end("failed");
+            FETCH_FAILURES.increment();
+            System.err.println("Failed to fetch favicon for: " + websiteUrl);
+            return defaultFavicon();
+        }
+    }
+
+    private static Image defaultFavicon() {
+        return new Image(FaviconFetcher.class.getResourceAsStream("/Images/default_favicon.png"));
     }
 }
 